@@ -0,0 +1,373 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.geometry.S2BooleanOperation.OpType;
+import com.google.common.geometry.S2Builder.SnapFunction;
+import com.google.common.geometry.S2BuilderSnapFunctions.IdentitySnapFunction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Clips many small polygons or polylines against a single, typically much larger, polygonal
+ * region. The results are the same as computing the intersection of the region with each input
+ * using {@link S2BooleanOperation} with the same options, but the work that depends only on the
+ * region is done once, when the S2BatchClipper is constructed, rather than once per input.
+ *
+ * <p>The region's S2ShapeIndex is built once and shared by every clip. An interior covering and a
+ * covering of the region are also computed once, and each input is first compared to them: an
+ * input whose cell union bound is within the interior covering is entirely inside the region, and
+ * one whose bound does not intersect the covering is entirely outside it. Neither needs a boolean
+ * operation, so when most inputs are far from the region's boundary, most of them are resolved by
+ * a few binary searches.
+ *
+ * <p>The remaining inputs are clipped by a {@link Clipper}, which reuses the same boolean
+ * operations and output layers for every input it clips. A Clipper is not thread-safe, so
+ * streaming callers should use one per thread. The batch methods clip contiguous chunks of their
+ * inputs concurrently on a {@link ForkJoinPool}, with one Clipper per chunk.
+ *
+ * <p>Inputs entirely inside the region are returned unchanged, which is the same as the result of
+ * the boolean operation only if it does no snapping. So this shortcut is only taken when the snap
+ * function is an {@link IdentitySnapFunction} with a zero snap radius, which is the default.
+ *
+ * <p>This class is thread-safe, provided the region is not modified while it is used.
+ */
+public final class S2BatchClipper {
+  /** The default maximum number of cells in the coverings of the region. */
+  public static final int DEFAULT_MAX_COVERING_CELLS = 512;
+
+  /** The number of chunks per thread of the pool used by parallel clipping. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /** The minimum number of inputs in each chunk of a parallel clipping. */
+  private static final int MIN_CHUNK_SIZE = 64;
+
+  private final S2Polygon region;
+  private final S2BooleanOperation.Options options;
+
+  /** Cells that are entirely within the region. */
+  private final S2CellUnion interior;
+
+  /** Cells that together contain the region. */
+  private final S2CellUnion covering;
+
+  /** Whether inputs within the interior covering may be returned without clipping them. */
+  private final boolean resolveInside;
+
+  /** Constructs a batch clipper for the given region, with default options. */
+  public S2BatchClipper(S2Polygon region) {
+    this(region, S2BooleanOperation.Options.DEFAULT, DEFAULT_MAX_COVERING_CELLS);
+  }
+
+  /**
+   * Constructs a batch clipper for the given region, which clips with the given boolean operation
+   * options, and covers the region with at most 'maxCoveringCells' cells.
+   */
+  public S2BatchClipper(
+      S2Polygon region, S2BooleanOperation.Options options, int maxCoveringCells) {
+    Preconditions.checkArgument(maxCoveringCells > 0, "maxCoveringCells must be positive");
+    this.region = region;
+    this.options = new S2BooleanOperation.Options(options);
+
+    // Build the index now, rather than racing to build it lazily from concurrent clips.
+    region.index().applyUpdates();
+    S2RegionCoverer coverer = S2RegionCoverer.builder().setMaxCells(maxCoveringCells).build();
+    interior = coverer.getInteriorCovering(region);
+    covering = coverer.getCovering(region);
+
+    SnapFunction snapFunction = options.snapFunction();
+    resolveInside =
+        snapFunction instanceof IdentitySnapFunction && snapFunction.snapRadius().radians() == 0;
+  }
+
+  /** Returns the region that inputs are clipped against. */
+  public S2Polygon region() {
+    return region;
+  }
+
+  /** Returns the options of the boolean operations used to clip inputs. */
+  public S2BooleanOperation.Options options() {
+    return options;
+  }
+
+  /** Returns the interior covering of the region, which is used to find inputs inside it. */
+  public S2CellUnion interiorCovering() {
+    return interior;
+  }
+
+  /** Returns the covering of the region, which is used to find inputs outside it. */
+  public S2CellUnion covering() {
+    return covering;
+  }
+
+  /** Returns a new Clipper for this region. Each thread that clips inputs needs its own Clipper. */
+  public Clipper newClipper() {
+    return new Clipper();
+  }
+
+  /**
+   * Clips each of the given polygons to the region, and appends the results to 'output' in the
+   * same order. Clips chunks of the inputs concurrently on 'pool' if it is non-null. Returns true
+   * on success, and otherwise sets "error" to the error of the first input that failed, with the
+   * position of the input added to the text, and leaves 'output' unchanged.
+   */
+  public boolean clipPolygons(
+      List<S2Polygon> inputs,
+      List<S2Polygon> output,
+      @Nullable ForkJoinPool pool,
+      S2Error error) {
+    return clipAll(inputs, output, S2Polygon::new, Clipper::clipPolygon, pool, error);
+  }
+
+  /**
+   * Clips each of the given polylines to the region, and appends the pieces of each one within
+   * the region to 'output' as a list, in the same order as the inputs. Clips chunks of the inputs
+   * concurrently on 'pool' if it is non-null. Returns true on success, and otherwise sets "error"
+   * to the error of the first input that failed, with the position of the input added to the
+   * text, and leaves 'output' unchanged.
+   */
+  public boolean clipPolylines(
+      List<S2Polyline> inputs,
+      List<List<S2Polyline>> output,
+      @Nullable ForkJoinPool pool,
+      S2Error error) {
+    return clipAll(inputs, output, ArrayList::new, Clipper::clipPolyline, pool, error);
+  }
+
+  /** Clips one input to the region with the given Clipper, as the Clipper's methods do. */
+  private interface ClipFunction<T, R> {
+    boolean clip(Clipper clipper, T input, R output, S2Error error);
+  }
+
+  /** Clips the given inputs with 'function', on the given pool if it is non-null. */
+  private <T, R> boolean clipAll(
+      List<T> inputs,
+      List<R> output,
+      Supplier<R> newResult,
+      ClipFunction<T, R> function,
+      @Nullable ForkJoinPool pool,
+      S2Error error) {
+    int numInputs = inputs.size();
+    int numChunks = 1;
+    if (pool != null) {
+      numChunks =
+          Math.max(
+              1,
+              Math.min(CHUNKS_PER_THREAD * pool.getParallelism(), numInputs / MIN_CHUNK_SIZE));
+    }
+
+    List<R> results = new ArrayList<>(numInputs);
+    for (int i = 0; i < numInputs; i++) {
+      results.add(newResult.get());
+    }
+    Chunk[] chunks = new Chunk[numChunks];
+    for (int i = 0; i < numChunks; i++) {
+      chunks[i] =
+          new Chunk(
+              (int) ((long) numInputs * i / numChunks),
+              (int) ((long) numInputs * (i + 1) / numChunks));
+    }
+    ClipTask<T, R> task = new ClipTask<>(inputs, results, function, chunks, 0, numChunks);
+    if (numChunks == 1) {
+      task.compute();
+    } else {
+      pool.invoke(task);
+    }
+
+    for (Chunk chunk : chunks) {
+      if (!chunk.error.ok()) {
+        error.init(chunk.error.code(), "Input %s: %s", chunk.failedInput, chunk.error.text());
+        return false;
+      }
+    }
+    output.addAll(results);
+    return true;
+  }
+
+  /** A contiguous range of the inputs of a batch, and the first error that occurred in it. */
+  private static final class Chunk {
+    final int begin;
+    final int end;
+    final S2Error error = new S2Error();
+    int failedInput = -1;
+
+    Chunk(int begin, int end) {
+      this.begin = begin;
+      this.end = end;
+    }
+  }
+
+  /** Clips a range of chunks, splitting the range in half until it is a single chunk. */
+  private final class ClipTask<T, R> extends RecursiveAction {
+    private final List<T> inputs;
+    private final List<R> results;
+    private final ClipFunction<T, R> function;
+    private final Chunk[] chunks;
+    private final int begin;
+    private final int end;
+
+    ClipTask(
+        List<T> inputs,
+        List<R> results,
+        ClipFunction<T, R> function,
+        Chunk[] chunks,
+        int begin,
+        int end) {
+      this.inputs = inputs;
+      this.results = results;
+      this.function = function;
+      this.chunks = chunks;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin > 1) {
+        int mid = (begin + end) >>> 1;
+        invokeAll(
+            new ClipTask<>(inputs, results, function, chunks, begin, mid),
+            new ClipTask<>(inputs, results, function, chunks, mid, end));
+        return;
+      }
+      Chunk chunk = chunks[begin];
+      Clipper clipper = new Clipper();
+      for (int i = chunk.begin; i < chunk.end; i++) {
+        if (!function.clip(clipper, inputs.get(i), results.get(i), chunk.error)) {
+          chunk.failedInput = i;
+          return;
+        }
+      }
+    }
+  }
+
+  /** How an input is related to the region, as determined from the coverings. */
+  private enum Relation {
+    /** The input is entirely inside the region. */
+    INSIDE,
+    /** The input is entirely outside the region. */
+    OUTSIDE,
+    /** The coverings do not determine the relation, so the input must be clipped. */
+    UNKNOWN
+  }
+
+  /**
+   * Clips inputs to the region one at a time, reusing the same boolean operations and output
+   * layers for each. Clippers are not thread-safe.
+   */
+  public final class Clipper {
+    private final ArrayList<S2CellId> bound = new ArrayList<>();
+    private final S2PolygonLayer polygonLayer = new S2PolygonLayer();
+    private final S2PolylineVectorLayer polylineLayer = new S2PolylineVectorLayer();
+    private final S2BooleanOperation polygonOp;
+    private final S2BooleanOperation polylineOp;
+
+    private long numInside;
+    private long numOutside;
+    private long numClipped;
+
+    private Clipper() {
+      S2BooleanOperation.Builder builder = new S2BooleanOperation.Builder(options);
+      polygonOp = builder.build(OpType.INTERSECTION, polygonLayer);
+      polylineOp = builder.build(OpType.INTERSECTION, polylineLayer);
+    }
+
+    /**
+     * Initializes 'output', which must be empty, to the intersection of the given polygon with
+     * the region. Returns true on success, and otherwise sets "error" appropriately.
+     */
+    public boolean clipPolygon(S2Polygon input, S2Polygon output, S2Error error) {
+      bound.clear();
+      input.getCellUnionBound(bound);
+      switch (relation()) {
+        case INSIDE:
+          output.copy(input);
+          return true;
+        case OUTSIDE:
+          output.init(new ArrayList<>());
+          return true;
+        default:
+          numClipped++;
+          polygonLayer.setPolygon(output);
+          return polygonOp.build(region.index(), input.index(), error);
+      }
+    }
+
+    /**
+     * Appends the pieces of the given polyline within the region to 'output'. Returns true on
+     * success, and otherwise sets "error" appropriately.
+     */
+    public boolean clipPolyline(S2Polyline input, List<S2Polyline> output, S2Error error) {
+      bound.clear();
+      input.getCellUnionBound(bound);
+      switch (relation()) {
+        case INSIDE:
+          output.add(input);
+          return true;
+        case OUTSIDE:
+          return true;
+        default:
+          numClipped++;
+          S2ShapeIndex inputIndex = new S2ShapeIndex();
+          inputIndex.add(input);
+          if (!polylineOp.build(region.index(), inputIndex, error)) {
+            return false;
+          }
+          output.addAll(polylineLayer.getPolylines());
+          return true;
+      }
+    }
+
+    /** Returns the relation to the region of the input whose cell union bound is in 'bound'. */
+    private Relation relation() {
+      boolean inside = resolveInside;
+      boolean outside = true;
+      for (S2CellId id : bound) {
+        inside = inside && interior.contains(id);
+        outside = outside && !covering.intersects(id);
+      }
+      if (inside) {
+        numInside++;
+        return Relation.INSIDE;
+      }
+      if (outside) {
+        numOutside++;
+        return Relation.OUTSIDE;
+      }
+      return Relation.UNKNOWN;
+    }
+
+    /** Returns the number of inputs that were found to be inside the region by its coverings. */
+    public long numInside() {
+      return numInside;
+    }
+
+    /** Returns the number of inputs that were found to be outside the region by its coverings. */
+    public long numOutside() {
+      return numOutside;
+    }
+
+    /** Returns the number of inputs that were clipped by a boolean operation. */
+    public long numClipped() {
+      return numClipped;
+    }
+  }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.geometry.S2ContainsPointQuery.S2VertexModel;
+import com.google.common.geometry.S2EdgeUtil.EdgeCrosser;
+import com.google.common.geometry.S2Shape.MutableEdge;
+import com.google.common.geometry.S2ShapeIndex.CellRelation;
+import com.google.common.geometry.S2ShapeIndex.S2ClippedShape;
+import com.google.common.geometry.primitives.IntVector;
+import com.google.common.geometry.primitives.Sorter;
+import com.google.common.geometry.primitives.Sorter.SortableCollection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A query that determines which shapes of an {@link S2ShapeIndex} contain each point of a large
+ * batch. The results are the same as calling {@link S2ContainsPointQuery#getContainingShapeIds}
+ * with the same vertex model for each point, but the batch is much faster to classify.
+ *
+ * <p>The points are sorted by leaf S2CellId, so that the index cells are visited once each in a
+ * single sweep, and the edges of each index cell are loaded once and then tested against every
+ * point in that cell. Large batches may optionally be divided into chunks that are classified
+ * concurrently on a {@link ForkJoinPool}.
+ *
+ * <p>The results are returned as a {@link Result}, which holds the containing shape ids of every
+ * point in compressed sparse row form, and can also produce a plain {@code int[]} of the first
+ * containing shape id of each point, for the common case where shapes do not overlap.
+ *
+ * <p>This class is thread-safe, provided the index is not modified while it is used.
+ */
+public final class S2BatchContainsPointQuery {
+  /** The number of chunks per thread of the pool used by parallel classification. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /** The minimum number of points in each chunk of a parallel classification. */
+  private static final int MIN_CHUNK_SIZE = 4096;
+
+  private final S2ShapeIndex index;
+  private final S2VertexModel vertexModel;
+
+  /** Constructs a semi-open batch query for the given index. */
+  public S2BatchContainsPointQuery(S2ShapeIndex index) {
+    this(index, S2ContainsPointQuery.Options.SEMI_OPEN);
+  }
+
+  /** Constructs a batch query for the given index, with the specified options. */
+  public S2BatchContainsPointQuery(S2ShapeIndex index, S2ContainsPointQuery.Options options) {
+    this.index = index;
+    this.vertexModel = options.vertexModel();
+  }
+
+  /** Returns the shapes that contain each of the given points. */
+  public Result classify(S2Point[] points) {
+    return classify(new PointArray(points), null);
+  }
+
+  /** As {@link #classify(S2Point[])}, but classifies chunks of points concurrently on 'pool'. */
+  public Result classify(S2Point[] points, ForkJoinPool pool) {
+    return classify(new PointArray(points), pool);
+  }
+
+  /**
+   * Returns the shapes that contain each of the points with the given latitudes and longitudes in
+   * degrees, which must be arrays of the same length.
+   */
+  public Result classify(double[] latDegrees, double[] lngDegrees) {
+    return classify(new LatLngArrays(latDegrees, lngDegrees), null);
+  }
+
+  /**
+   * As {@link #classify(double[], double[])}, but classifies chunks of points concurrently on
+   * 'pool'.
+   */
+  public Result classify(double[] latDegrees, double[] lngDegrees, ForkJoinPool pool) {
+    return classify(new LatLngArrays(latDegrees, lngDegrees), pool);
+  }
+
+  /** Classifies the given points, on the given pool if it is non-null. */
+  private Result classify(PointSource source, @Nullable ForkJoinPool pool) {
+    int numPoints = source.size();
+    int numChunks = 1;
+    if (pool != null) {
+      numChunks =
+          Math.max(
+              1,
+              Math.min(CHUNKS_PER_THREAD * pool.getParallelism(), numPoints / MIN_CHUNK_SIZE));
+    }
+
+    Result[] chunks = new Result[numChunks];
+    if (numChunks == 1) {
+      chunks[0] = new Classifier(source, 0, numPoints).classify();
+    } else {
+      // Build the index now, rather than racing to build it lazily from the chunks.
+      index.applyUpdates();
+      pool.invoke(new ClassifyTask(source, numPoints, chunks, 0, numChunks));
+    }
+    return Result.concat(chunks, numPoints);
+  }
+
+  /** Classifies a range of chunks, splitting the range in half until it is a single chunk. */
+  private final class ClassifyTask extends RecursiveAction {
+    private final PointSource source;
+    private final int numPoints;
+    private final Result[] chunks;
+    private final int begin;
+    private final int end;
+
+    ClassifyTask(PointSource source, int numPoints, Result[] chunks, int begin, int end) {
+      this.source = source;
+      this.numPoints = numPoints;
+      this.chunks = chunks;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin > 1) {
+        int mid = (begin + end) >>> 1;
+        invokeAll(
+            new ClassifyTask(source, numPoints, chunks, begin, mid),
+            new ClassifyTask(source, numPoints, chunks, mid, end));
+        return;
+      }
+      int firstPoint = (int) ((long) numPoints * begin / chunks.length);
+      int lastPoint = (int) ((long) numPoints * (begin + 1) / chunks.length);
+      chunks[begin] = new Classifier(source, firstPoint, lastPoint).classify();
+    }
+  }
+
+  /**
+   * Classifies a contiguous range of the input points. The points are sorted by leaf cell id and
+   * swept through the index cells in order.
+   */
+  private final class Classifier implements SortableCollection {
+    /** The points of the range, which are sorted along with their ids and input positions. */
+    private final S2Point[] points;
+
+    private final long[] ids;
+    private final int[] positions;
+
+    /**
+     * The number of points still to be classified, which is the length of the arrays above unless
+     * {@link #truncate} has removed points from the end.
+     */
+    private int size;
+
+    // The current index cell and its data, loaded once for all the points within it.
+    private final S2Iterator<S2ShapeIndex.Cell> it = index.iterator();
+    private S2CellId cellMin = S2CellId.none();
+    private S2CellId cellMax = S2CellId.none();
+    private S2Point cellCenter;
+    private int numClipped;
+    private final IntVector clippedShapeIds = new IntVector();
+
+    /** For each clipped shape, its state as described in moveToCell(). */
+    private final IntVector clippedStates = new IntVector();
+
+    /** For each clipped shape, the offset of its edges in 'edges', plus a final end offset. */
+    private final IntVector clippedEdgeStarts = new IntVector();
+
+    /** The endpoints of the edges of the clipped shapes, two per edge. */
+    private final List<S2Point> edges = new ArrayList<>();
+
+    private final MutableEdge edge = new MutableEdge();
+    private final EdgeCrosser crosser = new EdgeCrosser();
+
+    Classifier(PointSource source, int begin, int end) {
+      size = end - begin;
+      points = new S2Point[size];
+      ids = new long[size];
+      positions = new int[size];
+      for (int i = 0; i < size; i++) {
+        S2Point p = source.point(begin + i);
+        points[i] = p;
+        ids[i] = S2CellId.fromPoint(p).id();
+        positions[i] = i;
+      }
+    }
+
+    /** Returns the containing shapes of the points in this range, in input order. */
+    Result classify() {
+      Sorter.sort(this);
+
+      // Classify the points in sorted order, recording each point's shapes in a run of 'sorted'.
+      int[] sortedStarts = new int[size + 1];
+      IntVector sorted = new IntVector();
+      for (int i = 0; i < size; i++) {
+        sortedStarts[i] = sorted.size();
+        if (moveToCell(ids[i])) {
+          classify(points[i], sorted);
+        }
+      }
+      sortedStarts[size] = sorted.size();
+
+      // Reorder the runs into input order. Points removed by truncate() have no shapes.
+      int numPoints = points.length;
+      int[] offsets = new int[numPoints + 1];
+      for (int i = 0; i < size; i++) {
+        offsets[positions[i] + 1] = sortedStarts[i + 1] - sortedStarts[i];
+      }
+      for (int i = 0; i < numPoints; i++) {
+        offsets[i + 1] += offsets[i];
+      }
+      int[] shapeIds = new int[sorted.size()];
+      for (int i = 0; i < size; i++) {
+        int dst = offsets[positions[i]];
+        for (int j = sortedStarts[i]; j < sortedStarts[i + 1]; j++) {
+          shapeIds[dst++] = sorted.get(j);
+        }
+      }
+      return new Result(offsets, shapeIds);
+    }
+
+    /**
+     * Loads the index cell containing the given leaf cell, unless it is already loaded. Returns
+     * false if no index cell contains the leaf cell.
+     */
+    private boolean moveToCell(long leaf) {
+      S2CellId id = new S2CellId(leaf);
+      if (id.greaterOrEquals(cellMin) && id.lessOrEquals(cellMax)) {
+        return true;
+      }
+      if (it.locateNear(id) != CellRelation.INDEXED) {
+        return false;
+      }
+
+      // Load the clipped shapes of the cell. The state of each clipped shape is 0 or 1 if it
+      // contains no point or every point of the cell, so its edges need not be tested, or else 2
+      // or 3 if it does not or does contain the cell center.
+      cellMin = it.id().rangeMin();
+      cellMax = it.id().rangeMax();
+      cellCenter = it.center();
+      S2ShapeIndex.Cell cell = it.entry();
+      numClipped = cell.numShapes();
+      clippedShapeIds.clear();
+      clippedStates.clear();
+      clippedEdgeStarts.clear();
+      edges.clear();
+      for (int s = 0; s < numClipped; s++) {
+        S2ClippedShape clipped = cell.clipped(s);
+        clippedShapeIds.add(clipped.shapeId());
+        clippedEdgeStarts.add(edges.size());
+        int numEdges = clipped.numEdges();
+        if (numEdges == 0) {
+          clippedStates.add(clipped.containsCenter() ? 1 : 0);
+          continue;
+        }
+        // Points and polylines can be ignored unless the vertex model is CLOSED.
+        S2Shape shape = index.getShapes().get(clipped.shapeId());
+        if (!shape.hasInterior() && vertexModel != S2VertexModel.CLOSED) {
+          clippedStates.add(0);
+          continue;
+        }
+        clippedStates.add(clipped.containsCenter() ? 3 : 2);
+        for (int i = 0; i < numEdges; i++) {
+          shape.getEdge(clipped.edge(i), edge);
+          edges.add(edge.a);
+          edges.add(edge.b);
+        }
+      }
+      clippedEdgeStarts.add(edges.size());
+      return true;
+    }
+
+    /** Adds the ids of the shapes of the current cell that contain 'p' to 'shapeIds'. */
+    private void classify(S2Point p, IntVector shapeIds) {
+      boolean crosserReady = false;
+      for (int s = 0; s < numClipped; s++) {
+        int state = clippedStates.get(s);
+        boolean inside;
+        if (state < 2) {
+          inside = state == 1;
+        } else {
+          if (!crosserReady) {
+            crosser.init(cellCenter, p);
+            crosserReady = true;
+          }
+          inside = contains(state == 3, clippedEdgeStarts.get(s), clippedEdgeStarts.get(s + 1), p);
+        }
+        if (inside) {
+          shapeIds.add(clippedShapeIds.get(s));
+        }
+      }
+    }
+
+    /**
+     * Returns true if the clipped shape whose edges are in 'edges' from 'start' to 'end' contains
+     * 'p', by counting crossings from the cell center as {@link S2ContainsPointQuery#shapeContains}
+     * does. The crosser must be initialized with the center and 'p'.
+     */
+    private boolean contains(boolean inside, int start, int end, S2Point p) {
+      for (int i = start; i < end; i += 2) {
+        S2Point a = edges.get(i);
+        S2Point b = edges.get(i + 1);
+        boolean crossing;
+        switch (crosser.robustCrossing(a, b)) {
+          case -1:
+            // Disjoint, so advance to next edge.
+            continue;
+          case 1:
+            // Definitely crossing.
+            crossing = true;
+            break;
+          default:
+            // Shared vertex, test if we have a vertex crossing.
+            // For the OPEN and CLOSED models, check whether "p" is a vertex.
+            if (vertexModel != S2VertexModel.SEMI_OPEN && (p.equalsPoint(a) || p.equalsPoint(b))) {
+              return vertexModel == S2VertexModel.CLOSED;
+            }
+            crossing = S2EdgeUtil.vertexCrossing(cellCenter, p, a, b);
+            break;
+        }
+        inside ^= crossing;
+      }
+      return inside;
+    }
+
+    @Override
+    public boolean less(int leftIndex, int rightIndex) {
+      return Long.compareUnsigned(ids[leftIndex], ids[rightIndex]) < 0;
+    }
+
+    @Override
+    public void swap(int leftIndex, int rightIndex) {
+      long id = ids[leftIndex];
+      ids[leftIndex] = ids[rightIndex];
+      ids[rightIndex] = id;
+      S2Point p = points[leftIndex];
+      points[leftIndex] = points[rightIndex];
+      points[rightIndex] = p;
+      int position = positions[leftIndex];
+      positions[leftIndex] = positions[rightIndex];
+      positions[rightIndex] = position;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void truncate(int start) {
+      Preconditions.checkPositionIndex(start, size);
+      size = start;
+    }
+  }
+
+  /**
+   * The containing shape ids of each point of a batch, in compressed sparse row form: the shape ids
+   * of point i are in ascending order in shapeIds[offsets[i]] to shapeIds[offsets[i + 1] - 1].
+   */
+  public static final class Result {
+    private final int[] offsets;
+    private final int[] shapeIds;
+
+    private Result(int[] offsets, int[] shapeIds) {
+      this.offsets = offsets;
+      this.shapeIds = shapeIds;
+    }
+
+    /** Returns the concatenation of the given results, which have 'numPoints' points in total. */
+    private static Result concat(Result[] results, int numPoints) {
+      if (results.length == 1) {
+        return results[0];
+      }
+      int numShapeIds = 0;
+      for (Result result : results) {
+        numShapeIds += result.shapeIds.length;
+      }
+      int[] offsets = new int[numPoints + 1];
+      int[] shapeIds = new int[numShapeIds];
+      int point = 0;
+      int base = 0;
+      for (Result result : results) {
+        for (int i = 1; i <= result.numPoints(); i++) {
+          offsets[point + i] = base + result.offsets[i];
+        }
+        System.arraycopy(result.shapeIds, 0, shapeIds, base, result.shapeIds.length);
+        point += result.numPoints();
+        base += result.shapeIds.length;
+      }
+      return new Result(offsets, shapeIds);
+    }
+
+    /** Returns the number of points classified. */
+    public int numPoints() {
+      return offsets.length - 1;
+    }
+
+    /** Returns true if any shape contains point 'i'. */
+    public boolean contains(int i) {
+      return offsets[i + 1] > offsets[i];
+    }
+
+    /** Returns the number of shapes that contain point 'i'. */
+    public int numShapes(int i) {
+      return offsets[i + 1] - offsets[i];
+    }
+
+    /** Returns the id of the k-th shape, in ascending order of id, that contains point 'i'. */
+    public int shapeId(int i, int k) {
+      Preconditions.checkElementIndex(k, numShapes(i));
+      return shapeIds[offsets[i] + k];
+    }
+
+    /** Returns the total number of (point, shape) containment pairs. */
+    public int numPairs() {
+      return shapeIds.length;
+    }
+
+    /**
+     * Returns a new array with the smallest id of a shape that contains each point, or -1 for
+     * points that no shape contains.
+     */
+    public int[] firstShapeIds() {
+      int[] result = new int[numPoints()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = contains(i) ? shapeIds[offsets[i]] : -1;
+      }
+      return result;
+    }
+  }
+
+  /** A source of the points to classify, which are converted to S2Points as needed. */
+  private interface PointSource {
+    int size();
+
+    S2Point point(int i);
+  }
+
+  /** A PointSource for an array of S2Points. */
+  private static final class PointArray implements PointSource {
+    private final S2Point[] points;
+
+    PointArray(S2Point[] points) {
+      this.points = points;
+    }
+
+    @Override
+    public int size() {
+      return points.length;
+    }
+
+    @Override
+    public S2Point point(int i) {
+      return points[i];
+    }
+  }
+
+  /** A PointSource for parallel arrays of latitudes and longitudes in degrees. */
+  private static final class LatLngArrays implements PointSource {
+    private final double[] latDegrees;
+    private final double[] lngDegrees;
+
+    LatLngArrays(double[] latDegrees, double[] lngDegrees) {
+      Preconditions.checkArgument(
+          latDegrees.length == lngDegrees.length, "Latitude and longitude counts differ");
+      this.latDegrees = latDegrees;
+      this.lngDegrees = lngDegrees;
+    }
+
+    @Override
+    public int size() {
+      return latDegrees.length;
+    }
+
+    @Override
+    public S2Point point(int i) {
+      return S2LatLng.fromDegrees(latDegrees[i], lngDegrees[i]).toPoint();
+    }
+  }
+}
@@ -77,12 +77,13 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
   private static final int PRIORITY_QUEUE_INITIAL_SIZE = 16;
 
   /**
-   * When considering enqueuing an index cell, if it has a sufficiently small number of edges, then
-   * it is faster to check them directly rather than computing the minimum distance to the S2Cell,
-   * enqueuing it, and possibly later dequeuing it.
+   * The default for {@link Options#minEdgesToEnqueue()}. When considering enqueuing an index cell,
+   * if it has a sufficiently small number of edges, then it is faster to check them directly rather
+   * than computing the minimum distance to the S2Cell, enqueuing it, and possibly later dequeuing
+   * it. The best value depends on the workload, and may be loaded from an {@link
+   * S2QueryTuningProfile}.
    */
-  // TODO(user): Adjust this using benchmarks.
-  private static final int MIN_EDGES_TO_ENQUEUE = 10;
+  public static final int DEFAULT_MIN_EDGES_TO_ENQUEUE = 10;
 
   /** Compares results by distance only, using the abstract distanceComparator(). */
   private final Comparator<Result<D>> resultDistanceComparator =
@@ -146,6 +147,12 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
   /** The geometry we are measuring distance to. */
   protected S2BestDistanceTarget<D> target;
 
+  /**
+   * An iterator over the index cells, reused between queries so that successive queries for
+   * nearby targets can seek from the previous position. Null until first needed after init().
+   */
+  private @Nullable S2Iterator<Cell> indexIterator;
+
   /**
    * The optional shape filter applied to Results. If shapeFilter.test(shapeId) returns true,
    * results from that shape should be included in the output. If shapeFilter is null, edges are not
@@ -253,6 +260,9 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
   /** A pool of Result objects that can be reused. */
   private final List<Result<D>> resultPool = new ArrayList<>();
 
+  /** The statistics to add to as queries run, or null if statistics are not being collected. */
+  private @Nullable S2QueryStats stats;
+
   // S2BestEdgesQueryBase deals with "best" edges, e.g. edges with minimum or maximum distances to a
   // target. The following abstract methods define the meaning of "best" in their implementation:
 
@@ -398,6 +408,8 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     protected D maxError;
     protected boolean includeInteriors;
     protected boolean useBruteForce;
+    protected int minEdgesToEnqueue;
+    protected int maxBruteForceIndexSize;
 
     /**
      * Constructs a Builder with default options. The default distance limit and value of zero must
@@ -409,6 +421,8 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
       maxResults = Integer.MAX_VALUE;
       includeInteriors = true;
       useBruteForce = false;
+      minEdgesToEnqueue = DEFAULT_MIN_EDGES_TO_ENQUEUE;
+      maxBruteForceIndexSize = -1;
     }
 
     /** Constructs a Builder with option values copied from the given Options. */
@@ -418,6 +432,8 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
       maxResults = options.maxResults;
       includeInteriors = options.includeInteriors;
       useBruteForce = options.useBruteForce;
+      minEdgesToEnqueue = options.minEdgesToEnqueue;
+      maxBruteForceIndexSize = options.maxBruteForceIndexSize;
     }
 
     /** Copy constructor. */
@@ -427,6 +443,8 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
       maxResults = other.maxResults;
       includeInteriors = other.includeInteriors;
       useBruteForce = other.useBruteForce;
+      minEdgesToEnqueue = other.minEdgesToEnqueue;
+      maxBruteForceIndexSize = other.maxBruteForceIndexSize;
     }
 
     /** Builds a new query using the current option values. */
@@ -530,6 +548,37 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     public boolean useBruteForce() {
       return useBruteForce;
     }
+
+    /**
+     * Index cells with fewer than this many edges have their edges checked directly, rather than
+     * being added to the queue of cells to process. See {@link Options#minEdgesToEnqueue()}.
+     */
+    @CanIgnoreReturnValue
+    public Builder<D> setMinEdgesToEnqueue(int minEdgesToEnqueue) {
+      this.minEdgesToEnqueue = minEdgesToEnqueue;
+      return this;
+    }
+
+    /** Returns the current value of the minEdgesToEnqueue option in this Builder. */
+    public int minEdgesToEnqueue() {
+      return minEdgesToEnqueue;
+    }
+
+    /**
+     * Indexes with up to this many edges are searched by brute force, for all targets. A negative
+     * value, the default, uses the value of each target. See {@link
+     * Options#maxBruteForceIndexSize()}.
+     */
+    @CanIgnoreReturnValue
+    public Builder<D> setMaxBruteForceIndexSize(int maxBruteForceIndexSize) {
+      this.maxBruteForceIndexSize = maxBruteForceIndexSize;
+      return this;
+    }
+
+    /** Returns the current value of the maxBruteForceIndexSize option in this Builder. */
+    public int maxBruteForceIndexSize() {
+      return maxBruteForceIndexSize;
+    }
   }
 
   /**
@@ -545,6 +594,8 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     final D maxError;
     final boolean includeInteriors;
     final boolean useBruteForce;
+    final int minEdgesToEnqueue;
+    final int maxBruteForceIndexSize;
 
     /**
      * Options may only be constructed from a Builder. Clients should use {@link Builder#build()}.
@@ -555,6 +606,8 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
       maxError = b.maxError();
       includeInteriors = b.includeInteriors();
       useBruteForce = b.useBruteForce();
+      minEdgesToEnqueue = b.minEdgesToEnqueue();
+      maxBruteForceIndexSize = b.maxBruteForceIndexSize();
     }
 
     /**
@@ -634,6 +687,29 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     public boolean useBruteForce() {
       return useBruteForce;
     }
+
+    /**
+     * Index cells with fewer than this many edges have their edges checked directly, rather than
+     * computing the distance to the cell, adding it to the queue of cells to process, and possibly
+     * later removing it. Larger values check more edges but process fewer cells.
+     *
+     * <p>The default is {@link S2BestEdgesQueryBase#DEFAULT_MIN_EDGES_TO_ENQUEUE}.
+     */
+    public int minEdgesToEnqueue() {
+      return minEdgesToEnqueue;
+    }
+
+    /**
+     * If non-negative, indexes with up to this many edges are searched by brute force for all
+     * targets, in place of each target's {@link S2BestDistanceTarget#maxBruteForceIndexSize()}. The
+     * threshold for indexes that have already been built is derived from this value in the same way
+     * as from the target's value.
+     *
+     * <p>The default is -1, which uses the value of each target.
+     */
+    public int maxBruteForceIndexSize() {
+      return maxBruteForceIndexSize;
+    }
   }
 
   /** A base class for targets that are points. */
@@ -981,6 +1057,7 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     indexNumEdges = 0;
     indexNumEdgesLimit = 0;
     indexCells.clear();
+    indexIterator = null;
   }
 
   /** Returns the underlying S2ShapeIndex. */
@@ -993,6 +1070,19 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     return options;
   }
 
+  /**
+   * Sets the statistics that subsequent queries add to, or null (the default) to stop collecting
+   * statistics.
+   */
+  public void setStats(@Nullable S2QueryStats stats) {
+    this.stats = stats;
+  }
+
+  /** Returns the statistics that queries add to, or null if statistics are not being collected. */
+  public @Nullable S2QueryStats stats() {
+    return stats;
+  }
+
   /** True if the given distance has reached or passed the current distance limit. */
   protected boolean distanceAtLimit(D distance) {
     return distanceComparator.compare(distance, distanceLimit) >= 0;
@@ -1212,6 +1302,17 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
    * the resultQueue if maxResults > 1, otherwise stored in bestResult.
    */
   protected void findBestEdgesInternal(S2BestDistanceTarget<D> target) {
+    if (stats == null) {
+      searchBestEdges(target);
+      return;
+    }
+    long start = System.nanoTime();
+    searchBestEdges(target);
+    stats.endQuery(start);
+  }
+
+  /** Implements findBestEdgesInternal(), without timing it. */
+  private void searchBestEdges(S2BestDistanceTarget<D> target) {
     assert resultQueue.isEmpty();
     assert target.maxBruteForceIndexSize() >= 0;
 
@@ -1291,7 +1392,8 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     // To avoid spending too much time counting edges and points when there are many shapes, we
     // stop counting once there are too many. We may need to recount if we later see a target with
     // a larger brute force threshold. Note that points are represented as degenerate edges.
-    int minOptimizedEdges = target.maxBruteForceIndexSize() + 1;
+    int maxBruteForceIndexSize = maxBruteForceIndexSize(target);
+    int minOptimizedEdges = maxBruteForceIndexSize + 1;
     if (minOptimizedEdges > indexNumEdgesLimit && indexNumEdges >= indexNumEdgesLimit) {
       indexNumEdges = S2ShapeUtil.countEdgesUpTo(index, minOptimizedEdges);
       indexNumEdgesLimit = minOptimizedEdges;
@@ -1303,8 +1405,6 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
       return;
     }
 
-    // TODO(torrey): Benchmark and tune this threshold.
-    //
     // The values for minOptimizedEdges are computed as including the cost of building the index,
     // which is a significant part of the cost of the optimized algorithm, so if we have already
     // built the index and it has more than a significant number of edges, go ahead and use it.
@@ -1317,9 +1417,10 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     // as well as the usefulness of the index in general. It sets the threshold as the geometric
     // mean of the target specific limit and the expected number edges per index cell, estimated as
     // half the max, with a default of 10. So for a target with maxBruteForceIndexSize = 40, and
-    // default index options, minOptimizedEdges will be sqrt(40 * 5) = 14.
+    // default index options, minOptimizedEdges will be sqrt(40 * 5) = 14. The threshold may be
+    // tuned for a workload with Options.maxBruteForceIndexSize().
     minOptimizedEdges =
-        (int) sqrt(0.5 * target.maxBruteForceIndexSize() * index.options().getMaxEdgesPerCell());
+        (int) sqrt(0.5 * maxBruteForceIndexSize * index.options().getMaxEdgesPerCell());
     if (index.isFresh() && indexNumEdges >= minOptimizedEdges) {
       findBestEdgesOptimized();
       return;
@@ -1329,8 +1430,21 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     findBestEdgesBruteForce();
   }
 
+  /**
+   * Returns the index size up to which brute force is used for the given target: the value of
+   * {@link Options#maxBruteForceIndexSize()} if it is set, or otherwise the target's own value.
+   */
+  private int maxBruteForceIndexSize(S2BestDistanceTarget<D> target) {
+    return options.maxBruteForceIndexSize() >= 0
+        ? options.maxBruteForceIndexSize()
+        : target.maxBruteForceIndexSize();
+  }
+
   private void findBestEdgesBruteForce() {
     usingBruteForce = true;
+    if (stats != null) {
+      stats.bruteForceQueries++;
+    }
     List<S2Shape> shapes = index.getShapes();
     for (int shapeId = 0; shapeId < shapes.size(); shapeId++) {
       if (shapeFilter == null || shapeFilter.test(shapeId)) {
@@ -1352,6 +1466,9 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     // children, or process all of its edges.
     while (!queue.isEmpty()) {
       QueueEntry<D> entry = queue.poll();
+      if (stats != null) {
+        stats.queuePops++;
+      }
 
       // If the best (nearest / furthest) cell to the target is past the distance limit, we're done.
       if (distanceAtLimit(entry.distance)) {
@@ -1369,14 +1486,14 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
       // we first check whether it is empty. We do this in two seek operations rather than four by
       // seeking to the key between children 0 and 1, and to the key between children 2 and 3.
       S2CellId id = entry.id;
-      iter.seek(id.child(1).rangeMin());
+      iter.seekNear(id.child(1).rangeMin());
       if (!iter.done() && iter.id().lessOrEquals(id.child(1).rangeMax())) {
         processOrEnqueueChild(id.child(1), iter);
       }
       if (iter.prev() && iter.id().greaterOrEquals(id.rangeMin())) {
         processOrEnqueueChild(id.child(0), iter);
       }
-      iter.seek(id.child(3).rangeMin());
+      iter.seekNear(id.child(3).rangeMin());
       if (!iter.done() && iter.id().lessOrEquals(id.child(3).rangeMax())) {
         processOrEnqueueChild(id.child(3), iter);
       }
@@ -1398,12 +1515,16 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
 
   /**
    * Builds the underlying shape index if necessary, and then initializes the queue of cells to
-   * process, if any. Returns an iterator over the index cells, positioned at the index cell that is
-   * at the head of the queue if a queue was initialized, or at the first index cell otherwise.
+   * process, if any. Returns the iterator over the index cells that is reused between queries. It
+   * is left wherever the last seek while initializing the queue positioned it, which may be any
+   * index cell or done(), so callers must seek it before reading from it.
    */
   private S2Iterator<Cell> initQueue() {
     assert queue.isEmpty();
-    S2Iterator<Cell> iter = index.iterator();
+    if (indexIterator == null) {
+      indexIterator = index.iterator();
+    }
+    S2Iterator<Cell> iter = indexIterator;
 
     // Optimization: if the user is searching for just one best edge, and the center of the target's
     // bounding cap happens to intersect an index cell, then we try to limit the search region to a
@@ -1423,7 +1544,7 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
       // If the target has no points, no results are possible.
       return iter;
     }
-    if (maxResults == 1 && iter.locate(targetCap.axis())) {
+    if (maxResults == 1 && iter.locateNear(targetCap.axis())) {
       processEdges(iter.entry());
       // Skip the rest of the algorithm if we found an intersecting edge and only need one result.
       if (distanceLimit.equals(bestDistance())) {
@@ -1472,7 +1593,7 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
         } else {
           // This initial cell is a proper descendant of a top-level cell. Check how it is related
           // to the cells of the S2ShapeIndex.
-          S2ShapeIndex.CellRelation r = iter.locate(initialCellId);
+          S2ShapeIndex.CellRelation r = iter.locateNear(initialCellId);
           if (r == S2ShapeIndex.CellRelation.INDEXED) {
             // This cell is a descendant of an index cell. Enqueue it and skip any other initial
             // cells that are also descendants of this cell.
@@ -1594,6 +1715,9 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     collector.set(distanceLimit);
     S2Shape shape = index.getShapes().get(shapeId);
     shape.getEdge(edgeId, edge);
+    if (stats != null) {
+      stats.edgesEvaluated++;
+    }
     if (shape.dimension() == 0) {
       // The edge is actually a point, so use the single point variant of updateBestDistance.
       if (target.updateBestDistance(edge.a, collector)) {
@@ -1685,6 +1809,9 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
 
   // Process all the edges of the given index cell.
   private void processEdges(Cell shapeIndexCell) {
+    if (stats != null) {
+      stats.cellsVisited++;
+    }
     for (int s = 0; s < shapeIndexCell.numShapes(); ++s) {
       S2ShapeIndex.S2ClippedShape clipped = shapeIndexCell.clipped(s);
       int shapeId = clipped.shapeId();
@@ -1713,7 +1840,7 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
       if (numEdges == 0) {
         return;
       }
-      if (numEdges < MIN_EDGES_TO_ENQUEUE) {
+      if (numEdges < options.minEdgesToEnqueue()) {
         processEdges(indexCell);
         return;
       }
@@ -1740,6 +1867,9 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
     S2Cell cell = new S2Cell(id);
     DistanceCollector<D> collector = newDistanceCollector();
     collector.set(distanceLimit);
+    if (stats != null) {
+      stats.cellsVisited++;
+    }
     if (!target.updateBestDistance(cell, collector)) {
       return;
     }
@@ -1750,5 +1880,8 @@ public abstract class S2BestEdgesQueryBase<D extends S1Distance<D>> {
             ? errorBoundedDistance(collector.distance())
             : collector.distance();
     queue.add(new QueueEntry<D>(distance, id, indexCell));
+    if (stats != null) {
+      stats.queuePushes++;
+    }
   }
 }
@@ -36,10 +36,14 @@ import com.google.common.geometry.primitives.IdSetLexicon;
 import com.google.common.geometry.primitives.IntPairVector;
 import com.google.common.geometry.primitives.IntVector;
 import com.google.common.geometry.primitives.Ints.IntList;
+import com.google.common.geometry.primitives.Sorter;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -822,39 +826,39 @@ public class S2BooleanOperation {
   /**
    * CrossingInputEdge represents an input edge B that crosses some other input edge A. It stores
    * the input edge id of edge B and also whether it crosses edge A from left to right (or vice
-   * versa).
+   * versa). CrossingInputEdges don't actually exist as objects, but are encoded and decoded as int
+   * values, with the input edge id in the upper 31 bits and leftToRight in the lowest bit, so that
+   * they can be stored in IntVectors. Encoded values are ordered by input edge id.
    *
-   * <p>TODO: Consider removing this class. CrossingInputEdge objects are used in two
-   * places: (1) CrossingInputEdgePair is an int inputEdgeId and a CrossingInputEdge. That could
-   * just be two ints (the input edge ids) and a boolean leftToRight, and perhaps encoded with
-   * leftToRight as a sign bit. (2) CrossingInputEdgeVector, in GraphEdgeClipper, is just a List of
-   * CrossingInputEdge with a lowerBound() operation. That could be an IntVector, encoding the
-   * leftToRight as the sign bit.
+   * <p>The input edge id may also be one of the special values SET_INSIDE, SET_INVERT_B, or
+   * SET_REVERSE_A, in which case "leftToRight" is the new value of that GraphEdgeClipper state.
    */
   private static class CrossingInputEdge {
-    private final int inputEdgeId;
-    private final boolean leftToRight;
+    /** The largest input edge id that can be encoded. */
+    private static final int MAX_INPUT_EDGE_ID = Integer.MAX_VALUE >> 1;
 
     /**
-     * Constructs a CrossingInputEdge for input edge B, crossing the other input edge A leftToRight.
+     * Encodes a CrossingInputEdge for input edge B, crossing the other input edge A leftToRight.
      */
-    public CrossingInputEdge(int inputEdgeId, boolean leftToRight) {
-      this.inputEdgeId = inputEdgeId;
-      this.leftToRight = leftToRight;
+    public static int encode(int inputEdgeId, boolean leftToRight) {
+      Preconditions.checkArgument(inputEdgeId <= MAX_INPUT_EDGE_ID);
+      return (inputEdgeId << 1) | (leftToRight ? 1 : 0);
     }
 
-    /** The input edge id of the edge B that crosses the other input edge A. */
-    public int inputEdgeId() {
-      return inputEdgeId;
+    /** Decodes the input edge id of the edge B that crosses the other input edge A. */
+    public static int inputEdgeId(int encoded) {
+      return encoded >> 1;
     }
 
-    /** Whether the input edge B crosses the other input edge A from left to right. */
-    public boolean leftToRight() {
-      return leftToRight;
+    /** Decodes whether the input edge B crosses the other input edge A from left to right. */
+    public static boolean leftToRight(int encoded) {
+      return (encoded & 1) != 0;
     }
 
-    @Override
-    public String toString() {
+    /** Returns a string representation of the given encoded CrossingInputEdge, for debugging. */
+    public static String toString(int encoded) {
+      int inputEdgeId = inputEdgeId(encoded);
+      boolean leftToRight = leftToRight(encoded);
       if (inputEdgeId >= 0) {
         return Platform.formatString("CrossingInputEdge(%d, %s)", inputEdgeId, leftToRight);
       }
@@ -872,54 +876,33 @@ public class S2BooleanOperation {
   }
 
   /**
-   * Like a {@code Pair<InputEdgeId, CrossingInputEdge>}.
+   * InputEdgeCrossings represents all pairs of intersecting input edges and also certain
+   * GraphEdgeClipper state modifications (SET_INSIDE, etc). It is sorted lexicographically except
+   * for entries representing state modifications, which are sorted by the first InputEdgeId only.
    *
-   * <p>TODO: Consider removing this class. CrossingInputEdgePairs are only used in
-   * InputEdgeCrossings, which is just an ArrayList of CrossingInputEdgePairs. This could be
-   * replaced with parallel IntVectors (simple) or a single IntVector (a bit more complicated, but
-   * better locality).
+   * <p>The first element of each pair is the input edge id of edge A, and the second element is an
+   * encoded {@link CrossingInputEdge} for the edge B that crosses it. Storing the pairs in parallel
+   * IntVectors uses 8 bytes per crossing, rather than the three objects per crossing that a list of
+   * pairs would use, which matters because there are two entries for every crossing of the inputs.
    */
-  private static class CrossingInputEdgePair {
-    private final int inputEdgeId;
-    private final CrossingInputEdge crossingInputEdge;
-
-    /**
-     * Constructs a CrossingInputEdgePair for an input edge id, and some other input edge that
-     * crosses it.
-     */
-    CrossingInputEdgePair(int inputEdgeId, CrossingInputEdge crossingInputEdge) {
-      this.inputEdgeId = inputEdgeId;
-      this.crossingInputEdge = crossingInputEdge;
-    }
-
-    /** The input edge id of the first of the crossing edge pair. */
-    public int first() {
-      return inputEdgeId;
-    }
-
-    /** The input edge id of the second of the crossing edge pair, and the crossing direction. */
-    public CrossingInputEdge second() {
-      return crossingInputEdge;
+  private static class InputEdgeCrossings extends IntPairVector {
+    /** Adds the crossing of input edge A by the encoded CrossingInputEdge B. */
+    public void addCrossing(int inputEdgeId, int crossingInputEdge) {
+      add(inputEdgeId, crossingInputEdge);
     }
 
-    @Override
-    public String toString() {
-      return Platform.formatString("CrossingInputEdgePair(%d, %s)", inputEdgeId, crossingInputEdge);
+    /** Clears the crossings and releases the memory used to store them. */
+    public void release() {
+      clear();
+      shrink();
     }
   }
 
-  /**
-   * InputEdgeCrossings represents all pairs of intersecting input edges and also certain
-   * GraphEdgeClipper state modifications (SET_INSIDE, etc). It is sorted lexicographically except
-   * for entries representing state modifications, which are sorted by the first InputEdgeId only.
-   */
-  private static class InputEdgeCrossings extends ArrayList<CrossingInputEdgePair> {}
-
   /**
    * Given two input edges A and B that intersect, suppose that A maps to a chain of snapped edges
-   * A_0, A_1, ..., A_m and B maps to a chain of snapped edges B_0, B_1, ..., B_n. CrossingGraphEdge
-   * represents an edge from chain B that shares a vertex with chain A. It is used as a temporary
-   * data representation while processing chain A. The contents are:
+   * A_0, A_1, ..., A_m and B maps to a chain of snapped edges B_0, B_1, ..., B_n. A crossing graph
+   * edge represents an edge from chain B that shares a vertex with chain A. It is used as a
+   * temporary data representation while processing chain A. The contents are:
    *
    * <ol>
    *   <li>"edgeId" - the Graph.EdgeId (int) of an edge from chain B.
@@ -931,79 +914,85 @@ public class S2BooleanOperation {
    * Note that if an edge from the B chain shares both vertices with the A chain, there will be two
    * entries: an outgoing edge that treats its first vertex as being shared, and an incoming edge
    * that treats its second vertex as being shared.
+   *
+   * <p>A CrossingGraphEdgeVector is a list of crossing graph edges, which represents all the
+   * crossing graph edges of one input edge B. Crossing graph edges are not objects, but are stored
+   * in a single IntVector with {@link #FIELDS} ints per edge, and are accessed by their index in
+   * the vector.
+   *
+   * <p>CrossingGraphEdgeVectors exist only in an array, 'bEdges', created in
+   * GraphEdgeClipper.run(), and reinitialized for each edge as run() loops over the graph edges.
+   * The initialization of bEdges[] is done in gatherIncidentEdges(). Later in run(), individual
+   * CrossingGraphEdgeVectors in bEdges are passed to getCrossedVertexIndex().
    */
-  private static class CrossingGraphEdge {
-    final int edgeId;
-    final int aIndex;
-    final boolean outgoing;
-    final int otherVertexId;
-
-    /** Constructs a CrossingGraphEdge with contents as described above. */
-    public CrossingGraphEdge(int edgeId, int aIndex, boolean outgoing, int otherVertexId) {
-      this.edgeId = edgeId;
-      this.aIndex = aIndex;
-      this.outgoing = outgoing;
-      this.otherVertexId = otherVertexId;
+  private static class CrossingGraphEdgeVector {
+    /** The number of ints used to store each crossing graph edge. */
+    private static final int FIELDS = 4;
+
+    /** The fields of all the crossing graph edges. */
+    private final IntVector fields = new IntVector();
+
+    /** Adds a crossing graph edge with contents as described above. */
+    public void add(int edgeId, int aIndex, boolean outgoing, int otherVertexId) {
+      fields.add(edgeId);
+      fields.add(aIndex);
+      fields.add(outgoing ? 1 : 0);
+      fields.add(otherVertexId);
     }
 
-    @Override
-    public String toString() {
-      return Platform.formatString(
-          "CrossingGraphEdge(edgeId=%d, aIndex=%d, outgoing=%b, otherVertexId=%d)",
-          edgeId, aIndex, outgoing, otherVertexId);
+    /** Returns the number of crossing graph edges in the vector. */
+    public int size() {
+      return fields.size() / FIELDS;
     }
-  }
 
-  // TODO: Reconsider implementation of CrossingGraphEdge and CrossingGraphEdgeVector.
-  // C++ uses an InlinedVector, so this is likely to be a small list.
-  //
-  // CrossingGraphEdgeVector can probably be implemented as a wrapper around a single IntVector,
-  // and CrossingGraphEdge can be removed entirely, replaced with an index into the vector.
-  //
-  // CrossingGraphEdges are created in gatherIncidentEdges and immediately added to one of the
-  //   CrossingGraphVectors in the bEdges array of CrossingGraphVectors.
-  // In getCrossedVertexIndex, the elements of a CrossingGraphEdgeVector are iterated over.
-  // In getVertexRank, the .edgeId and .outgoing fields are used to compute rank of a
-  //   CrossingGraphEdge.
-  //
-  // CrossingGraphEdgeVectors exist only in an array, 'bEdges', created in GraphEdgeClipper.run(),
-  //   and reinitialized for each edge as run() loops over the graph edges.
-  // The initialization of bEdges[] is done in gatherIncidentEdges().
-  // Later in run(), individual CrossingGraphEdgeVectors in bEdges are passed to
-  //   getCrossedVertexIndex().
-  //
+    /** Returns true if the vector has no crossing graph edges. */
+    public boolean isEmpty() {
+      return fields.isEmpty();
+    }
 
-  /**
-   * A List of CrossingGraphEdge, which represents all the crossing input edges of an input edge A.
-   * Each CrossingGraphEdge represents one edge from a chain B that shares a vertex with chain A
-   * (see above).
-   */
-  private static class CrossingGraphEdgeVector extends ArrayList<CrossingGraphEdge> {
-    /** Returns the first CrossingGraphEdge in the vector. */
-    public CrossingGraphEdge first() {
-      return get(0);
+    /** Removes all the crossing graph edges. */
+    public void clear() {
+      fields.clear();
+    }
+
+    /** Returns the 'edgeId' of the crossing graph edge at the given index. */
+    public int edgeId(int index) {
+      return fields.get(index * FIELDS);
+    }
+
+    /** Returns the 'aIndex' of the crossing graph edge at the given index. */
+    public int aIndex(int index) {
+      return fields.get(index * FIELDS + 1);
+    }
+
+    /** Returns the 'outgoing' value of the crossing graph edge at the given index. */
+    public boolean outgoing(int index) {
+      return fields.get(index * FIELDS + 2) != 0;
     }
 
-    /** Returns the last CrossingGraphEdge in the vector. */
-    public CrossingGraphEdge last() {
-      return get(size() - 1);
+    /** Returns the 'otherVertexId' of the crossing graph edge at the given index. */
+    public int otherVertexId(int index) {
+      return fields.get(index * FIELDS + 3);
     }
 
-    /** Returns the 'aIndex' value of the first CrossingGraphEdge in the vector. */
+    /** Returns the 'aIndex' value of the first crossing graph edge in the vector. */
     public int firstAIndex() {
-      return get(0).aIndex;
+      return aIndex(0);
     }
 
-    /** Returns the 'aIndex' value of the last CrossingGraphEdge in the vector. */
+    /** Returns the 'aIndex' value of the last crossing graph edge in the vector. */
     public int lastAIndex() {
-      return get(size() - 1).aIndex;
+      return aIndex(size() - 1);
     }
 
     @Override
     public String toString() {
       StringBuilder sb = new StringBuilder();
       for (int i = 0; i < size(); ++i) {
-        sb.append(get(i));
+        sb.append(
+            Platform.formatString(
+                "CrossingGraphEdge(edgeId=%d, aIndex=%d, outgoing=%b, otherVertexId=%d)",
+                edgeId(i), aIndex(i), outgoing(i), otherVertexId(i)));
         if (i < size() - 1) {
           sb.append(", ");
         }
@@ -1026,13 +1015,12 @@ public class S2BooleanOperation {
     }
 
     /**
-     * Adds a CrossingGraphEdge constructed from the provided values to the end of the
+     * Adds a crossing graph edge with the provided values to the end of the
      * CrossingGraphEdgeVector that is at position 'vectorIndex' in this vector of vectors.
      */
     public void addCrossingGraphEdge(
         int vectorIndex, int edgeId, int aIndex, boolean outgoing, int otherVertexId) {
-      vectors[vectorIndex].add(
-          new CrossingGraphEdge(edgeId, aIndex, outgoing, otherVertexId));
+      vectors[vectorIndex].add(edgeId, aIndex, outgoing, otherVertexId);
     }
 
     /** Clears all the contents and reinitializes to contain 'size' empty CrossingGraphVectors. */
@@ -1143,19 +1131,24 @@ public class S2BooleanOperation {
   private static class GraphEdgeClipper {
 
     /**
-     * Each CrossingInputEdge represents an input edge B that crosses some other input edge A. The
-     * CrossingInputEdgeVector is a list of these, constructed in order by input edge id.
+     * Each encoded CrossingInputEdge represents an input edge B that crosses some other input edge
+     * A. The CrossingInputEdgeVector is a list of these, constructed in order by input edge id.
      */
-    private static class CrossingInputEdgeVector extends ArrayList<CrossingInputEdge> {
-      // TODO(torrey): Replace CrossingInputEdgeVector with an IntVector that contains the input
-      // edge ids, and encodes the leftToRight in the sign bit.
+    private static class CrossingInputEdgeVector extends IntVector {
       /**
        * Returns the index of the first CrossingInputEdge with an input edge id greater than or
        * equal to the specified input edge id. Requires that this CrossingInputEdgeVector is in
        * sorted order by input edge id.
        */
-      public int lowerBound(int inputEdgeId) {
-        return S2ShapeUtil.lowerBound(0, size(), target -> get(target).inputEdgeId() < inputEdgeId);
+      public int inputEdgeLowerBound(int inputEdgeId) {
+        // Encoded CrossingInputEdges are ordered by input edge id, so this is the first element
+        // greater than or equal to the smallest encoding of the given input edge id.
+        return lowerBound(CrossingInputEdge.encode(inputEdgeId, false));
+      }
+
+      /** Returns the input edge id of the CrossingInputEdge at the given index. */
+      public int inputEdgeId(int index) {
+        return CrossingInputEdge.inputEdgeId(get(index));
       }
     }
 
@@ -1214,7 +1207,7 @@ public class S2BooleanOperation {
      * Constructs a new GraphEdgeClipper.
      *
      * <p>"inputDimensions" is a vector specifying the dimension of each input edge (0, 1, or 2).
-     * "inputCrossings" is a list of CrossingInputEdgePair, containing special instructions to
+     * "inputCrossings" is a list of crossing input edge pairs, containing special instructions to
      * control state (SET_INSIDE, SET_REVERSE_A, SET_INVERT_B) as well as all crossings to be used
      * when clipping the edges of "g", sorted in lexicographic order.
      *
@@ -1263,7 +1256,7 @@ public class S2BooleanOperation {
        // edge(s) being processed in the current iteration of the outer for loop.
       CrossingInputEdgeVector bInputEdges = new CrossingInputEdgeVector();
 
-      // A list of CrossingGraphEdgeVector, each of which contains CrossingGraphEdges.
+      // A list of CrossingGraphEdgeVector, each of which contains crossing graph edges.
       // TODO(torrey): Document the semantics of bEdges, here and in C++.
       CrossingGraphEdgeVectorVector bEdges = new CrossingGraphEdgeVectorVector();
 
@@ -1293,21 +1286,21 @@ public class S2BooleanOperation {
         // sorted in lexicographic order.
         bInputEdges.clear();
         for (; inputCrossingsIndex < inputCrossings.size(); ++inputCrossingsIndex) {
-          CrossingInputEdgePair crossingPair = inputCrossings.get(inputCrossingsIndex);
-
-          if (crossingPair.first() != aInputEdgeId) {
+          if (inputCrossings.getFirst(inputCrossingsIndex) != aInputEdgeId) {
             break; // No more crossings or state changes for this input edge id.
           }
-          if (crossingPair.second().inputEdgeId() >= 0) {
+          int crossing = inputCrossings.getSecond(inputCrossingsIndex);
+          int bInputEdgeId = CrossingInputEdge.inputEdgeId(crossing);
+          if (bInputEdgeId >= 0) {
             // A crossing of aInputEdgeId by some other input edge.
-            bInputEdges.add(crossingPair.second());
-          } else if (crossingPair.second().inputEdgeId() == SET_INSIDE) {
-            inside = crossingPair.second().leftToRight();
-          } else if (crossingPair.second().inputEdgeId() == SET_INVERT_B) {
-            invertB = crossingPair.second().leftToRight();
+            bInputEdges.add(crossing);
+          } else if (bInputEdgeId == SET_INSIDE) {
+            inside = CrossingInputEdge.leftToRight(crossing);
+          } else if (bInputEdgeId == SET_INVERT_B) {
+            invertB = CrossingInputEdge.leftToRight(crossing);
           } else {
-            Preconditions.checkState(crossingPair.second().inputEdgeId() == SET_REVERSE_A);
-            reverseA = crossingPair.second().leftToRight();
+            Preconditions.checkState(bInputEdgeId == SET_REVERSE_A);
+            reverseA = CrossingInputEdge.leftToRight(crossing);
           }
         }
 
@@ -1373,9 +1366,9 @@ public class S2BooleanOperation {
         aIsolated.clear();
         aIsolated.resize(aVertices.size());
         for (int bi = 0; bi < bInputEdges.size(); ++bi) {
-          CrossingInputEdge bCrossingEdge = bInputEdges.get(bi);
-          int bInputEdgeId = bCrossingEdge.inputEdgeId();
-          boolean leftToRight = bCrossingEdge.leftToRight();
+          int bCrossingEdge = bInputEdges.get(bi);
+          int bInputEdgeId = CrossingInputEdge.inputEdgeId(bCrossingEdge);
+          boolean leftToRight = CrossingInputEdge.leftToRight(bCrossingEdge);
           int aIndex = getCrossedVertexIndex(aVertices, bEdges.get(bi), leftToRight);
           if (aIndex < 0) {
             // TODO(user): This fails in some cases. Need to get to the bottom of it.
@@ -1462,11 +1455,10 @@ public class S2BooleanOperation {
                 // The input edge id of this incoming snapped edge to ai.
                 int inputEdgeId = inputEdgeIds.get(snappedEdgeId);
                 // Index of the first input edge of B that crosses this input edge, if any
-                int index = bInputEdges.lowerBound(inputEdgeId);
+                int index = bInputEdges.inputEdgeLowerBound(inputEdgeId);
                 // A matching, crossing, input edge of B crosses here, at snapped vertex 'ai'
-                if (index != bInputEdges.size()
-                    && bInputEdges.get(index).inputEdgeId() == inputEdgeId) {
-                  // Add a CrossingGraphEdge at the index of that input edge.
+                if (index != bInputEdges.size() && bInputEdges.inputEdgeId(index) == inputEdgeId) {
+                  // Add a crossing graph edge at the index of that input edge.
                   bEdges.addCrossingGraphEdge(
                       index, snappedEdgeId, ai, false, g.edgeSrcId(snappedEdgeId));
                 }
@@ -1475,9 +1467,8 @@ public class S2BooleanOperation {
           .forEach(
               snappedEdgeId -> {
                 int inputEdgeId = inputEdgeIds.get(snappedEdgeId);
-                int index = bInputEdges.lowerBound(inputEdgeId);
-                if (index != bInputEdges.size()
-                    && bInputEdges.get(index).inputEdgeId() == inputEdgeId) {
+                int index = bInputEdges.inputEdgeLowerBound(inputEdgeId);
+                if (index != bInputEdges.size() && bInputEdges.inputEdgeId(index) == inputEdgeId) {
                   bEdges.addCrossingGraphEdge(
                       index, snappedEdgeId, ai, true, g.edgeDstId(snappedEdgeId));
                 }
@@ -1536,7 +1527,7 @@ public class S2BooleanOperation {
       // Determine whether the B chain visits the first and last vertices that it shares with the A
       // chain in the same order or the reverse order. This is only needed to implement one special
       // case (see below).
-      boolean bReversed = getVertexRank(b.first()) > getVertexRank(b.last());
+      boolean bReversed = getVertexRank(b, 0) > getVertexRank(b, b.size() - 1);
 
       // Examine each incident B edge and use it to narrow the range of positions where the crossing
       // could occur in the B chain. Vertex positions are represented as a range [lo, hi] of vertex
@@ -1559,21 +1550,22 @@ public class S2BooleanOperation {
       int bFirstEdgeId = -1;
       int bLastEdgeId = -1;
 
-      for (CrossingGraphEdge e : b) {
-        int ai = e.aIndex;
+      for (int e = 0; e < b.size(); ++e) {
+        int ai = b.aIndex(e);
+        int otherVertexId = b.otherVertexId(e);
         if (ai == 0) {
-          if (e.outgoing != bReversed && e.otherVertexId != a.get(1)) {
-            bFirstEdgeId = e.edgeId;
+          if (b.outgoing(e) != bReversed && otherVertexId != a.get(1)) {
+            bFirstEdgeId = b.edgeId(e);
           }
         } else if (ai == n - 1) {
-          if (e.outgoing == bReversed && e.otherVertexId != a.get(n - 2)) {
-            bLastEdgeId = e.edgeId;
+          if (b.outgoing(e) == bReversed && otherVertexId != a.get(n - 2)) {
+            bLastEdgeId = b.edgeId(e);
           }
         } else {
           // This B edge is incident to an interior vertex of the A chain. First check whether this
           // edge is identical (or reversed) to an edge in the A chain, in which case it does not
           // create any restrictions.
-          if (e.otherVertexId == a.get(ai - 1) || e.otherVertexId == a.get(ai + 1)) {
+          if (otherVertexId == a.get(ai - 1) || otherVertexId == a.get(ai + 1)) {
             continue;
           }
 
@@ -1581,7 +1573,7 @@ public class S2BooleanOperation {
           boolean onLeft =
               S2Predicates.orderedCCW(
                   g.vertex(a.get(ai + 1)),
-                  g.vertex(e.otherVertexId),
+                  g.vertex(otherVertexId),
                   g.vertex(a.get(ai - 1)),
                   g.vertex(a.get(ai)));
 
@@ -1591,11 +1583,11 @@ public class S2BooleanOperation {
             // This is a pre-crossing edge, so the crossing cannot be before the destination vertex
             // of this edge. (For example, the input B edge crosses the input A edge from left to
             // right and this edge of the B chain is to the left of the A chain.)
-            lo = max(lo, rank[e.edgeId] + 1);
+            lo = max(lo, rank[b.edgeId(e)] + 1);
           } else {
             // This is a post-crossing edge, so the crossing cannot be after the source vertex of
             // this edge.
-            hi = min(hi, rank[e.edgeId]);
+            hi = min(hi, rank[b.edgeId(e)]);
           }
         }
       }
@@ -1622,11 +1614,11 @@ public class S2BooleanOperation {
         // looking for ones that belong to the B subchain and are not incident to the first or last
         // vertex of A.
         boolean hasInteriorVertex = false;
-        for (CrossingGraphEdge e : b) {
-          if (e.aIndex > 0
-              && e.aIndex < n - 1
-              && rank[e.edgeId] >= rank[bFirstEdgeId]
-              && rank[e.edgeId] <= rank[bLastEdgeId]) {
+        for (int e = 0; e < b.size(); ++e) {
+          if (b.aIndex(e) > 0
+              && b.aIndex(e) < n - 1
+              && rank[b.edgeId(e)] >= rank[bFirstEdgeId]
+              && rank[b.edgeId(e)] <= rank[bLastEdgeId]) {
             hasInteriorVertex = true;
             break;
           }
@@ -1646,9 +1638,9 @@ public class S2BooleanOperation {
       // ensure that both chains choose the same crossing vertex.
       int best = -1;
       Preconditions.checkState(lo <= hi);
-      for (CrossingGraphEdge e : b) {
-        int ai = e.aIndex;
-        int vrank = getVertexRank(e);
+      for (int e = 0; e < b.size(); ++e) {
+        int ai = b.aIndex(e);
+        int vrank = getVertexRank(b, e);
         if (vrank >= lo && vrank <= hi && (best < 0 || a.get(ai) < a.get(best))) {
           best = ai;
         }
@@ -1657,15 +1649,15 @@ public class S2BooleanOperation {
     }
 
     /**
-     * Returns the "vertex rank" of the shared vertex associated with the given CrossingGraphEdge.
-     * Recall that graph edges are sorted in input edge order, and that the rank of an edge is its
-     * position in this order (rank[e]). VertexRank(e) is defined such that VertexRank(e.src) ==
-     * rank[e] and VertexRank(e.dst) == rank[e] + 1. Note that the concept of "vertex rank" is only
-     * defined within a single edge chain (since different edge chains can have overlapping vertex
-     * ranks).
+     * Returns the "vertex rank" of the shared vertex associated with the crossing graph edge at
+     * index 'i' of 'b'. Recall that graph edges are sorted in input edge order, and that the rank
+     * of an edge is its position in this order (rank[e]). VertexRank(e) is defined such that
+     * VertexRank(e.src) == rank[e] and VertexRank(e.dst) == rank[e] + 1. Note that the concept of
+     * "vertex rank" is only defined within a single edge chain (since different edge chains can
+     * have overlapping vertex ranks).
      */
-    private int getVertexRank(CrossingGraphEdge e) {
-      return rank[e.edgeId] + (!e.outgoing ? 1 : 0);
+    private int getVertexRank(CrossingGraphEdgeVector b, int i) {
+      return rank[b.edgeId(i)] + (!b.outgoing(i) ? 1 : 0);
     }
 
     /**
@@ -1759,10 +1751,13 @@ public class S2BooleanOperation {
           new GraphEdgeClipper(g, inputDimensions, inputCrossings, newEdges, newInputEdgeIds);
       gec.run();
       // TODO(torrey): Consider making the S2BooleanOperation.Impl, S2Builder, EdgeClippingLayer,
-      // and GraphEdgeClipper reusable for repeated S2BooleanOperation operations. Otherwise, it
-      // may be worth triggering garbage collection here, below, and/or when an operation finishes.
+      // and GraphEdgeClipper reusable for repeated S2BooleanOperation operations.
       gec = null;
 
+      // The input crossings are not needed past here, and there are two for every crossing of the
+      // input regions, so release them before the output layers allocate their own data.
+      inputCrossings.release();
+
       // Construct one or more subgraphs from the clipped edges and pass them to the given output
       // layer(s). We start with a copy of the input graph's IdSetLexicon because this is necessary
       // in general, even though in this case it is guaranteed to be empty because no edges have
@@ -1797,9 +1792,11 @@ public class S2BooleanOperation {
           layerInputEdgeIds[d].add(newInputEdgeId);
         }
 
-        // TODO(torrey): As above, consider options regarding clearing variables to save space.
+        // The clipped edges have been copied into the layers, so release them to save space.
         newEdges.clear();
+        newEdges.shrink();
         newInputEdgeIds.clear();
+        newInputEdgeIds.shrink();
 
         S2BuilderGraph[] layerGraphs = new S2BuilderGraph[3];
         for (int d = 0; d < 3; ++d) {
@@ -1822,18 +1819,10 @@ public class S2BooleanOperation {
    * ShapeEdgeId is a unique identifier for an edge within an S2ShapeIndex, consisting of a shapeId,
    * edgeId pair. The shapeId is the index of the shape in the S2ShapeIndex shape list.
    *
-   * <p>TODO: Consider if this class is actually required, or if we really only need collections of
-   * (shapeId, edgeId) that can be stored more efficiently. ShapeEdgeIds are used in:
-   *
-   * <ol>
-   *   <li>class ShapeEdge, along with the two S2Points
-   *   <li>a {@code List<ShapeEdgeId>} for chainStarts, which is iterated over, ends with SENTINEL
-   *   <li>An IndexCrossing has two ShapeEdgeIds.
-   *   <li>Part of the elements iterated over by a CrossingIterator
-   *   <li>The minimum of two ShapeEdgeIds is selected during iteration and referenced
-   *   <li>Constructed while processing edges of the chain
-   *   <li>Stored as keys in a HashMap to Boolean, isDegenerateHole
-   * </ol>
+   * <p>ShapeEdgeIds are used while processing the edges of each chain. Collections of them, such as
+   * the crossings in IndexCrossings, store them encoded as longs with {@link #encode(int, int)}
+   * instead, with the shapeId in the upper 32 bits and the edgeId in the lower 32 bits. Encoded
+   * ShapeEdgeIds have the same order as ShapeEdgeIds.
    */
   private static class ShapeEdgeId implements Comparable<ShapeEdgeId> {
     /** SENTINEL is used to mark the end of a collection of ShapeEdgeIds. */
@@ -1842,6 +1831,9 @@ public class S2BooleanOperation {
     /** An instance value that indicates "no edge". */
     public static final ShapeEdgeId NONE = new ShapeEdgeId(-1, -1);
 
+    /** The encoding of SENTINEL. */
+    public static final long SENTINEL_ENCODED = encode(Integer.MAX_VALUE, 0);
+
     /** The shape id of this ShapeEdgeId. */
     public final int shapeId;
 
@@ -1881,6 +1873,26 @@ public class S2BooleanOperation {
       return (a.compareTo(b) < 0) ? a : b;
     }
 
+    /** Encodes the ShapeEdgeId with the given non-negative shapeId and edgeId into a long. */
+    public static long encode(int shapeId, int edgeId) {
+      return (((long) shapeId) << 32) | (edgeId & 0xFFFFFFFFL);
+    }
+
+    /** Returns the encoding of this ShapeEdgeId. */
+    public long encode() {
+      return encode(shapeId, edgeId);
+    }
+
+    /** Decodes the shapeId from the given encoded ShapeEdgeId. */
+    public static int shapeId(long encoded) {
+      return (int) (encoded >>> 32);
+    }
+
+    /** Decodes the edgeId from the given encoded ShapeEdgeId. */
+    public static int edgeId(long encoded) {
+      return (int) encoded;
+    }
+
     @Override
     public String toString() {
       if (shapeId == Integer.MAX_VALUE && edgeId == 0) {
@@ -2198,7 +2210,7 @@ public class S2BooleanOperation {
       if (tmpCrossings.size() > 1) {
         tmpCrossings.sort();
       }
-      tmpCrossings.add(new IndexCrossing(ShapeEdgeId.SENTINEL, ShapeEdgeId.SENTINEL));
+      tmpCrossings.addSentinel();
       CrossingIterator nextCrossing =
           new CrossingIterator(bIndex, tmpCrossings, /* crossingsComplete= */ false);
       return crossingProcessor.processEdge(a.id, nextCrossing);
@@ -2206,23 +2218,18 @@ public class S2BooleanOperation {
 
     private boolean addIndexCrossing(
         ShapeEdge a, ShapeEdge b, boolean isInterior, IndexCrossings crossings) {
-      IndexCrossing crossing = new IndexCrossing(a.id, b.id);
-      crossings.add(crossing);
-
+      boolean leftToRight = false;
+      boolean isVertexCrossing = false;
       if (isInterior) {
-        crossing.isInteriorCrossing = true;
-        if (S2Predicates.sign(a.v0, a.v1, b.v0) > 0) {
-          crossing.leftToRight = true;
-        }
+        leftToRight = S2Predicates.sign(a.v0, a.v1, b.v0) > 0;
         builder.addIntersection(S2EdgeUtil.getIntersection(a.v0, a.v1, b.v0, b.v1));
       } else {
         // TODO(ericv): This field isn't used unless one shape is a polygon and the other is a
         // polyline or polygon, but we don't have the shape dimension information readily available
         // here.
-        if (S2EdgeUtil.vertexCrossing(a.v0, a.v1, b.v0, b.v1)) {
-          crossing.isVertexCrossing = true;
-        }
+        isVertexCrossing = S2EdgeUtil.vertexCrossing(a.v0, a.v1, b.v0, b.v1);
       }
+      crossings.add(a.id.encode(), b.id.encode(), isInterior, leftToRight, isVertexCrossing);
       return true; // Continue visiting.
     }
 
@@ -2269,7 +2276,7 @@ public class S2BooleanOperation {
           indexCrossings.sort(); // Don't need to remove duplicates as the iterator skips them.
         }
         // Add a sentinel value to simplify the loop logic.
-        indexCrossings.add(new IndexCrossing(ShapeEdgeId.SENTINEL, ShapeEdgeId.SENTINEL));
+        indexCrossings.addSentinel();
         indexCrossingsFirstRegionId = 0;
       }
 
@@ -2623,6 +2630,11 @@ public class S2BooleanOperation {
       builder.addIsFullPolygonPredicate(this::isFullPolygonResult);
 
       boolean unused = buildOpType(op.opType);
+
+      // The index crossings are only needed to emit the input edges, so release them before
+      // S2Builder snaps the edges.
+      indexCrossings.release();
+      tmpCrossings.release();
       unused = builder.build(error);
     }
   }
@@ -2669,6 +2681,9 @@ public class S2BooleanOperation {
     private int bDimension;
     private final boolean crossingsComplete;
 
+    // The aEdge of the current crossing, decoded when it changes.
+    private ShapeEdgeId aId;
+
     // The chain Id to which the bEdge belongs. Computed on demand and cached.
     private int bEdgeChainId;
 
@@ -2697,7 +2712,7 @@ public class S2BooleanOperation {
      * processing edges from the given id, we are now finished.
      */
     public boolean done(ShapeEdgeId id) {
-      return !aId().isEqualTo(id);
+      return it.aEdge() != id.encode();
     }
 
     /** True if all edge crossings are available (see above). */
@@ -2707,7 +2722,7 @@ public class S2BooleanOperation {
 
     /** True if this crossing occurs at a point interior to both edges. */
     public boolean isInteriorCrossing() {
-      return it.current.isInteriorCrossing;
+      return it.isInteriorCrossing();
     }
 
     /**
@@ -2715,22 +2730,22 @@ public class S2BooleanOperation {
      * one vertex in common and neither edge is degenerate.
      */
     public boolean isVertexCrossing() {
-      return it.current.isVertexCrossing;
+      return it.isVertexCrossing();
     }
 
     /** True if aEdge crosses bEdge from left to right (for interior crossings). */
     public boolean leftToRight() {
-      return it.current.leftToRight;
+      return it.leftToRight();
     }
 
     /** Returns the S2ShapeIndex edge (shape id and edge id) from region A. */
     public ShapeEdgeId aId() {
-      return it.current.aEdge;
+      return aId;
     }
 
     /** Returns the S2ShapeIndex edge (shape id and edge id) from region B. */
     public ShapeEdgeId bId() {
-      return it.current.bEdge;
+      return new ShapeEdgeId(ShapeEdgeId.shapeId(it.bEdge()), bEdgeId());
     }
 
     /** Returns the S2ShapeIndex of region B. */
@@ -2755,7 +2770,7 @@ public class S2BooleanOperation {
 
     /** Returns the edge id of the bEdge within its shape. */
     public int bEdgeId() {
-      return bId().edgeId;
+      return ShapeEdgeId.edgeId(it.bEdge());
     }
 
     /** Fills the given MutableEdge with the endpoints of the bEdge. */
@@ -2776,8 +2791,15 @@ public class S2BooleanOperation {
 
     /** Updates information about the B shape whenever it changes. */
     private void update() {
-      if (!aId().isEqualTo(ShapeEdgeId.SENTINEL) && bId().shapeId != bShapeId) {
-        bShapeId = bId().shapeId;
+      long aEdge = it.aEdge();
+      if (aId == null || aEdge != aId.encode()) {
+        aId =
+            aEdge == ShapeEdgeId.SENTINEL_ENCODED
+                ? ShapeEdgeId.SENTINEL
+                : new ShapeEdgeId(ShapeEdgeId.shapeId(aEdge), ShapeEdgeId.edgeId(aEdge));
+      }
+      if (aEdge != ShapeEdgeId.SENTINEL_ENCODED && ShapeEdgeId.shapeId(it.bEdge()) != bShapeId) {
+        bShapeId = ShapeEdgeId.shapeId(it.bEdge());
         bShape = bIndex.getShapes().get(bShapeId);
         bDimension = bShape.dimension();
         bEdgeChainId = -1; // Computed on demand.
@@ -2786,137 +2808,94 @@ public class S2BooleanOperation {
   }
 
   /**
-   * An IndexCrossing represents a pair of intersecting S2ShapeIndex edges ("aEdge" and "bEdge"). We
-   * store all such intersections because the algorithm needs them twice, once when processing the
-   * boundary of region A and once when processing the boundary of region B.
+   * IndexCrossings is a list of pairs of intersecting S2ShapeIndex edges ("aEdge" and "bEdge"),
+   * which may be sorted and iterated. We store all such intersections because the algorithm needs
+   * them twice, once when processing the boundary of region A and once when processing the boundary
+   * of region B.
+   *
+   * <p>Each crossing is stored as the two edges, encoded as longs by {@link ShapeEdgeId#encode},
+   * and a byte of flags, in parallel primitive vectors. This uses 17 bytes per crossing rather than
+   * the three objects per crossing of a list of pairs of ShapeEdgeIds, which matters because the
+   * number of crossings may be as large as the number of edges.
    */
-  private static class IndexCrossing {
-    private static final IndexCrossing SENTINEL =
-        new IndexCrossing(ShapeEdgeId.SENTINEL, ShapeEdgeId.SENTINEL);
-
-    /** The intersecting shape index edge from region A. */
-    private ShapeEdgeId aEdge;
-    /** The intersecting shape index edge from region B. */
-    private ShapeEdgeId bEdge;
-
-    // TODO(torrey): C++ packs these three booleans into one int.
-
+  private static class IndexCrossings implements Sorter.SortableCollection {
     /** True if S2.crossingSign(aEdge, bEdge) > 0. */
-    boolean isInteriorCrossing;
+    private static final byte INTERIOR_CROSSING = 1;
 
     /**
      * True if "aEdge" crosses "bEdge" from left to right. Undefined if isInteriorCrossing is
      * false.
      */
-    boolean leftToRight;
+    private static final byte LEFT_TO_RIGHT = 2;
 
     /**
      * Equal to S2.vertexCrossing(aEdge, bEdge). Undefined if "aEdge" and "bEdge" do not share
      * exactly one vertex or either edge is degenerate.
      */
-    boolean isVertexCrossing;
-
-    /**
-     * Constructs a new IndexCrossing. All flags are "false" by default.
-     */
-    public IndexCrossing(ShapeEdgeId a, ShapeEdgeId b) {
-      this.aEdge = a;
-      this.bEdge = b;
-      this.isInteriorCrossing = false;
-      this.leftToRight = false;
-      this.isVertexCrossing = false;
-    }
-
-    /** Reverses the crossing by swapping aEdge and bEdge. */
-    public void reverse() {
-      ShapeEdgeId tmp = aEdge;
-      aEdge = bEdge;
-      bEdge = tmp;
-      // The following predicates get inverted when the edges are swapped.
-      leftToRight ^= true;
-      isVertexCrossing ^= true;
-    }
-
-    @Override
-    public int hashCode() {
-      return aEdge.hashCode() * 7 + bEdge.hashCode();
-    }
+    private static final byte VERTEX_CROSSING = 4;
 
-    @Override
-    public boolean equals(Object obj) {
-      if (!(obj instanceof IndexCrossing)) {
-        return false;
-      }
-      IndexCrossing other = (IndexCrossing) obj;
-      return this.isEqualTo(other);
-    }
+    /** The encoded intersecting shape index edges from region A. */
+    private LongArrayList aEdges = new LongArrayList();
 
-    public boolean isEqualTo(IndexCrossing other) {
-      return this.aEdge.shapeId == other.aEdge.shapeId
-          && this.aEdge.edgeId == other.aEdge.edgeId
-          && this.bEdge.shapeId == other.bEdge.shapeId
-          && this.bEdge.edgeId == other.bEdge.edgeId;
-    }
-  }
+    /** The encoded intersecting shape index edges from region B. */
+    private LongArrayList bEdges = new LongArrayList();
 
-  /**
-   * A list of IndexCrossings that may be sorted and iterated. Each IndexCrossing contains two
-   * ShapeEdgeIds and details of type type of crossing.
-   */
-  private static class IndexCrossings {
-    // TODO(torrey): This is likely worth optimizing.
-    private final ArrayList<IndexCrossing> list = new ArrayList<>();
-
-    public static final Comparator<IndexCrossing> COMPARATOR =
-        (x, y) -> {
-          int result = Integer.compare(x.aEdge.shapeId, y.aEdge.shapeId);
-          if (result != 0) {
-            return result;
-          }
-          result = Integer.compare(x.aEdge.edgeId, y.aEdge.edgeId);
-          if (result != 0) {
-            return result;
-          }
-          result = Integer.compare(x.bEdge.shapeId, y.bEdge.shapeId);
-          if (result != 0) {
-            return result;
-          }
-          return Integer.compare(x.bEdge.edgeId, y.bEdge.edgeId);
-        };
+    /** The flags of each crossing. */
+    private final ByteArrayList flags = new ByteArrayList();
 
     /**
-     * An iterator over IndexCrossings that skips duplicate entries. Users access the 'current'
-     * entry directly.
+     * An iterator over IndexCrossings that skips duplicate entries. Users access the current entry
+     * with the accessor methods.
      */
     public class Iterator {
-      // The position of the current element.
+      // The position of the current element, or size() if no more are available.
       private int position = 0;
-      // The current IndexCrossing, or SENTINEL if no more are available.
-      public IndexCrossing current = null;
-
-      /** Constructs a new Iterator positioned on the first IndexCrossing. */
-      public Iterator() {
-        if (list.isEmpty()) {
-          current = IndexCrossing.SENTINEL;
-        } else {
-          current = list.get(0);
-        }
-      }
 
       /** Returns true if there is another IndexCrossing. */
       public boolean hasNext() {
-        return !current.isEqualTo(IndexCrossing.SENTINEL);
+        return aEdge() != ShapeEdgeId.SENTINEL_ENCODED || bEdge() != ShapeEdgeId.SENTINEL_ENCODED;
       }
 
       /** Advances to the next IndexCrossing. */
       public void next() {
         assert hasNext();
-        IndexCrossing last = list.get(position);
+        long lastA = aEdges.getLong(position);
+        long lastB = bEdges.getLong(position);
         position++;
-        while (last.isEqualTo(list.get(position)) && position < list.size()) {
+        while (position < size()
+            && aEdges.getLong(position) == lastA
+            && bEdges.getLong(position) == lastB) {
           position++;
         }
-        current = (position == list.size()) ? IndexCrossing.SENTINEL : list.get(position);
+      }
+
+      /** Returns the encoded shape index edge from region A, or SENTINEL if none are left. */
+      public long aEdge() {
+        return position < size() ? aEdges.getLong(position) : ShapeEdgeId.SENTINEL_ENCODED;
+      }
+
+      /** Returns the encoded shape index edge from region B, or SENTINEL if none are left. */
+      public long bEdge() {
+        return position < size() ? bEdges.getLong(position) : ShapeEdgeId.SENTINEL_ENCODED;
+      }
+
+      /** True if S2.crossingSign(aEdge, bEdge) > 0. */
+      public boolean isInteriorCrossing() {
+        return hasFlag(INTERIOR_CROSSING);
+      }
+
+      /** True if "aEdge" crosses "bEdge" from left to right. */
+      public boolean leftToRight() {
+        return hasFlag(LEFT_TO_RIGHT);
+      }
+
+      /** Equal to S2.vertexCrossing(aEdge, bEdge). */
+      public boolean isVertexCrossing() {
+        return hasFlag(VERTEX_CROSSING);
+      }
+
+      private boolean hasFlag(byte flag) {
+        return position < size() && (flags.getByte(position) & flag) != 0;
       }
     }
 
@@ -2925,33 +2904,97 @@ public class S2BooleanOperation {
       return new Iterator();
     }
 
+    /**
+     * Adds a crossing of the encoded edges 'aEdge' and 'bEdge'. "leftToRight" is only used if
+     * "isInteriorCrossing" is true.
+     */
+    public void add(
+        long aEdge,
+        long bEdge,
+        boolean isInteriorCrossing,
+        boolean leftToRight,
+        boolean isVertexCrossing) {
+      aEdges.add(aEdge);
+      bEdges.add(bEdge);
+      flags.add(
+          (byte)
+              ((isInteriorCrossing ? INTERIOR_CROSSING : 0)
+                  | (leftToRight ? LEFT_TO_RIGHT : 0)
+                  | (isVertexCrossing ? VERTEX_CROSSING : 0)));
+    }
+
+    /** Adds a SENTINEL crossing, which is used to mark the end of the crossings. */
+    public void addSentinel() {
+      add(ShapeEdgeId.SENTINEL_ENCODED, ShapeEdgeId.SENTINEL_ENCODED, false, false, false);
+    }
+
     /** Clears this list of IndexCrossings. */
     public void clear() {
-      list.clear();
+      aEdges.clear();
+      bEdges.clear();
+      flags.clear();
+    }
+
+    /** Clears this list of IndexCrossings and releases the memory used to store them. */
+    public void release() {
+      clear();
+      aEdges.trim();
+      bEdges.trim();
+      flags.trim();
     }
 
-    /** Reverses all the IndexCrossings in this list. */
+    /** Reverses all the IndexCrossings in this list by swapping aEdge and bEdge. */
     public void reverseAll() {
-      for (IndexCrossing crossing : list) {
-        crossing.reverse();
+      LongArrayList tmp = aEdges;
+      aEdges = bEdges;
+      bEdges = tmp;
+      // The following predicates get inverted when the edges are swapped.
+      for (int i = 0; i < flags.size(); ++i) {
+        flags.set(i, (byte) (flags.getByte(i) ^ (LEFT_TO_RIGHT | VERTEX_CROSSING)));
+      }
+    }
+
+    /**
+     * Orders IndexCrossings by aEdge, breaking ties by bEdge, for {@link #sort()}. The order of
+     * duplicate crossings is not preserved by sorting, but duplicates have the same flags.
+     */
+    @Override
+    public boolean less(int leftIndex, int rightIndex) {
+      long leftA = aEdges.getLong(leftIndex);
+      long rightA = aEdges.getLong(rightIndex);
+      if (leftA != rightA) {
+        return leftA < rightA;
       }
+      return bEdges.getLong(leftIndex) < bEdges.getLong(rightIndex);
     }
 
-    /** Sorts this list of IndexCrossings according to the IndexCrossings.COMPARATOR. */
-    public void sort() {
-      list.sort(COMPARATOR);
+    @Override
+    public void swap(int leftIndex, int rightIndex) {
+      long a = aEdges.getLong(leftIndex);
+      aEdges.set(leftIndex, aEdges.getLong(rightIndex));
+      aEdges.set(rightIndex, a);
+      long b = bEdges.getLong(leftIndex);
+      bEdges.set(leftIndex, bEdges.getLong(rightIndex));
+      bEdges.set(rightIndex, b);
+      byte f = flags.getByte(leftIndex);
+      flags.set(leftIndex, flags.getByte(rightIndex));
+      flags.set(rightIndex, f);
     }
 
-    public void add(IndexCrossing crossing) {
-      list.add(crossing);
+    @Override
+    public void truncate(int start) {
+      aEdges.size(start);
+      bEdges.size(start);
+      flags.size(start);
     }
 
+    @Override
     public int size() {
-      return list.size();
+      return aEdges.size();
     }
 
     public boolean isEmpty() {
-      return list.isEmpty();
+      return aEdges.isEmpty();
     }
   }
 
@@ -3016,18 +3059,15 @@ public class S2BooleanOperation {
      * be associated with the S2Builder edge that represents the edge interior, and they are stored
      * here until that edge is created.
      */
-    private final List<SourceEdgeCrossing> pendingSourceEdgeCrossings = new ArrayList<>();
-
-    // TODO(torrey): Consider alternatives to HashMap. C++ uses
-    // absl::btree_map<SourceId, InputEdgeId>;
+    private final SourceEdgeCrossings pendingSourceEdgeCrossings = new SourceEdgeCrossings();
 
     /**
      * A map that translates from SourceId (the (regionId, shapeId, edgeId) triple that identifies
-     * an S2ShapeIndex edge, encoded into a Long) to InputEdgeId (the sequentially increasing
-     * numbers assigned to input edges by S2Builder).
+     * an S2ShapeIndex edge, encoded into a long) to InputEdgeId (the sequentially increasing
+     * numbers assigned to input edges by S2Builder). C++ uses absl::btree_map<SourceId,
+     * InputEdgeId>. A primitive hash map is used here, as it has no per-entry objects.
      */
-    private static class SourceIdMap extends HashMap<Long, Integer> {}
-    private final SourceIdMap sourceIdMap = new SourceIdMap();
+    private final Long2IntOpenHashMap sourceIdMap = new Long2IntOpenHashMap();
 
     // TODO(torrey): Consider alternatives to HashMap. C++ uses a flat_hash_map<ShapeEdgeId, bool>.
     // A ShapeEdgeId is just two ints.
@@ -3698,7 +3738,7 @@ public class S2BooleanOperation {
           // still created at the intersection points.)
           if (aDimension <= it.bDimension() && !(invertB != invertResult && it.bDimension() == 1)) {
             long srcId = SourceId.encode(bRegionId, it.bShapeId(), it.bEdgeId());
-            addInteriorCrossing(new SourceEdgeCrossing(srcId, it.leftToRight()));
+            addInteriorCrossing(srcId, it.leftToRight());
           }
           r.interiorCrossings += (it.bDimension() == 1) ? 2 : 1;
         } else if (it.bDimension() == 1) {
@@ -3819,23 +3859,24 @@ public class S2BooleanOperation {
       sourceIdMap.put(SourceId.special(SET_INVERT_B), SET_INVERT_B);
       sourceIdMap.put(SourceId.special(SET_REVERSE_A), SET_REVERSE_A);
 
-      sourceEdgeCrossings.forEach(
-          (firstInputEdgeId, secondSourceEdgeCrossing) -> {
-            long sourceId = secondSourceEdgeCrossing.sourceId();
+      inputCrossings.ensureCapacity(inputCrossings.size() + sourceEdgeCrossings.size());
+      for (int i = 0; i < sourceEdgeCrossings.size(); ++i) {
+        long sourceId = sourceEdgeCrossings.sourceId(i);
 
-            // "Expected to find sourceId " + sourceId + " in sourceIdMap."
-            assert sourceIdMap.containsKey(sourceId);
-            int secondInputEdgeId = sourceIdMap.get(sourceId);
+        // "Expected to find sourceId " + sourceId + " in sourceIdMap."
+        assert sourceIdMap.containsKey(sourceId);
+        int secondInputEdgeId = sourceIdMap.get(sourceId);
 
-            inputCrossings.add(
-                new CrossingInputEdgePair(
-                    firstInputEdgeId,
-                    new CrossingInputEdge(
-                        secondInputEdgeId, secondSourceEdgeCrossing.leftToRight())));
-          });
+        inputCrossings.addCrossing(
+            sourceEdgeCrossings.inputEdgeId(i),
+            CrossingInputEdge.encode(secondInputEdgeId, sourceEdgeCrossings.leftToRight(i)));
+      }
 
-      sourceEdgeCrossings.clear();
+      // The temporary representation is as large as the translated crossings, so release it
+      // rather than keeping it allocated while the output is built.
+      sourceEdgeCrossings.release();
       sourceIdMap.clear();
+      sourceIdMap.trim();
     }
 
     /**
@@ -3851,44 +3892,6 @@ public class S2BooleanOperation {
       return inside;
     }
 
-    /**
-     * SourceEdgeCrossing represents edge crossings and changes in clipping state. Some
-     * SourceEdgeCrossings use special SourceIds for SET_REVERSE_A, SET_INVERT_B, or SET_INSIDE,
-     * while the common case is to represent an input that crosses some other edge, and the
-     * direction of that crossing. If leftToRight is true, the input edge crosses the other edge
-     * from left to right.
-     */
-    private static class SourceEdgeCrossing {
-
-      /** The SourceId encoded into a long. */
-      private final long srcId;
-
-      /** True if the edge represented by srcId crosses the other edge from left to right. */
-      private final boolean leftToRight;
-
-      public SourceEdgeCrossing(long srcId, boolean leftToRight) {
-        this.srcId = srcId;
-        this.leftToRight = leftToRight;
-      }
-
-      public long sourceId() {
-        return srcId;
-      }
-
-      public boolean leftToRight() {
-        return leftToRight;
-      }
-
-      @Override
-      public String toString() {
-        return "SourceEdgeCrossing(" + srcId + ", " + leftToRight + ")";
-      }
-    }
-
-    private static interface SourceEdgeCrossingVisitor {
-      public void visit(int i, SourceEdgeCrossing crossing);
-    }
-
     /**
      * A temporary representation of inputCrossings that is used internally until all necessary
      * edges from *both* polygons have been emitted to the S2Builder. This field is then converted
@@ -3905,47 +3908,77 @@ public class S2BooleanOperation {
      * crossed by an edge from polygon 0. The entries are sorted lexicographically by their eventual
      * InputEdgeIds except for GraphEdgeClipper state modifications, which are sorted by the first
      * InputEdgeId only.
+     *
+     * <p>Each entry is a crossing of an input edge by the edge with a SourceId, where "leftToRight"
+     * is true if the SourceId edge crosses the input edge from left to right. Some entries use
+     * special SourceIds for SET_REVERSE_A, SET_INVERT_B, or SET_INSIDE, in which case
+     * "leftToRight" is the new state. The entries are stored in parallel primitive vectors, using
+     * a little over 12 bytes per entry.
      */
     private static class SourceEdgeCrossings {
-      // TODO(torrey): This is a placeholder implementation. Consider a more memory efficient
-      // way to store this data.
+      /** The input edge id of the edge in the first polygon, for each entry. */
+      private final IntVector inputEdgeIds = new IntVector();
+
+      /** The encoded SourceId of the edge in the second polygon, for each entry. */
+      private final LongArrayList sourceIds = new LongArrayList();
+
+      /** The crossing direction or new clipping state, for each entry. */
+      private final BitSet leftToRight = new BitSet();
 
       /**
-       * A crossing edge. The "int inputEdgeId" is the input edge id of the edge in the first
-       * polygon, and the SourceEdgeCrossing is the SourceId of the edge in the second polygon,
-       * along with the crossing direction.
+       * Adds a pair of crossing edges where the first edge is the given input edge id from the
+       * first polygon, and the second edge is the given SourceId.
        */
-      private static class InputSourceEdgeCrossing {
-        public final int inputEdgeId;
-        public final SourceEdgeCrossing sourceEdgeCrossing;
-
-        public InputSourceEdgeCrossing(int inputEdgeId, SourceEdgeCrossing crossing) {
-          this.inputEdgeId = inputEdgeId;
-          this.sourceEdgeCrossing = crossing;
+      public void add(int inputEdgeId, long sourceId, boolean leftToRight) {
+        if (leftToRight) {
+          this.leftToRight.set(size());
         }
+        inputEdgeIds.add(inputEdgeId);
+        sourceIds.add(sourceId);
       }
 
-      /** The list of crossing edges. */
-      final ArrayList<InputSourceEdgeCrossing> list = new ArrayList<>();
-
       /**
-       * Adds a pair of crossing edges where the first edge is the input edge id 'i' from the first
-       * polygon, and the second edge and crossing direction are in the given SourceEdgeCrossing.
+       * Adds all the crossings in 'crossings' as crossings of the given input edge id, ignoring
+       * their own input edge ids.
        */
-      public void add(int inputEdgeId, SourceEdgeCrossing crossing) {
-        list.add(new InputSourceEdgeCrossing(inputEdgeId, crossing));
+      public void addAll(int inputEdgeId, SourceEdgeCrossings crossings) {
+        for (int i = 0; i < crossings.size(); ++i) {
+          add(inputEdgeId, crossings.sourceId(i), crossings.leftToRight(i));
+        }
       }
 
-      /** Visits each of the input crossings. */
-      public void forEach(SourceEdgeCrossingVisitor visitor) {
-        for (InputSourceEdgeCrossing crossing : list) {
-          visitor.visit(crossing.inputEdgeId, crossing.sourceEdgeCrossing);
-        }
+      /** Returns the number of entries. */
+      public int size() {
+        return inputEdgeIds.size();
+      }
+
+      /** Returns the input edge id of the entry at the given index. */
+      public int inputEdgeId(int index) {
+        return inputEdgeIds.get(index);
+      }
+
+      /** Returns the SourceId of the entry at the given index. */
+      public long sourceId(int index) {
+        return sourceIds.getLong(index);
       }
 
-      /** Clears the list of crossings. */
+      /** Returns the crossing direction or new clipping state of the entry at the given index. */
+      public boolean leftToRight(int index) {
+        return leftToRight.get(index);
+      }
+
+      /** Clears the entries. */
       public void clear() {
-        list.clear();
+        inputEdgeIds.clear();
+        sourceIds.clear();
+        leftToRight.clear();
+      }
+
+      /** Clears the entries and releases the memory used to store them. */
+      public void release() {
+        clear();
+        inputEdgeIds.shrink();
+        sourceIds.trim();
       }
     }
 
@@ -3988,18 +4021,19 @@ public class S2BooleanOperation {
       return isDegenerateHole.containsKey(aId);
     }
 
-    private void addCrossing(SourceEdgeCrossing crossing) {
-      sourceEdgeCrossings.add(inputEdgeId(), crossing);
+    private void addCrossing(long sourceId, boolean leftToRight) {
+      sourceEdgeCrossings.add(inputEdgeId(), sourceId, leftToRight);
     }
 
-    private void addInteriorCrossing(SourceEdgeCrossing crossing) {
+    private void addInteriorCrossing(long sourceId, boolean leftToRight) {
       // Crossing edges are queued until the S2Builder edge that they are supposed to be associated
-      // with is created (see addEdge() and pendingsourceEdgeCrossings for details).
-      pendingSourceEdgeCrossings.add(crossing);
+      // with is created (see addEdge() and pendingSourceEdgeCrossings for details). Their input
+      // edge id is not known yet, and is assigned when they are added to sourceEdgeCrossings.
+      pendingSourceEdgeCrossings.add(-1, sourceId, leftToRight);
     }
 
     private void setClippingState(int parameter, boolean state) {
-      addCrossing(new SourceEdgeCrossing(SourceId.special(parameter), state));
+      addCrossing(SourceId.special(parameter), state);
     }
 
     /**
@@ -4013,9 +4047,7 @@ public class S2BooleanOperation {
       }
       if (interiorCrossings > 0) {
         // Add the edges that cross this edge to the output so that GraphEdgeClipper can find them.
-        for (SourceEdgeCrossing crossing : pendingSourceEdgeCrossings) {
-          sourceEdgeCrossings.add(inputEdgeId(), crossing);
-        }
+        sourceEdgeCrossings.addAll(inputEdgeId(), pendingSourceEdgeCrossings);
         // Build a map that translates temporary edge ids (SourceId) to the representation used by
         // EdgeClippingLayer (InputEdgeId).
         long srcId = SourceId.encode(aRegionId, aId.shapeId, aId.edgeId);
@@ -340,6 +340,12 @@ public class S2Builder {
    */
   private final EdgeSites edgeSites = new EdgeSites();
 
+  /**
+   * The input vertex ids in the order returned by sortInputVertices(), so that site selection may
+   * sort them only once, or null if the input vertices have changed since they were sorted.
+   */
+  private IntVector inputVertexOrder;
+
   /** The S2Builder constructor takes a Builder. Clients should use Builder.build(). */
   private S2Builder(Builder builder) {
     options = builder;
@@ -807,6 +813,12 @@ public class S2Builder {
       }
       throw e;
     }
+    // The input vertex order is only needed while choosing sites.
+    inputVertexOrder = null;
+    if (!error.ok()) {
+      clear();
+      return false;
+    }
 
     buildLayers();
     clear();
@@ -829,6 +841,7 @@ public class S2Builder {
     labelSetModified = false;
     sites.clear();
     edgeSites.clear();
+    inputVertexOrder = null;
     snappingNeeded = false;
   }
 
@@ -850,7 +863,14 @@ public class S2Builder {
     if (snappingRequested) {
       S2PointIndex<Integer> siteIndex = new S2PointIndex<>();
       addForcedSites(siteIndex);
-      chooseInitialSites(siteIndex);
+      if (!chooseSeparatedVerticesAsSites(siteIndex)) {
+        chooseInitialSites(siteIndex);
+      }
+      // If the snap function moved a site further than the snap radius, the input edges may not
+      // snap to any site, so stop here and report the error.
+      if (!error.ok()) {
+        return;
+      }
       collectSiteEdges(siteIndex);
     }
 
@@ -900,6 +920,7 @@ public class S2Builder {
     // match.
     inputVertices.clear();
     inputVertices.addAll(sites);
+    inputVertexOrder = null;
     for (int edgeId = 0; edgeId < inputEdges.size(); ++edgeId) {
       int newSrcId = vmap.get(inputEdges.getSrcId(edgeId));
       int newDstId = vmap.get(inputEdges.getDstId(edgeId));
@@ -911,7 +932,8 @@ public class S2Builder {
    * Sort all the input vertices in the order that we wish to consider them as candidate Voronoi
    * sites in {@link #chooseInitialSites}. Also used by {@link #chooseAllVerticesAsSites}, which
    * deduplicates the input vertices by checking consecutive sorted vertices for equality, and so
-   * currently requires that input vertices be sorted so that equal vertices are adjacent.
+   * currently requires that input vertices be sorted so that equal vertices are adjacent. The
+   * result is reused until the input vertices change, and must not be modified.
    *
    * <p>For {@link #chooseInitialSites}, any sort order would produce correct output, so we have
    * complete flexibility in choosing the sort key. We could even leave them unsorted, although this
@@ -955,6 +977,9 @@ public class S2Builder {
    * furthest candidate whose snapped location covers all previous uncovered input vertices.
    */
   private IntVector sortInputVertices() {
+    if (inputVertexOrder != null) {
+      return inputVertexOrder;
+    }
     // The vertex ids, which will be sorted by cell id and returned.
     final IntVector sortedVertexIds = new IntVector();
     // The leaf cell ids corresponding to the vertex point. Only needed for sorting.
@@ -1001,6 +1026,7 @@ public class S2Builder {
         return vertexA.compareTo(vertexB) < 0;
       }
     });
+    inputVertexOrder = sortedVertexIds;
     return sortedVertexIds;
   }
 
@@ -1029,6 +1055,7 @@ public class S2Builder {
     }
     snappingNeeded = true;
     inputVertices.addAll(newVertices);
+    inputVertexOrder = null;
   }
 
   private void addForcedSites(S2PointIndex<Integer> siteIndex) {
@@ -1074,6 +1101,15 @@ public class S2Builder {
       if (siteSnapRadiusChordAngle.isZero()) {
         // If the snap radius is zero, always add, except avoid obvious duplicates.
         addSite = sites.isEmpty() || !site.equalsPoint(sites.get(sites.size() - 1));
+      } else if (numForcedSites == 0
+          && !sites.isEmpty()
+          && site.equalsPoint(sites.get(sites.size() - 1))) {
+        // The site is a duplicate of the previous site, which is common since the input vertices
+        // are sorted and most vertices are shared by two edges. All other sites are further than
+        // minSiteSeparation from the previous site, since sites that are not forced are only added
+        // when that is true, so they are also too far away to matter here and the query can be
+        // skipped.
+        addSite = false;
       } else {
         // findClosestPoints() measures distances conservatively, so we need to recheck the
         // distances using exact predicates.
@@ -1103,6 +1139,116 @@ public class S2Builder {
     }
   }
 
+  /**
+   * A fast path for chooseInitialSites() with the identity snap function, which is typically used
+   * to assemble geometry that is already clean. Vertices are not moved by the identity snap
+   * function, so if no forced sites were added and all distinct input vertices are separated by
+   * more than minSiteSeparation, then chooseInitialSites() would add every distinct vertex as a
+   * site, without any vertex being too close to an existing site. This method checks that
+   * condition in near-linear time, without the closest point queries of chooseInitialSites(), and
+   * if it holds adds the same sites in the same order and returns true. Otherwise it returns false
+   * without adding any sites, and chooseInitialSites() must be used.
+   */
+  private boolean chooseSeparatedVerticesAsSites(S2PointIndex<Integer> siteIndex) {
+    if (numForcedSites > 0
+        || siteSnapRadiusChordAngle.isZero()
+        || !(options.snapFunction() instanceof S2BuilderSnapFunctions.IdentitySnapFunction)) {
+      return false;
+    }
+
+    // Collect the distinct vertices in the order chooseInitialSites() would consider them, and
+    // their leaf cell ids, which are in ascending order.
+    IntVector sortedInputVertexIds = sortInputVertices();
+    List<S2Point> vertices = new ArrayList<>(sortedInputVertexIds.size());
+    long[] cellIds = new long[sortedInputVertexIds.size()];
+    for (int i = 0; i < sortedInputVertexIds.size(); i++) {
+      S2Point vertex = snapSite(inputVertices.get(sortedInputVertexIds.get(i)));
+      if (vertices.isEmpty() || !vertex.equalsPoint(vertices.get(vertices.size() - 1))) {
+        cellIds[vertices.size()] = S2CellId.fromPoint(vertex).id();
+        vertices.add(vertex);
+      }
+    }
+
+    // Two vertices closer than minSiteSeparation are in the same cell or in neighboring cells at
+    // any level where cells are at least twice as wide as that. Since the vertices are sorted by
+    // cell id, the vertices in each cell at that level are contiguous, so the close pairs can be
+    // found by comparing the vertices of each cell with those of the cell and its neighbors. Each
+    // pair of neighboring cells is compared once, from the cell with the smaller id.
+    int level = S2Projections.MIN_WIDTH.getMaxLevel(2 * minSiteSeparation.radians());
+    int size = vertices.size();
+    List<S2CellId> neighbors = new ArrayList<>();
+    for (int begin = 0; begin < size; ) {
+      S2CellId cell = new S2CellId(cellIds[begin]).parent(level);
+      int end = scanCell(cellIds, begin, size, cell);
+      for (int i = begin; i < end; i++) {
+        for (int j = i + 1; j < end; j++) {
+          if (tooCloseForSites(vertices.get(i), vertices.get(j))) {
+            return false;
+          }
+        }
+      }
+      neighbors.clear();
+      cell.getAllNeighbors(level, neighbors);
+      for (S2CellId neighbor : neighbors) {
+        if (neighbor.lessOrEquals(cell)) {
+          continue;
+        }
+        int neighborBegin = lowerBound(cellIds, end, size, neighbor.rangeMin().id());
+        int neighborEnd = scanCell(cellIds, neighborBegin, size, neighbor);
+        for (int i = begin; i < end; i++) {
+          for (int j = neighborBegin; j < neighborEnd; j++) {
+            if (tooCloseForSites(vertices.get(i), vertices.get(j))) {
+              return false;
+            }
+          }
+        }
+      }
+      begin = end;
+    }
+
+    for (S2Point vertex : vertices) {
+      siteIndex.add(vertex, sites.size());
+      sites.add(vertex);
+    }
+    return true;
+  }
+
+  /** Returns true if the given distinct sites are within minSiteSeparation of each other. */
+  private boolean tooCloseForSites(S2Point a, S2Point b) {
+    return S2Predicates.compareDistance(a, b, minSiteSeparationChordAngle.getLength2()) <= 0;
+  }
+
+  /**
+   * Returns the index of the first cell id in cellIds[begin, end), which is in ascending unsigned
+   * order, that is not less than the given id.
+   */
+  private static int lowerBound(long[] cellIds, int begin, int end, long id) {
+    int lo = begin;
+    int hi = end;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (UnsignedLongs.compare(cellIds[mid], id) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Returns the index of the first cell id in cellIds[begin, end), which is in ascending unsigned
+   * order, that is not contained by the given cell. Cells typically contain only a few of the ids,
+   * so they are scanned linearly.
+   */
+  private static int scanCell(long[] cellIds, int begin, int end, S2CellId cell) {
+    long rangeMax = cell.rangeMax().id();
+    while (begin < end && UnsignedLongs.compare(cellIds[begin], rangeMax) <= 0) {
+      begin++;
+    }
+    return begin;
+  }
+
   private S2Point snapSite(S2Point point) {
     if (!snappingRequested) {
       return point;
@@ -1130,6 +1276,17 @@ public class S2Builder {
    * true.
    */
   private void collectSiteEdges(S2PointIndex<Integer> siteIndex) {
+    // If no snapping is needed so far, first check whether the input already meets the edge-site
+    // separation requirement. This is much cheaper than collecting the sites near each edge, since
+    // far fewer sites are close enough to the edges, and the results don't need to be stored. If
+    // the requirement is met, then no edge is snapped and the edge sites are not needed at all.
+    if (!snappingNeeded) {
+      snappingNeeded = edgeSiteSeparationViolated(siteIndex);
+      if (!snappingNeeded) {
+        return;
+      }
+    }
+
     // Find all points whose distance is <= edgeSiteQueryRadiusChordAngle.
     S2ClosestPointQuery<Integer> siteQuery = new S2ClosestPointQuery<>(siteIndex);
     siteQuery.setConservativeMaxDistance(edgeSiteQueryRadiusChordAngle);
@@ -1146,24 +1303,11 @@ public class S2Builder {
       nearbySites.clear(); // S2ClosestPointQuery doesn't clear before appending!
       siteQuery.findClosestPointsToEdge(nearbySites, v0, v1);
 
-      // Gather the site ids of those points, and determine if the points need to be snapped.
+      // Gather the site ids of those points.
       IntVector sitesNearEdge = new IntVector();
       sitesNearEdge.ensureCapacity(nearbySites.size());
       for (S2ClosestPointQuery.Result<Integer> result : nearbySites) {
         sitesNearEdge.add(result.entry().data());
-        if (!snappingNeeded
-            && result.distance().lessThan(minEdgeSiteSeparationChordAngleLimit)
-            && !result.entry().point().equalsPoint(v0)
-            && !result.entry().point().equalsPoint(v1)) {
-
-          // Here, we may need to change snappingNeeded to true if the current graph could not be
-          // the output of a previous S2Builder operation. The conservative result from the
-          // S2ClosestPointQuery indicates the nearby site, which is not an edge endpoint, _may_ be
-          // too close to the edge. Use an exact predicate to determine if the nearby site is
-          // actually too close to the edge.
-          snappingNeeded = S2Predicates.compareEdgeDistance(
-              result.entry().point(), v0, v1, minEdgeSiteSeparationChordAngle.getLength2()) < 0;
-        }
       }
 
       // Sort the sites near the edge by increasing distance from the edge source vertex.
@@ -1173,6 +1317,39 @@ public class S2Builder {
     }
   }
 
+  /**
+   * Returns true if any site other than the endpoints of an input edge is closer to the edge than
+   * minEdgeVertexSeparation(), in which case the current graph could not be the output of a
+   * previous S2Builder operation, and snapping is needed.
+   */
+  private boolean edgeSiteSeparationViolated(S2PointIndex<Integer> siteIndex) {
+    // Find all points whose distance is < minEdgeSiteSeparationChordAngleLimit.
+    S2ClosestPointQuery<Integer> siteQuery = new S2ClosestPointQuery<>(siteIndex);
+    siteQuery.setMaxDistance(minEdgeSiteSeparationChordAngleLimit);
+    ArrayList<S2ClosestPointQuery.Result<Integer>> nearbySites = new ArrayList<>();
+
+    for (int inputEdgeId = 0; inputEdgeId < inputEdges.size(); ++inputEdgeId) {
+      S2Point v0 = inputVertices.get(inputEdges.getSrcId(inputEdgeId));
+      S2Point v1 = inputVertices.get(inputEdges.getDstId(inputEdgeId));
+      nearbySites.clear();
+      siteQuery.findClosestPointsToEdge(nearbySites, v0, v1);
+      for (S2ClosestPointQuery.Result<Integer> result : nearbySites) {
+        S2Point site = result.entry().point();
+        // The conservative result from the S2ClosestPointQuery indicates the nearby site, which is
+        // not an edge endpoint, _may_ be too close to the edge. Use an exact predicate to determine
+        // if the nearby site is actually too close to the edge.
+        if (!site.equalsPoint(v0)
+            && !site.equalsPoint(v1)
+            && S2Predicates.compareEdgeDistance(
+                    site, v0, v1, minEdgeSiteSeparationChordAngle.getLength2())
+                < 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   /** Sort a list of site IDs by increasing distance from a specified point. */
   private class SiteIdDistanceComparator implements IntComparator {
     private final S2Point xPoint;
@@ -1286,8 +1463,11 @@ public class S2Builder {
           continue;
         }
 
-        // TODO(torrey): Possible optimization. With the identity snap function, it may often(?) be
-        // that a0==v0 and a1==v1 and we could skip the distance calculation?
+        // With the identity snap function, the snapped edge is often the input edge itself, which
+        // cannot deviate from it at all.
+        if (v0.equalsPoint(a0) && v1.equalsPoint(a1)) {
+          continue;
+        }
 
         if (!S2EdgeUtil.isEdgeBNearEdgeA(a0, a1, v0, v1, maxEdgeDeviation)) {
           // Some point on snapped edge (v0, v1) is too far from the input edge (a0, a1).
@@ -1367,9 +1547,12 @@ public class S2Builder {
           assert !siteToAvoid.equalsPoint(newSite);
           addExtraSite(newSite, inputEdgeIndex, edgesToResnap);
 
-          // Skip the remaining sites near this chain edge, and then continue scanning this chain.
-          // Note that this is safe even though the call to addExtraSite() above added a new site
-          // to "nearbySites".
+          // addExtraSite() inserted the new site into the sites near this edge, and the list
+          // returned by edgeSites.get() is a view of fixed bounds, so it must be fetched again.
+          // The new site may have been inserted before position j, but the chain vertex v1 is
+          // still after it, so skipping the remaining sites near this chain edge stops at v1, and
+          // then we continue scanning this chain.
+          nearbySites = edgeSites.get(inputEdgeId);
           for (; nearbySites.get(j + 1) != siteIdsChain.get(i); ++j) {}
         }
       }
@@ -1496,15 +1679,31 @@ public class S2Builder {
     S2Point x = inputVertices.get(srcSiteId);
     S2Point y = inputVertices.get(dstSiteId);
 
-    // TODO(torrey): Eric V. noted the following possibilities for optimization, applicable here
-    // and in C++.
-    // Optimization: if there is only one nearby site, return.
-    // Optimization: if there are exactly two nearby sites, and one is close enough to each vertex,
-    // then return.
+    // First handle the common cases of one nearby site, and of two nearby sites at the endpoints,
+    // which is typical of the identity snap function. These produce the same chains as the general
+    // loop below, without considering site exclusions.
+    IntList candidates = edgeSites.get(inputEdgeId);
+    if (candidates.size() == 1) {
+      int siteId = candidates.get(0);
+      if (S2Predicates.compareEdgeDistance(
+              sites.get(siteId), x, y, edgeSnapRadiusChordAngle.getLength2())
+          <= 0) {
+        siteIdChain.push(siteId);
+      }
+      return;
+    }
+    if (candidates.size() == 2
+        && sites.get(candidates.get(0)).equalsPoint(x)
+        && sites.get(candidates.get(1)).equalsPoint(y)
+        && new S1ChordAngle(x, y).greaterOrEquals(maxAdjacentSiteSeparationChordAngle)) {
+      // The endpoint sites are too far apart for either to exclude the other.
+      siteIdChain.push(candidates.get(0));
+      siteIdChain.push(candidates.get(1));
+      return;
+    }
 
     // Now iterate through the sites, which are sorted in order of distance from 'x', the origin of
     // the inputEdgeId. We keep track of the sequence of sites that are visited.
-    IntList candidates = edgeSites.get(inputEdgeId);
     for (OfInt siteIter = candidates.intIterator(); siteIter.hasNext(); ) {
       int siteId = siteIter.nextInt();
       // 'c' is the next candidate site to consider.
@@ -1957,34 +2156,48 @@ public class S2Builder {
    * as the set of sites that are candidates for snapping and/or avoidance. Sites are kept sorted by
    * increasing distance from the origin of the input edge. Most edges have just two nearby sites,
    * i.e. the edge end points, so EdgeSites is optimized for that common case.
+   *
+   * <p>The site ids of all the edges are stored in a single IntVector, with the sites of each edge
+   * in a contiguous range given by the begin and end offsets of the edge, so that there are no
+   * objects per input edge. Adding a site to the range of an edge that is not at the end of the
+   * vector moves the range to the end, leaving the old range unused. Sites are only added when
+   * extra sites are needed, which is rare, so the unused space is small.
    */
   private class EdgeSites {
+    /** The site ids near each edge, in the ranges given by 'begins' and 'ends'. */
+    private final IntVector siteIds = new IntVector();
+
+    /** For each edge id, the index in 'siteIds' of the first site near the edge. */
+    private final IntVector begins = new IntVector();
+
+    /** For each edge id, the index in 'siteIds' just past the last site near the edge. */
+    private final IntVector ends = new IntVector();
+
+    /** The list returned for edges that have no nearby sites. */
+    private final IntList noSites = IntVector.empty();
+
     public EdgeSites() {}
-    // TODO(torrey): Implementation. Eric's comments: "we probably do want an array of some kind of
-    // value, where the array index is the input edge ID, and the array values are describing the
-    // endpoints of the edge and the nearby vertices.
-    //
-    // E.g. we can have this be a single IntVector, where the first 2*numInputEdges elements are
-    // the IDs of the start/end vertices, and if the closest edge query produces more than 2 nearby
-    // vertices, then the first entry can contain the first result and the second entry can contain
-    // the remaining results at the end of the single IntVector (as size followed by that many
-    // remaining entries). That eliminates any objects per input edge."
-    // If the data structure and add() method are changed to copy the provided sitesNearEdge, then
-    // collectSiteEdges can be changed to reuse an IntVector instead of allocating each one.
-    private final HashMap<Integer, IntVector> map = new HashMap<>();
-
-    /** Clears the contents of this EdgeSites. */
+
+    /** Clears the contents of this EdgeSites, and releases the memory used to store them. */
     public void clear() {
-      map.clear();
+      siteIds.clear();
+      siteIds.shrink();
+      begins.clear();
+      begins.shrink();
+      ends.clear();
+      ends.shrink();
     }
 
     /**
      * Stores the provided list of site ids 'sitesNearEdge' for the provided 'inputEdgeId'. The
-     * 'sitesNearEdge' must already be sorted. Currently, takes ownership of the provided IntVector
-     * which may not be further modified.
+     * 'sitesNearEdge' must already be sorted. They are copied, so the caller may reuse the given
+     * IntVector.
      */
     public void add(int inputEdgeId, IntVector sitesNearEdge) {
-      map.put(inputEdgeId, sitesNearEdge);
+      reserveEdge(inputEdgeId);
+      begins.set(inputEdgeId, siteIds.size());
+      siteIds.addAll(sitesNearEdge);
+      ends.set(inputEdgeId, siteIds.size());
     }
 
     /**
@@ -1992,22 +2205,46 @@ public class S2Builder {
      * sorted by distance from point 'x' and the sorted order is maintained.
      */
     public void insertSiteIdByDistance(int edgeId, int newSiteId, S2Point x) {
-      IntVector sitesNearEdge = map.get(edgeId);
+      reserveEdge(edgeId);
+      int begin = begins.get(edgeId);
+      int end = ends.get(edgeId);
       // Returns the lowest index containing a site id greater than or equal to newSiteId, or
-      // sitesNearEdge.size() if all existing site ids are lower (the normal case when adding new
-      // sites.)
-      int pos = sitesNearEdge.lowerBound(newSiteId, new SiteIdDistanceComparator(x));
+      // 'end' if all existing site ids are lower (the normal case when adding new sites.)
+      int pos = siteIds.lowerBound(newSiteId, begin, end, new SiteIdDistanceComparator(x));
       // The newSiteId must not have already been added.
-      Preconditions.checkState(pos == sitesNearEdge.size() || sitesNearEdge.get(pos) != newSiteId);
-      sitesNearEdge.insert(pos, newSiteId);
+      Preconditions.checkState(pos == end || siteIds.get(pos) != newSiteId);
+      if (end != siteIds.size()) {
+        // Move the range of this edge to the end of siteIds, where it can grow.
+        int newBegin = siteIds.size();
+        for (int i = begin; i < end; ++i) {
+          siteIds.add(siteIds.get(i));
+        }
+        pos += newBegin - begin;
+        begin = newBegin;
+        end = siteIds.size();
+        begins.set(edgeId, begin);
+      }
+      siteIds.insert(pos, newSiteId);
+      ends.set(edgeId, end + 1);
     }
 
-    /** Returns the sorted list of site ids for the given 'edgeId'. */
+    /**
+     * Returns the sorted list of site ids for the given 'edgeId'. The list is a view of fixed
+     * bounds, so it must be fetched again after {@link #insertSiteIdByDistance} for the same edge.
+     */
     public IntList get(int edgeId) {
-      if (!map.containsKey(edgeId)) {
-        map.put(edgeId, new IntVector());
+      if (edgeId >= begins.size() || begins.get(edgeId) == ends.get(edgeId)) {
+        return noSites;
+      }
+      return siteIds.subList(begins.get(edgeId), ends.get(edgeId));
+    }
+
+    /** Ensures that there are ranges for edge ids up to and including 'edgeId'. */
+    private void reserveEdge(int edgeId) {
+      if (edgeId >= begins.size()) {
+        begins.resize(edgeId + 1);
+        ends.resize(edgeId + 1);
       }
-      return map.get(edgeId);
     }
   }
 
@@ -2170,8 +2407,19 @@ public class S2Builder {
         }
       }
 
-      // TODO(torrey): The graph is not needed past here, so we could save some memory by clearing
-      // the underlying Edge and InputEdgeIdSetId vectors.
+      // The graph is not needed past here, so release the memory used by its edges and input edge
+      // id set ids, and by the per-edge and per-vertex state, before copying the new edges into
+      // the layers.
+      graph.edges().clear();
+      graph.edges().shrink();
+      graph.inputEdgeIdSetIds().clear();
+      graph.inputEdgeIdSetIds().shrink();
+      edgeLayers.clear();
+      edgeLayers.shrink();
+      isInterior.clear();
+      isInterior.shrink();
+      used.clear();
+      used.shrink();
 
       // Finally, copy the output edges into the appropriate layers. They don't need to be sorted
       // because the input edges were also unsorted.
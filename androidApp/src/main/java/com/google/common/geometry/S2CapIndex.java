@@ -0,0 +1,217 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * S2CapIndex maintains an index of S2Caps, each with some associated client data, and answers
+ * point-stabbing queries: which caps contain a given point. This is the reverse of a radius query
+ * on an {@link S2PointIndex}: each entry has its own radius, such as a service area around a
+ * location, and the query asks which of those areas contain the query point.
+ *
+ * <p>Each cap is stored as a covering from an {@link S2RegionCoverer}. A covering is a set of
+ * disjoint cells, so a point lies in at most one cell of each cap's covering. A query looks up the
+ * ancestors of the query point's leaf cell at each level that is used by some covering, which costs
+ * a small constant number of hash lookups regardless of the number of caps, and then confirms each
+ * candidate exactly with {@link S2Cap#contains(S2Point)}.
+ *
+ * <p>Caps can be added or removed at any time. The coverer must produce the same covering for the
+ * same cap each time, which is true of any S2RegionCoverer.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class S2CapIndex<D> {
+  /** The default maximum number of cells in the covering of each cap. */
+  public static final int DEFAULT_MAX_CELLS = 8;
+
+  private final S2RegionCoverer coverer;
+
+  /** The entries whose covering includes each cell, keyed by cell id. */
+  private final Long2ObjectOpenHashMap<List<Entry<D>>> cells = new Long2ObjectOpenHashMap<>();
+
+  /** The number of covering cells at each level, so that queries may skip unused levels. */
+  private final int[] levelCounts = new int[S2CellId.MAX_LEVEL + 1];
+
+  private int numCaps;
+
+  /** Temporary covering used while adding and removing caps. */
+  private final ArrayList<S2CellId> covering = new ArrayList<>();
+
+  /** Creates a new S2CapIndex that covers each cap with at most {@link #DEFAULT_MAX_CELLS}. */
+  public S2CapIndex() {
+    this(S2RegionCoverer.builder().setMaxCells(DEFAULT_MAX_CELLS).build());
+  }
+
+  /**
+   * Creates a new S2CapIndex that covers caps with the given coverer. More cells per covering give
+   * fewer candidates that fail the exact test, at the cost of more memory and slower updates.
+   */
+  public S2CapIndex(S2RegionCoverer coverer) {
+    this.coverer = coverer;
+  }
+
+  /** Returns the number of caps in the index. */
+  public int numCaps() {
+    return numCaps;
+  }
+
+  /** Returns true if the index is empty. */
+  public boolean isEmpty() {
+    return numCaps == 0;
+  }
+
+  /** Returns the number of covering cells stored for all the caps in the index. */
+  public int numCells() {
+    int total = 0;
+    for (int count : levelCounts) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * Adds a cap with the given data, which may be null. The same cap and data may be added
+   * repeatedly. Empty caps contain no points and are ignored.
+   */
+  public void add(S2Cap cap, D data) {
+    Preconditions.checkNotNull(cap);
+    coverer.getCovering(cap, covering);
+    if (covering.isEmpty()) {
+      return;
+    }
+    Entry<D> entry = new Entry<>(cap, data);
+    for (S2CellId id : covering) {
+      List<Entry<D>> entries = cells.get(id.id());
+      if (entries == null) {
+        entries = new ArrayList<>(2);
+        cells.put(id.id(), entries);
+      }
+      entries.add(entry);
+      levelCounts[id.level()]++;
+    }
+    numCaps++;
+  }
+
+  /**
+   * Removes one entry with the given cap and data from the index, and returns whether such an entry
+   * was present and removed. Both the cap and the data must equal those that were added.
+   */
+  @CanIgnoreReturnValue
+  public boolean remove(S2Cap cap, D data) {
+    coverer.getCovering(cap, covering);
+    if (covering.isEmpty()) {
+      return false;
+    }
+    // The entry is in the list of every cell of the covering, so look for it in the first.
+    List<Entry<D>> first = cells.get(covering.get(0).id());
+    Entry<D> entry = null;
+    if (first != null) {
+      for (Entry<D> e : first) {
+        if (e.cap.equals(cap) && Objects.equals(e.data, data)) {
+          entry = e;
+          break;
+        }
+      }
+    }
+    if (entry == null) {
+      return false;
+    }
+    for (S2CellId id : covering) {
+      List<Entry<D>> entries = cells.get(id.id());
+      // Remove by identity, since equal entries may have been added more than once.
+      for (int i = 0; i < entries.size(); i++) {
+        if (entries.get(i) == entry) {
+          entries.remove(i);
+          break;
+        }
+      }
+      if (entries.isEmpty()) {
+        cells.remove(id.id());
+      }
+      levelCounts[id.level()]--;
+    }
+    numCaps--;
+    return true;
+  }
+
+  /** Removes all caps from the index. */
+  public void reset() {
+    cells.clear();
+    Arrays.fill(levelCounts, 0);
+    numCaps = 0;
+  }
+
+  /** A visitor that receives each cap that contains a query point, and its data. */
+  public interface CapVisitor<D> {
+    /** Returns true to continue visiting caps, or false to stop. */
+    boolean visit(S2Cap cap, D data);
+  }
+
+  /**
+   * Visits each cap in the index that contains the given point, exactly once for each time it was
+   * added. Returns false if the visitor ever did, and true otherwise.
+   */
+  @CanIgnoreReturnValue
+  public boolean visitContainingCaps(S2Point p, CapVisitor<D> visitor) {
+    S2CellId leaf = S2CellId.fromPoint(p);
+    for (int level = 0; level <= S2CellId.MAX_LEVEL; level++) {
+      if (levelCounts[level] == 0) {
+        continue;
+      }
+      List<Entry<D>> entries = cells.get(leaf.parent(level).id());
+      if (entries == null) {
+        continue;
+      }
+      for (int i = 0; i < entries.size(); i++) {
+        Entry<D> entry = entries.get(i);
+        if (entry.cap.contains(p) && !visitor.visit(entry.cap, entry.data)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Returns the data of each cap in the index that contains the given point. */
+  public List<D> getContainingData(S2Point p) {
+    List<D> result = new ArrayList<>();
+    visitContainingCaps(
+        p,
+        (cap, data) -> {
+          result.add(data);
+          return true;
+        });
+    return result;
+  }
+
+  /** A cap and its client data. */
+  private static final class Entry<D> {
+    final S2Cap cap;
+    final D data;
+
+    Entry(S2Cap cap, D data) {
+      this.cap = cap;
+      this.data = data;
+    }
+  }
+}
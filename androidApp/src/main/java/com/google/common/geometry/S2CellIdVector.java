@@ -20,10 +20,21 @@ import jsinterop.annotations.JsType;
 
 /**
  * A list of {@link S2CellId}s, and specialized methods for directly operating on the encoded form.
+ *
+ * <p>The primitive {@code long} methods below operate on cell ids without allocating {@link
+ * S2CellId} objects, and are preferred for lookups against large encoded vectors.
  */
 @JsType
 abstract class S2CellIdVector extends AbstractList<S2CellId> {
 
+  /** Returns the id of the element at {@code index}, without allocating an {@link S2CellId}. */
+  abstract long getId(int index);
+
+  @Override
+  public S2CellId get(int index) {
+    return new S2CellId(getId(index));
+  }
+
   /**
    * Returns the index of the first element {@code x} such that {@code (x >= target)}, or {@link
    * #size()} if no such element exists.
@@ -31,5 +42,71 @@ abstract class S2CellIdVector extends AbstractList<S2CellId> {
    * <p>The list must be sorted into ascending order prior to making this call. If it is not sorted,
    * the results are undefined.
    */
-  abstract int lowerBound(S2CellId target);
+  int lowerBound(S2CellId target) {
+    return lowerBound(target.id());
+  }
+
+  /**
+   * As {@link #lowerBound(S2CellId)}, but for a cell id given as an unsigned {@code long}.
+   * Implementations search the encoded representation directly.
+   */
+  abstract int lowerBound(long target);
+
+  /**
+   * Returns the index of the first element {@code x} such that {@code (x > target)}, or {@link
+   * #size()} if no such element exists. The list must be sorted.
+   */
+  int upperBound(long target) {
+    if (target == S2CellId.MAX_UNSIGNED) {
+      return size();
+    }
+    return lowerBound(target + 1);
+  }
+
+  /**
+   * Returns true if {@code id} is an element of this list. The list must be sorted. Unlike {@link
+   * #contains(Object)}, this is a binary search and does not allocate.
+   */
+  boolean containsId(long id) {
+    int pos = lowerBound(id);
+    return pos < size() && getId(pos) == id;
+  }
+
+  /**
+   * Returns true if some element of this list contains the cell {@code id}, as in {@link
+   * S2CellUnion#contains(S2CellId)}. The list must be sorted and its cells must not overlap, which
+   * is true of any valid {@link S2CellUnion} and of the cell ids of an {@link S2ShapeIndex}.
+   */
+  boolean containsCell(long id) {
+    // There is containment if and only if one of the two elements that surround 'id' contains it.
+    int pos = lowerBound(id);
+    if (pos < size()
+        && S2CellId.unsignedLongLessOrEquals(S2CellId.rangeMinAsLong(getId(pos)), id)) {
+      return true;
+    }
+    return pos != 0
+        && S2CellId.unsignedLongGreaterOrEquals(S2CellId.rangeMaxAsLong(getId(pos - 1)), id);
+  }
+
+  /**
+   * Returns true if some element of this list intersects the cell {@code id}, as in {@link
+   * S2CellUnion#intersects(S2CellId)}. The list must be sorted and its cells must not overlap.
+   */
+  boolean intersectsCell(long id) {
+    return intersectsRange(S2CellId.rangeMinAsLong(id), S2CellId.rangeMaxAsLong(id));
+  }
+
+  /**
+   * Returns true if some element of this list intersects the range of leaf cells {@code
+   * [rangeMin, rangeMax]}. The list must be sorted and its cells must not overlap.
+   */
+  boolean intersectsRange(long rangeMin, long rangeMax) {
+    int pos = lowerBound(rangeMin);
+    if (pos < size()
+        && S2CellId.unsignedLongLessOrEquals(S2CellId.rangeMinAsLong(getId(pos)), rangeMax)) {
+      return true;
+    }
+    return pos != 0
+        && S2CellId.unsignedLongGreaterOrEquals(S2CellId.rangeMaxAsLong(getId(pos - 1)), rangeMin);
+  }
 }
@@ -32,6 +32,9 @@ class S2CellIdVectorCoder implements S2Coder<List<S2CellId>> {
   /** An instance of an {@code S2CellIdVectorCoder}. */
   static final S2CellIdVectorCoder INSTANCE = new S2CellIdVectorCoder();
 
+  /** The id of {@code S2CellId.end(S2CellId.MAX_LEVEL)}, which is greater than all valid ids. */
+  private static final long END_ID = S2CellId.end(S2CellId.MAX_LEVEL).id();
+
   /**
    * Encodes the given list of S2CellId values into the provided OutputStream.
    *
@@ -207,21 +210,21 @@ class S2CellIdVectorCoder implements S2Coder<List<S2CellId>> {
       }
 
       @Override
-      public S2CellId get(int index) {
-        return new S2CellId((deltas.get(index) << shift) + tmpBase);
+      long getId(int index) {
+        return (deltas.get(index) << shift) + tmpBase;
       }
 
       @Override
-      int lowerBound(S2CellId target) {
-        if (UnsignedLongs.compare(target.id(), tmpBase) <= 0) {
+      int lowerBound(long target) {
+        if (S2CellId.unsignedLongLessOrEquals(target, tmpBase)) {
           return 0;
         }
-        if (target.greaterOrEquals(S2CellId.end(S2CellId.MAX_LEVEL))) {
+        if (S2CellId.unsignedLongGreaterOrEquals(target, END_ID)) {
           return size();
         }
         int low = 0;
         int high = deltas.length();
-        long needle = (target.id() - tmpBase + (1L << shift) - 1) >>> shift;
+        long needle = (target - tmpBase + (1L << shift) - 1) >>> shift;
 
         // Binary search for the index of the first element in deltas that is >= needle.
         while (low < high) {
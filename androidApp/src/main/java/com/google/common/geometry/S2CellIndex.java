@@ -86,6 +86,36 @@ public class S2CellIndex {
     return cellNodes.size();
   }
 
+  /** Returns an estimate of the memory used by this index in bytes. */
+  public long estimateMemoryUsage() {
+    S2MemoryUsage usage = new S2MemoryUsage();
+    addMemoryUsage(usage);
+    return usage.bytes();
+  }
+
+  /**
+   * Adds the memory used by this index to 'usage', unless it has already been counted. See {@link
+   * S2MemoryUsage}.
+   */
+  public void addMemoryUsage(S2MemoryUsage usage) {
+    if (!usage.countFirst(this)) {
+      return;
+    }
+    usage.add(S2MemoryUsage.objectBytes(2 * S2MemoryUsage.REFERENCE_BYTES));
+    // Each cell node has a cell id, label and parent.
+    usage.add(
+        S2MemoryUsage.listBytes(cellNodes.size())
+            + cellNodes.size()
+                * (S2MemoryUsage.objectBytes(S2MemoryUsage.REFERENCE_BYTES + 2 * Integer.BYTES)
+                    + S2MemoryUsage.CELL_ID_BYTES));
+    // Each range node has a start id and contents.
+    usage.add(
+        S2MemoryUsage.listBytes(rangeNodes.size())
+            + rangeNodes.size()
+                * (S2MemoryUsage.objectBytes(S2MemoryUsage.REFERENCE_BYTES + Integer.BYTES)
+                    + S2MemoryUsage.CELL_ID_BYTES));
+  }
+
   /**
    * Adds the given (cellId, label) pair to the index. Note that the index is not valid until
    * {@link #build} is called.
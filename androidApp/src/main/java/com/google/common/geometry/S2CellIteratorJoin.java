@@ -89,8 +89,13 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
   /** Reused in processCellPairs. */
   int idx;
 
-  /** Reusable array. New array entries are created each time the array is used. */
-  S2Cell[] reusableChildCells = new S2Cell[4];
+  /** Reusable storage for each depth of the tolerant join recursion, grown as needed. */
+  private final List<Scratch> scratch = new ArrayList<>();
+
+  /** The first and last leaf cells, which bound the range of a complete join. */
+  private static final S2CellId FIRST_LEAF = S2CellId.begin(S2CellId.MAX_LEVEL);
+
+  private static final S2CellId LAST_LEAF = S2CellId.end(S2CellId.MAX_LEVEL).prev();
 
   /** Constructor that takes two S2Iterators and uses a tolerance of zero. */
   public S2CellIteratorJoin(S2Iterator<E1> iteratorA, S2Iterator<E2> iteratorB) {
@@ -114,12 +119,31 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
   public <V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>> boolean join(
       V visitor) {
     if (tolerance.isZero()) {
-      return exactJoin(visitor);
+      return exactJoin(FIRST_LEAF, LAST_LEAF, visitor);
     } else {
       return tolerantJoin(visitor);
     }
   }
 
+  /**
+   * As {@link #join}, but only visits the pairs that belong to the range of leaf cells from 'lo'
+   * to 'hi' inclusive. For an exact join a pair belongs to the range that contains the start of
+   * its smaller cell, and for a tolerant join it belongs to the range that contains the start of
+   * its A cell, so joins over disjoint ranges that together cover the sphere visit the same pairs
+   * as a single complete join. Used by {@link S2ParallelCellIteratorJoin}.
+   */
+  @CanIgnoreReturnValue
+  <V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>> boolean join(
+      S2CellId lo, S2CellId hi, V visitor) {
+    if (tolerance.isZero()) {
+      return exactJoin(lo, hi, visitor);
+    } else {
+      S2CellUnion coveringA = new S2CellUnion();
+      coveringA.initFromMinMax(lo, hi);
+      return tolerantJoin(coveringA, visitor);
+    }
+  }
+
   /** Conducts a simple join, sending left results to the given consumer while it returns true. */
   @CanIgnoreReturnValue
   public boolean simpleJoin(Predicate<S2CellRangeIterator<E1>> leftResults) {
@@ -138,14 +162,22 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
         });
   }
 
-  /** Performs an exact inner join (when the tolerance is zero). */
+  /**
+   * Performs an exact inner join (when the tolerance is zero), visiting the pairs whose smaller
+   * cell starts in the range of leaf cells from 'lo' to 'hi' inclusive.
+   */
   private <V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>>
-      boolean exactJoin(V visitor) {
-    iterA.begin();
-    iterB.begin();
-
-    // Iterate until we hit the end of an iterator or visitor tells us to stop.
-    while (!iterA.done() && !iterB.done()) {
+      boolean exactJoin(S2CellId lo, S2CellId hi, V visitor) {
+    seekToLeaf(iterA, lo);
+    seekToLeaf(iterB, lo);
+
+    // Iterate until we hit the end of an iterator or the range, or visitor tells us to stop. Since
+    // a pair's smaller cell starts at or after both cells, no later pair can start before 'hi'
+    // once either iterator has passed it.
+    while (!iterA.done()
+        && !iterB.done()
+        && iterA.rangeMin().lessOrEquals(hi)
+        && iterB.rangeMin().lessOrEquals(hi)) {
       int order = iterA.relation(iterB);
       switch (order) {
         case -1:
@@ -160,15 +192,18 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
 
         case 0:
           // Iterators overlap.
-          // If visitor rejects pair, then we're done.
-          if (!visitor.test(iterA, iterB)) {
+          long lsbA = iterA.id().lowestOnBit();
+          long lsbB = iterB.id().lowestOnBit();
+          int cmp = UnsignedLongs.compare(lsbA, lsbB);
+
+          // If the smaller cell starts before the range, the pair belongs to an earlier range.
+          // Otherwise, if visitor rejects pair, then we're done.
+          S2CellId start = (cmp <= 0) ? iterA.rangeMin() : iterB.rangeMin();
+          if (start.greaterOrEquals(lo) && !visitor.test(iterA, iterB)) {
             return false;
           }
 
           // Move the smaller of the cells forward.
-          long lsbA = iterA.id().lowestOnBit();
-          long lsbB = iterB.id().lowestOnBit();
-          int cmp = UnsignedLongs.compare(lsbA, lsbB);
           switch (cmp) {
             case -1: // lsbA < lsbB
               iterA.next();
@@ -192,6 +227,18 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
     return true;
   }
 
+  /**
+   * Positions the iterator at the first cell that contains or follows the given leaf cell, or at
+   * the end if there is none.
+   */
+  private static void seekToLeaf(S2CellRangeIterator<?> iter, S2CellId leaf) {
+    iter.seek(leaf);
+    // The previous cell may contain 'leaf' while having a smaller S2CellId.
+    if (iter.prev() && iter.rangeMax().lessThan(leaf)) {
+      iter.next();
+    }
+  }
+
   // ---- Tolerant join related code.
 
   // Maximum number of cross-terms before we recurse.
@@ -223,8 +270,14 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
       boolean tolerantJoin(V visitor) {
     // Seed the recursion with a coarse covering of each input iterator.
     S2CellUnion coveringA = new S2CellUnion();
-    S2CellUnion coveringB = new S2CellUnion();
     coverCurrentPosition(iterA, coveringA);
+    return tolerantJoin(coveringA, visitor);
+  }
+
+  /** As above, but only visits the A index cells that start within the given covering. */
+  private <V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>>
+      boolean tolerantJoin(S2CellUnion coveringA, V visitor) {
+    S2CellUnion coveringB = new S2CellUnion();
     coverCurrentPosition(iterB, coveringB);
 
     List<S2Cell> nearbyCells = new ArrayList<>();
@@ -240,7 +293,7 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
       }
 
       if (!nearbyCells.isEmpty()) {
-        if (!processCellPairs(cellA, nearbyCells, visitor)) {
+        if (!processCellPairs(cellA, nearbyCells, visitor, 0)) {
           return false;
         }
       }
@@ -248,15 +301,55 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
     return true;
   }
 
+  /**
+   * Reusable storage for one depth of the tolerant join recursion. Each depth only uses its own
+   * storage while deeper recursion is in progress, so nothing is allocated once every depth has
+   * been reached and the pools have grown to their largest size.
+   */
+  private static final class Scratch {
+    /** The B cells near the current A cell, passed to the next depth. */
+    final List<S2Cell> nearby = new ArrayList<>();
+
+    /** The B cells remaining after pruning and subdividing the B cells at this depth. */
+    final List<S2Cell> subdividedB = new ArrayList<>();
+
+    /** The children of the A cell at this depth. */
+    final S2Cell[] childrenA = {new S2Cell(), new S2Cell(), new S2Cell(), new S2Cell()};
+
+    /** Receives the children of each subdivided B cell, which are taken from 'pool'. */
+    final S2Cell[] childrenB = new S2Cell[4];
+
+    /** Cells for the children of B cells, of which the first 'numPooled' are in use. */
+    final List<S2Cell> pool = new ArrayList<>();
+
+    int numPooled;
+
+    /** Returns the next unused pooled cell, growing the pool if needed. */
+    S2Cell nextPooledCell() {
+      if (numPooled == pool.size()) {
+        pool.add(new S2Cell());
+      }
+      return pool.get(numPooled++);
+    }
+  }
+
+  /** Returns the scratch storage for the given recursion depth. */
+  private Scratch scratch(int depth) {
+    while (scratch.size() <= depth) {
+      scratch.add(new Scratch());
+    }
+    return scratch.get(depth);
+  }
+
   /**
    * Given an S2Cell 'cellA' and a list of S2Cells 'cellsB', filters the cells from B that are
    * within the tolerance distance distance of cellA A and passes them to processCellPairs().
    * Returns false if the visitor ever does, true otherwise.
    */
   private <V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>>
-      boolean processNearby(S2Cell cellA, List<S2Cell> cellsB, V visitor) {
-    // TODO(torrey): Avoid allocating a new list here every time this is recursively called.
-    List<S2Cell> nearbyCells = new ArrayList<>();
+      boolean processNearby(S2Cell cellA, List<S2Cell> cellsB, V visitor, int depth) {
+    List<S2Cell> nearbyCells = scratch(depth).nearby;
+    nearbyCells.clear();
 
     for (S2Cell cellB : cellsB) {
       if (cellA.isDistanceLessOrEqual(cellB, tolerance)) {
@@ -265,7 +358,7 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
     }
 
     if (!nearbyCells.isEmpty()) {
-      if (!processCellPairs(cellA, nearbyCells, visitor)) {
+      if (!processCellPairs(cellA, nearbyCells, visitor, depth + 1)) {
         return false;
       }
     }
@@ -274,15 +367,11 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
 
   /** As above but subdivides the given 'cellA' before processing it. */
   private <V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>>
-      boolean processNearbySubdivided(S2Cell cellA, List<S2Cell> cellsB, V visitor) {
-    // TODO(torrey): Avoid allocating a new array here every time this is recursively called.
-    S2Cell[] childCells = new S2Cell[4];
-    for (int i = 0; i < 4; ++i) {
-      childCells[i] = new S2Cell();
-    }
+      boolean processNearbySubdivided(S2Cell cellA, List<S2Cell> cellsB, V visitor, int depth) {
+    S2Cell[] childCells = scratch(depth).childrenA;
     cellA.subdivide(childCells);
     for (S2Cell childA : childCells) {
-      if (!processNearby(childA, cellsB, visitor)) {
+      if (!processNearby(childA, cellsB, visitor, depth)) {
         return false;
       }
     }
@@ -294,11 +383,12 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
    * index that's covered by the cells is small enough, then we report pairs to the visitor,
    * otherwise the cells are subdivided and we recurse.
    *
-   * <p>Since there are only thirty levels to the cell hierarchy, this recursion is safe as we'll
-   * never go more than 30 stack frames deep.
+   * <p>Since there are only thirty levels to the cell hierarchy, and each level of recursion
+   * subdivides the A cell or some of the B cells, this recursion is safe as we'll never go more
+   * than about 60 stack frames deep. The 'depth' of the recursion selects the scratch storage.
    */
   private <V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>>
-      boolean processCellPairs(S2Cell cellA, List<S2Cell> cellsB, V visitor) {
+      boolean processCellPairs(S2Cell cellA, List<S2Cell> cellsB, V visitor, int depth) {
     // Estimate how many index cells the A cell covers.
     int numCoveredA = estimateCoveredCells(iterA, cellA.id());
     if (numCoveredA == 0) {
@@ -308,7 +398,10 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
     // Scan the cells of the B union. Prune any cells that don't cover any of the index, and
     // subdivide any that cover too much.
     boolean subdivided = false;
-    List<S2Cell> subdividedB = new ArrayList<>();
+    Scratch scratch = scratch(depth);
+    List<S2Cell> subdividedB = scratch.subdividedB;
+    subdividedB.clear();
+    scratch.numPooled = 0;
     for (S2Cell cellB : cellsB) {
       int numCoveredB = estimateCoveredCells(iterB, cellB.id());
       if (numCoveredB == 0) {
@@ -317,7 +410,7 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
         subdividedB.add(cellB);
       } else {
         // Subdivide cellB and add its children to the list of cells to process.
-        appendChildren(cellB, subdividedB);
+        appendChildren(cellB, scratch);
         subdivided = true;
       }
     }
@@ -327,8 +420,8 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
     if (numCoveredA >= COVER_LIMIT || subdivided) {
       // If the A cell covers too many index cells, subdivide it.
       return (numCoveredA >= COVER_LIMIT)
-          ? processNearbySubdivided(cellA, subdividedB, visitor)
-          : processNearby(cellA, subdividedB, visitor);
+          ? processNearbySubdivided(cellA, subdividedB, visitor, depth)
+          : processNearby(cellA, subdividedB, visitor, depth);
     }
 
     // Otherwise A and the B union are small enough we can pair them up and report nearby pairs to
@@ -386,14 +479,15 @@ public class S2CellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterat
         });
   }
 
-  /** Subdivides the given cell and appends the children to the given list of cells. */
-  private void appendChildren(S2Cell cell, List<S2Cell> cells) {
+  /** Subdivides the given cell into pooled cells, and appends them to 'scratch.subdividedB'. */
+  private static void appendChildren(S2Cell cell, Scratch scratch) {
+    S2Cell[] children = scratch.childrenB;
     for (int i = 0; i < 4; ++i) {
-      reusableChildCells[i] = new S2Cell();
+      children[i] = scratch.nextPooledCell();
     }
-    cell.subdivide(reusableChildCells);
+    cell.subdivide(children);
     for (int i = 0; i < 4; ++i) {
-      cells.add(reusableChildCells[i]);
+      scratch.subdividedB.add(children[i]);
     }
   }
 
@@ -260,6 +260,26 @@ public class S2CellUnion implements S2Region, Iterable<S2CellId>, Serializable {
     return cellIds.size();
   }
 
+  /** Returns an estimate of the memory used by this cell union in bytes. */
+  public long estimateMemoryUsage() {
+    S2MemoryUsage usage = new S2MemoryUsage();
+    addMemoryUsage(usage);
+    return usage.bytes();
+  }
+
+  /**
+   * Adds the memory used by this cell union to 'usage', unless it has already been counted. See
+   * {@link S2MemoryUsage}.
+   */
+  public void addMemoryUsage(S2MemoryUsage usage) {
+    if (usage.countFirst(this)) {
+      usage.add(
+          S2MemoryUsage.objectBytes(S2MemoryUsage.REFERENCE_BYTES)
+              + S2MemoryUsage.listBytes(cellIds.size())
+              + cellIds.size() * S2MemoryUsage.CELL_ID_BYTES);
+    }
+  }
+
   /** Convenience methods for accessing the individual cell ids. */
   public S2CellId cellId(int i) {
     return cellIds.get(i);
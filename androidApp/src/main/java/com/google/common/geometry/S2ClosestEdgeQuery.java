@@ -665,6 +665,28 @@ public abstract class S2ClosestEdgeQuery<D extends S1Distance<D>> extends S2Best
       this.useBruteForce = useBruteForce;
       return this;
     }
+
+    /**
+     * Index cells with fewer than this many edges have their edges checked directly, rather than
+     * being added to the queue of cells to process.
+     */
+    @CanIgnoreReturnValue
+    @Override
+    public Builder setMinEdgesToEnqueue(int minEdgesToEnqueue) {
+      this.minEdgesToEnqueue = minEdgesToEnqueue;
+      return this;
+    }
+
+    /**
+     * Indexes with up to this many edges are searched by brute force, for all targets. A negative
+     * value, the default, uses the value of each target.
+     */
+    @CanIgnoreReturnValue
+    @Override
+    public Builder setMaxBruteForceIndexSize(int maxBruteForceIndexSize) {
+      this.maxBruteForceIndexSize = maxBruteForceIndexSize;
+      return this;
+    }
   }
 
   /**
@@ -0,0 +1,605 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.geometry.S2PointIndex.Entry;
+import com.google.common.geometry.primitives.IntVector;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * S2ClosestPointJoin finds, for every point of one S2PointIndex (the queries), the k closest points
+ * of another S2PointIndex (the targets). The two indexes may be the same, in which case each point
+ * is never reported as its own neighbor.
+ *
+ * <p>This gives the same neighbors as running an {@link S2ClosestPointQuery} for every query point,
+ * but is much faster for large inputs. Query points are grouped into small cells of nearby points
+ * by subdividing the query index in S2CellId order, and each group shares one best-first traversal
+ * of the target cells. Target cells are visited in order of their distance from the group's cell,
+ * as given by {@link S2Cell#getDistance(S2Cell)}, and the traversal stops once the nearest
+ * remaining target cell is no closer than the k-th closest target found so far for every point of
+ * the group. The targets are copied into primitive arrays once per join, so the traversals do not
+ * touch the index itself.
+ *
+ * <p>Groups are independent, so {@link #join(ForkJoinPool)} processes them concurrently. The
+ * results are the same either way. Neighbors are reported in order of increasing distance, as
+ * positions in the iteration order of the target index, and stored in primitive arrays in the
+ * {@link Result}, which hold only the neighbors actually found, so a large max points costs nothing
+ * unless that many targets are within the max distance. Ties between equidistant targets are
+ * broken in favor of the target found first.
+ *
+ * <p>Example usage:
+ *
+ * {@snippet :
+ * S2ClosestPointJoin<Listing, Helper> join = new S2ClosestPointJoin<>(listings, helpers);
+ * join.setMaxPoints(5);
+ * join.setMaxDistance(S2Earth.metersToAngle(10000));
+ * S2ClosestPointJoin.Result<Listing, Helper> result = join.join(ForkJoinPool.commonPool());
+ * for (int i = 0; i < result.numQueries(); i++) {
+ *   for (int j = 0; j < result.numNeighbors(i); j++) {
+ *     offer(result.query(i).data(), result.neighbor(i, j).data(), result.distance(i, j));
+ *   }
+ * }
+ * }
+ *
+ * <p>The indexes must not be modified during a join. This class is not thread-safe, but each join
+ * may use many threads.
+ */
+public final class S2ClosestPointJoin<A, B> {
+  /** The maximum number of query points in a group that shares a traversal of the targets. */
+  private static final int MAX_GROUP_POINTS = 32;
+
+  /** The maximum number of target points to process without subdividing their cell further. */
+  private static final int MAX_LEAF_POINTS = 12;
+
+  /** The initial number of neighbors each point of a group has room for. */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** The number of tasks to create for each thread of the pool, to balance the load. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final S2PointIndex<A> queries;
+  private final S2PointIndex<B> targets;
+  private int maxPoints = 1;
+  private S1ChordAngle maxDistance = S1ChordAngle.INFINITY;
+
+  /**
+   * Constructs a join that finds the closest 'targets' points to each point of 'queries'. The two
+   * indexes may be the same object.
+   */
+  public S2ClosestPointJoin(S2PointIndex<A> queries, S2PointIndex<B> targets) {
+    this.queries = queries;
+    this.targets = targets;
+  }
+
+  /** Returns the maximum number of neighbors to find for each query point. The default is 1. */
+  public int getMaxPoints() {
+    return maxPoints;
+  }
+
+  /**
+   * Sets the maximum number of neighbors to find for each query point. This may exceed the number
+   * of targets, e.g. {@code Integer.MAX_VALUE} to find every target within the max distance. Memory
+   * is only used for the neighbors actually found, so that is practical when the max distance is
+   * small enough that each query point has few neighbors.
+   */
+  public void setMaxPoints(int maxPoints) {
+    Preconditions.checkArgument(maxPoints > 0, "maxPoints must be positive");
+    this.maxPoints = maxPoints;
+  }
+
+  /** Returns the exclusive maximum distance of neighbors. The default is unlimited. */
+  public S1ChordAngle getMaxDistance() {
+    return maxDistance;
+  }
+
+  /** Sets the exclusive maximum distance of neighbors, as for S2ClosestPointQuery. */
+  public void setMaxDistance(S1ChordAngle maxDistance) {
+    this.maxDistance = maxDistance;
+  }
+
+  /** As {@link #setMaxDistance(S1ChordAngle)}, but with the distance given as an S1Angle. */
+  public void setMaxDistance(S1Angle maxDistance) {
+    setMaxDistance(S1ChordAngle.fromS1Angle(maxDistance));
+  }
+
+  /** Finds the closest targets of every query point on the calling thread. */
+  public Result<A, B> join() {
+    Setup<A, B> setup = new Setup<>(this);
+    Worker worker = new Worker(setup.targets, setup.maxPoints, setup.maxLength2);
+    for (int g = 0; g < setup.numGroups(); g++) {
+      worker.processGroup(setup, g);
+    }
+    return setup.result();
+  }
+
+  /** Finds the closest targets of every query point, processing groups on the given pool. */
+  public Result<A, B> join(ForkJoinPool pool) {
+    Setup<A, B> setup = new Setup<>(this);
+    int numChunks = Math.min(setup.numGroups(), CHUNKS_PER_THREAD * pool.getParallelism());
+    if (numChunks > 0) {
+      // Each thread lazily creates its own scratch storage, and reuses it for every chunk it runs.
+      Map<Thread, Worker> workers = new ConcurrentHashMap<>();
+      pool.invoke(new JoinTask(setup, workers, numChunks, 0, numChunks));
+    }
+    return setup.result();
+  }
+
+  /** The outcome of a join. */
+  public static final class Result<A, B> {
+    private final ImmutableList<Entry<A>> queries;
+    private final ImmutableList<Entry<B>> targets;
+
+    /** The position in 'neighbors' of the first neighbor of each query point, and the total. */
+    private final int[] offsets;
+
+    private final int[] neighbors;
+    private final double[] length2s;
+
+    private Result(
+        ImmutableList<Entry<A>> queries,
+        ImmutableList<Entry<B>> targets,
+        int[] offsets,
+        int[] neighbors,
+        double[] length2s) {
+      this.queries = queries;
+      this.targets = targets;
+      this.offsets = offsets;
+      this.neighbors = neighbors;
+      this.length2s = length2s;
+    }
+
+    /** Returns the number of query points, which is the number of points in the query index. */
+    public int numQueries() {
+      return queries.size();
+    }
+
+    /** Returns query point 'i', in the iteration order of the query index. */
+    public Entry<A> query(int i) {
+      return queries.get(i);
+    }
+
+    /** Returns the number of target points, which is the number of points in the target index. */
+    public int numTargets() {
+      return targets.size();
+    }
+
+    /** Returns target point 'i', in the iteration order of the target index. */
+    public Entry<B> target(int i) {
+      return targets.get(i);
+    }
+
+    /** Returns the number of neighbors found for query point 'i', at most the max points. */
+    public int numNeighbors(int i) {
+      return offsets[i + 1] - offsets[i];
+    }
+
+    /** Returns the target position of the j-th closest neighbor of query point 'i'. */
+    public int neighborId(int i, int j) {
+      Preconditions.checkElementIndex(j, numNeighbors(i));
+      return neighbors[offsets[i] + j];
+    }
+
+    /** Returns the j-th closest neighbor of query point 'i'. */
+    public Entry<B> neighbor(int i, int j) {
+      return targets.get(neighborId(i, j));
+    }
+
+    /** Returns the distance from query point 'i' to its j-th closest neighbor. */
+    public S1ChordAngle distance(int i, int j) {
+      Preconditions.checkElementIndex(j, numNeighbors(i));
+      return S1ChordAngle.fromLength2(length2s[offsets[i] + j]);
+    }
+
+    /** Returns the total number of neighbors found for all the query points. */
+    public long totalNeighbors() {
+      return offsets[queries.size()];
+    }
+  }
+
+  /**
+   * The state shared by every group of a join: the points of both indexes copied to arrays in
+   * S2CellId order, the groups, and the neighbors found for each group, which only that group
+   * writes.
+   */
+  private static final class Setup<A, B> {
+    final ImmutableList<Entry<A>> queryEntries;
+    final ImmutableList<Entry<B>> targetEntries;
+    final S2Point[] queryPoints;
+    final Targets targets;
+    final boolean selfJoin;
+    final int maxPoints;
+    final double maxLength2;
+
+    /** The first query of each group, followed by the number of queries. */
+    final IntVector groupStarts = new IntVector();
+
+    /** The cell of each group. */
+    final List<S2CellId> groupCells = new ArrayList<>();
+
+    /** The number of neighbors found for each query point. */
+    final int[] counts;
+
+    /** The neighbors found for the points of each group, in order, and their distances. */
+    final int[][] groupNeighbors;
+
+    final double[][] groupLength2s;
+
+    Setup(S2ClosestPointJoin<A, B> join) {
+      queryEntries = entries(join.queries);
+      targetEntries =
+          join.queries == join.targets ? cast(queryEntries) : entries(join.targets);
+      queryPoints = new S2Point[queryEntries.size()];
+      long[] queryIds = new long[queryEntries.size()];
+      for (int i = 0; i < queryPoints.length; i++) {
+        queryPoints[i] = queryEntries.get(i).point();
+        queryIds[i] = queryEntries.get(i).id() ^ Long.MIN_VALUE;
+      }
+      targets = new Targets(targetEntries);
+      selfJoin = join.queries == join.targets;
+      // There are never more neighbors than targets, which caps the space each point's neighbors
+      // may grow to.
+      maxPoints = Math.max(1, Math.min(join.maxPoints, targetEntries.size()));
+      maxLength2 = join.maxDistance.getLength2();
+
+      // Subdivide the query cells until each holds at most MAX_GROUP_POINTS points, or is a leaf.
+      for (int face = 0; face < 6; face++) {
+        addGroups(queryIds, S2CellId.fromFace(face));
+      }
+      groupStarts.add(queryPoints.length);
+
+      counts = new int[queryPoints.length];
+      groupNeighbors = new int[numGroups()][];
+      groupLength2s = new double[numGroups()][];
+    }
+
+    private void addGroups(long[] queryIds, S2CellId id) {
+      int begin = lowerBound(queryIds, id.rangeMin());
+      int end = lowerBound(queryIds, id.rangeMax().next());
+      if (begin == end) {
+        return;
+      }
+      if (end - begin <= MAX_GROUP_POINTS || id.isLeaf()) {
+        groupStarts.add(begin);
+        groupCells.add(id);
+        return;
+      }
+      for (S2CellId child = id.childBegin(); !child.equals(id.childEnd()); child = child.next()) {
+        addGroups(queryIds, child);
+      }
+    }
+
+    int numGroups() {
+      return groupCells.size();
+    }
+
+    /**
+     * Returns the result, with the neighbors of all the groups concatenated. Groups are in query
+     * order, so the neighbors of each query point follow those of the point before it.
+     */
+    Result<A, B> result() {
+      int[] offsets = new int[queryPoints.length + 1];
+      for (int i = 0; i < queryPoints.length; i++) {
+        offsets[i + 1] = Math.addExact(offsets[i], counts[i]);
+      }
+      int total = offsets[queryPoints.length];
+      int[] neighbors = new int[total];
+      double[] length2s = new double[total];
+      int position = 0;
+      for (int g = 0; g < numGroups(); g++) {
+        int count = groupNeighbors[g].length;
+        System.arraycopy(groupNeighbors[g], 0, neighbors, position, count);
+        System.arraycopy(groupLength2s[g], 0, length2s, position, count);
+        position += count;
+      }
+      return new Result<>(queryEntries, targetEntries, offsets, neighbors, length2s);
+    }
+
+    private static <D> ImmutableList<Entry<D>> entries(S2PointIndex<D> index) {
+      ImmutableList.Builder<Entry<D>> entries = ImmutableList.builder();
+      for (S2Iterator<Entry<D>> it = index.iterator(); !it.done(); it.next()) {
+        entries.add(it.entry());
+      }
+      return entries.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <B> ImmutableList<Entry<B>> cast(ImmutableList<?> entries) {
+      return (ImmutableList<Entry<B>>) entries;
+    }
+  }
+
+  /** The target points in S2CellId order, as primitive arrays. */
+  private static final class Targets {
+    /** The leaf cell id of each target, with the sign bit flipped to compare as unsigned. */
+    final long[] ids;
+
+    /** The coordinates of each target, three per point. */
+    final double[] coords;
+
+    Targets(List<? extends Entry<?>> entries) {
+      ids = new long[entries.size()];
+      coords = new double[3 * entries.size()];
+      for (int i = 0; i < ids.length; i++) {
+        Entry<?> entry = entries.get(i);
+        ids[i] = entry.id() ^ Long.MIN_VALUE;
+        S2Point p = entry.point();
+        coords[3 * i] = p.x;
+        coords[3 * i + 1] = p.y;
+        coords[3 * i + 2] = p.z;
+      }
+    }
+  }
+
+  /** Returns the position of the first id in the sorted, sign-flipped 'ids' not less than 'id'. */
+  private static int lowerBound(long[] ids, S2CellId id) {
+    if (id.equals(S2CellId.end(S2CellId.MAX_LEVEL))) {
+      return ids.length;
+    }
+    int i = Arrays.binarySearch(ids, id.id() ^ Long.MIN_VALUE);
+    if (i < 0) {
+      return -i - 1;
+    }
+    // Back up to the first of any repeated ids.
+    while (i > 0 && ids[i - 1] == ids[i]) {
+      i--;
+    }
+    return i;
+  }
+
+  /** A target cell waiting to be processed, with its distance from the current group's cell. */
+  private static final class QueueEntry implements Comparable<QueueEntry> {
+    final double length2;
+    final S2CellId id;
+    final int begin;
+    final int end;
+
+    QueueEntry(double length2, S2CellId id, int begin, int end) {
+      this.length2 = length2;
+      this.id = id;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    public int compareTo(QueueEntry other) {
+      return Double.compare(length2, other.length2);
+    }
+  }
+
+  /** The scratch storage used by one thread to process groups. */
+  private static final class Worker {
+    private final Targets targets;
+    private final int maxPoints;
+    private final double maxLength2;
+    private final PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+
+    /**
+     * The best neighbors of each point of the current group, sorted by increasing distance. These
+     * grow as needed, up to 'maxPoints'.
+     */
+    private final int[][] bestIds = new int[MAX_GROUP_POINTS][];
+
+    private final double[][] bestLength2s = new double[MAX_GROUP_POINTS][];
+    private final int[] bestCounts = new int[MAX_GROUP_POINTS];
+
+    /** The neighbors of the points of the current group processed so far, in order. */
+    private final IntVector groupIds = new IntVector();
+
+    private final DoubleArrayList groupLength2s = new DoubleArrayList();
+
+    Worker(Targets targets, int maxPoints, double maxLength2) {
+      this.targets = targets;
+      this.maxPoints = maxPoints;
+      this.maxLength2 = maxLength2;
+      int capacity = Math.min(maxPoints, INITIAL_CAPACITY);
+      for (int i = 0; i < MAX_GROUP_POINTS; i++) {
+        bestIds[i] = new int[capacity];
+        bestLength2s[i] = new double[capacity];
+      }
+    }
+
+    /** Finds the neighbors of the points of group 'g', and stores them in the setup. */
+    void processGroup(Setup<?, ?> setup, int g) {
+      int begin = setup.groupStarts.get(g);
+      int end = setup.groupStarts.get(g + 1);
+      groupIds.clear();
+      groupLength2s.clear();
+      if (end - begin > MAX_GROUP_POINTS) {
+        // A leaf cell with many repeated points. Process them a group at a time.
+        for (int i = begin; i < end; i += MAX_GROUP_POINTS) {
+          processPoints(setup, setup.groupCells.get(g), i, Math.min(end, i + MAX_GROUP_POINTS));
+        }
+      } else {
+        processPoints(setup, setup.groupCells.get(g), begin, end);
+      }
+      setup.groupNeighbors[g] = groupIds.toArray();
+      setup.groupLength2s[g] = groupLength2s.toDoubleArray();
+    }
+
+    private void processPoints(Setup<?, ?> setup, S2CellId groupId, int begin, int end) {
+      int numPoints = end - begin;
+      Arrays.fill(bestCounts, 0, numPoints, 0);
+      S2Cell groupCell = new S2Cell(groupId);
+      double bound = maxLength2;
+
+      queue.clear();
+      long[] ids = targets.ids;
+      for (int face = 0; face < 6; face++) {
+        S2CellId id = S2CellId.fromFace(face);
+        int lo = lowerBound(ids, id.rangeMin());
+        int hi = lowerBound(ids, id.rangeMax().next());
+        if (lo < hi) {
+          queue.add(new QueueEntry(cellDistance(groupCell, id), id, lo, hi));
+        }
+      }
+      while (!queue.isEmpty()) {
+        QueueEntry entry = queue.poll();
+        if (entry.length2 >= bound) {
+          break;
+        }
+        if (entry.end - entry.begin <= MAX_LEAF_POINTS || entry.id.isLeaf()) {
+          for (int t = entry.begin; t < entry.end; t++) {
+            addTarget(setup, begin, numPoints, t);
+          }
+          bound = groupBound(numPoints);
+          continue;
+        }
+        // Subdivide the cell, splitting its range of targets among the children.
+        int lo = entry.begin;
+        for (S2CellId child = entry.id.childBegin();
+            !child.equals(entry.id.childEnd());
+            child = child.next()) {
+          int hi = lowerBound(ids, child.rangeMax().next());
+          if (lo < hi) {
+            double length2 = cellDistance(groupCell, child);
+            if (length2 < bound) {
+              queue.add(new QueueEntry(length2, child, lo, hi));
+            }
+          }
+          lo = hi;
+        }
+      }
+      queue.clear();
+
+      // Append the neighbors of the points to those of the group.
+      for (int i = 0; i < numPoints; i++) {
+        int count = bestCounts[i];
+        setup.counts[begin + i] = count;
+        for (int j = 0; j < count; j++) {
+          groupIds.add(bestIds[i][j]);
+        }
+        groupLength2s.addElements(groupLength2s.size(), bestLength2s[i], 0, count);
+      }
+    }
+
+    private static double cellDistance(S2Cell groupCell, S2CellId id) {
+      return groupCell.getDistance(new S2Cell(id)).getLength2();
+    }
+
+    /** Offers target 't' to each point of the current group. */
+    private void addTarget(Setup<?, ?> setup, int begin, int numPoints, int t) {
+      double[] coords = targets.coords;
+      double tx = coords[3 * t];
+      double ty = coords[3 * t + 1];
+      double tz = coords[3 * t + 2];
+      for (int i = 0; i < numPoints; i++) {
+        int q = begin + i;
+        if (setup.selfJoin && q == t) {
+          continue;
+        }
+        S2Point p = setup.queryPoints[q];
+        double dx = p.x - tx;
+        double dy = p.y - ty;
+        double dz = p.z - tz;
+        double length2 = Math.min(S1ChordAngle.MAX_LENGTH2, dx * dx + dy * dy + dz * dz);
+        if (length2 >= maxLength2) {
+          continue;
+        }
+        // Insert the target into the sorted list of the point's best neighbors, if it is closer
+        // than the current k-th best.
+        int[] ids = bestIds[i];
+        double[] length2s = bestLength2s[i];
+        int count = bestCounts[i];
+        if (count == maxPoints) {
+          if (length2 >= length2s[count - 1]) {
+            continue;
+          }
+          count--;
+        } else {
+          if (count == ids.length) {
+            int capacity = (int) Math.min(maxPoints, 2L * count);
+            ids = bestIds[i] = Arrays.copyOf(ids, capacity);
+            length2s = bestLength2s[i] = Arrays.copyOf(length2s, capacity);
+          }
+          bestCounts[i]++;
+        }
+        int j = count;
+        while (j > 0 && length2s[j - 1] > length2) {
+          length2s[j] = length2s[j - 1];
+          ids[j] = ids[j - 1];
+          j--;
+        }
+        length2s[j] = length2;
+        ids[j] = t;
+      }
+    }
+
+    /**
+     * Returns the distance beyond which no target can improve the neighbors of any point of the
+     * current group: the largest k-th best distance, or the maximum distance if some point does
+     * not yet have k neighbors.
+     */
+    private double groupBound(int numPoints) {
+      double bound = 0;
+      for (int i = 0; i < numPoints; i++) {
+        if (bestCounts[i] < maxPoints) {
+          return maxLength2;
+        }
+        bound = Math.max(bound, bestLength2s[i][maxPoints - 1]);
+      }
+      return bound;
+    }
+  }
+
+  /** Processes a range of chunks of groups, splitting the range in half until it is one chunk. */
+  private static final class JoinTask extends RecursiveAction {
+    private final Setup<?, ?> setup;
+    private final Map<Thread, Worker> workers;
+    private final int numChunks;
+    private final int begin;
+    private final int end;
+
+    JoinTask(Setup<?, ?> setup, Map<Thread, Worker> workers, int numChunks, int begin, int end) {
+      this.setup = setup;
+      this.workers = workers;
+      this.numChunks = numChunks;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin > 1) {
+        int mid = (begin + end) >>> 1;
+        invokeAll(
+            new JoinTask(setup, workers, numChunks, begin, mid),
+            new JoinTask(setup, workers, numChunks, mid, end));
+        return;
+      }
+      Worker worker =
+          workers.computeIfAbsent(
+              Thread.currentThread(),
+              unused -> new Worker(setup.targets, setup.maxPoints, setup.maxLength2));
+      // Chunks are contiguous ranges of groups, so that each thread works on nearby query points.
+      long numGroups = setup.numGroups();
+      int first = (int) (begin * numGroups / numChunks);
+      int last = (int) ((begin + 1) * numGroups / numChunks);
+      for (int g = first; g < last; g++) {
+        worker.processGroup(setup, g);
+      }
+    }
+  }
+}
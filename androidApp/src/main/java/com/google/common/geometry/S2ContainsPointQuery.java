@@ -24,6 +24,7 @@ import com.google.common.geometry.S2ShapeIndex.S2ClippedShape;
 import com.google.common.geometry.S2ShapeUtil.IntPredicate;
 import com.google.common.geometry.primitives.IntVector;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import org.jspecify.annotations.Nullable;
 
 /**
  * A query for whether one or more shapes in an {@link S2ShapeIndex} contain a given S2Point.
@@ -79,6 +80,9 @@ public class S2ContainsPointQuery {
   private S2ShapeIndex index;
   private S2Iterator<S2ShapeIndex.Cell> it;
 
+  /** The statistics to add to as queries run, or null if statistics are not being collected. */
+  private @Nullable S2QueryStats stats;
+
   /** Create a query with options but no index. Must call {@link #init} before making queries. */
   public S2ContainsPointQuery(Options options) {
     this.options = options;
@@ -106,12 +110,44 @@ public class S2ContainsPointQuery {
     return options;
   }
 
+  /**
+   * Sets the statistics that subsequent queries add to, or null (the default) to stop collecting
+   * statistics.
+   */
+  public void setStats(@Nullable S2QueryStats stats) {
+    this.stats = stats;
+  }
+
+  /** Returns the statistics that queries add to, or null if statistics are not being collected. */
+  public @Nullable S2QueryStats stats() {
+    return stats;
+  }
+
+  /** Positions the iterator at the index cell containing {@code p}, if any, counting the visit. */
+  private boolean locateNear(S2Point p) {
+    boolean found = it.locateNear(p);
+    if (found && stats != null) {
+      stats.cellsVisited++;
+    }
+    return found;
+  }
+
   /**
    * Returns true if any shape in the current index contains {@code p} under the specified {@link
    * S2VertexModel}.
    */
   public boolean contains(S2Point p) {
-    if (!it.locate(p)) {
+    if (stats == null) {
+      return containsInternal(p);
+    }
+    long start = System.nanoTime();
+    boolean result = containsInternal(p);
+    stats.endQuery(start);
+    return result;
+  }
+
+  private boolean containsInternal(S2Point p) {
+    if (!locateNear(p)) {
       return false;
     }
     S2ShapeIndex.Cell cell = it.entry();
@@ -129,7 +165,17 @@ public class S2ContainsPointQuery {
    * Returns true if the given shape contains {@code p} under the specified {@link S2VertexModel}.
    */
   public boolean shapeContains(int shapeId, S2Point p) {
-    if (!it.locate(p)) {
+    if (stats == null) {
+      return shapeContainsInternal(shapeId, p);
+    }
+    long start = System.nanoTime();
+    boolean result = shapeContainsInternal(shapeId, p);
+    stats.endQuery(start);
+    return result;
+  }
+
+  private boolean shapeContainsInternal(int shapeId, S2Point p) {
+    if (!locateNear(p)) {
       return false;
     }
     S2ClippedShape clipped = it.entry().findClipped(shapeId);
@@ -171,6 +217,7 @@ public class S2ContainsPointQuery {
             // Shared vertex, test if we have a vertex crossing.
             // For the OPEN and CLOSED models, check whether "p" is a vertex.
             if (options.vertexModel != S2VertexModel.SEMI_OPEN && edge.isEndpoint(p)) {
+              countEdges(i + 1, crosser);
               return options.vertexModel == S2VertexModel.CLOSED;
             }
             crossing = S2EdgeUtil.vertexCrossing(cellCenter, p, edge.a, edge.b);
@@ -178,10 +225,22 @@ public class S2ContainsPointQuery {
         }
         inside ^= crossing;
       }
+      countEdges(numEdges, crosser);
     }
     return inside;
   }
 
+  /**
+   * Adds the given number of tested edges, and the crossings that reached the robust predicates of
+   * 'crosser', to the statistics if they are being collected.
+   */
+  private void countEdges(int numEdges, EdgeCrosser crosser) {
+    if (stats != null) {
+      stats.edgesEvaluated += numEdges;
+      stats.exactPredicates += crosser.numRobustCrossings;
+    }
+  }
+
   /**
    * A visitor that receives each shapeId that contains a query point, returning true to continue
    * receiving shapes or false to terminate early.
@@ -198,9 +257,19 @@ public class S2ContainsPointQuery {
    */
   @CanIgnoreReturnValue
   public boolean visitContainingShapes(S2Point p, ShapeVisitor visitor) {
+    if (stats == null) {
+      return visitContainingShapesInternal(p, visitor);
+    }
+    long start = System.nanoTime();
+    boolean result = visitContainingShapesInternal(p, visitor);
+    stats.endQuery(start);
+    return result;
+  }
+
+  private boolean visitContainingShapesInternal(S2Point p, ShapeVisitor visitor) {
     // This function returns false only if the algorithm terminates early because the "visitor"
     // function returned false.
-    if (!it.locate(p)) {
+    if (!locateNear(p)) {
       return true;
     }
     S2ShapeIndex.Cell cell = it.entry();
@@ -217,7 +286,7 @@ public class S2ContainsPointQuery {
 
   /** A convenience function that provides iteration over all the shapes that contain {@code p}. */
   public Iterable<S2Shape> getContainingShapes(final S2Point p) {
-    if (!it.locate(p)) {
+    if (!locateNear(p)) {
       return ImmutableList.of();
     } else {
       // Must copy the iterator immediately, since the Iterable may not be used until after this.it
@@ -244,7 +313,17 @@ public class S2ContainsPointQuery {
 
   /** A convenience function that returns the shape ids that contain {@code p}. */
   public IntVector getContainingShapeIds(final S2Point p) {
-    if (!it.locate(p)) {
+    if (stats == null) {
+      return getContainingShapeIdsInternal(p);
+    }
+    long start = System.nanoTime();
+    IntVector result = getContainingShapeIdsInternal(p);
+    stats.endQuery(start);
+    return result;
+  }
+
+  private IntVector getContainingShapeIdsInternal(S2Point p) {
+    if (!locateNear(p)) {
       return IntVector.empty();
     }
     final S2ShapeIndex.Cell cell = it.entry();
@@ -284,7 +363,7 @@ public class S2ContainsPointQuery {
   boolean visitIncidentEdges(S2Point p, EdgeVisitor visitor, MutableEdge tmp) {
     // This function returns "false" only if the algorithm terminates early because the "visitor"
     // function returned false.
-    if (!it.locate(p)) {
+    if (!it.locateNear(p)) {
       return true;
     }
     S2ShapeIndex.Cell cell = it.entry();
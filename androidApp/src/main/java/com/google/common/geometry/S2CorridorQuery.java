@@ -0,0 +1,241 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.geometry.S2BestEdgesQueryBase.Result;
+import com.google.common.geometry.S2ClosestEdgeQuery.PointTarget;
+import com.google.common.geometry.S2PointIndex.Entry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Given a set of points stored in an S2PointIndex, S2CorridorQuery finds the points within a given
+ * distance of a route, i.e. inside the corridor around a polyline, ordered by their progress along
+ * the route.
+ *
+ * <p>The route may be any shape of dimension 1, such as an {@link S2Polyline} or an {@link
+ * S2LaxPolylineShape}. Progress is measured as by {@link S2ChainInterpolationQuery}, as the length
+ * along the route's edges up to the closest point of the route to each found point. If the route
+ * has several chains, progress accumulates over all of them in order.
+ *
+ * <p>Example usage:
+ *
+ * {@snippet :
+ * S2CorridorQuery<Listing> query = new S2CorridorQuery<>(listings);
+ * for (S2CorridorQuery.CorridorResult<Listing> result :
+ *     query.findPoints(route, S2Earth.metersToAngle(500))) {
+ *   // Listings along the route, from the start of the route to its end.
+ *   offer(result.entry().data(), result.progress());
+ * }
+ * }
+ *
+ * <p>The point index is searched by recursively subdividing cells that may reach the corridor, as
+ * measured by an {@link S2ClosestEdgeQuery} over the route, and testing the points of such cells
+ * directly once they hold only a few points. The cost therefore depends on the area of the
+ * corridor and the density of points within it, rather than on the total number of points in the
+ * index.
+ *
+ * <p>This class is not thread-safe. Like S2ClosestPointQuery, it is cheap to construct, so each
+ * thread may simply create its own.
+ */
+public final class S2CorridorQuery<T> {
+  /** The maximum number of points to test directly without subdividing their cell further. */
+  private static final int MAX_LEAF_POINTS = 12;
+
+  /** The index being queried. */
+  private final S2PointIndex<T> index;
+
+  /** Temporary storage for the points of a cell that are tested directly. */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private final Entry<T>[] tmpPoints = new Entry[MAX_LEAF_POINTS];
+
+  /** Constructs a new query for the given index. The index may be modified between queries. */
+  public S2CorridorQuery(S2PointIndex<T> index) {
+    this.index = index;
+  }
+
+  /** Returns the index being queried. */
+  public S2PointIndex<T> index() {
+    return index;
+  }
+
+  /**
+   * Returns the points within 'radius' of the given route, ordered by increasing progress along the
+   * route, and then by increasing distance from it. Points at exactly 'radius' are included.
+   */
+  public List<CorridorResult<T>> findPoints(S2Shape route, S1Angle radius) {
+    return findPoints(route, S1ChordAngle.fromS1Angle(radius));
+  }
+
+  /** As {@link #findPoints(S2Shape, S1Angle)}, but with the radius given as an S1ChordAngle. */
+  public List<CorridorResult<T>> findPoints(S2Shape route, S1ChordAngle radius) {
+    List<CorridorResult<T>> results = new ArrayList<>();
+    findPoints(results, route, radius);
+    return results;
+  }
+
+  /**
+   * As {@link #findPoints(S2Shape, S1ChordAngle)}, but sorts the results and adds them at the end
+   * of the given list. Note: Does NOT first clear the results list.
+   */
+  public void findPoints(List<CorridorResult<T>> results, S2Shape route, S1ChordAngle radius) {
+    Preconditions.checkArgument(route.dimension() == 1, "Route must be a polyline");
+    S2ShapeIndex routeIndex = new S2ShapeIndex();
+    routeIndex.add(route);
+    S2ClosestEdgeQuery<S1ChordAngle> edgeQuery =
+        S2ClosestEdgeQuery.builder().setInclusiveMaxDistance(radius).build(routeIndex);
+    S2ChainInterpolationQuery interpolation = new S2ChainInterpolationQuery(route);
+    S1ChordAngle radiusSuccessor = radius.successor();
+
+    int start = results.size();
+    S2Iterator<Entry<T>> iter = index.iterator();
+    S2Shape.MutableEdge edge = new S2Shape.MutableEdge();
+    ArrayDeque<S2CellId> stack = new ArrayDeque<>();
+    for (int face = 5; face >= 0; face--) {
+      stack.push(S2CellId.fromFace(face));
+    }
+    while (!stack.isEmpty()) {
+      S2CellId id = stack.pop();
+      iter.seek(id.rangeMin());
+      S2CellId last = id.rangeMax();
+      if (iter.done() || iter.compareTo(last) > 0
+          || !mayIntersect(edgeQuery, new S2Cell(id), radiusSuccessor)) {
+        continue;
+      }
+      int numPoints = 0;
+      for (; !iter.done() && iter.compareTo(last) <= 0; iter.next()) {
+        if (numPoints == MAX_LEAF_POINTS) {
+          break;
+        }
+        tmpPoints[numPoints++] = iter.entry();
+      }
+      if (numPoints == MAX_LEAF_POINTS && !iter.done() && iter.compareTo(last) <= 0) {
+        if (!id.isLeaf()) {
+          // The cell has too many points to test directly, so subdivide it.
+          for (S2CellId child = id.childEnd().prev(); ; child = child.prev()) {
+            stack.push(child);
+            if (child.equals(id.childBegin())) {
+              break;
+            }
+          }
+          continue;
+        }
+        // Leaf cells cannot be subdivided, and hold more points only if points repeat.
+        for (; !iter.done() && iter.compareTo(last) <= 0; iter.next()) {
+          addResult(results, iter.entry(), edgeQuery, interpolation, route, edge);
+        }
+      }
+      for (int i = 0; i < numPoints; i++) {
+        addResult(results, tmpPoints[i], edgeQuery, interpolation, route, edge);
+      }
+    }
+    results.subList(start, results.size()).sort(CorridorResult.progressOrder());
+  }
+
+  /**
+   * Returns false if the given cell is certainly further than 'limit' from the route. Distances to
+   * the cell are bounded by the distance to its center less the radius of its bounding cap, since
+   * point targets are much cheaper to measure than cell targets.
+   */
+  private static boolean mayIntersect(
+      S2ClosestEdgeQuery<S1ChordAngle> edgeQuery, S2Cell cell, S1ChordAngle limit) {
+    S1ChordAngle capRadius = cell.getCapBound().radius();
+    return edgeQuery.isDistanceLess(
+        new PointTarget<>(cell.getCenter()), S1ChordAngle.add(limit, capRadius));
+  }
+
+  /** Adds a result for the given point if it is within the corridor. */
+  private static <T> void addResult(
+      List<CorridorResult<T>> results,
+      Entry<T> entry,
+      S2ClosestEdgeQuery<S1ChordAngle> edgeQuery,
+      S2ChainInterpolationQuery interpolation,
+      S2Shape route,
+      S2Shape.MutableEdge edge) {
+    Optional<Result<S1ChordAngle>> closest =
+        edgeQuery.findClosestEdge(new PointTarget<>(entry.point()));
+    if (!closest.isPresent()) {
+      return;
+    }
+    Result<S1ChordAngle> result = closest.get();
+    S2Point routePoint = edgeQuery.project(entry.point(), result);
+    // The progress at the closest point is the length to the end of its edge, less the length of
+    // the rest of that edge.
+    route.getEdge(result.edgeId(), edge);
+    S1Angle progress =
+        interpolation.getLengthAtEdgeEnd(result.edgeId()).sub(new S1Angle(routePoint, edge.b));
+    results.add(
+        new CorridorResult<>(entry, result.distance(), result.edgeId(), routePoint, progress));
+  }
+
+  /** A point found within the corridor, with its distance from the route and progress along it. */
+  public static final class CorridorResult<T> {
+    private final Entry<T> entry;
+    private final S1ChordAngle distance;
+    private final int edgeId;
+    private final S2Point routePoint;
+    private final S1Angle progress;
+
+    CorridorResult(
+        Entry<T> entry, S1ChordAngle distance, int edgeId, S2Point routePoint, S1Angle progress) {
+      this.entry = entry;
+      this.distance = distance;
+      this.edgeId = edgeId;
+      this.routePoint = routePoint;
+      this.progress = progress;
+    }
+
+    /** Returns the index entry of the point that was found. */
+    public Entry<T> entry() {
+      return entry;
+    }
+
+    /** Returns the distance from the point to the route. */
+    public S1ChordAngle distance() {
+      return distance;
+    }
+
+    /** Returns the id of the route edge closest to the point. */
+    public int edgeId() {
+      return edgeId;
+    }
+
+    /** Returns the point on the route closest to the point that was found. */
+    public S2Point routePoint() {
+      return routePoint;
+    }
+
+    /** Returns the length along the route from its start to {@link #routePoint()}. */
+    public S1Angle progress() {
+      return progress;
+    }
+
+    /** Returns a comparator that orders results by progress, and then by distance. */
+    public static <T> Comparator<CorridorResult<T>> progressOrder() {
+      return Comparator.<CorridorResult<T>, S1Angle>comparing(CorridorResult::progress)
+          .thenComparing(CorridorResult::distance);
+    }
+
+    @Override
+    public String toString() {
+      return entry + " at " + progress + " (" + distance + ")";
+    }
+  }
+}
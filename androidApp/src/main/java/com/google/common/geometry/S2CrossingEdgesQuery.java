@@ -21,9 +21,14 @@ import com.google.common.geometry.S2ShapeIndex.Cell;
 import com.google.common.geometry.S2ShapeIndex.S2ClippedShape;
 import com.google.common.geometry.S2ShapeUtil.LoadedShape;
 import com.google.common.geometry.S2ShapeUtil.RangeIterator;
+import com.google.common.geometry.primitives.IntVector;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jspecify.annotations.Nullable;
 
 /**
  * A query for visiting pairs of crossing edges in one S2ShapeIndex, or pairs of crossing edges
@@ -64,6 +69,14 @@ public class S2CrossingEdgesQuery {
   /** The current cell being processed. */
   private S2CellId currentId = S2CellId.sentinel();
 
+  /** The number of chunks per thread of the pool used by the parallel methods. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /** The first and last leaf cells, which bound the first and last chunks. */
+  private static final S2CellId FIRST_LEAF = S2CellId.begin(S2CellId.MAX_LEVEL);
+
+  private static final S2CellId LAST_LEAF = S2CellId.end(S2CellId.MAX_LEVEL).prev();
+
   /** The cell that crossing edges intersect, or {@link S2CellId#sentinel()} if not processing. */
   public S2CellId currentId() {
     return currentId;
@@ -99,9 +112,27 @@ public class S2CrossingEdgesQuery {
    */
   @CanIgnoreReturnValue
   public boolean visitCrossingEdgePairs(S2ShapeIndex index, EdgePairVisitor visitor) {
-    a.init(index);
-    b.init(index);
-    return visitCrossings(index, visitor);
+    return visitCrossings(index, visitor, FIRST_LEAF, LAST_LEAF);
+  }
+
+  /**
+   * As {@link #visitCrossingEdgePairs(S2ShapeIndex, EdgePairVisitor)}, but divides the index cells
+   * into chunks of about equal work, estimated from the number of edges in each cell, and visits
+   * the chunks concurrently on the given pool.
+   *
+   * <p>If 'ordered' is false, the visitor is called concurrently from the threads of the pool and
+   * must be thread-safe. If 'ordered' is true, the crossings of each chunk are buffered, and the
+   * visitor is only called from the calling thread, in the same order as the sequential method.
+   * In either case, once the visitor returns false no further crossings are visited, although
+   * chunks already in progress may finish buffering theirs. {@link #currentId()} is not updated.
+   */
+  @CanIgnoreReturnValue
+  public boolean visitCrossingEdgePairs(
+      S2ShapeIndex index, EdgePairVisitor visitor, ForkJoinPool pool, boolean ordered) {
+    List<S2CellId> splits = chooseSplits(index, null, numChunks(pool));
+    return visitChunks(
+        splits, visitor, pool, ordered,
+        (query, lo, hi, chunkVisitor) -> query.visitCrossings(index, chunkVisitor, lo, hi));
   }
 
   /**
@@ -114,21 +145,56 @@ public class S2CrossingEdgesQuery {
   @CanIgnoreReturnValue
   public boolean visitCrossingEdgePairs(
       S2ShapeIndex aIndex, S2ShapeIndex bIndex, EdgePairVisitor visitor) {
+    return visitCrossings(aIndex, bIndex, visitor, FIRST_LEAF, LAST_LEAF);
+  }
+
+  /**
+   * As {@link #visitCrossingEdgePairs(S2ShapeIndex, S2ShapeIndex, EdgePairVisitor)}, but divides
+   * the index cells into chunks of about equal work and visits the chunks concurrently on the given
+   * pool. Chunks are split only where no index cell of either index spans the split. The 'ordered'
+   * parameter and visitor contract are as for {@link #visitCrossingEdgePairs(S2ShapeIndex,
+   * EdgePairVisitor, ForkJoinPool, boolean)}.
+   */
+  @CanIgnoreReturnValue
+  public boolean visitCrossingEdgePairs(
+      S2ShapeIndex aIndex,
+      S2ShapeIndex bIndex,
+      EdgePairVisitor visitor,
+      ForkJoinPool pool,
+      boolean ordered) {
+    List<S2CellId> splits = chooseSplits(aIndex, bIndex, numChunks(pool));
+    return visitChunks(
+        splits, visitor, pool, ordered,
+        (query, lo, hi, chunkVisitor) ->
+            query.visitCrossings(aIndex, bIndex, chunkVisitor, lo, hi));
+  }
+
+  /**
+   * Visits the crossings between the two indexes in the index cells that lie within the range of
+   * leaf cells from 'lo' to 'hi' inclusive. No index cell may span either end of the range.
+   */
+  private boolean visitCrossings(
+      S2ShapeIndex aIndex, S2ShapeIndex bIndex, EdgePairVisitor visitor, S2CellId lo, S2CellId hi) {
     a.init(aIndex);
     b.init(bIndex);
     // We look for S2CellId ranges where the indexes of A and B overlap, and then test those edges
     // for crossings.
     // TODO(user): Use brute force if the total number of edges is small enough (using a
     // larger threshold if the S2ShapeIndex is not constructed yet).
-    RangeIterator<Cell> ai = new RangeIterator<>(aIndex.iterator());
-    RangeIterator<Cell> bi = new RangeIterator<>(bIndex.iterator());
+    S2Iterator<Cell> aIter = aIndex.iterator();
+    S2Iterator<Cell> bIter = bIndex.iterator();
+    aIter.seek(lo);
+    bIter.seek(lo);
+    RangeIterator<Cell> ai = new RangeIterator<>(aIter);
+    RangeIterator<Cell> bi = new RangeIterator<>(bIter);
     // Tests A against B
     abCrosser.init(aIndex, bIndex, crossingType, visitor, false);
     // Tests B against A
     baCrosser.init(bIndex, aIndex, crossingType, visitor, true);
 
     // TODO(user): Replace the following with S2CellIteratorJoin when that is available.
-    while (!ai.done() || !bi.done()) {
+    // Note that done iterators have a range beyond any leaf cell.
+    while (ai.rangeMin().lessOrEquals(hi) || bi.rangeMin().lessOrEquals(hi)) {
       if (ai.rangeMax().lessThan(bi.rangeMin())) {
         // The A and B cells don't overlap, and A precedes B.
         ai.seekTo(bi);
@@ -168,13 +234,18 @@ public class S2CrossingEdgesQuery {
   }
 
   /**
-   * Visits all pairs of crossing edges in the given S2ShapeIndex, terminating early if the given
-   * {@link EdgePairVisitor} returns false (in which case visitCrossings returns false as well).
+   * Visits all pairs of crossing edges in the index cells of the given S2ShapeIndex that lie within
+   * the range of leaf cells from 'lo' to 'hi' inclusive, terminating early if the given {@link
+   * EdgePairVisitor} returns false (in which case visitCrossings returns false as well).
    */
-  private boolean visitCrossings(S2ShapeIndex index, EdgePairVisitor visitor) {
+  private boolean visitCrossings(
+      S2ShapeIndex index, EdgePairVisitor visitor, S2CellId lo, S2CellId hi) {
+    a.init(index);
+    b.init(index);
     // TODO(user): Use brute force if the total number of edges is small enough (using a
     // larger threshold if the S2ShapeIndex is not constructed yet).
-    for (S2Iterator<Cell> it = index.iterator(); !it.done(); it.next()) {
+    S2Iterator<Cell> it = index.iterator();
+    for (it.seek(lo); !it.done() && it.id().lessOrEquals(hi); it.next()) {
       currentId = it.id();
       if (!visitCellCrossings(it.entry(), visitor)) {
         return false;
@@ -231,6 +302,195 @@ public class S2CrossingEdgesQuery {
     return true;
   }
 
+  /** Visits the crossings within one chunk, using the given query. */
+  private interface ChunkVisitor {
+    boolean visit(S2CrossingEdgesQuery query, S2CellId lo, S2CellId hi, EdgePairVisitor visitor);
+  }
+
+  /** Returns the number of chunks to divide work into for the given pool. */
+  private static int numChunks(ForkJoinPool pool) {
+    return CHUNKS_PER_THREAD * pool.getParallelism();
+  }
+
+  /**
+   * Visits each of the chunks separated by the given split cells concurrently on 'pool', each with
+   * a new query of the same type, and returns false if the visitor ever does.
+   */
+  private boolean visitChunks(
+      List<S2CellId> splits,
+      EdgePairVisitor visitor,
+      ForkJoinPool pool,
+      boolean ordered,
+      ChunkVisitor chunkVisitor) {
+    AtomicBoolean stopped = new AtomicBoolean();
+    List<ForkJoinTask<@Nullable CrossingBuffer>> tasks = new ArrayList<>();
+    for (int i = 0; i <= splits.size(); i++) {
+      S2CellId lo = (i == 0) ? FIRST_LEAF : splits.get(i - 1);
+      S2CellId hi = (i == splits.size()) ? LAST_LEAF : splits.get(i).prev();
+      tasks.add(
+          pool.submit(
+              () -> {
+                if (stopped.get()) {
+                  return null;
+                }
+                S2CrossingEdgesQuery query = new S2CrossingEdgesQuery(crossingType, needAdjacent);
+                if (ordered) {
+                  CrossingBuffer buffer = new CrossingBuffer(stopped);
+                  chunkVisitor.visit(query, lo, hi, buffer);
+                  return buffer;
+                }
+                chunkVisitor.visit(
+                    query, lo, hi,
+                    (aShapeId, aEdgeId, aSrc, aDst, bShapeId, bEdgeId, bSrc, bDst, isInterior) -> {
+                      if (stopped.get()) {
+                        return false;
+                      }
+                      if (!visitor.visit(
+                          aShapeId, aEdgeId, aSrc, aDst,
+                          bShapeId, bEdgeId, bSrc, bDst,
+                          isInterior)) {
+                        stopped.set(true);
+                        return false;
+                      }
+                      return true;
+                    });
+                return null;
+              }));
+    }
+    // Wait for every chunk, replaying the buffered crossings in order if requested. Buffers are
+    // replayed as soon as all the preceding chunks have been, while later chunks still run.
+    for (ForkJoinTask<@Nullable CrossingBuffer> task : tasks) {
+      CrossingBuffer buffer = task.join();
+      if (buffer != null && !stopped.get() && !buffer.replay(visitor)) {
+        stopped.set(true);
+      }
+    }
+    return !stopped.get();
+  }
+
+  /**
+   * Returns increasing leaf cells that split the cells of 'aIndex' and, if given, 'bIndex', into
+   * up to 'numChunks' ranges of about equal work. Each split is the first leaf of an index cell,
+   * and no index cell of either index spans a split.
+   *
+   * <p>The work of a cell is estimated as the square of its edge count for a single index, where
+   * every pair of edges in a cell is tested, and as its edge count for a pair of indexes.
+   */
+  private static List<S2CellId> chooseSplits(
+      S2ShapeIndex aIndex, @Nullable S2ShapeIndex bIndex, int numChunks) {
+    long totalWork = 0;
+    for (S2Iterator<Cell> it = aIndex.iterator(); !it.done(); it.next()) {
+      totalWork += work(it.entry(), bIndex == null);
+    }
+    if (bIndex != null) {
+      for (S2Iterator<Cell> it = bIndex.iterator(); !it.done(); it.next()) {
+        totalWork += work(it.entry(), false);
+      }
+    }
+
+    // Walk the cells of both indexes in order of their first leaf, and split before the cell
+    // where the accumulated work passes each multiple of the target.
+    List<S2CellId> splits = new ArrayList<>();
+    long targetWork = Math.max(1, totalWork / numChunks);
+    long work = 0;
+    S2Iterator<Cell> ai = aIndex.iterator();
+    S2Iterator<Cell> bi = (bIndex == null) ? null : bIndex.iterator();
+    S2Iterator<Cell> aLookup = ai.copy();
+    S2Iterator<Cell> bLookup = (bi == null) ? null : bi.copy();
+    while (!ai.done() || (bi != null && !bi.done())) {
+      boolean takeA =
+          bi == null
+              || bi.done()
+              || (!ai.done() && ai.id().rangeMin().lessOrEquals(bi.id().rangeMin()));
+      S2Iterator<Cell> it = takeA ? ai : bi;
+      if (work >= targetWork * (splits.size() + 1) && splits.size() < numChunks - 1) {
+        S2CellId split = it.id().rangeMin();
+        // Move the split back to the start of any cell of the other index that spans it.
+        S2Iterator<Cell> other = takeA ? bLookup : aLookup;
+        if (other != null) {
+          split = startOfSpanningCell(other, split);
+        }
+        if (split.greaterThan(FIRST_LEAF)
+            && (splits.isEmpty() || split.greaterThan(splits.get(splits.size() - 1)))) {
+          splits.add(split);
+        }
+      }
+      work += work(it.entry(), bIndex == null);
+      it.next();
+    }
+    return splits;
+  }
+
+  /** Returns the estimated work of visiting the crossings in the given cell. */
+  private static long work(Cell cell, boolean self) {
+    long numEdges = cell.numEdges();
+    return 1 + (self ? numEdges * numEdges : numEdges);
+  }
+
+  /**
+   * Returns the first leaf of the cell of 'it' that contains 'leaf' and starts before it, or 'leaf'
+   * if there is no such cell.
+   */
+  private static S2CellId startOfSpanningCell(S2Iterator<Cell> it, S2CellId leaf) {
+    it.seek(leaf);
+    // The cell at or after 'leaf' may contain it, or else the previous cell may.
+    if (!it.done() && it.id().rangeMin().lessThan(leaf)) {
+      return it.id().rangeMin();
+    }
+    if (it.prev() && it.id().rangeMax().greaterOrEquals(leaf)) {
+      return it.id().rangeMin();
+    }
+    return leaf;
+  }
+
+  /**
+   * Buffers the crossings visited within one chunk, so that they can be replayed to the actual
+   * visitor in order. Stops buffering once the join has been stopped.
+   */
+  private static final class CrossingBuffer implements EdgePairVisitor {
+    private final AtomicBoolean stopped;
+
+    /** For each crossing, the A shape and edge, B shape and edge, and 1 if interior else 0. */
+    private final IntVector ints = new IntVector();
+
+    /** For each crossing, the A source and destination, and the B source and destination. */
+    private final List<S2Point> points = new ArrayList<>();
+
+    CrossingBuffer(AtomicBoolean stopped) {
+      this.stopped = stopped;
+    }
+
+    @Override
+    public boolean visit(
+        int aShapeId, int aEdgeId, S2Point aEdgeSrc, S2Point aEdgeDst,
+        int bShapeId, int bEdgeId, S2Point bEdgeSrc, S2Point bEdgeDst,
+        boolean isInterior) {
+      ints.add(aShapeId);
+      ints.add(aEdgeId);
+      ints.add(bShapeId);
+      ints.add(bEdgeId);
+      ints.add(isInterior ? 1 : 0);
+      points.add(aEdgeSrc);
+      points.add(aEdgeDst);
+      points.add(bEdgeSrc);
+      points.add(bEdgeDst);
+      return !stopped.get();
+    }
+
+    /** Passes the buffered crossings to 'visitor', returning false if it ever does. */
+    boolean replay(EdgePairVisitor visitor) {
+      for (int i = 0, j = 0; i < ints.size(); i += 5, j += 4) {
+        if (!visitor.visit(
+            ints.get(i), ints.get(i + 1), points.get(j), points.get(j + 1),
+            ints.get(i + 2), ints.get(i + 3), points.get(j + 2), points.get(j + 3),
+            ints.get(i + 4) == 1)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   /** A parameter that controls the reporting of edge intersections. */
   public enum CrossingType {
     /**
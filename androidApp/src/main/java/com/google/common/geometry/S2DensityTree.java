@@ -185,6 +185,34 @@ public class S2DensityTree {
     return encoded;
   }
 
+  /**
+   * Returns an estimate of the memory used by this tree in bytes, which is mostly its encoded
+   * bytes, since the tree is decoded lazily.
+   */
+  public long estimateMemoryUsage() {
+    S2MemoryUsage usage = new S2MemoryUsage();
+    addMemoryUsage(usage);
+    return usage.bytes();
+  }
+
+  /**
+   * Adds the memory used by this tree to 'usage', unless it has already been counted. Trees decoded
+   * from the same bytes count them once. See {@link S2MemoryUsage}.
+   */
+  public void addMemoryUsage(S2MemoryUsage usage) {
+    if (!usage.countFirst(this)) {
+      return;
+    }
+    usage.add(
+        S2MemoryUsage.objectBytes(2 * S2MemoryUsage.REFERENCE_BYTES)
+            + S2MemoryUsage.arrayBytes(facePositions.length, Long.BYTES));
+    if (usage.countFirst(encoded)) {
+      usage.add(
+          S2MemoryUsage.objectBytes(S2MemoryUsage.REFERENCE_BYTES)
+              + S2MemoryUsage.arrayBytes(encoded.length(), Byte.BYTES));
+    }
+  }
+
   /** As {@link #decode(Bytes, Cursor)} with a default cursor over the whole set of bytes. */
   @JsIgnore // No method overloading in J2CL. Use decode(bytes, bytes.cursor()).
   public static S2DensityTree decode(Bytes bytes) throws IOException {
@@ -203,6 +203,12 @@ public class S2EdgeUtil {
     /** Outward-facing tangent at B. */
     private S2Point bTangent;
 
+    /**
+     * The number of edges that the fast orientation test could not rule out, so that the crossing
+     * was decided by robustCrossingInternal(). Only read by query statistics.
+     */
+    int numRobustCrossings;
+
     /**
      * Constructs an uninitialized edge crosser. Invoke {@link #init(S2Point, S2Point)} before
      * calling the other methods.
@@ -406,6 +412,7 @@ public class S2EdgeUtil {
      * the orientation of the next triangle ACB (which is opposite to the current triangle BDA).
      */
     private int robustCrossingInternal(S2Point d) {
+      numRobustCrossings++;
       int result = robustCrossingInternal2(d);
       this.c = d;
       this.acb = -bdaReturn;
@@ -0,0 +1,510 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.geometry.PrimitiveArrays.Bytes;
+import com.google.common.geometry.PrimitiveArrays.Cursor;
+import com.google.common.geometry.S2ShapeAspect.ChainAspect;
+import com.google.common.geometry.S2ShapeAspect.EdgeAspect;
+import com.google.common.geometry.primitives.IntVector;
+import com.google.common.primitives.ImmutableLongArray;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A read-only view of an encoded {@link S2Polygon}, decoded on demand from the {@link Bytes} that
+ * contain it. Either of the encodings written by {@link S2Polygon#encode} may be viewed.
+ *
+ * <p>Decoding an S2Polygon eagerly constructs every {@link S2Loop}, with a copy of its vertices and
+ * its own index. This class instead scans only the loop headers: for the uncompressed encoding the
+ * vertices are read directly from the encoded doubles when requested, and for the compressed
+ * encoding they are unpacked into a single packed coordinate array. An {@link S2Loop} or {@link
+ * S2Polygon} is only constructed when {@link #loop} or {@link #toPolygon} is called.
+ *
+ * <p>As an {@link S2Shape}, this class presents exactly the edges, chains and interior of {@link
+ * S2Polygon#shape()}, i.e. hole loops are reversed so that the interior is always on the left. It
+ * may therefore be added to an {@link S2ShapeIndex} in place of the decoded polygon.
+ *
+ * <p>This class is thread-safe as long as the underlying bytes are not mutated.
+ */
+public final class S2EncodedPolygon extends ChainAspect.Multi implements EdgeAspect.Closed {
+  /** Size in bytes of an encoded S2Point. */
+  private static final int POINT_BYTES = 3 * 8;
+
+  /** Size in bytes of an encoded S2LatLngRect: a version byte and four doubles. */
+  private static final int RECT_BYTES = 1 + 4 * 8;
+
+  /**
+   * A lazy {@link S2Coder} that reads either {@link S2Polygon} encoding. Encoding copies the bytes
+   * of the original encoding, so an S2EncodedPolygon round-trips without being decoded.
+   */
+  public static final S2Coder<S2EncodedPolygon> CODER =
+      new S2Coder<S2EncodedPolygon>() {
+        @Override
+        public void encode(S2EncodedPolygon value, OutputStream output) throws IOException {
+          for (long i = value.start; i < value.limit; i++) {
+            output.write(value.data.get(i));
+          }
+        }
+
+        @Override
+        public S2EncodedPolygon decode(Bytes data, Cursor cursor) throws IOException {
+          try {
+            return S2EncodedPolygon.decode(data, cursor);
+          } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Insufficient or invalid input bytes: ", e);
+          }
+        }
+
+        @Override
+        public boolean isLazy() {
+          return true;
+        }
+      };
+
+  /** The encoded bytes, and the range within them occupied by this polygon. */
+  private final Bytes data;
+
+  private final long start;
+  private final long limit;
+
+  /** The number of vertices of each loop, as encoded. */
+  private final int[] loopNumVertices;
+
+  /** The nesting depth of each loop. */
+  private final int[] depths;
+
+  /** Whether each loop contains S2.origin(). */
+  private final boolean[] originInside;
+
+  /**
+   * For the uncompressed encoding, the position of the first vertex of each loop within 'data'.
+   * Null for the compressed encoding.
+   */
+  private final long @Nullable [] vertexPositions;
+
+  /**
+   * For the uncompressed encoding, the position of each loop's bound within 'data', followed by the
+   * position of the polygon's bound. For the compressed encoding, the position of each loop's bound
+   * or -1 if the bound was not encoded.
+   */
+  private final long[] boundPositions;
+
+  /**
+   * For the compressed encoding, the packed x, y, z coordinates of every vertex of every loop, in
+   * loop order. Null for the uncompressed encoding.
+   */
+  private final double @Nullable [] coordinates;
+
+  /** For the compressed encoding, the index of the first vertex of each loop in 'coordinates'. */
+  private final int @Nullable [] firstVertex;
+
+  /** The total number of vertices in all loops. */
+  private final int numVertices;
+
+  /** The polygon bound, computed on first use for the compressed encoding. */
+  private volatile @Nullable S2LatLngRect bound;
+
+  private S2EncodedPolygon(
+      Bytes data,
+      long start,
+      long limit,
+      int[] cumulativeEdges,
+      int[] loopNumVertices,
+      int[] depths,
+      boolean[] originInside,
+      long @Nullable [] vertexPositions,
+      long[] boundPositions,
+      double @Nullable [] coordinates,
+      int @Nullable [] firstVertex) {
+    super(cumulativeEdges);
+    this.data = data;
+    this.start = start;
+    this.limit = limit;
+    this.loopNumVertices = loopNumVertices;
+    this.depths = depths;
+    this.originInside = originInside;
+    this.vertexPositions = vertexPositions;
+    this.boundPositions = boundPositions;
+    this.coordinates = coordinates;
+    this.firstVertex = firstVertex;
+    int sum = 0;
+    for (int n : loopNumVertices) {
+      sum += n;
+    }
+    this.numVertices = sum;
+  }
+
+  /**
+   * Returns a view of the polygon encoded in 'data' at 'cursor.position', and advances the cursor
+   * to the first byte after the polygon.
+   *
+   * <p>Like {@link S2Polygon#decode}, the polygon is not checked for validity, and literal empty
+   * loops are skipped.
+   *
+   * @throws IOException if the encoding version is not supported or the encoding is malformed.
+   */
+  public static S2EncodedPolygon decode(Bytes data, Cursor cursor) throws IOException {
+    long start = cursor.position;
+    byte version = data.readByte(cursor);
+    switch (version) {
+      case S2Polygon.LOSSLESS_ENCODING_VERSION:
+        return decodeUncompressed(data, cursor, start);
+      case S2Polygon.COMPRESSED_ENCODING_VERSION:
+        return decodeCompressed(data, cursor, start);
+      default:
+        throw new IOException("Unsupported S2Polygon encoding version " + version);
+    }
+  }
+
+  private static S2EncodedPolygon decodeUncompressed(Bytes data, Cursor cursor, long start)
+      throws IOException {
+    // Skip the owns_loops and hasHoles bytes; the loop depths are authoritative.
+    cursor.position += 2;
+    int numLoops = readInt(data, cursor);
+    if (numLoops < 0) {
+      throw new IOException("Can only decode polygons with up to 2^31 - 1 loops. Got " + numLoops);
+    }
+    ImmutableLongArray.Builder vertexPositions = ImmutableLongArray.builder();
+    ImmutableLongArray.Builder boundPositions = ImmutableLongArray.builder();
+    IntVector numVertices = new IntVector();
+    IntVector depths = new IntVector();
+    List<Boolean> originInside = new ArrayList<>();
+    for (int i = 0; i < numLoops; i++) {
+      byte version = data.readByte(cursor);
+      if (version != S2Loop.LOSSLESS_ENCODING_VERSION) {
+        throw new IOException("Unsupported S2Loop encoding version " + version);
+      }
+      int n = readInt(data, cursor);
+      if (n < 0) {
+        throw new IOException(
+            "Invalid numVertices: "
+                + n
+                + ". Loops with more than 2^31 - 1 vertices are not supported.");
+      }
+      long vertexPosition = cursor.position;
+      cursor.position += (long) n * POINT_BYTES;
+      if (cursor.position + 1 + 4 + RECT_BYTES > cursor.limit) {
+        throw new IOException("Insufficient input bytes for loop " + i);
+      }
+      // Skip literal empty loops, as S2Polygon.decode does.
+      if (n == 1 && readPoint(data, vertexPosition).equalsPoint(S2Loop.EMPTY_VERTEX)) {
+        cursor.position += 1 + 4 + RECT_BYTES;
+        continue;
+      }
+      vertexPositions.add(vertexPosition);
+      numVertices.add(n);
+      originInside.add(data.readByte(cursor) != 0);
+      depths.add(readInt(data, cursor));
+      boundPositions.add(cursor.position);
+      cursor.position += RECT_BYTES;
+    }
+    boundPositions.add(cursor.position);
+    cursor.position += RECT_BYTES;
+    if (cursor.position > cursor.limit) {
+      throw new IOException("Insufficient input bytes for polygon bound");
+    }
+
+    return create(
+        data, start, cursor.position, numVertices.toArray(), depths.toArray(),
+        toBooleanArray(originInside), vertexPositions.build().toArray(),
+        boundPositions.build().toArray(), null, null);
+  }
+
+  private static S2EncodedPolygon decodeCompressed(Bytes data, Cursor cursor, long start)
+      throws IOException {
+    int level = data.readByte(cursor);
+    if (level > S2CellId.MAX_LEVEL || level < 0) {
+      throw new IOException("Invalid level " + level);
+    }
+    int numLoops = data.readVarint32(cursor);
+    if (numLoops < 0) {
+      throw new IOException("Can only decode polygons with up to 2^31 - 1 loops. Got " + numLoops);
+    }
+    // The compressed vertices must be unpacked, but they are unpacked into one shared array rather
+    // than into an S2Loop per loop.
+    LittleEndianInput decoder = new LittleEndianInput(data.toInputStream(cursor));
+    List<List<S2Point>> loops = new ArrayList<>();
+    ImmutableLongArray.Builder boundPositions = ImmutableLongArray.builder();
+    IntVector numVertices = new IntVector();
+    IntVector depths = new IntVector();
+    List<Boolean> originInside = new ArrayList<>();
+    int totalVertices = 0;
+    for (int i = 0; i < numLoops; i++) {
+      int n = decoder.readVarint32();
+      if (n < 0) {
+        throw new IOException(
+            "Invalid numVertices: "
+                + n
+                + ". Loops with more than 2^31 - 1 vertices are not supported.");
+      }
+      List<S2Point> vertices = S2PointCompression.decodePointsCompressed(n, level, decoder);
+      long properties = decoder.readVarint64();
+      int depth = decoder.readVarint32();
+      long boundPosition = -1;
+      if ((properties & BOUND_ENCODED) != 0) {
+        boundPosition = cursor.position;
+        S2LatLngRect.decode(decoder);
+      }
+      // Skip literal empty loops, as S2Polygon.decode does.
+      if (n == 1 && vertices.get(0).equalsPoint(S2Loop.EMPTY_VERTEX)) {
+        continue;
+      }
+      loops.add(vertices);
+      numVertices.add(n);
+      depths.add(depth);
+      originInside.add((properties & ORIGIN_INSIDE) != 0);
+      boundPositions.add(boundPosition);
+      totalVertices += n;
+    }
+
+    double[] coordinates = new double[3 * totalVertices];
+    int[] firstVertex = new int[loops.size()];
+    int offset = 0;
+    for (int i = 0; i < loops.size(); i++) {
+      firstVertex[i] = offset / 3;
+      for (S2Point p : loops.get(i)) {
+        coordinates[offset++] = p.x;
+        coordinates[offset++] = p.y;
+        coordinates[offset++] = p.z;
+      }
+    }
+    return create(
+        data, start, cursor.position, numVertices.toArray(), depths.toArray(),
+        toBooleanArray(originInside), null, boundPositions.build().toArray(), coordinates,
+        firstVertex);
+  }
+
+  /** Mirrors S2Loop.CompressedEncodingProperties. */
+  private static final long ORIGIN_INSIDE = 1L;
+
+  private static final long BOUND_ENCODED = 1L << 1;
+
+  private static S2EncodedPolygon create(
+      Bytes data,
+      long start,
+      long limit,
+      int[] loopNumVertices,
+      int[] depths,
+      boolean[] originInside,
+      long @Nullable [] vertexPositions,
+      long[] boundPositions,
+      double @Nullable [] coordinates,
+      int @Nullable [] firstVertex) {
+    // As with S2Polygon.Shape, the full polygon has a single chain with no edges.
+    boolean full = loopNumVertices.length == 1 && loopNumVertices[0] == 1 && originInside[0];
+    int[] cumulativeEdges = new int[loopNumVertices.length + 1];
+    for (int i = 0; i < loopNumVertices.length; i++) {
+      cumulativeEdges[i + 1] = cumulativeEdges[i] + (full ? 0 : loopNumVertices[i]);
+    }
+    return new S2EncodedPolygon(
+        data, start, limit, cumulativeEdges, loopNumVertices, depths, originInside,
+        vertexPositions, boundPositions, coordinates, firstVertex);
+  }
+
+  /** Returns the number of loops in this polygon. */
+  public int numLoops() {
+    return loopNumVertices.length;
+  }
+
+  /** Returns true if this polygon has no loops. */
+  public boolean isEmpty() {
+    return numLoops() == 0;
+  }
+
+  /** Returns true if this is the full polygon, i.e. a single full loop. */
+  public boolean isFull() {
+    return numLoops() == 1 && loopNumVertices[0] == 1 && originInside[0];
+  }
+
+  /** Returns the number of vertices in loop 'i'. */
+  public int loopNumVertices(int i) {
+    return loopNumVertices[i];
+  }
+
+  /** Returns the nesting depth of loop 'i', as for {@link S2Loop#depth()}. */
+  public int loopDepth(int i) {
+    return depths[i];
+  }
+
+  /** Returns true if loop 'i' is a hole, as for {@link S2Loop#isHole()}. */
+  public boolean loopIsHole(int i) {
+    return (depths[i] & 1) != 0;
+  }
+
+  /**
+   * Returns vertex 'j' of loop 'i' in its encoded order, as for {@link S2Loop#vertex(int)}, where
+   * 'j' must be at least 0 and less than {@link #loopNumVertices(int)}.
+   */
+  public S2Point loopVertex(int i, int j) {
+    Preconditions.checkElementIndex(j, loopNumVertices[i]);
+    if (coordinates != null) {
+      int offset = 3 * (firstVertex[i] + j);
+      return new S2Point(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2]);
+    }
+    return readPoint(data, vertexPositions[i] + (long) j * POINT_BYTES);
+  }
+
+  /**
+   * Returns a view of the vertices of loop 'i' in their encoded order. Each call to {@code get}
+   * decodes the requested vertex.
+   */
+  public List<S2Point> loopVertices(int i) {
+    int n = loopNumVertices[i];
+    return new AbstractList<S2Point>() {
+      @Override
+      public int size() {
+        return n;
+      }
+
+      @Override
+      public S2Point get(int j) {
+        return loopVertex(i, j);
+      }
+    };
+  }
+
+  /** Returns the bound of loop 'i', decoding or computing it as needed. */
+  public S2LatLngRect loopRectBound(int i) {
+    if (boundPositions[i] >= 0) {
+      return readRect(boundPositions[i]);
+    }
+    return loop(i).getRectBound();
+  }
+
+  /**
+   * Returns a new {@link S2Loop} for loop 'i', with its depth set. Each call constructs a new loop,
+   * so callers that need a loop repeatedly should retain it.
+   */
+  public S2Loop loop(int i) {
+    List<S2Point> vertices = new ArrayList<>(loopVertices(i));
+    S2Loop loop;
+    if (boundPositions[i] >= 0) {
+      S2LatLngRect bound = readRect(boundPositions[i]);
+      loop = S2Loop.newLoopWithTrustedDetails(vertices, originInside[i], bound);
+    } else {
+      loop = new S2Loop(vertices);
+    }
+    loop.setDepth(depths[i]);
+    return loop;
+  }
+
+  /** Returns a new {@link S2Polygon} decoded from the underlying bytes. */
+  public S2Polygon toPolygon() {
+    try {
+      return S2Polygon.decode(data.toInputStream(start));
+    } catch (IOException e) {
+      // The encoding was already scanned successfully, so this is unexpected.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the bounding rectangle of this polygon. For the uncompressed encoding this is read
+   * from the encoding, otherwise it is computed from the shell loops on first use.
+   */
+  public S2LatLngRect getRectBound() {
+    if (vertexPositions != null) {
+      return readRect(boundPositions[numLoops()]);
+    }
+    S2LatLngRect result = bound;
+    if (result == null) {
+      S2LatLngRect.Builder builder = S2LatLngRect.Builder.empty();
+      for (int i = 0; i < numLoops(); i++) {
+        if (!loopIsHole(i)) {
+          builder.union(loopRectBound(i));
+        }
+      }
+      result = builder.build();
+      bound = result;
+    }
+    return result;
+  }
+
+  @Override
+  public int numVertices() {
+    return numVertices;
+  }
+
+  /**
+   * Returns the vertex with the given id, where loops are concatenated in order and the vertices
+   * of holes are reversed, as for {@link S2Loop#orientedVertex(int)}.
+   */
+  @Override
+  public S2Point vertex(int vertexId) {
+    int i = chainId(vertexId);
+    int j = vertexId - getChainStart(i);
+    return loopVertex(i, loopIsHole(i) ? loopNumVertices[i] - 1 - j : j);
+  }
+
+  /** Returns the number of edges, which is zero for the full polygon despite its one vertex. */
+  @Override
+  public int numEdges() {
+    return edgeId(numChains());
+  }
+
+  @Override
+  public boolean hasInterior() {
+    return true;
+  }
+
+  @Override
+  public boolean containsOrigin() {
+    boolean containsOrigin = false;
+    for (boolean inside : originInside) {
+      containsOrigin ^= inside;
+    }
+    return containsOrigin;
+  }
+
+  @Override
+  public int dimension() {
+    return 2;
+  }
+
+  private S2LatLngRect readRect(long position) {
+    // Skip the version byte, which was checked when the polygon was scanned or is checked by
+    // S2LatLngRect.decode for the compressed encoding.
+    long p = position + 1;
+    return new S2LatLngRect(
+        new R1Interval(data.readLittleEndianDouble(p), data.readLittleEndianDouble(p + 8)),
+        new S1Interval(data.readLittleEndianDouble(p + 16), data.readLittleEndianDouble(p + 24)));
+  }
+
+  private static S2Point readPoint(Bytes data, long position) {
+    return new S2Point(
+        data.readLittleEndianDouble(position),
+        data.readLittleEndianDouble(position + 8),
+        data.readLittleEndianDouble(position + 16));
+  }
+
+  private static int readInt(Bytes data, Cursor cursor) {
+    return (int) data.readUintWithLength(cursor, 4);
+  }
+
+  private static boolean[] toBooleanArray(List<Boolean> values) {
+    boolean[] result = new boolean[values.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = values.get(i);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.geometry.S2ShapeIndex.S2ClippedShape;
+import com.google.common.geometry.primitives.IntVector;
+import com.google.common.primitives.ImmutableLongArray;
+import java.util.Arrays;
+
+/**
+ * A point containment query that answers most queries against a polygon index with a single
+ * lookup in a compact range table, falling back to an exact {@link S2ContainsPointQuery} only
+ * near shape boundaries. The results are always the same as those of S2ContainsPointQuery with the
+ * same options.
+ *
+ * <p>The range table partitions the leaf cells of the sphere into contiguous S2CellId ranges, each
+ * labelled as definitely inside exactly one shape, definitely outside all shapes, or requiring an
+ * exact test. It is built from the cells of the index: cells with no edges that are inside exactly
+ * one shape form its interior covering, gaps between index cells form the exterior covering, and
+ * adjacent ranges with the same label are merged. For geofencing and reverse geocoding, where most
+ * points are far from any boundary, nearly all queries are then answered by one binary search of
+ * a primitive array.
+ *
+ * <p>The table uses 12 bytes per range. If it would exceed the given memory budget, the smallest
+ * definite ranges are demoted to exact tests until it fits, so a smaller budget trades memory for
+ * more fallbacks. The number of queries answered each way is counted, so that the budget can be
+ * tuned from the observed hit rate.
+ *
+ * <p>The table is built when the query is constructed, and the index must not be modified while
+ * the query is used. Like S2ContainsPointQuery, this class is not thread-safe.
+ */
+public class S2FastContainsPointQuery {
+  /** The default memory budget for the range table. */
+  public static final long DEFAULT_MEMORY_BUDGET_BYTES = 16L << 20;
+
+  /** The size of each range of the table in bytes. */
+  private static final int BYTES_PER_RANGE = Long.BYTES + Integer.BYTES;
+
+  /** The label of ranges that are outside all shapes. */
+  private static final int OUTSIDE = -1;
+
+  /** The label of ranges that require an exact test. */
+  private static final int EXACT = -2;
+
+  /** The exact query used near shape boundaries. */
+  private final S2ContainsPointQuery exactQuery;
+
+  /**
+   * The first leaf cell id of each range, in increasing order. The ids are stored with the sign
+   * bit flipped, so that signed comparison orders them as unsigned cell ids.
+   */
+  private final long[] rangeStarts;
+
+  /** The label of each range: a shape id, OUTSIDE, or EXACT. */
+  private final int[] rangeLabels;
+
+  private long insideHits;
+  private long outsideHits;
+  private long exactTests;
+
+  /** Constructs a semi-open query for the given index, with the default memory budget. */
+  public S2FastContainsPointQuery(S2ShapeIndex index) {
+    this(index, S2ContainsPointQuery.Options.SEMI_OPEN, DEFAULT_MEMORY_BUDGET_BYTES);
+  }
+
+  /**
+   * Constructs a query for the given index with the given options, whose range table uses at most
+   * 'memoryBudgetBytes' bytes. A budget too small for even one range disables the fast path.
+   */
+  public S2FastContainsPointQuery(
+      S2ShapeIndex index, S2ContainsPointQuery.Options options, long memoryBudgetBytes) {
+    Preconditions.checkArgument(memoryBudgetBytes >= 0, "Memory budget must be non-negative");
+    this.exactQuery = new S2ContainsPointQuery(index, options);
+
+    // Label the index cells and the gaps between them, merging adjacent ranges with equal labels.
+    ImmutableLongArray.Builder starts = ImmutableLongArray.builder();
+    IntVector labels = new IntVector();
+    S2CellId next = S2CellId.begin(S2CellId.MAX_LEVEL);
+    for (S2Iterator<S2ShapeIndex.Cell> it = index.iterator(); !it.done(); it.next()) {
+      S2CellId min = it.id().rangeMin();
+      if (min.greaterThan(next)) {
+        addRange(starts, labels, next.id(), OUTSIDE);
+      }
+      addRange(starts, labels, min.id(), label(it.entry()));
+      next = it.id().rangeMax().next();
+    }
+    if (next.lessThan(S2CellId.end(S2CellId.MAX_LEVEL))) {
+      addRange(starts, labels, next.id(), OUTSIDE);
+    }
+    long[] rangeStarts = starts.build().toArray();
+    int[] rangeLabels = labels.toArray();
+
+    // Demote ever larger definite ranges to exact tests until the table fits in the budget. The
+    // span threshold is the size of a cell, starting with a leaf cell and rising one level at a
+    // time.
+    long maxRanges = memoryBudgetBytes / BYTES_PER_RANGE;
+    for (int level = S2CellId.MAX_LEVEL; rangeStarts.length > maxRanges && level >= 0; level--) {
+      long threshold = S2CellId.lowestOnBitForLevel(level) << 1;
+      starts = ImmutableLongArray.builder();
+      labels = new IntVector();
+      for (int i = 0; i < rangeStarts.length; i++) {
+        int label = rangeLabels[i];
+        if (Long.compareUnsigned(span(rangeStarts, i), threshold) < 0) {
+          label = EXACT;
+        }
+        addRange(starts, labels, rangeStarts[i], label);
+      }
+      rangeStarts = starts.build().toArray();
+      rangeLabels = labels.toArray();
+    }
+    if (rangeStarts.length > maxRanges) {
+      rangeStarts = new long[0];
+      rangeLabels = new int[0];
+    }
+
+    // Flip the sign bits so that the starts can be binary searched with signed comparisons.
+    for (int i = 0; i < rangeStarts.length; i++) {
+      rangeStarts[i] ^= Long.MIN_VALUE;
+    }
+    this.rangeStarts = rangeStarts;
+    this.rangeLabels = rangeLabels;
+  }
+
+  /**
+   * Returns the label of the given index cell: the id of the only shape in the cell if that shape
+   * has no edges in the cell and therefore contains all of it, or else EXACT.
+   */
+  private static int label(S2ShapeIndex.Cell cell) {
+    if (cell.numShapes() != 1) {
+      return EXACT;
+    }
+    S2ClippedShape clipped = cell.clipped(0);
+    return (clipped.numEdges() == 0 && clipped.containsCenter()) ? clipped.shapeId() : EXACT;
+  }
+
+  /** Appends a range, unless the previous range has the same label and can simply be extended. */
+  private static void addRange(
+      ImmutableLongArray.Builder starts, IntVector labels, long start, int label) {
+    if (labels.isEmpty() || labels.get(labels.size() - 1) != label) {
+      starts.add(start);
+      labels.add(label);
+    }
+  }
+
+  /** Returns the unsigned difference between the start of range 'i' and the next range start. */
+  private static long span(long[] starts, int i) {
+    long end =
+        (i + 1 < starts.length) ? starts[i + 1] : S2CellId.end(S2CellId.MAX_LEVEL).id();
+    return end - starts[i];
+  }
+
+  /** Returns the label of the range containing the given point. */
+  private int lookup(S2Point p) {
+    if (rangeStarts.length == 0) {
+      return EXACT;
+    }
+    int i = Arrays.binarySearch(rangeStarts, S2CellId.fromPoint(p).id() ^ Long.MIN_VALUE);
+    // If the point's leaf cell is not a range start, the range is the one before the insertion
+    // point, which always exists since the first range starts at the first leaf cell.
+    return rangeLabels[i >= 0 ? i : -i - 2];
+  }
+
+  /** Returns the underlying exact query. */
+  public S2ContainsPointQuery exactQuery() {
+    return exactQuery;
+  }
+
+  /**
+   * Returns true if any shape in the index contains {@code p}. See {@link
+   * S2ContainsPointQuery#contains}.
+   */
+  public boolean contains(S2Point p) {
+    int label = lookup(p);
+    if (label >= 0) {
+      insideHits++;
+      return true;
+    }
+    if (label == OUTSIDE) {
+      outsideHits++;
+      return false;
+    }
+    exactTests++;
+    return exactQuery.contains(p);
+  }
+
+  /**
+   * Returns true if the given shape contains {@code p}. See {@link
+   * S2ContainsPointQuery#shapeContains(int, S2Point)}.
+   */
+  public boolean shapeContains(int shapeId, S2Point p) {
+    int label = lookup(p);
+    if (label >= 0) {
+      insideHits++;
+      return label == shapeId;
+    }
+    if (label == OUTSIDE) {
+      outsideHits++;
+      return false;
+    }
+    exactTests++;
+    return exactQuery.shapeContains(shapeId, p);
+  }
+
+  /**
+   * Returns the ids of the shapes that contain {@code p}. See {@link
+   * S2ContainsPointQuery#getContainingShapeIds}.
+   */
+  public IntVector getContainingShapeIds(S2Point p) {
+    int label = lookup(p);
+    if (label >= 0) {
+      insideHits++;
+      return IntVector.of(label);
+    }
+    if (label == OUTSIDE) {
+      outsideHits++;
+      return IntVector.empty();
+    }
+    exactTests++;
+    return exactQuery.getContainingShapeIds(p);
+  }
+
+  /** Returns the number of ranges in the range table. */
+  public int numRanges() {
+    return rangeStarts.length;
+  }
+
+  /** Returns the approximate memory used by the range table in bytes. */
+  public long memoryBytes() {
+    return (long) rangeStarts.length * BYTES_PER_RANGE;
+  }
+
+  /** Returns the number of queries answered as definitely inside a shape by the range table. */
+  public long insideHits() {
+    return insideHits;
+  }
+
+  /** Returns the number of queries answered as definitely outside all shapes by the range table. */
+  public long outsideHits() {
+    return outsideHits;
+  }
+
+  /** Returns the number of queries that required an exact test. */
+  public long exactTests() {
+    return exactTests;
+  }
+
+  /** Returns the fraction of queries answered by the range table alone, or 0 if there were none. */
+  public double hitRate() {
+    long hits = insideHits + outsideHits;
+    long total = hits + exactTests;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /** Resets the query counters to zero. */
+  public void resetCounters() {
+    insideHits = 0;
+    outsideHits = 0;
+    exactTests = 0;
+  }
+}
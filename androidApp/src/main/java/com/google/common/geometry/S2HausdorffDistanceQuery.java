@@ -17,8 +17,15 @@ package com.google.common.geometry;
 
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jspecify.annotations.Nullable;
 
 /**
  * S2HausdorffDistanceQuery is a helper class for computing discrete Hausdorff distances between two
@@ -75,26 +82,22 @@ import java.util.Optional;
  * }
  * }
  *
+ * <p>Large targets may be processed in parallel by the methods that take a {@link ForkJoinPool}.
+ * These divide the target vertices into interleaved batches, so that every batch samples the whole
+ * target, and process the batches concurrently with one S2ClosestEdgeQuery per thread. Vertices
+ * outside a cell covering of the source, which are likely to be far from it, are tried first.
+ *
  * <p>For the definition of Hausdorff distance and other details see
  * https://en.wikipedia.org/wiki/Hausdorff_distance.
  */
 @CheckReturnValue
 public final class S2HausdorffDistanceQuery {
+  // The number of vertex batches per thread of the pool used by the parallel methods.
+  private static final int BATCHES_PER_THREAD = 4;
+
   // Options are constructed from a Builder.
   private final Options options;
 
-  // maxDistance is a temporary value, repeatedly updated as a query runs with the largest target-
-  // to-source distance found so far.
-  private final DistanceCollector<S1ChordAngle> maxDistance = S1ChordAngle.maxCollector();
-
-  // sourcePoint is a temporary value. When maxDistance is updated, sourcePoint is also updated to
-  // the corresponding point on the source.
-  private S2Point sourcePoint = null;
-
-  // targetPoint is a temporary value. When maxDistance is updated, targetPoint is also updated to
-  // the corresponding point on the target.
-  private S2Point targetPoint = null;
-
   /** Options control the set of edges returned by S2HausdorffDistanceQuery. */
   public static class Options {
     // Are polygon interiors included when considering distance?
@@ -238,18 +241,7 @@ public final class S2HausdorffDistanceQuery {
    * is not (in general case) equal to that from B (as target) to A (as source).
    */
   public Optional<DirectedResult> getDirectedResult(S2ShapeIndex target, S2ShapeIndex source) {
-    S2ClosestEdgeQuery.Query closestEdgeQuery =
-        S2ClosestEdgeQuery.builder()
-            .setMaxResults(1)
-            .setIncludeInteriors(options.includeInteriors())
-            .build(source);
-
-    // maxDistance is repeatedly updated with the largest target-to-source distance found so far.
-    maxDistance.reset();
-    // When maxDistance is updated, sourcePoint is updated to the corresponding point on the source.
-    sourcePoint = null;
-    // When maxDistance is updated, targetPoint is updated to the corresponding point on the target.
-    targetPoint = null;
+    VertexSearch search = new VertexSearch(newClosestEdgeQuery(source));
 
     // This approximation of Haussdorff distance is based on computing closest point distances from
     // the _vertices_ of the target index to the _edges_ of the source index. Hence we iterate over
@@ -258,17 +250,20 @@ public final class S2HausdorffDistanceQuery {
     for (S2Shape shape : target.getShapes()) {
       for (List<S2Point> chain : shape.chains()) {
         for (S2Point vertex : chain) {
-          updateMaxDistance(vertex, closestEdgeQuery);
+          search.updateMaxDistance(vertex);
         }
       }
     }
+    return search.result();
+  }
 
-    if (maxDistance.distance().lessThan(S1ChordAngle.ZERO)) {
-      // maxDistance was never updated.
-      return Optional.empty();
-    } else {
-      return Optional.of(new DirectedResult(maxDistance.distance(), targetPoint));
-    }
+  /**
+   * As {@link #getDirectedResult(S2ShapeIndex, S2ShapeIndex)}, but processes batches of target
+   * vertices concurrently on the given pool.
+   */
+  public Optional<DirectedResult> getDirectedResult(
+      S2ShapeIndex target, S2ShapeIndex source, ForkJoinPool pool) {
+    return runBatches(target, source, null, pool);
   }
 
   /**
@@ -277,18 +272,7 @@ public final class S2HausdorffDistanceQuery {
    */
   public boolean isDirectedDistanceLess(
       S2ShapeIndex target, S2ShapeIndex source, S1ChordAngle distanceLimit) {
-    S2ClosestEdgeQuery.Query closestEdgeQuery =
-        S2ClosestEdgeQuery.builder()
-            .setMaxResults(1)
-            .setIncludeInteriors(options.includeInteriors())
-            .build(source);
-
-    // maxDistance is repeatedly updated with the largest target-to-source distance found so far.
-    maxDistance.reset();
-    // When maxDistance is updated, sourcePoint is updated to the corresponding point on the source.
-    sourcePoint = null;
-    // When maxDistance is updated, targetPoint is updated to the corresponding point on the target.
-    targetPoint = null;
+    VertexSearch search = new VertexSearch(newClosestEdgeQuery(source));
 
     // This approximation of Haussdorff distance is based on computing closest point distances from
     // the _vertices_ of the target index to the _edges_ of the source index. Hence we iterate over
@@ -297,14 +281,25 @@ public final class S2HausdorffDistanceQuery {
     for (S2Shape shape : target.getShapes()) {
       for (List<S2Point> chain : shape.chains()) {
         for (S2Point vertex : chain) {
-          updateMaxDistance(vertex, closestEdgeQuery);
-          if (maxDistance.distance().greaterThan(distanceLimit)) {
+          search.updateMaxDistance(vertex);
+          if (search.maxDistance.distance().greaterThan(distanceLimit)) {
             return false;
           }
         }
       }
     }
-    return !maxDistance.distance().isNegative();
+    return !search.maxDistance.distance().isNegative();
+  }
+
+  /**
+   * As {@link #isDirectedDistanceLess(S2ShapeIndex, S2ShapeIndex, S1ChordAngle)}, but processes
+   * batches of target vertices concurrently on the given pool. All batches stop as soon as any
+   * vertex is found to be farther than the limit.
+   */
+  public boolean isDirectedDistanceLess(
+      S2ShapeIndex target, S2ShapeIndex source, S1ChordAngle distanceLimit, ForkJoinPool pool) {
+    Optional<DirectedResult> result = runBatches(target, source, distanceLimit, pool);
+    return result.isPresent() && !result.get().distance().greaterThan(distanceLimit);
   }
 
   /**
@@ -354,44 +349,221 @@ public final class S2HausdorffDistanceQuery {
   }
 
   /**
-   * This internally used function computes the closest edge distance from the given target "point"
-   * to the source index using the given S2ClosestEdgeQuery. If necessary, updates the maxDistance,
-   * the targetPoint, and the sourcePoint.
+   * As {@link #isDistanceLess(S2ShapeIndex, S2ShapeIndex, S1ChordAngle)}, but processes batches of
+   * vertices concurrently on the given pool.
    */
-  private void updateMaxDistance(S2Point point, S2ClosestEdgeQuery.Query closestEdgeQuery) {
-    // In case we already have a valid result, it can be used as the lower bound estimate for the
-    // final Hausdorff distance. Therefore, if the distance between the current target point and the
-    // last source point does not exceed this lower bound, we can safely skip this target point, not
-    // updating the maximum distance.
-    S1ChordAngle max = maxDistance.distance();
-    if (max.greaterOrEquals(S1ChordAngle.ZERO)
-        && S2Predicates.compareDistance(point, sourcePoint, max.getLength2()) <= 0) {
-      return;
+  public boolean isDistanceLess(
+      S2ShapeIndex target, S2ShapeIndex source, S1ChordAngle distanceLimit, ForkJoinPool pool) {
+    return isDirectedDistanceLess(target, source, distanceLimit, pool)
+        && isDirectedDistanceLess(source, target, distanceLimit, pool);
+  }
+
+  /** Returns a new query for the single closest edge of the source index. */
+  private S2ClosestEdgeQuery.Query newClosestEdgeQuery(S2ShapeIndex source) {
+    return S2ClosestEdgeQuery.builder()
+        .setMaxResults(1)
+        .setIncludeInteriors(options.includeInteriors())
+        .build(source);
+  }
+
+  /**
+   * Computes the directed result from the target to the source by processing interleaved batches
+   * of target vertices concurrently on the given pool. If 'distanceLimit' is non-null, all batches
+   * stop once any vertex is found to be farther than the limit, and the returned distance is then
+   * only known to exceed the limit.
+   */
+  private Optional<DirectedResult> runBatches(
+      S2ShapeIndex target,
+      S2ShapeIndex source,
+      @Nullable S1ChordAngle distanceLimit,
+      ForkJoinPool pool) {
+    // Build both indexes now, rather than racing to build them lazily from the batches.
+    target.applyUpdates();
+    source.applyUpdates();
+
+    // Gather the target vertices, putting first those that are outside a covering of the source
+    // and therefore likely to be farther away. Both the threshold test and the pruning in
+    // updateMaxDistance() benefit from finding large distances early.
+    ArrayList<S2CellId> coveringIds = new ArrayList<>();
+    new S2ShapeIndexRegion(source).getCellUnionBound(coveringIds);
+    S2CellUnion covering = new S2CellUnion().initFromCellIds(coveringIds);
+    List<S2Point> outside = new ArrayList<>();
+    List<S2Point> inside = new ArrayList<>();
+    for (S2Shape shape : target.getShapes()) {
+      if (shape == null) {
+        continue;
+      }
+      for (List<S2Point> chain : shape.chains()) {
+        for (S2Point vertex : chain) {
+          (covering.contains(vertex) ? inside : outside).add(vertex);
+        }
+      }
+    }
+    List<S2Point> vertices = outside;
+    vertices.addAll(inside);
+
+    // Vertex i belongs to batch i % numBatches, so that each batch samples the whole target.
+    int numBatches =
+        Math.max(1, Math.min(vertices.size(), BATCHES_PER_THREAD * pool.getParallelism()));
+    Map<Thread, S2ClosestEdgeQuery.Query> queries = new ConcurrentHashMap<>();
+    List<VertexSearch> searches =
+        pool.invoke(
+            new BatchTask(
+                source, vertices, distanceLimit, new AtomicBoolean(), queries, numBatches, 0,
+                numBatches));
+
+    // Merge the batch results, keeping the first batch with the largest distance.
+    VertexSearch best = null;
+    for (VertexSearch search : searches) {
+      if (best == null || search.maxDistance.distance().greaterThan(best.maxDistance.distance())) {
+        best = search;
+      }
     }
+    return best == null ? Optional.empty() : best.result();
+  }
+
+  /** Processes a range of vertex batches, splitting the range in half until it is one batch. */
+  private final class BatchTask extends RecursiveTask<List<VertexSearch>> {
+    private final S2ShapeIndex source;
+    private final List<S2Point> vertices;
+    private final @Nullable S1ChordAngle distanceLimit;
+    private final AtomicBoolean exceeded;
+    private final Map<Thread, S2ClosestEdgeQuery.Query> queries;
+    private final int numBatches;
+    private final int begin;
+    private final int end;
+
+    BatchTask(
+        S2ShapeIndex source,
+        List<S2Point> vertices,
+        @Nullable S1ChordAngle distanceLimit,
+        AtomicBoolean exceeded,
+        Map<Thread, S2ClosestEdgeQuery.Query> queries,
+        int numBatches,
+        int begin,
+        int end) {
+      this.source = source;
+      this.vertices = vertices;
+      this.distanceLimit = distanceLimit;
+      this.exceeded = exceeded;
+      this.queries = queries;
+      this.numBatches = numBatches;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected List<VertexSearch> compute() {
+      if (end - begin > 1) {
+        int mid = (begin + end) >>> 1;
+        BatchTask left =
+            new BatchTask(
+                source, vertices, distanceLimit, exceeded, queries, numBatches, begin, mid);
+        left.fork();
+        List<VertexSearch> results =
+            new BatchTask(source, vertices, distanceLimit, exceeded, queries, numBatches, mid, end)
+                .compute();
+        List<VertexSearch> merged = new ArrayList<>(left.join());
+        merged.addAll(results);
+        return merged;
+      }
+
+      S2ClosestEdgeQuery.Query query =
+          queries.computeIfAbsent(Thread.currentThread(), unused -> newClosestEdgeQuery(source));
+      VertexSearch search = new VertexSearch(query);
+      for (int i = begin; i < vertices.size(); i += numBatches) {
+        if (distanceLimit != null && exceeded.get()) {
+          break;
+        }
+        search.updateMaxDistance(vertices.get(i));
+        if (distanceLimit != null && search.maxDistance.distance().greaterThan(distanceLimit)) {
+          exceeded.set(true);
+          break;
+        }
+      }
+      List<VertexSearch> results = new ArrayList<>(1);
+      results.add(search);
+      return results;
+    }
+  }
+
+  /**
+   * The state of one search for the target vertex farthest from the source index. Each search is
+   * used by a single thread.
+   */
+  private static final class VertexSearch {
+    // The query for the closest edge of the source index.
+    final S2ClosestEdgeQuery.Query closestEdgeQuery;
 
-    // Otherwise, find the single closest edge and the corresponding closest point in the source
-    // geometry to the target point.
-    S2ClosestEdgeQuery.PointTarget<S1ChordAngle> target =
-        new S2ClosestEdgeQuery.PointTarget<>(point);
-    closestEdgeQuery.findClosestEdges(
-        target,
-        (distance, shapeId, edgeId) -> {
-          // If this closest distance is greater than the previous maximum, update it and the
-          // corresponding source and target points.
-          if (maxDistance.update(distance)) {
-            targetPoint = point;
-
-            // If the edgeId is -1, the target point is contained by the source shape. Otherwise,
-            // find the closest point on the closest source (shape, edge) to the target point.
-            if (edgeId == -1) {
-              sourcePoint = targetPoint;
-            } else {
-              S2Shape.MutableEdge edge = new S2Shape.MutableEdge();
-              closestEdgeQuery.index().getShapes().get(shapeId).getEdge(edgeId, edge);
-              sourcePoint = S2EdgeUtil.getClosestPoint(targetPoint, edge.getStart(), edge.getEnd());
+    // maxDistance is repeatedly updated as the search runs with the largest target-to-source
+    // distance found so far.
+    final DistanceCollector<S1ChordAngle> maxDistance = S1ChordAngle.maxCollector();
+
+    // When maxDistance is updated, sourcePoint is also updated to the corresponding point on the
+    // source.
+    S2Point sourcePoint = null;
+
+    // When maxDistance is updated, targetPoint is also updated to the corresponding point on the
+    // target.
+    S2Point targetPoint = null;
+
+    VertexSearch(S2ClosestEdgeQuery.Query closestEdgeQuery) {
+      this.closestEdgeQuery = closestEdgeQuery;
+      maxDistance.reset();
+    }
+
+    /** Returns the result of the search, or Optional.empty() if no vertex was processed. */
+    Optional<DirectedResult> result() {
+      if (maxDistance.distance().lessThan(S1ChordAngle.ZERO)) {
+        // maxDistance was never updated.
+        return Optional.empty();
+      } else {
+        return Optional.of(new DirectedResult(maxDistance.distance(), targetPoint));
+      }
+    }
+
+    /**
+     * This internally used function computes the closest edge distance from the given target
+     * "point" to the source index using the S2ClosestEdgeQuery. If necessary, updates the
+     * maxDistance, the targetPoint, and the sourcePoint.
+     */
+    void updateMaxDistance(S2Point point) {
+      // In case we already have a valid result, it can be used as the lower bound estimate for the
+      // final Hausdorff distance. Therefore, if the distance between the current target point and
+      // the last source point does not exceed this lower bound, we can safely skip this target
+      // point, not updating the maximum distance.
+      S1ChordAngle max = maxDistance.distance();
+      if (max.greaterOrEquals(S1ChordAngle.ZERO)
+          && S2Predicates.compareDistance(point, sourcePoint, max.getLength2()) <= 0) {
+        return;
+      }
+
+      // Otherwise, find the single closest edge and the corresponding closest point in the source
+      // geometry to the target point.
+      S2ClosestEdgeQuery.PointTarget<S1ChordAngle> target =
+          new S2ClosestEdgeQuery.PointTarget<>(point);
+      closestEdgeQuery.findClosestEdges(
+          target,
+          (distance, shapeId, edgeId) -> {
+            // If this closest distance is greater than the previous maximum, update it and the
+            // corresponding source and target points.
+            if (maxDistance.update(distance)) {
+              targetPoint = point;
+
+              // If the edgeId is -1, the target point is contained by the source shape.
+              // Otherwise, find the closest point on the closest source (shape, edge) to the
+              // target point.
+              if (edgeId == -1) {
+                sourcePoint = targetPoint;
+              } else {
+                S2Shape.MutableEdge edge = new S2Shape.MutableEdge();
+                closestEdgeQuery.index().getShapes().get(shapeId).getEdge(edgeId, edge);
+                sourcePoint =
+                    S2EdgeUtil.getClosestPoint(targetPoint, edge.getStart(), edge.getEnd());
+              }
             }
-          }
-          return true;
-        });
+            return true;
+          });
+    }
   }
 }
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
@@ -234,6 +235,21 @@ public final class S2IncidentEdgeTracker {
     nursery.clear();
   }
 
+  /**
+   * Adds the incident edges of the given map, which was typically produced by another tracker for
+   * a different set of index cells, to this tracker's incident edges.
+   */
+  public void addAll(IncidentEdgeMap edges) {
+    for (Map.Entry<IncidentEdgeKey, Set<Integer>> entry : edges.entrySet()) {
+      Set<Integer> existing = incidentEdgeMap.get(entry.getKey());
+      if (existing == null) {
+        incidentEdgeMap.put(entry.getKey(), new HashSet<>(entry.getValue()));
+      } else {
+        existing.addAll(entry.getValue());
+      }
+    }
+  }
+
   /** Clear any accumulated state. */
   public void reset() {
     incidentEdgeMap.clear(); // Note this is linear in the table size, not constant time.
@@ -116,19 +116,51 @@ public interface S2Iterator<T extends S2Iterator.Entry> {
 
     @Override
     public void seek(S2CellId target) {
-      seek(0, target);
+      seek(0, entries.size() - 1, target);
     }
 
     @Override
     public void seekForward(S2CellId target) {
-      seek(pos, target);
+      seek(pos, entries.size() - 1, target);
     }
 
-    private void seek(int start, S2CellId target) {
-      int end = entries.size() - 1;
+    /**
+     * Gallops from the current position towards the target, doubling the step each time, and then
+     * binary searches the last step. Costs O(log d) comparisons, where d is the distance moved.
+     */
+    @Override
+    public void seekNear(S2CellId target) {
+      int size = entries.size();
+      int step = 1;
+      if (pos < size && compareAt(pos, target) < 0) {
+        // The result is after pos. Gallop forward while the entries are still before the target.
+        while (pos + step < size && compareAt(pos + step, target) < 0) {
+          step <<= 1;
+        }
+        seek(pos + (step >>> 1) + 1, Math.min(pos + step, size) - 1, target);
+      } else {
+        // The result is at or before pos. Gallop backward while the entries are not before the
+        // target.
+        while (pos - step >= 0 && compareAt(pos - step, target) >= 0) {
+          step <<= 1;
+        }
+        seek(Math.max(pos - step + 1, 0), pos - (step >>> 1) - 1, target);
+      }
+    }
+
+    /** Returns the comparison from the id of the entry at index 'i' to the given cell ID. */
+    protected int compareAt(int i, S2CellId target) {
+      return UnsignedLongs.compare(entries.get(i).id(), target.id());
+    }
+
+    /**
+     * Positions the iterator at the first entry with id >= target among the entries with indexes
+     * in [start, end], or at end + 1 if there is none.
+     */
+    private void seek(int start, int end, S2CellId target) {
       while (start <= end) {
         pos = (start + end) / 2;
-        int result = id().compareTo(target);
+        int result = compareAt(pos, target);
         if (result > 0) {
           end = pos - 1;
         } else if (result < 0) {
@@ -355,6 +387,15 @@ public interface S2Iterator<T extends S2Iterator.Entry> {
     }
   }
 
+  /**
+   * Positions the iterator as {@link #seek} does, but may be faster when the result is near the
+   * current position, as when making a series of spatially coherent queries. The default
+   * implementation simply calls {@link #seek}.
+   */
+  default void seekNear(S2CellId target) {
+    seek(target);
+  }
+
   /** Positions the iterator so that {@link #done()} is true. */
   void finish();
 
@@ -384,6 +425,26 @@ public interface S2Iterator<T extends S2Iterator.Entry> {
     return false;
   }
 
+  /**
+   * As {@link #locate(S2Point)}, but uses {@link #seekNear}, so that it may be faster when the
+   * target is near the current position.
+   */
+  @JsIgnore // No method overloading for J2CL.
+  default boolean locateNear(S2Point targetPoint) {
+    S2CellId target = S2CellId.fromPoint(targetPoint);
+    seekNear(target);
+    if (!done() && id().rangeMin().lessOrEquals(target)) {
+      return true;
+    }
+    if (!atBegin()) {
+      prev();
+      if (id().rangeMax().greaterOrEquals(target)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Positions the iterator at the index cell containing the given cell, if possible, and returns
    * the {@link CellRelation} that describes the relationship between the index and the given target
@@ -422,4 +483,27 @@ public interface S2Iterator<T extends S2Iterator.Entry> {
     }
     return CellRelation.DISJOINT;
   }
+
+  /**
+   * As {@link #locate(S2CellId)}, but uses {@link #seekNear}, so that it may be faster when the
+   * target is near the current position.
+   */
+  default CellRelation locateNear(S2CellId target) {
+    seekNear(target.rangeMin());
+    if (!done()) {
+      if (id().greaterOrEquals(target) && id().rangeMin().lessOrEquals(target)) {
+        return CellRelation.INDEXED;
+      }
+      if (id().lessOrEquals(target.rangeMax())) {
+        return CellRelation.SUBDIVIDED;
+      }
+    }
+    if (!atBegin()) {
+      prev();
+      if (id().rangeMax().greaterOrEquals(target)) {
+        return CellRelation.INDEXED;
+      }
+    }
+    return CellRelation.DISJOINT;
+  }
 }
@@ -28,6 +28,7 @@ import com.google.common.primitives.ImmutableLongArray;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * A region defined by a collection of zero or more closed loops. The interior is the region to the
@@ -266,6 +267,53 @@ public interface S2LaxPolygonShape extends S2ShapeAspect.EdgeAspect.Closed {
     return S2ShapeUtil.getReferencePoint(this);
   }
 
+  /**
+   * Returns an estimate of the memory used by this shape in bytes. Shapes decoded by {@link
+   * Coder} decode their vertices lazily from the encoded bytes, which are owned by the caller and
+   * not counted.
+   */
+  default long estimateMemoryUsage() {
+    S2MemoryUsage usage = new S2MemoryUsage();
+    addMemoryUsage(usage);
+    return usage.bytes();
+  }
+
+  /**
+   * Adds the memory used by this shape to 'usage', unless it has already been counted. See {@link
+   * S2MemoryUsage}.
+   */
+  default void addMemoryUsage(S2MemoryUsage usage) {
+    if (!usage.countFirst(this)) {
+      return;
+    }
+    int numVertices = numVertices();
+    long bytes = S2MemoryUsage.objectBytes(2 * S2MemoryUsage.REFERENCE_BYTES);
+    if (this instanceof ChainAspect.Multi) {
+      bytes += S2MemoryUsage.arrayBytes(numChains() + 1, Integer.BYTES);
+    }
+    if (this instanceof ChainAspect.Simple.Packed || this instanceof ChainAspect.Multi.Packed) {
+      bytes += S2MemoryUsage.arrayBytes(3L * numVertices, Double.BYTES);
+    } else if (this instanceof ChainAspect.Simple.Snapped
+        || this instanceof ChainAspect.Multi.Snapped) {
+      bytes += S2MemoryUsage.arrayBytes(numVertices, Long.BYTES);
+    } else if (this instanceof ChainAspect.Simple.Array
+        || this instanceof ChainAspect.Multi.Array) {
+      bytes += S2MemoryUsage.arrayBytes(numVertices, S2MemoryUsage.REFERENCE_BYTES);
+      bytes += numVertices * S2MemoryUsage.POINT_BYTES;
+    } else if (this instanceof SimpleList || this instanceof MultiList) {
+      // Decoded vertex lists are views of the encoded bytes, and are not RandomAccess, while the
+      // lists given to the factory methods hold S2Points.
+      List<S2Point> vertices =
+          this instanceof SimpleList ? ((SimpleList) this).vertices : ((MultiList) this).vertices;
+      if (vertices instanceof RandomAccess) {
+        bytes += S2MemoryUsage.listBytes(numVertices) + numVertices * S2MemoryUsage.POINT_BYTES;
+      } else {
+        bytes += S2MemoryUsage.objectBytes(4 * S2MemoryUsage.REFERENCE_BYTES);
+      }
+    }
+    usage.add(bytes);
+  }
+
   /** A simple polygon with points referenced from an array. */
   static class SimpleArray extends Simple.Array implements S2LaxPolygonShape {
     private SimpleArray(Iterable<S2Point> vertices) {
@@ -364,6 +364,37 @@ public final class S2Loop implements S2Region, Comparable<S2Loop>, Serializable,
     return numVertices;
   }
 
+  /**
+   * Returns an estimate of the memory used by this loop in bytes, including its vertices and its
+   * index, if the index has been built.
+   */
+  public long estimateMemoryUsage() {
+    S2MemoryUsage usage = new S2MemoryUsage();
+    addMemoryUsage(usage);
+    return usage.bytes();
+  }
+
+  /**
+   * Adds the memory used by this loop to 'usage', unless it has already been counted. See {@link
+   * S2MemoryUsage}.
+   */
+  public void addMemoryUsage(S2MemoryUsage usage) {
+    if (!usage.countFirst(this)) {
+      return;
+    }
+    // Five references, two ints and a boolean, and the AtomicInteger of unindexedContainsCalls.
+    usage.add(
+        S2MemoryUsage.objectBytes(5 * S2MemoryUsage.REFERENCE_BYTES + 2 * Integer.BYTES + 1)
+            + S2MemoryUsage.objectBytes(Integer.BYTES));
+    usage.add(
+        S2MemoryUsage.arrayBytes(vertices.length, S2MemoryUsage.REFERENCE_BYTES)
+            + vertices.length * S2MemoryUsage.POINT_BYTES);
+    usage.add(2 * S2MemoryUsage.LAT_LNG_RECT_BYTES);
+    if (index != null) {
+      index.addMemoryUsage(usage);
+    }
+  }
+
   /**
    * For convenience, we make two entire copies of the vertex list available: vertex(n..2*n-1) is
    * mapped to vertex(0..n-1), where n == numVertices().
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * An accumulator of estimated memory usage in bytes, similar to the SpaceUsed() methods of the C++
+ * S2 library, for sizing caches and shards by the memory their geometry actually uses.
+ *
+ * <p>Geometry classes that support estimates have an {@code estimateMemoryUsage()} method that
+ * returns the bytes used by a single object, and an {@code addMemoryUsage(S2MemoryUsage)} method
+ * that adds them to an accumulator. The accumulator remembers the objects it has counted, so that
+ * objects shared by several of the added objects are counted exactly once. For example, adding
+ * an S2Polygon and then an S2ShapeIndex containing its shape counts the polygon only once:
+ *
+ * {@snippet :
+ * S2MemoryUsage usage = new S2MemoryUsage();
+ * polygon.addMemoryUsage(usage);
+ * index.addMemoryUsage(usage);
+ * long bytes = usage.bytes();
+ * }
+ *
+ * <p>Estimates assume the common layout of a 64-bit JVM with compressed references: 12 byte object
+ * headers, 16 byte array headers, 4 byte references, and 8 byte alignment. They include the
+ * objects owned by the measured object, such as the vertices of a loop or the cells of an index,
+ * but not objects that are only referenced, such as the data values of an {@link S2PointIndex}.
+ * Vertex S2Points are assumed not to be shared, and are counted by each object that stores them.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class S2MemoryUsage {
+  /** The size of an object header in bytes. */
+  static final int OBJECT_HEADER_BYTES = 12;
+
+  /** The size of an array header in bytes, including the array length. */
+  static final int ARRAY_HEADER_BYTES = 16;
+
+  /** The size of a reference in bytes. */
+  static final int REFERENCE_BYTES = 4;
+
+  /** The size of an S2Point, with three double fields. */
+  static final long POINT_BYTES = objectBytes(3 * Double.BYTES);
+
+  /** The size of an S2CellId, with one long field. */
+  static final long CELL_ID_BYTES = objectBytes(Long.BYTES);
+
+  /** The size of an S2LatLngRect, with its two intervals of two doubles each. */
+  static final long LAT_LNG_RECT_BYTES =
+      objectBytes(2 * REFERENCE_BYTES) + 2 * objectBytes(2 * Double.BYTES);
+
+  /** The objects counted so far, compared by identity. */
+  private final Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private long bytes;
+
+  /** Constructs an empty accumulator. */
+  public S2MemoryUsage() {}
+
+  /** Returns the total estimated bytes of the objects added so far. */
+  public long bytes() {
+    return bytes;
+  }
+
+  /**
+   * Adds the memory used by the given shape, if it has not already been counted. Polygon, loop
+   * and lax polygon shapes are measured fully. Other shapes are counted only as a single object,
+   * since their storage is not known.
+   */
+  public void addShape(S2Shape shape) {
+    if (shape instanceof S2Loop) {
+      ((S2Loop) shape).addMemoryUsage(this);
+    } else if (shape instanceof S2LaxPolygonShape) {
+      ((S2LaxPolygonShape) shape).addMemoryUsage(this);
+    } else if (shape instanceof S2Polygon.Shape) {
+      if (countFirst(shape)) {
+        add(objectBytes(REFERENCE_BYTES));
+      }
+      ((S2Polygon.Shape) shape).polygon().addMemoryUsage(this);
+    } else if (countFirst(shape)) {
+      add(objectBytes(0));
+    }
+  }
+
+  /**
+   * Returns true if 'object' has not been counted before, and records that it has now been
+   * counted. Objects that add their memory usage call this first, and return if it is false.
+   */
+  boolean countFirst(Object object) {
+    return counted.add(object);
+  }
+
+  /** Adds the given number of bytes. */
+  void add(long bytes) {
+    this.bytes += bytes;
+  }
+
+  /** Returns the size of an object with the given total size of fields, including alignment. */
+  static long objectBytes(long fieldBytes) {
+    return align(OBJECT_HEADER_BYTES + fieldBytes);
+  }
+
+  /** Returns the size of an array with the given length and element size, including alignment. */
+  static long arrayBytes(long length, int elementBytes) {
+    return align(ARRAY_HEADER_BYTES + length * elementBytes);
+  }
+
+  /**
+   * Returns the size of an ArrayList, or a similar list, with the given number of elements, not
+   * including the elements themselves. Spare capacity is not known, so it is not counted.
+   */
+  static long listBytes(long size) {
+    return objectBytes(REFERENCE_BYTES + 2 * Integer.BYTES) + arrayBytes(size, REFERENCE_BYTES);
+  }
+
+  /** Rounds the given size up to the 8 byte object alignment. */
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+}
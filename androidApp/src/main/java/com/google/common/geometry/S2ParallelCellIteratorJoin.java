@@ -0,0 +1,307 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+/**
+ * A parallel version of {@link S2CellIteratorJoin}. The leaf cells of the sphere are partitioned
+ * into contiguous S2CellId ranges that each hold about the same number of index cells, and the
+ * ranges are joined concurrently on a {@link ForkJoinPool}. Each pair of cells is visited by
+ * exactly one partition, so the union of the pairs visited is the same as for a sequential join,
+ * although the order in which they are visited is not.
+ *
+ * <p>Visitors are created by a {@link Supplier}, once for each thread that runs partitions, and
+ * each visitor is only ever called from that thread. Visitors therefore need not be thread-safe,
+ * and can accumulate results that the caller merges after the join from {@link Result#visitors()}.
+ * If any visitor returns false, the join stops as soon as possible: partitions that have not yet
+ * started are skipped, and partitions in progress stop at their next pair.
+ *
+ * <p>Example usage:
+ *
+ * {@snippet :
+ * S2ParallelCellIteratorJoin<S2ShapeIndex.Cell, S2PointIndex.Entry<Listing>> join =
+ *     new S2ParallelCellIteratorJoin<>(polygons.iterator(), listings.iterator(), tolerance, 64);
+ * S2ParallelCellIteratorJoin.Result<ListingCollector> result =
+ *     join.join(ForkJoinPool.commonPool(), ListingCollector::new);
+ * for (ListingCollector collector : result.visitors()) {
+ *   collector.mergeInto(matches);
+ * }
+ * }
+ *
+ * <p>An exact join balances the partitions by the index cells of whichever iterator has more, but
+ * a tolerant join always balances them by the index cells of iterator A, so the larger index
+ * should be given as A when the tolerance is non-zero.
+ *
+ * <p>The provided iterators are not moved; each partition joins copies of them, so the underlying
+ * indexes must not be modified during the join.
+ */
+public class S2ParallelCellIteratorJoin<E1 extends S2Iterator.Entry, E2 extends S2Iterator.Entry> {
+  /** The first and last leaf cells, which bound the first and last partitions. */
+  private static final S2CellId FIRST_LEAF = S2CellId.begin(S2CellId.MAX_LEVEL);
+
+  private static final S2CellId LAST_LEAF = S2CellId.end(S2CellId.MAX_LEVEL).prev();
+
+  private final S2Iterator<E1> iteratorA;
+  private final S2Iterator<E2> iteratorB;
+  private final S1ChordAngle tolerance;
+  private final int maxPartitions;
+
+  /** Constructor that takes two S2Iterators, a tolerance, and the maximum number of partitions. */
+  public S2ParallelCellIteratorJoin(
+      S2Iterator<E1> iteratorA, S2Iterator<E2> iteratorB, S1ChordAngle tolerance,
+      int maxPartitions) {
+    Preconditions.checkArgument(maxPartitions > 0, "maxPartitions must be positive");
+    this.iteratorA = iteratorA;
+    this.iteratorB = iteratorB;
+    this.tolerance = tolerance;
+    this.maxPartitions = maxPartitions;
+  }
+
+  /** The outcome of a parallel join. */
+  public static final class Result<V> {
+    private final S2CellId[] partitionMins;
+    private final S2CellId[] partitionMaxes;
+    private final long[] pairCounts;
+    private final ImmutableList<V> visitors;
+    private final boolean completed;
+
+    private Result(
+        S2CellId[] partitionMins,
+        S2CellId[] partitionMaxes,
+        long[] pairCounts,
+        List<V> visitors,
+        boolean completed) {
+      this.partitionMins = partitionMins;
+      this.partitionMaxes = partitionMaxes;
+      this.pairCounts = pairCounts;
+      this.visitors = ImmutableList.copyOf(visitors);
+      this.completed = completed;
+    }
+
+    /** Returns true if no visitor returned false, i.e. every pair was visited. */
+    public boolean completed() {
+      return completed;
+    }
+
+    /** Returns the number of partitions. */
+    public int numPartitions() {
+      return pairCounts.length;
+    }
+
+    /** Returns the first leaf cell of partition 'i'. */
+    public S2CellId partitionMin(int i) {
+      return partitionMins[i];
+    }
+
+    /** Returns the last leaf cell of partition 'i'. */
+    public S2CellId partitionMax(int i) {
+      return partitionMaxes[i];
+    }
+
+    /** Returns the number of pairs passed to a visitor by partition 'i'. */
+    public long numPairs(int i) {
+      return pairCounts[i];
+    }
+
+    /** Returns the total number of pairs passed to visitors. */
+    public long totalPairs() {
+      long total = 0;
+      for (long count : pairCounts) {
+        total += count;
+      }
+      return total;
+    }
+
+    /** Returns the visitors that were created, one for each thread that joined a partition. */
+    public ImmutableList<V> visitors() {
+      return visitors;
+    }
+  }
+
+  /**
+   * Executes the join on the given pool, and returns the visitors that were created along with the
+   * number of pairs visited by each partition. The visitor contract is as for {@link
+   * S2CellIteratorJoin#join}.
+   */
+  public <V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>> Result<V> join(
+      ForkJoinPool pool, Supplier<? extends V> visitorFactory) {
+    List<S2CellId> splits = chooseSplits();
+    int numPartitions = splits.size() + 1;
+    S2CellId[] mins = new S2CellId[numPartitions];
+    S2CellId[] maxes = new S2CellId[numPartitions];
+    mins[0] = FIRST_LEAF;
+    for (int i = 0; i < splits.size(); i++) {
+      maxes[i] = splits.get(i).prev();
+      mins[i + 1] = splits.get(i);
+    }
+    maxes[numPartitions - 1] = LAST_LEAF;
+
+    long[] pairCounts = new long[numPartitions];
+    // Each thread lazily creates its own visitor and join, and reuses them for every partition it
+    // runs, so the join's scratch storage is also reused.
+    Map<Thread, Worker<E1, E2, V>> workers = new ConcurrentHashMap<>();
+    Supplier<Worker<E1, E2, V>> workerFactory =
+        () ->
+            new Worker<>(
+                new S2CellIteratorJoin<>(iteratorA.copy(), iteratorB.copy(), tolerance),
+                visitorFactory.get());
+    AtomicBoolean stopped = new AtomicBoolean();
+    pool.invoke(
+        new JoinTask<>(
+            workers, workerFactory, mins, maxes, pairCounts, stopped, 0, numPartitions));
+    List<V> visitors = new ArrayList<>();
+    for (Worker<E1, E2, V> worker : workers.values()) {
+      visitors.add(worker.visitor);
+    }
+    return new Result<>(mins, maxes, pairCounts, visitors, !stopped.get());
+  }
+
+  /** The join and visitor used by one thread. */
+  private static final class Worker<
+      E1 extends S2Iterator.Entry, E2 extends S2Iterator.Entry, V> {
+    final S2CellIteratorJoin<E1, E2> join;
+    final V visitor;
+
+    Worker(S2CellIteratorJoin<E1, E2> join, V visitor) {
+      this.join = join;
+      this.visitor = visitor;
+    }
+  }
+
+  /** Joins a range of partitions, splitting the range in half until it is a single partition. */
+  private static final class JoinTask<
+          E1 extends S2Iterator.Entry,
+          E2 extends S2Iterator.Entry,
+          V extends BiPredicate<S2CellRangeIterator<E1>, S2CellRangeIterator<E2>>>
+      extends RecursiveAction {
+    private final Map<Thread, Worker<E1, E2, V>> workers;
+    private final Supplier<Worker<E1, E2, V>> workerFactory;
+    private final S2CellId[] mins;
+    private final S2CellId[] maxes;
+    private final long[] pairCounts;
+    private final AtomicBoolean stopped;
+    private final int begin;
+    private final int end;
+
+    JoinTask(
+        Map<Thread, Worker<E1, E2, V>> workers,
+        Supplier<Worker<E1, E2, V>> workerFactory,
+        S2CellId[] mins,
+        S2CellId[] maxes,
+        long[] pairCounts,
+        AtomicBoolean stopped,
+        int begin,
+        int end) {
+      this.workers = workers;
+      this.workerFactory = workerFactory;
+      this.mins = mins;
+      this.maxes = maxes;
+      this.pairCounts = pairCounts;
+      this.stopped = stopped;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin > 1) {
+        int mid = (begin + end) >>> 1;
+        invokeAll(
+            new JoinTask<>(workers, workerFactory, mins, maxes, pairCounts, stopped, begin, mid),
+            new JoinTask<>(workers, workerFactory, mins, maxes, pairCounts, stopped, mid, end));
+        return;
+      }
+      if (stopped.get()) {
+        return;
+      }
+      Worker<E1, E2, V> worker =
+          workers.computeIfAbsent(Thread.currentThread(), unused -> workerFactory.get());
+      S2CellIteratorJoin<E1, E2> join = worker.join;
+      V visitor = worker.visitor;
+      long[] count = new long[1];
+      boolean completed =
+          join.join(
+              mins[begin],
+              maxes[begin],
+              (a, b) -> {
+                if (stopped.get()) {
+                  return false;
+                }
+                count[0]++;
+                return visitor.test(a, b);
+              });
+      pairCounts[begin] = count[0];
+      if (!completed) {
+        stopped.set(true);
+      }
+    }
+  }
+
+  /**
+   * Returns up to maxPartitions - 1 increasing leaf cells that split the index cells of one
+   * iterator into ranges of about equal size. Each split is the first leaf of an index cell.
+   *
+   * <p>An exact join may split either iterator, and splits the larger. A tolerant join must split
+   * iterator A, since the tolerant join requires each A index cell to lie within a single cell of
+   * the covering of its range.
+   */
+  private List<S2CellId> chooseSplits() {
+    S2Iterator<?> iter = iteratorA.copy();
+    long numCells = count(iter);
+    if (tolerance.isZero()) {
+      S2Iterator<?> iterB = iteratorB.copy();
+      long numCellsB = count(iterB);
+      if (numCellsB > numCells) {
+        iter = iterB;
+        numCells = numCellsB;
+      }
+    }
+
+    List<S2CellId> splits = new ArrayList<>();
+    int numPartitions = (int) Math.min(maxPartitions, Math.max(1, numCells));
+    long position = 0;
+    int partition = 1;
+    for (iter.restart(); !iter.done() && partition < numPartitions; iter.next(), position++) {
+      if (position >= partition * numCells / numPartitions) {
+        S2CellId split = iter.id().rangeMin();
+        if (split.greaterThan(FIRST_LEAF)) {
+          splits.add(split);
+        }
+        partition++;
+      }
+    }
+    return splits;
+  }
+
+  private static long count(S2Iterator<?> iter) {
+    long count = 0;
+    for (iter.restart(); !iter.done(); iter.next()) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -108,6 +108,37 @@ public final class S2PointIndex<D> {
     return entries.size();
   }
 
+  /**
+   * Returns an estimate of the memory used by this index in bytes, including its entries and their
+   * points, but not their data values.
+   */
+  public long estimateMemoryUsage() {
+    S2MemoryUsage usage = new S2MemoryUsage();
+    addMemoryUsage(usage);
+    return usage.bytes();
+  }
+
+  /**
+   * Adds the memory used by this index to 'usage', unless it has already been counted. See {@link
+   * S2MemoryUsage}.
+   */
+  public void addMemoryUsage(S2MemoryUsage usage) {
+    if (!usage.countFirst(this)) {
+      return;
+    }
+    // This object, and the AVL tree object with its root, first, last and comparator fields.
+    usage.add(
+        S2MemoryUsage.objectBytes(S2MemoryUsage.REFERENCE_BYTES)
+            + S2MemoryUsage.objectBytes(5 * S2MemoryUsage.REFERENCE_BYTES + Integer.BYTES + 1));
+    // Each entry has a tree node with key, left and right references and balance info, and the
+    // Entry itself with its id, point and data.
+    long entryBytes =
+        S2MemoryUsage.objectBytes(3 * S2MemoryUsage.REFERENCE_BYTES + Integer.BYTES)
+            + S2MemoryUsage.objectBytes(Long.BYTES + 2 * S2MemoryUsage.REFERENCE_BYTES)
+            + S2MemoryUsage.POINT_BYTES;
+    usage.add(entries.size() * entryBytes);
+  }
+
   /** Returns true if the index is empty. */
   public boolean isEmpty() {
     return entries.isEmpty();
@@ -36,9 +36,14 @@ import com.google.common.primitives.UnsignedLongs;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * An encoder/decoder of Lists of {@link S2Point}s.
@@ -103,6 +108,15 @@ public class S2PointVectorCoder implements S2Coder<List<S2Point>> {
    */
   private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
 
+  /** The minimum number of blocks for which the parallel encoder uses more than one thread. */
+  private static final int MIN_PARALLEL_BLOCKS = 256;
+
+  /** The number of points converted to cell values by each parallel subtask. */
+  private static final int PARALLEL_POINTS = 16384;
+
+  /** The number of blocks encoded by each parallel subtask. */
+  private static final int PARALLEL_BLOCKS = 1024;
+
   /** The exception value in the COMPACT encoding format. */
   private static final long EXCEPTION = S2CellId.sentinel().id();
 
@@ -372,10 +386,73 @@ public class S2PointVectorCoder implements S2Coder<List<S2Point>> {
     // values to be encoded).
     Base base = chooseBase(cellPointValues, level, haveExceptions);
 
-    // Now encode the output, starting with the 2-byte header (see above).
+    writeCompactHeader(cellPointValues.length(), level, base, haveExceptions, output);
+
+    // Now we encode the contents of each block.
     int numBlocks = (cellPointValues.length() + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    List<byte[]> blocks = new ArrayList<>(numBlocks);
+    List<S2Point> exceptions = new ArrayList<>();
+    MutableBlockCode code = new MutableBlockCode();
+    for (int i = 0; i < cellPointValues.length(); i += BLOCK_SIZE) {
+      blocks.add(encodeBlock(values, cellPointValues, i, base, haveExceptions, code, exceptions));
+    }
+    VectorCoder.BYTE_ARRAY.encode(blocks, output);
+  }
+
+  /**
+   * Encodes {@code values} exactly as {@link #encode(List, OutputStream)} does, but uses the given
+   * {@code pool} to convert points to cell values and to encode the blocks of the COMPACT format
+   * concurrently. Each block chooses its own offset and delta widths, so blocks are encoded into
+   * separate buffers and then concatenated together with their offsets table. The output is
+   * byte-identical to the sequential encoder.
+   *
+   * <p>{@code values} should support fast random access. Small inputs, and the FAST format, are
+   * encoded on the calling thread.
+   */
+  public void encode(List<S2Point> values, OutputStream output, ForkJoinPool pool)
+      throws IOException {
+    if (type == Format.FAST || values.size() < MIN_PARALLEL_BLOCKS * BLOCK_SIZE) {
+      encode(values, output);
+      return;
+    }
+
+    // 1. Compute the CellPoint representation of each point in parallel, with a histogram of levels
+    // per task that is merged afterwards.
+    CellPoint[] cellPoints = new CellPoint[values.size()];
+    int[] levelCounts =
+        pool.invoke(new CellPointsTask(values, cellPoints, 0, values.size(), PARALLEL_POINTS));
+    int level = chooseBestLevel(levelCounts, values.size());
+    if (level < 0) {
+      encodeFast(values, output);
+      return;
+    }
+
+    // 2. Convert to encodable values and choose "base", as in encodeCompact().
+    ImmutableLongArray cellPointValues = convertCellsToValues(Arrays.asList(cellPoints), level);
+    boolean haveExceptions = cellPointValues.contains(EXCEPTION);
+    Base base = chooseBase(cellPointValues, level, haveExceptions);
+    writeCompactHeader(cellPointValues.length(), level, base, haveExceptions, output);
+
+    // 3. Encode the blocks into separate buffers, and then concatenate them.
+    int numBlocks = (cellPointValues.length() + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    byte[][] blocks = new byte[numBlocks][];
+    try {
+      pool.invoke(
+          new EncodeBlocksTask(
+              values, cellPointValues, base, haveExceptions, blocks, 0, numBlocks));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    VectorCoder.BYTE_ARRAY.encode(Arrays.asList(blocks), output);
+  }
+
+  /** Writes the 2-byte COMPACT header followed by 0-7 bytes of "base" (see encodeCompact()). */
+  private static void writeCompactHeader(
+      int numValues, int level, Base base, boolean haveExceptions, OutputStream output)
+      throws IOException {
+    int numBlocks = (numValues + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
     int baseBytes = base.baseBits >> 3;
-    int lastBlockCount = cellPointValues.length() - BLOCK_SIZE * (numBlocks - 1);
+    int lastBlockCount = numValues - BLOCK_SIZE * (numBlocks - 1);
     Preconditions.checkArgument(lastBlockCount >= 0);
     Preconditions.checkArgument(lastBlockCount <= BLOCK_SIZE);
     Preconditions.checkArgument(baseBytes <= 7);
@@ -386,82 +463,193 @@ public class S2PointVectorCoder implements S2Coder<List<S2Point>> {
     // Next we encode 0-7 bytes of "base".
     int baseShift = baseShift(level, base.baseBits);
     EncodedInts.encodeUintWithLength(output, base.base >> baseShift, baseBytes);
+  }
 
-    // Now we encode the contents of each block.
-    List<byte[]> blocks = new ArrayList<>();
-    List<S2Point> exceptions = new ArrayList<>();
-    MutableBlockCode code = new MutableBlockCode();
-    for (int i = 0; i < cellPointValues.length(); i += BLOCK_SIZE) {
-      int blockSize = min(BLOCK_SIZE, cellPointValues.length() - i);
-      getBlockCode(code, cellPointValues.subArray(i, i + blockSize), base.base, haveExceptions);
-
-      // Encode the one-byte block header (see above).
-      ByteArrayOutput block = new ByteArrayOutput();
-      int offsetBytes = code.offsetBits >> 3;
-      int deltaNibbles = code.deltaBits >> 2;
-      int overlapNibbles = code.overlapBits >> 2;
-      Preconditions.checkArgument((offsetBytes - overlapNibbles) <= 7);
-      Preconditions.checkArgument(overlapNibbles <= 1);
-      Preconditions.checkArgument(deltaNibbles <= 16);
-      block.write((offsetBytes - overlapNibbles) | (overlapNibbles << 3) | (deltaNibbles - 1) << 4);
-
-      // Determine the offset for this block, and whether there are exceptions.
-      long offset = -1L;
-      int numExceptions = 0;
-      for (int j = 0; j < blockSize; j++) {
-        if (cellPointValues.get(i + j) == EXCEPTION) {
-          numExceptions += 1;
-        } else {
-          Preconditions.checkArgument(cellPointValues.get(i + j) >= base.base);
-          offset = UnsignedLongs.min(offset, cellPointValues.get(i + j) - base.base);
+  /**
+   * Encodes the block of up to {@link #BLOCK_SIZE} values starting at index {@code i} and returns
+   * its bytes. The encoding of each block depends only on its own values and the global {@code
+   * base}, so blocks may be encoded independently. {@code code} and {@code exceptions} are scratch
+   * space that is overwritten.
+   */
+  private static byte[] encodeBlock(
+      List<S2Point> values,
+      ImmutableLongArray cellPointValues,
+      int i,
+      Base base,
+      boolean haveExceptions,
+      MutableBlockCode code,
+      List<S2Point> exceptions)
+      throws IOException {
+    int blockSize = min(BLOCK_SIZE, cellPointValues.length() - i);
+    getBlockCode(code, cellPointValues.subArray(i, i + blockSize), base.base, haveExceptions);
+
+    // Encode the one-byte block header (see above).
+    ByteArrayOutput block = new ByteArrayOutput();
+    int offsetBytes = code.offsetBits >> 3;
+    int deltaNibbles = code.deltaBits >> 2;
+    int overlapNibbles = code.overlapBits >> 2;
+    Preconditions.checkArgument((offsetBytes - overlapNibbles) <= 7);
+    Preconditions.checkArgument(overlapNibbles <= 1);
+    Preconditions.checkArgument(deltaNibbles <= 16);
+    block.write((offsetBytes - overlapNibbles) | (overlapNibbles << 3) | (deltaNibbles - 1) << 4);
+
+    // Determine the offset for this block, and whether there are exceptions.
+    long offset = -1L;
+    int numExceptions = 0;
+    for (int j = 0; j < blockSize; j++) {
+      if (cellPointValues.get(i + j) == EXCEPTION) {
+        numExceptions += 1;
+      } else {
+        Preconditions.checkArgument(cellPointValues.get(i + j) >= base.base);
+        offset = UnsignedLongs.min(offset, cellPointValues.get(i + j) - base.base);
+      }
+    }
+    if (numExceptions == blockSize) {
+      offset = 0;
+    }
+
+    // Encode the offset.
+    int offsetShift = code.deltaBits - code.overlapBits;
+    offset &= ~bitMask(offsetShift);
+    Preconditions.checkArgument((offset == 0) == (offsetBytes == 0));
+    if (offset > 0) {
+      EncodedInts.encodeUintWithLength(block, offset >>> offsetShift, offsetBytes);
+    }
+
+    // Encode the deltas, and also gather any exceptions present.
+    int deltaBytes = (deltaNibbles + 1) >> 1;
+    exceptions.clear();
+    for (int j = 0; j < blockSize; j++) {
+      long delta;
+      if (cellPointValues.get(i + j) == EXCEPTION) {
+        delta = exceptions.size();
+        exceptions.add(values.get(i + j));
+      } else {
+        Preconditions.checkArgument(
+            UnsignedLongs.compare(cellPointValues.get(i + j), offset + base.base) >= 0);
+        delta = cellPointValues.get(i + j) - (offset + base.base);
+        if (haveExceptions) {
+          Preconditions.checkArgument(UnsignedLongs.compare(delta, -1L - BLOCK_SIZE) <= 0);
+          delta += BLOCK_SIZE;
         }
       }
-      if (numExceptions == blockSize) {
-        offset = 0;
+      Preconditions.checkArgument(UnsignedLongs.compare(delta, bitMask(code.deltaBits)) <= 0);
+      if (((deltaNibbles & 1) != 0) && ((j & 1) != 0)) {
+        // Combine this delta with the high-order 4 bits of the previous delta.
+        int lastByte = block.removeLast();
+        delta = (delta << 4) | (lastByte & 0xf);
       }
-
-      // Encode the offset.
-      int offsetShift = code.deltaBits - code.overlapBits;
-      offset &= ~bitMask(offsetShift);
-      Preconditions.checkArgument((offset == 0) == (offsetBytes == 0));
-      if (offset > 0) {
-        EncodedInts.encodeUintWithLength(block, offset >>> offsetShift, offsetBytes);
+      EncodedInts.encodeUintWithLength(block, delta, deltaBytes);
+    }
+    // Append any exceptions to the end of the block.
+    if (numExceptions > 0) {
+      for (S2Point p : exceptions) {
+        p.encode(block);
       }
+    }
+    return block.toByteArray();
+  }
 
-      // Encode the deltas, and also gather any exceptions present.
-      int deltaBytes = (deltaNibbles + 1) >> 1;
-      exceptions.clear();
-      for (int j = 0; j < blockSize; j++) {
-        long delta;
-        if (cellPointValues.get(i + j) == EXCEPTION) {
-          delta = exceptions.size();
-          exceptions.add(values.get(i + j));
-        } else {
-          Preconditions.checkArgument(
-              UnsignedLongs.compare(cellPointValues.get(i + j), offset + base.base) >= 0);
-          delta = cellPointValues.get(i + j) - (offset + base.base);
-          if (haveExceptions) {
-            Preconditions.checkArgument(UnsignedLongs.compare(delta, -1L - BLOCK_SIZE) <= 0);
-            delta += BLOCK_SIZE;
-          }
-        }
-        Preconditions.checkArgument(UnsignedLongs.compare(delta, bitMask(code.deltaBits)) <= 0);
-        if (((deltaNibbles & 1) != 0) && ((j & 1) != 0)) {
-          // Combine this delta with the high-order 4 bits of the previous delta.
-          int lastByte = block.removeLast();
-          delta = (delta << 4) | (lastByte & 0xf);
+  /**
+   * Computes the {@link CellPoint} of each point in {@code [begin, end)} into {@code cellPoints},
+   * and returns the histogram of {@link S2CellId} levels over that range.
+   */
+  private static final class CellPointsTask extends RecursiveTask<int[]> {
+    private final List<S2Point> points;
+    private final CellPoint[] cellPoints;
+    private final int begin;
+    private final int end;
+    private final int grainSize;
+
+    CellPointsTask(
+        List<S2Point> points, CellPoint[] cellPoints, int begin, int end, int grainSize) {
+      this.points = points;
+      this.cellPoints = cellPoints;
+      this.begin = begin;
+      this.end = end;
+      this.grainSize = grainSize;
+    }
+
+    @Override
+    protected int[] compute() {
+      if (end - begin > grainSize) {
+        int mid = (begin + end) >>> 1;
+        CellPointsTask left = new CellPointsTask(points, cellPoints, begin, mid, grainSize);
+        left.fork();
+        int[] levelCounts = new CellPointsTask(points, cellPoints, mid, end, grainSize).compute();
+        int[] leftCounts = left.join();
+        for (int level = 0; level < levelCounts.length; level++) {
+          levelCounts[level] += leftCounts[level];
         }
-        EncodedInts.encodeUintWithLength(block, delta, deltaBytes);
+        return levelCounts;
       }
-      // Append any exceptions to the end of the block.
-      if (numExceptions > 0) {
-        for (S2Point p : exceptions) {
-          p.encode(block);
+      int[] levelCounts = new int[S2CellId.MAX_LEVEL + 1];
+      for (int i = begin; i < end; i++) {
+        cellPoints[i] = toCellPoint(points.get(i), levelCounts);
+      }
+      return levelCounts;
+    }
+  }
+
+  /**
+   * Encodes blocks {@code [beginBlock, endBlock)} into {@code blocks}. An IOException from the
+   * underlying streams is rethrown as an {@link UncheckedIOException}.
+   */
+  private static final class EncodeBlocksTask extends RecursiveAction {
+    private final List<S2Point> values;
+    private final ImmutableLongArray cellPointValues;
+    private final Base base;
+    private final boolean haveExceptions;
+    private final byte[][] blocks;
+    private final int beginBlock;
+    private final int endBlock;
+
+    EncodeBlocksTask(
+        List<S2Point> values,
+        ImmutableLongArray cellPointValues,
+        Base base,
+        boolean haveExceptions,
+        byte[][] blocks,
+        int beginBlock,
+        int endBlock) {
+      this.values = values;
+      this.cellPointValues = cellPointValues;
+      this.base = base;
+      this.haveExceptions = haveExceptions;
+      this.blocks = blocks;
+      this.beginBlock = beginBlock;
+      this.endBlock = endBlock;
+    }
+
+    @Override
+    protected void compute() {
+      if (endBlock - beginBlock > PARALLEL_BLOCKS) {
+        int mid = (beginBlock + endBlock) >>> 1;
+        invokeAll(
+            new EncodeBlocksTask(
+                values, cellPointValues, base, haveExceptions, blocks, beginBlock, mid),
+            new EncodeBlocksTask(
+                values, cellPointValues, base, haveExceptions, blocks, mid, endBlock));
+        return;
+      }
+      MutableBlockCode code = new MutableBlockCode();
+      List<S2Point> exceptions = new ArrayList<>();
+      try {
+        for (int b = beginBlock; b < endBlock; b++) {
+          blocks[b] =
+              encodeBlock(
+                  values,
+                  cellPointValues,
+                  b << BLOCK_SHIFT,
+                  base,
+                  haveExceptions,
+                  code,
+                  exceptions);
         }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
-      blocks.add(block.toByteArray());
     }
-    VectorCoder.BYTE_ARRAY.encode(blocks, output);
   }
 
   private static List<S2Point> decodeCompact(Bytes data, Cursor cursor) throws IOException {
@@ -665,13 +853,29 @@ public class S2PointVectorCoder implements S2Coder<List<S2Point>> {
     // Count the number of points at each level.
     int[] levelCounts = new int[S2CellId.MAX_LEVEL + 1];
     for (S2Point point : points) {
-      FaceSiTi faceSiTi = xyzToFaceSiTi(point);
-      int level = levelIfCenter(faceSiTi, point);
-      cellPoints.add(new CellPoint(level, faceSiTi));
-      if (level >= 0) {
-        levelCounts[level]++;
-      }
+      cellPoints.add(toCellPoint(point, levelCounts));
     }
+    return chooseBestLevel(levelCounts, points.size());
+  }
+
+  /**
+   * Returns the {@link CellPoint} representation of {@code point}, and increments the entry of
+   * {@code levelCounts} for its level, if any.
+   */
+  private static CellPoint toCellPoint(S2Point point, int[] levelCounts) {
+    FaceSiTi faceSiTi = xyzToFaceSiTi(point);
+    int level = levelIfCenter(faceSiTi, point);
+    if (level >= 0) {
+      levelCounts[level]++;
+    }
+    return new CellPoint(level, faceSiTi);
+  }
+
+  /**
+   * Returns the best level given the histogram {@code levelCounts} of {@code numPoints} points, or
+   * -1 if too few points are encodable. See {@link #chooseBestLevel(List, List)}.
+   */
+  private static int chooseBestLevel(int[] levelCounts, int numPoints) {
     // Choose the level for which the most points can be encoded.
     int bestLevel = 0;
     for (int level = 1; level <= S2CellId.MAX_LEVEL; level++) {
@@ -686,7 +890,7 @@ public class S2PointVectorCoder implements S2Coder<List<S2Point>> {
     // This represents a space overhead of about 4%, so we require that at least 5% of the input
     // points should be encodable as S2CellIds in order for the COMPACT format to be worthwhile.
     double minEncodableFraction = 0.05;
-    if (levelCounts[bestLevel] <= minEncodableFraction * points.size()) {
+    if (levelCounts[bestLevel] <= minEncodableFraction * numPoints) {
       return -1;
     }
     return bestLevel;
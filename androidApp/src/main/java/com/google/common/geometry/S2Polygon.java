@@ -130,10 +130,10 @@ import jsinterop.annotations.JsType;
 public final class S2Polygon implements S2Region, Comparable<S2Polygon>, Serializable {
 
   /** Version number of the lossless encoding format for S2Polygon. */
-  private static final byte LOSSLESS_ENCODING_VERSION = 1;
+  static final byte LOSSLESS_ENCODING_VERSION = 1;
 
   /** Version number of the compressed encoding format for S2Polygon. */
-  private static final byte COMPRESSED_ENCODING_VERSION = 4;
+  static final byte COMPRESSED_ENCODING_VERSION = 4;
 
   /** Returns false for all shapes. */
   private static boolean reverseNone(S2Shape input) {
@@ -726,6 +726,38 @@ public final class S2Polygon implements S2Region, Comparable<S2Polygon>, Seriali
     return loops.size();
   }
 
+  /**
+   * Returns an estimate of the memory used by this polygon in bytes, including its loops and the
+   * indexes of the polygon and its loops that have been built.
+   */
+  public long estimateMemoryUsage() {
+    S2MemoryUsage usage = new S2MemoryUsage();
+    addMemoryUsage(usage);
+    return usage.bytes();
+  }
+
+  /**
+   * Adds the memory used by this polygon to 'usage', unless it has already been counted. See
+   * {@link S2MemoryUsage}.
+   */
+  public void addMemoryUsage(S2MemoryUsage usage) {
+    if (!usage.countFirst(this)) {
+      return;
+    }
+    // Five references, an int and a boolean, and the AtomicInteger of unindexedContainsCalls.
+    usage.add(
+        S2MemoryUsage.objectBytes(5 * S2MemoryUsage.REFERENCE_BYTES + Integer.BYTES + 1)
+            + S2MemoryUsage.objectBytes(Integer.BYTES));
+    usage.add(S2MemoryUsage.listBytes(loops.size()) + 2 * S2MemoryUsage.LAT_LNG_RECT_BYTES);
+    for (S2Loop loop : loops) {
+      loop.addMemoryUsage(usage);
+    }
+    // The polygon index contains the loops, which have been counted above.
+    if (index != null) {
+      index.addMemoryUsage(usage);
+    }
+  }
+
   /**
    * Returns the loop at the given index. Note that during initialization, the given loops are
    * reordered according to a preorder traversal of the loop nesting hierarchy. This implies that
@@ -2668,7 +2700,10 @@ public final class S2Polygon implements S2Region, Comparable<S2Polygon>, Seriali
     };
   }
 
-  /** A fast {@link S2Coder} for polygons. */
+  /**
+   * A fast {@link S2Coder} for polygons. See {@link S2EncodedPolygon#CODER} to view either encoding
+   * lazily, without constructing loops.
+   */
   public static final S2Coder<S2Polygon> FAST_CODER =
       new S2Coder<S2Polygon>() {
         @Override
@@ -1122,8 +1122,22 @@ public final class S2Predicates {
     double prodab = mdota * ndotb - mdotb * ndota;
     double prodcd = mdotc * ndotd - mdotd * ndotc;
 
-    if (abs(prodab - prodcd) > kMaxError) {
-      return prodab < prodcd ? -1 : +1;
+    // The products are proportional to the distances from N, but also to the lengths of the
+    // intersection vectors (A×B)×M = (M•A)B - (M•B)A and (C×D)×M, which differ greatly when one
+    // of the edges is nearly parallel to M. So divide each product by its vector's length before
+    // comparing them. Each length has an absolute error of at most kMaxError, and each product is
+    // at most |N| times the length, so each quotient has an error of at most 4 * kMaxError over
+    // the length.
+    double lenab = b.mul(mdota).sub(a.mul(mdotb)).norm();
+    double lencd = d.mul(mdotc).sub(c.mul(mdotd)).norm();
+    if (lenab <= kMaxError || lencd <= kMaxError) {
+      return 0;
+    }
+    double distab = prodab / lenab;
+    double distcd = prodcd / lencd;
+    double maxError = 4 * kMaxError * (1 / (lenab - kMaxError) + 1 / (lencd - kMaxError));
+    if (abs(distab - distcd) > maxError) {
+      return distab < distcd ? -1 : +1;
     }
     return 0;
   }
@@ -1150,7 +1164,20 @@ public final class S2Predicates {
     BigDecimal prodab = mdota.multiply(ndotb).subtract(mdotb.multiply(ndota));
     BigDecimal prodcd = mdotc.multiply(ndotd).subtract(mdotd.multiply(ndotc));
 
-    return prodab.compareTo(prodcd);
+    // Compare prodab / |(A×B)×M| with prodcd / |(C×D)×M| without square roots: when the signs
+    // agree, compare the squares cross-multiplied by the squared lengths.
+    int signab = prodab.signum();
+    int signcd = prodcd.signum();
+    if (signab != signcd) {
+      return signab < signcd ? -1 : +1;
+    }
+    if (signab == 0) {
+      return 0;
+    }
+    BigDecimal len2ab = a.crossProd(b).crossProd(m).norm2();
+    BigDecimal len2cd = c.crossProd(d).crossProd(m).norm2();
+    int order = square(prodab).multiply(len2cd).compareTo(square(prodcd).multiply(len2ab));
+    return signab > 0 ? order : -order;
   }
 
   /**
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Execution statistics for index queries, to explain why queries are slow: whether they used the
+ * brute force algorithm, how many cells they visited and enqueued, and how many edges they tested.
+ *
+ * <p>Statistics are opt-in. A query collects them only after they are attached with its {@code
+ * setStats()} method, which is supported by {@link S2ClosestEdgeQuery}, {@link
+ * S2FurthestEdgeQuery}, {@link S2ContainsPointQuery} and {@link S2ShapeIndexRegion}. Until then
+ * the queries only test a null field, so there is no measurable cost. Each query call adds to the
+ * attached statistics, so the same object may be attached to several queries, and {@link #reset()}
+ * may be called between calls to see the statistics of a single call:
+ *
+ * {@snippet :
+ * S2QueryStats stats = new S2QueryStats();
+ * query.setStats(stats);
+ * query.findClosestEdges(target);
+ * S2QueryStats.Registry.DEFAULT.record("closest-edges", stats);
+ * }
+ *
+ * <p>To report every call of a query to a registry without recording each one, attach statistics
+ * obtained from {@link Registry#stats} instead, e.g. {@code
+ * query.setStats(S2QueryStats.Registry.DEFAULT.stats("closest-edges"))}.
+ *
+ * <p>Like the queries themselves, this class is not thread-safe. Statistics from many threads
+ * should each be collected separately and then combined with {@link #add} or a {@link Registry}.
+ */
+public final class S2QueryStats {
+  long queries;
+  long cellsVisited;
+  long queuePushes;
+  long queuePops;
+  long edgesEvaluated;
+  long exactPredicates;
+  long bruteForceQueries;
+  long elapsedNanos;
+
+  /** The registry that these statistics are reported to after each query call, or null. */
+  private final @Nullable Registry registry;
+
+  private final @Nullable String name;
+
+  /** Constructs statistics with all counts zero. */
+  public S2QueryStats() {
+    this(null, null);
+  }
+
+  private S2QueryStats(@Nullable Registry registry, @Nullable String name) {
+    this.registry = registry;
+    this.name = name;
+  }
+
+  /** Returns the number of query calls. */
+  public long queries() {
+    return queries;
+  }
+
+  /**
+   * Returns the number of cells visited: index cells whose contents were examined, and for distance
+   * queries, also the candidate cells whose distance to the target was computed.
+   */
+  public long cellsVisited() {
+    return cellsVisited;
+  }
+
+  /** Returns the number of cells added to the priority queue of a distance query. */
+  public long queuePushes() {
+    return queuePushes;
+  }
+
+  /** Returns the number of cells removed from the priority queue of a distance query. */
+  public long queuePops() {
+    return queuePops;
+  }
+
+  /** Returns the number of index edges whose distance or crossing with the query was tested. */
+  public long edgesEvaluated() {
+    return edgesEvaluated;
+  }
+
+  /**
+   * Returns the number of edges tested by containment queries whose crossing with the query could
+   * not be ruled out by the fast orientation test, and so was decided by the slower robust
+   * predicates. Distance queries compare error-bounded distances rather than evaluating exact
+   * predicates, so they do not add to this count.
+   */
+  public long exactPredicates() {
+    return exactPredicates;
+  }
+
+  /**
+   * Returns the number of distance query calls that tested every edge of the index, either because
+   * the query options require it or because the index is small enough that it is faster.
+   */
+  public long bruteForceQueries() {
+    return bruteForceQueries;
+  }
+
+  /** Returns the total elapsed time of the query calls, in nanoseconds. */
+  public long elapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Counts a query call that started at the given {@link System#nanoTime()}, and reports the
+   * counts to the registry, if any.
+   */
+  void endQuery(long startNanos) {
+    queries++;
+    elapsedNanos += System.nanoTime() - startNanos;
+    if (registry != null) {
+      registry.record(name, this);
+      reset();
+    }
+  }
+
+  /** Adds the counts of 'other' to this. */
+  public void add(S2QueryStats other) {
+    queries += other.queries;
+    cellsVisited += other.cellsVisited;
+    queuePushes += other.queuePushes;
+    queuePops += other.queuePops;
+    edgesEvaluated += other.edgesEvaluated;
+    exactPredicates += other.exactPredicates;
+    bruteForceQueries += other.bruteForceQueries;
+    elapsedNanos += other.elapsedNanos;
+  }
+
+  /** Resets all counts to zero. */
+  public void reset() {
+    queries = 0;
+    cellsVisited = 0;
+    queuePushes = 0;
+    queuePops = 0;
+    edgesEvaluated = 0;
+    exactPredicates = 0;
+    bruteForceQueries = 0;
+    elapsedNanos = 0;
+  }
+
+  /** Returns a copy of these statistics, which does not report to a registry. */
+  public S2QueryStats copy() {
+    S2QueryStats copy = new S2QueryStats();
+    copy.add(this);
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return "S2QueryStats{queries="
+        + queries
+        + ", cellsVisited="
+        + cellsVisited
+        + ", queuePushes="
+        + queuePushes
+        + ", queuePops="
+        + queuePops
+        + ", edgesEvaluated="
+        + edgesEvaluated
+        + ", exactPredicates="
+        + exactPredicates
+        + ", bruteForceQueries="
+        + bruteForceQueries
+        + ", elapsedNanos="
+        + elapsedNanos
+        + "}";
+  }
+
+  /**
+   * A thread-safe aggregation of query statistics by name, for export to monitoring dashboards.
+   * Queries report to a registry when they are given statistics from {@link #stats}; callers may
+   * also record statistics they collected themselves with {@link #record}.
+   */
+  public static final class Registry {
+    /** A process-wide registry, for callers that do not need a registry of their own. */
+    public static final Registry DEFAULT = new Registry();
+
+    private final Map<String, S2QueryStats> totals = new TreeMap<>();
+
+    /** Constructs an empty registry. */
+    public Registry() {}
+
+    /**
+     * Returns new statistics to attach to queries with their {@code setStats()} methods, which add
+     * the counts of each query call to the totals recorded under 'name' when the call ends. Their
+     * own counts are then reset, so they only hold the counts of a query call in progress.
+     */
+    public S2QueryStats stats(String name) {
+      return new S2QueryStats(this, Preconditions.checkNotNull(name));
+    }
+
+    /** Adds the given statistics to the totals recorded under 'name'. */
+    public synchronized void record(String name, S2QueryStats stats) {
+      totals.computeIfAbsent(name, k -> new S2QueryStats()).add(stats);
+    }
+
+    /** Returns a copy of the totals recorded under 'name', which are all zero if there are none. */
+    public synchronized S2QueryStats get(String name) {
+      S2QueryStats stats = totals.get(name);
+      return stats == null ? new S2QueryStats() : stats.copy();
+    }
+
+    /** Returns a copy of the totals recorded under each name, ordered by name. */
+    public synchronized ImmutableSortedMap<String, S2QueryStats> snapshot() {
+      ImmutableSortedMap.Builder<String, S2QueryStats> snapshot = ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, S2QueryStats> entry : totals.entrySet()) {
+        snapshot.put(entry.getKey(), entry.getValue().copy());
+      }
+      return snapshot.buildOrThrow();
+    }
+
+    /** Removes all recorded totals. */
+    public synchronized void reset() {
+      totals.clear();
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A set of tuned values for the thresholds that trade between brute force and indexed work in
+ * S2ShapeIndex construction and edge distance queries. The defaults were chosen for typical data,
+ * but the best values depend on the data and the query workload, so a profile measured for a
+ * particular workload may be loaded at startup and applied to the index options and query
+ * builders:
+ *
+ * {@snippet :
+ * S2QueryTuningProfile profile = S2QueryTuningProfile.parse(profileText);
+ * S2ShapeIndex index = new S2ShapeIndex(profile.indexOptions());
+ * S2ClosestEdgeQuery.Builder builder = profile.applyTo(S2ClosestEdgeQuery.builder());
+ * }
+ *
+ * <p>Profiles are stored as text with one {@code key=value} line per value, in the subset of the
+ * {@link java.util.Properties} format written by {@link #encode()}. Lines starting with '#' are
+ * comments. Keys that are missing have their default values, and unknown keys are ignored so that
+ * profiles may be shared with later versions that tune more values. The JVM build in the geometry
+ * module has a calibration tool, run with {@code ./gradlew :geometry:calibrateQueries}, that
+ * measures a profile for a sample of real shapes and a target workload.
+ */
+public final class S2QueryTuningProfile {
+  /** The key of {@link #maxEdgesPerCell()}. */
+  public static final String MAX_EDGES_PER_CELL = "maxEdgesPerCell";
+
+  /** The key of {@link #minEdgesToEnqueue()}. */
+  public static final String MIN_EDGES_TO_ENQUEUE = "minEdgesToEnqueue";
+
+  /** The key of {@link #maxBruteForceIndexSize()}. */
+  public static final String MAX_BRUTE_FORCE_INDEX_SIZE = "maxBruteForceIndexSize";
+
+  /** The profile with the default value of every option, which changes nothing when applied. */
+  public static final S2QueryTuningProfile DEFAULT =
+      new S2QueryTuningProfile(
+          S2ShapeIndex.DEFAULT_MAX_EDGES_PER_CELL,
+          S2BestEdgesQueryBase.DEFAULT_MIN_EDGES_TO_ENQUEUE,
+          -1);
+
+  private final int maxEdgesPerCell;
+  private final int minEdgesToEnqueue;
+  private final int maxBruteForceIndexSize;
+
+  /**
+   * Constructs a profile with the given values. See the accessors for their meanings.
+   *
+   * @throws IllegalArgumentException if maxEdgesPerCell is less than 1 or minEdgesToEnqueue is
+   *     negative
+   */
+  public S2QueryTuningProfile(
+      int maxEdgesPerCell, int minEdgesToEnqueue, int maxBruteForceIndexSize) {
+    Preconditions.checkArgument(maxEdgesPerCell >= 1, "maxEdgesPerCell must be at least 1");
+    Preconditions.checkArgument(minEdgesToEnqueue >= 0, "minEdgesToEnqueue must not be negative");
+    this.maxEdgesPerCell = maxEdgesPerCell;
+    this.minEdgesToEnqueue = minEdgesToEnqueue;
+    this.maxBruteForceIndexSize = Math.max(-1, maxBruteForceIndexSize);
+  }
+
+  /** Returns the value for {@link S2ShapeIndex.Options#getMaxEdgesPerCell()}. */
+  public int maxEdgesPerCell() {
+    return maxEdgesPerCell;
+  }
+
+  /** Returns the value for {@link S2BestEdgesQueryBase.Options#minEdgesToEnqueue()}. */
+  public int minEdgesToEnqueue() {
+    return minEdgesToEnqueue;
+  }
+
+  /**
+   * Returns the value for {@link S2BestEdgesQueryBase.Options#maxBruteForceIndexSize()}, which is
+   * -1 to use the value of each target.
+   */
+  public int maxBruteForceIndexSize() {
+    return maxBruteForceIndexSize;
+  }
+
+  /** Returns new S2ShapeIndex options with the values of this profile, and other values default. */
+  public S2ShapeIndex.Options indexOptions() {
+    S2ShapeIndex.Options options = new S2ShapeIndex.Options();
+    applyTo(options);
+    return options;
+  }
+
+  /** Sets the values of this profile on the given S2ShapeIndex options. */
+  public void applyTo(S2ShapeIndex.Options options) {
+    options.setMaxEdgesPerCell(maxEdgesPerCell);
+  }
+
+  /** Sets the values of this profile on the given query builder, and returns the builder. */
+  @CanIgnoreReturnValue
+  public <B extends S2BestEdgesQueryBase.Builder<?>> B applyTo(B builder) {
+    builder.setMinEdgesToEnqueue(minEdgesToEnqueue);
+    builder.setMaxBruteForceIndexSize(maxBruteForceIndexSize);
+    return builder;
+  }
+
+  /** Returns this profile as text, which {@link #parse(String)} reads. */
+  public String encode() {
+    return MAX_EDGES_PER_CELL
+        + "="
+        + maxEdgesPerCell
+        + "\n"
+        + MIN_EDGES_TO_ENQUEUE
+        + "="
+        + minEdgesToEnqueue
+        + "\n"
+        + MAX_BRUTE_FORCE_INDEX_SIZE
+        + "="
+        + maxBruteForceIndexSize
+        + "\n";
+  }
+
+  /**
+   * Returns the profile in the given text, in the format written by {@link #encode()}.
+   *
+   * @throws IllegalArgumentException if a line is not a comment or a {@code key=value} pair, or a
+   *     value is not a valid integer for its key
+   */
+  public static S2QueryTuningProfile parse(String text) {
+    int maxEdgesPerCell = DEFAULT.maxEdgesPerCell;
+    int minEdgesToEnqueue = DEFAULT.minEdgesToEnqueue;
+    int maxBruteForceIndexSize = DEFAULT.maxBruteForceIndexSize;
+    for (String line : text.split("\n", -1)) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int split = line.indexOf('=');
+      if (split < 0) {
+        throw new IllegalArgumentException("Expected key=value, but got '" + line + "'");
+      }
+      String key = line.substring(0, split).trim();
+      String value = line.substring(split + 1).trim();
+      switch (key) {
+        case MAX_EDGES_PER_CELL:
+          maxEdgesPerCell = parseInt(key, value);
+          break;
+        case MIN_EDGES_TO_ENQUEUE:
+          minEdgesToEnqueue = parseInt(key, value);
+          break;
+        case MAX_BRUTE_FORCE_INDEX_SIZE:
+          maxBruteForceIndexSize = parseInt(key, value);
+          break;
+        default:
+          break;
+      }
+    }
+    return new S2QueryTuningProfile(maxEdgesPerCell, minEdgesToEnqueue, maxBruteForceIndexSize);
+  }
+
+  private static int parseInt(String key, String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for " + key + ": '" + value + "'", e);
+    }
+  }
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    if (!(other instanceof S2QueryTuningProfile)) {
+      return false;
+    }
+    S2QueryTuningProfile that = (S2QueryTuningProfile) other;
+    return maxEdgesPerCell == that.maxEdgesPerCell
+        && minEdgesToEnqueue == that.minEdgesToEnqueue
+        && maxBruteForceIndexSize == that.maxBruteForceIndexSize;
+  }
+
+  @Override
+  public int hashCode() {
+    return (maxEdgesPerCell * 31 + minEdgesToEnqueue) * 31 + maxBruteForceIndexSize;
+  }
+
+  @Override
+  public String toString() {
+    return "S2QueryTuningProfile{"
+        + MAX_EDGES_PER_CELL
+        + "="
+        + maxEdgesPerCell
+        + ", "
+        + MIN_EDGES_TO_ENQUEUE
+        + "="
+        + minEdgesToEnqueue
+        + ", "
+        + MAX_BRUTE_FORCE_INDEX_SIZE
+        + "="
+        + maxBruteForceIndexSize
+        + "}";
+  }
+}
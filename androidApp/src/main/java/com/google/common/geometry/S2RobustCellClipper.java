@@ -336,6 +336,15 @@ public final class S2RobustCellClipper {
     return crossings;
   }
 
+  /**
+   * Returns the edge that caused the given crossing, which is the MutableEdge instance that was
+   * passed to {@link #clipEdge(MutableEdge, boolean)}. Like the crossing itself, this is only valid
+   * until the next call to {@link #reset()} or {@link #startCell(S2Cell)}.
+   */
+  public MutableEdge crossingEdge(Crossing crossing) {
+    return crossingEdges.get(crossing.edgeIndex);
+  }
+
   /**
    * Determines whether or not the cell boundary is contained by the shape defined by the edges that
    * have been clipped to the cell (before they were clipped).
@@ -627,6 +636,16 @@ public final class S2RobustCellClipper {
               R2Vector uvEdgeClipResult = new R2Vector();
               clipper.r2Clipper.clip(uvEdge, (byte) (1 << k), uvEdgeClipResult);
               intercept = getCoordByBoundary(k, uvEdgeClipResult);
+            } else if (getCoordByBoundary(k, uvEdge.v0) != getCoordByBoundary(k, uvEdge.v1)) {
+              // The edge runs along the boundary in UV, so its great circle and the boundary's are
+              // nearly the same, and the intersection computed below could be anywhere along them.
+              // The edge is within the error margin of the boundary over its whole length, so any
+              // point of it will do. Take the middle, which keeps this crossing ordered between
+              // the crossings of the adjacent edges at its endpoints, and is the same in the cell
+              // on the other side of the boundary.
+              double coord0 = getCoordByBoundary(k, uvEdge.v0);
+              double coord1 = getCoordByBoundary(k, uvEdge.v1);
+              intercept = 0.5 * (coord0 + coord1);
             } else {
               S2Point intersection =
                   robustCrossProd(
@@ -0,0 +1,634 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static com.google.common.geometry.EncodedInts.writeVarint64;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.geometry.PrimitiveArrays.Bytes;
+import com.google.common.geometry.PrimitiveArrays.Cursor;
+import com.google.common.geometry.PrimitiveArrays.Longs;
+import com.google.common.geometry.primitives.IntVector;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.UnsignedLongs;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntPredicate;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A container of many {@link S2Shape}s with attached attributes, and an encoding of it that allows
+ * readers to find and decode only the shapes near a given {@link S2Region}.
+ *
+ * <p>Shapes are sorted by the {@link S2CellId}s of their coverings, so that nearby shapes are also
+ * nearby in the encoding. A directory of (covering cell, shape id) pairs, sorted by cell id, maps
+ * ranges of cells to the shapes they cover. Attributes are stored in columns, where each column
+ * holds one value per shape and is encoded separately with its own {@link S2Coder}, so that reading
+ * one attribute of one shape does not require decoding any other column or row.
+ *
+ * <p>Example usage:
+ *
+ * {@snippet :
+ * Column<String> name = Column.of("name", S2Coder.STRING);
+ * S2ShapeContainer.Builder builder = S2ShapeContainer.builder(name);
+ * builder.add(polygon.shape()).set(name, "Listing 42");
+ * byte[] encoded = new S2ShapeContainer.Coder(S2TaggedShapeCoder.COMPACT, name)
+ *     .encode(builder.build());
+ *
+ * S2ShapeContainer container = new S2ShapeContainer.Coder(S2TaggedShapeCoder.COMPACT, name)
+ *     .decode(Bytes.fromByteArray(encoded));
+ * container.visitIntersectingShapeIds(region, shapeId -> {
+ *   process(container.shape(shapeId), container.get(name, shapeId));
+ *   return true;
+ * });
+ * }
+ *
+ * <p>Shape ids are positions in the sorted order, and are generally not the order in which shapes
+ * were added to the builder. Callers that need to identify shapes should store a key in a column.
+ *
+ * <p>Decoded containers are lazy: shapes and attribute values are decoded when they are accessed,
+ * from any {@link Bytes} implementation, including ones backed by a file.
+ */
+public abstract class S2ShapeContainer {
+  /** The current version of the encoding. */
+  static final int CURRENT_ENCODING_VERSION = 0;
+
+  /** The maximum number of cells used to cover a query region, by default. */
+  public static final int DEFAULT_MAX_QUERY_CELLS = 8;
+
+  /** The columns of this container, in order. */
+  private final ImmutableList<Column<?>> columns;
+
+  S2ShapeContainer(ImmutableList<Column<?>> columns) {
+    this.columns = columns;
+  }
+
+  /** Returns a new builder for a container with the given columns. */
+  public static Builder builder(Column<?>... columns) {
+    return new Builder(ImmutableList.copyOf(columns));
+  }
+
+  /** Returns the columns of this container, in order. */
+  public List<Column<?>> columns() {
+    return columns;
+  }
+
+  /** Returns the number of shapes in this container. */
+  public abstract int numShapes();
+
+  /** Returns the shape with the given id, which may be null if a null shape was added. */
+  public abstract @Nullable S2Shape shape(int shapeId);
+
+  /** Returns the value of {@code column} for the shape with the given id. */
+  public <T> T get(Column<T> column, int shapeId) {
+    return column.type(columnValues(columnIndex(column)).get(shapeId));
+  }
+
+  /** Returns the values of the column at {@code columnIndex}, indexed by shape id. */
+  abstract List<?> columnValues(int columnIndex);
+
+  /** Returns the sorted cell ids of the directory. */
+  abstract S2CellIdVector directoryCellIds();
+
+  /** Returns the shape id of each directory entry, parallel to {@link #directoryCellIds()}. */
+  abstract Longs directoryShapeIds();
+
+  /** Returns a bit mask of the levels of the cells in the directory. */
+  abstract int directoryLevels();
+
+  /** Returns the index of the given column, or throws IllegalArgumentException if it is absent. */
+  private int columnIndex(Column<?> column) {
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i) == column) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unknown column: " + column.name());
+  }
+
+  /**
+   * Returns the sorted ids of all shapes whose covering intersects a covering of {@code region}
+   * with at most {@link #DEFAULT_MAX_QUERY_CELLS} cells. See {@link #visitIntersectingShapeIds}.
+   */
+  public IntVector getIntersectingShapeIds(S2Region region) {
+    IntVector result = new IntVector();
+    visitIntersectingShapeIds(
+        region,
+        shapeId -> {
+          result.add(shapeId);
+          return true;
+        });
+    return result;
+  }
+
+  /**
+   * Visits the ids of all shapes whose covering intersects a covering of {@code region} with at
+   * most {@link #DEFAULT_MAX_QUERY_CELLS} cells, in increasing order, until the visitor returns
+   * false. Returns false if the visitor terminated the visit early, and true otherwise.
+   *
+   * <p>This uses only the directory, so shapes are not decoded. The results are candidates: every
+   * shape that intersects the region is visited, but some visited shapes may not actually intersect
+   * it. Callers that need exact results should test the visited shapes.
+   */
+  @CanIgnoreReturnValue
+  public boolean visitIntersectingShapeIds(S2Region region, IntPredicate visitor) {
+    S2RegionCoverer coverer =
+        S2RegionCoverer.builder().setMaxCells(DEFAULT_MAX_QUERY_CELLS).build();
+    return visitIntersectingShapeIds(coverer.getCovering(region), visitor);
+  }
+
+  /**
+   * As {@link #visitIntersectingShapeIds(S2Region, IntPredicate)}, but for a given covering, which
+   * need not be normalized.
+   */
+  @CanIgnoreReturnValue
+  public boolean visitIntersectingShapeIds(S2CellUnion covering, IntPredicate visitor) {
+    S2CellIdVector cellIds = directoryCellIds();
+    Longs shapeIds = directoryShapeIds();
+    int levels = directoryLevels();
+    IntVector candidates = new IntVector();
+    for (int k = 0; k < covering.size(); k++) {
+      long target = covering.cellId(k).id();
+      // Directory cells that are descendants of the target (or equal to it) have ids in the range
+      // of leaf cells spanned by the target.
+      int end = cellIds.upperBound(S2CellId.rangeMaxAsLong(target));
+      for (int i = cellIds.lowerBound(S2CellId.rangeMinAsLong(target)); i < end; i++) {
+        candidates.add(Ints.checkedCast(shapeIds.get(i)));
+      }
+      // Directory cells that are ancestors of the target are found by looking up each ancestor
+      // level that is present in the directory.
+      for (int level = S2CellId.levelFromLong(target) - 1; level >= 0; level--) {
+        if ((levels & (1 << level)) == 0) {
+          continue;
+        }
+        long ancestor = S2CellId.parentAsLong(target, level);
+        end = cellIds.upperBound(ancestor);
+        for (int i = cellIds.lowerBound(ancestor); i < end; i++) {
+          candidates.add(Ints.checkedCast(shapeIds.get(i)));
+        }
+      }
+    }
+    candidates.sort();
+    candidates.unique();
+    for (int i = 0; i < candidates.size(); i++) {
+      if (!visitor.test(candidates.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A named column of attribute values of type {@code T}, encoded with an {@link S2Coder}. Columns
+   * are compared by identity, so the same instance should be used to build, encode, decode and read
+   * a container.
+   */
+  public static final class Column<T> {
+    private final String name;
+    private final S2Coder<T> coder;
+
+    private Column(String name, S2Coder<T> coder) {
+      this.name = name;
+      this.coder = coder;
+    }
+
+    /** Returns a new column with the given name and value coder. */
+    public static <T> Column<T> of(String name, S2Coder<T> coder) {
+      return new Column<>(name, coder);
+    }
+
+    /** Returns the name of this column. */
+    public String name() {
+      return name;
+    }
+
+    /** Returns the coder of the values in this column. */
+    public S2Coder<T> coder() {
+      return coder;
+    }
+
+    @SuppressWarnings("unchecked") // Values of this column are only ever set to T.
+    T type(Object value) {
+      return (T) value;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * A builder of in-memory {@link S2ShapeContainer}s. Shapes are covered with the cell union bound
+   * of {@link S2ShapeUtil#getRectBound}, unless a covering is provided explicitly. Every row must
+   * have a value for every column.
+   */
+  public static final class Builder {
+    private final ImmutableList<Column<?>> columns;
+    private final List<Row> rows = new ArrayList<>();
+
+    private Builder(ImmutableList<Column<?>> columns) {
+      this.columns = columns;
+    }
+
+    /**
+     * Adds the given shape, covered by a few cells, and returns its row so that attribute
+     * values may be set.
+     */
+    public Row add(@Nullable S2Shape shape) {
+      List<S2CellId> covering = new ArrayList<>();
+      if (shape != null) {
+        S2ShapeUtil.getRectBound(shape).getCellUnionBound(covering);
+      }
+      return add(shape, covering);
+    }
+
+    /**
+     * Adds the given shape with the given covering, and returns its row so that attribute values
+     * may be set. The covering must contain the shape for region queries to find it.
+     */
+    public Row add(@Nullable S2Shape shape, List<S2CellId> covering) {
+      Row row = new Row(shape, ImmutableList.sortedCopyOf(covering), new Object[columns.size()]);
+      rows.add(row);
+      return row;
+    }
+
+    /**
+     * Returns a new in-memory container of the shapes added so far.
+     *
+     * @throws IllegalStateException if a value has not been set for some shape and column
+     */
+    public S2ShapeContainer build() {
+      // Sort the rows by their first covering cell. Rows without a covering sort last.
+      List<Row> sorted = new ArrayList<>(rows);
+      sorted.sort(
+          Comparator.comparing(
+              (Row row) -> row.covering.isEmpty() ? S2CellId.sentinel() : row.covering.get(0)));
+
+      // Build the directory of (cell id, shape id) pairs, sorted by cell id and then shape id.
+      int numEntries = 0;
+      for (Row row : sorted) {
+        numEntries += row.covering.size();
+      }
+      long[] entries = new long[2 * numEntries];
+      int n = 0;
+      for (int shapeId = 0; shapeId < sorted.size(); shapeId++) {
+        for (S2CellId cellId : sorted.get(shapeId).covering) {
+          entries[n++] = cellId.id();
+          entries[n++] = shapeId;
+        }
+      }
+      Integer[] order = new Integer[numEntries];
+      Arrays.setAll(order, i -> i);
+      Arrays.sort(
+          order,
+          (a, b) -> {
+            int c = UnsignedLongs.compare(entries[2 * a], entries[2 * b]);
+            return c != 0 ? c : Long.compare(entries[2 * a + 1], entries[2 * b + 1]);
+          });
+      long[] cellIds = new long[numEntries];
+      long[] shapeIds = new long[numEntries];
+      int levels = 0;
+      for (int i = 0; i < numEntries; i++) {
+        cellIds[i] = entries[2 * order[i]];
+        shapeIds[i] = entries[2 * order[i] + 1];
+        levels |= 1 << S2CellId.levelFromLong(cellIds[i]);
+      }
+
+      S2Shape[] shapes = new S2Shape[sorted.size()];
+      Object[][] values = new Object[columns.size()][sorted.size()];
+      for (int shapeId = 0; shapeId < sorted.size(); shapeId++) {
+        Row row = sorted.get(shapeId);
+        shapes[shapeId] = row.shape;
+        for (int c = 0; c < columns.size(); c++) {
+          if (row.values[c] == null) {
+            throw new IllegalStateException(
+                "Shape " + rows.indexOf(row) + " has no value for column '" + columns.get(c) + "'");
+          }
+          values[c][shapeId] = row.values[c];
+        }
+      }
+      return new InMemoryContainer(columns, shapes, values, cellIds, shapeIds, levels);
+    }
+
+    /** A shape added to a {@link Builder}, with its covering and attribute values. */
+    public final class Row {
+      private final @Nullable S2Shape shape;
+      private final ImmutableList<S2CellId> covering;
+      private final Object[] values;
+
+      private Row(@Nullable S2Shape shape, ImmutableList<S2CellId> covering, Object[] values) {
+        this.shape = shape;
+        this.covering = covering;
+        this.values = values;
+      }
+
+      /** Sets the non-null value of {@code column} for this shape, and returns this row. */
+      @CanIgnoreReturnValue
+      public <T> Row set(Column<T> column, T value) {
+        int index = columns.indexOf(column);
+        Preconditions.checkArgument(index >= 0, "Unknown column: %s", column);
+        values[index] = Preconditions.checkNotNull(value);
+        return this;
+      }
+    }
+  }
+
+  /** An {@link S2CellIdVector} backed by an array of cell ids. */
+  private static final class ArrayCellIdVector extends S2CellIdVector {
+    private final long[] ids;
+
+    ArrayCellIdVector(long[] ids) {
+      this.ids = ids;
+    }
+
+    @Override
+    public int size() {
+      return ids.length;
+    }
+
+    @Override
+    long getId(int index) {
+      return ids[index];
+    }
+
+    @Override
+    int lowerBound(long target) {
+      int low = 0;
+      int high = ids.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (S2CellId.unsignedLongLessThan(ids[mid], target)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  /** A container built by {@link Builder}. */
+  private static final class InMemoryContainer extends S2ShapeContainer {
+    private final S2Shape[] shapes;
+    private final Object[][] values;
+    private final S2CellIdVector cellIds;
+    private final Longs shapeIds;
+    private final int levels;
+
+    InMemoryContainer(
+        ImmutableList<Column<?>> columns,
+        S2Shape[] shapes,
+        Object[][] values,
+        long[] cellIds,
+        long[] shapeIds,
+        int levels) {
+      super(columns);
+      this.shapes = shapes;
+      this.values = values;
+      this.cellIds = new ArrayCellIdVector(cellIds);
+      this.shapeIds =
+          new Longs() {
+            @Override
+            public long get(int position) {
+              return shapeIds[position];
+            }
+
+            @Override
+            public int length() {
+              return shapeIds.length;
+            }
+          };
+      this.levels = levels;
+    }
+
+    @Override
+    public int numShapes() {
+      return shapes.length;
+    }
+
+    @Override
+    public @Nullable S2Shape shape(int shapeId) {
+      return shapes[shapeId];
+    }
+
+    @Override
+    List<?> columnValues(int columnIndex) {
+      return Arrays.asList(values[columnIndex]);
+    }
+
+    @Override
+    S2CellIdVector directoryCellIds() {
+      return cellIds;
+    }
+
+    @Override
+    Longs directoryShapeIds() {
+      return shapeIds;
+    }
+
+    @Override
+    int directoryLevels() {
+      return levels;
+    }
+  }
+
+  /** A container decoded on demand by {@link Coder}. */
+  private static final class EncodedContainer extends S2ShapeContainer {
+    private final List<S2Shape> shapes;
+    private final List<List<?>> columnValues;
+    private final S2CellIdVector cellIds;
+    private final Longs shapeIds;
+    private final int levels;
+
+    EncodedContainer(
+        ImmutableList<Column<?>> columns,
+        List<S2Shape> shapes,
+        List<List<?>> columnValues,
+        S2CellIdVector cellIds,
+        Longs shapeIds,
+        int levels) {
+      super(columns);
+      this.shapes = shapes;
+      this.columnValues = columnValues;
+      this.cellIds = cellIds;
+      this.shapeIds = shapeIds;
+      this.levels = levels;
+    }
+
+    @Override
+    public int numShapes() {
+      return shapes.size();
+    }
+
+    @Override
+    public @Nullable S2Shape shape(int shapeId) {
+      return shapes.get(shapeId);
+    }
+
+    @Override
+    List<?> columnValues(int columnIndex) {
+      return columnValues.get(columnIndex);
+    }
+
+    @Override
+    S2CellIdVector directoryCellIds() {
+      return cellIds;
+    }
+
+    @Override
+    Longs directoryShapeIds() {
+      return shapeIds;
+    }
+
+    @Override
+    int directoryLevels() {
+      return levels;
+    }
+  }
+
+  /**
+   * An encoder/decoder of {@link S2ShapeContainer}s. Decoding is on-demand, so {@link
+   * S2Coder#isLazy()} is true.
+   *
+   * <p>The encoding format is as follows:
+   *
+   * <ul>
+   *   <li>varint64: {@code (numColumns << 2) | version}
+   *   <li>varint64: bit mask of the directory cell levels
+   *   <li>The column names, encoded by {@link VectorCoder#STRING}
+   *   <li>The sorted directory cell ids, encoded by {@link S2CellIdVectorCoder}
+   *   <li>The directory shape ids, encoded by {@link UintVectorCoder#UINT32}
+   *   <li>The shapes in sorted order, encoded by a {@link VectorCoder} of the shape coder
+   *   <li>For each column, its values in shape order, encoded by a {@link VectorCoder} of the
+   *       column coder
+   * </ul>
+   *
+   * Every section is itself lazily decodable, so decoding a container reads only the section
+   * headers, and each shape or value is decoded from the underlying {@link Bytes} when accessed.
+   */
+  public static final class Coder implements S2Coder<S2ShapeContainer> {
+    private final S2Coder<S2Shape> shapeCoder;
+    private final ImmutableList<Column<?>> columns;
+
+    /**
+     * Constructs a coder that encodes shapes with {@code shapeCoder}, typically {@link
+     * S2TaggedShapeCoder#FAST} or {@link S2TaggedShapeCoder#COMPACT}, and attribute values with
+     * the coders of the given columns.
+     */
+    public Coder(S2Coder<S2Shape> shapeCoder, Column<?>... columns) {
+      this.shapeCoder = shapeCoder;
+      this.columns = ImmutableList.copyOf(columns);
+    }
+
+    @Override
+    public void encode(S2ShapeContainer value, OutputStream output) throws IOException {
+      Preconditions.checkArgument(
+          value.columns().equals(columns), "Container columns do not match the coder.");
+      writeVarint64(output, ((long) columns.size() << 2) | CURRENT_ENCODING_VERSION);
+      writeVarint64(output, value.directoryLevels());
+
+      List<String> names = new ArrayList<>(columns.size());
+      for (Column<?> column : columns) {
+        names.add(column.name());
+      }
+      VectorCoder.STRING.encode(names, output);
+
+      S2CellIdVector cellIds = value.directoryCellIds();
+      S2CellIdVectorCoder.INSTANCE.encode(cellIds, output);
+      UintVectorCoder.UINT32.encode(value.directoryShapeIds(), output);
+
+      new VectorCoder<>(shapeCoder)
+          .encode(
+              new AbstractList<S2Shape>() {
+                @Override
+                public S2Shape get(int index) {
+                  return value.shape(index);
+                }
+
+                @Override
+                public int size() {
+                  return value.numShapes();
+                }
+              },
+              output);
+      for (int c = 0; c < columns.size(); c++) {
+        encodeColumn(columns.get(c), value.columnValues(c), output);
+      }
+    }
+
+    @SuppressWarnings("unchecked") // Values of a column are only ever set to its type.
+    private static <T> void encodeColumn(Column<T> column, List<?> values, OutputStream output)
+        throws IOException {
+      new VectorCoder<>(column.coder()).encode((List<T>) values, output);
+    }
+
+    @Override
+    public S2ShapeContainer decode(Bytes data, Cursor cursor) throws IOException {
+      int numColumns;
+      int levels;
+      try {
+        long header = data.readVarint64(cursor);
+        if ((header & 3) != CURRENT_ENCODING_VERSION) {
+          throw new IOException("Unknown encoding version: " + (header & 3));
+        }
+        numColumns = Ints.checkedCast(header >>> 2);
+        levels = Ints.checkedCast(data.readVarint64(cursor));
+      } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+        throw new IOException("Insufficient or invalid input bytes: ", e);
+      }
+      if (numColumns != columns.size()) {
+        throw new IOException(
+            "Expected " + columns.size() + " columns, but the data has " + numColumns);
+      }
+      List<String> names = VectorCoder.STRING.decode(data, cursor);
+      for (int c = 0; c < numColumns; c++) {
+        if (!names.get(c).equals(columns.get(c).name())) {
+          throw new IOException(
+              "Expected column '" + columns.get(c).name() + "' but found '" + names.get(c) + "'");
+        }
+      }
+
+      S2CellIdVector cellIds = S2CellIdVectorCoder.INSTANCE.decode(data, cursor);
+      Longs shapeIds = UintVectorCoder.UINT32.decode(data, cursor);
+      if (cellIds.size() != shapeIds.length()) {
+        throw new IOException("Directory cell ids and shape ids have different lengths.");
+      }
+      List<S2Shape> shapes = new VectorCoder<>(shapeCoder).decode(data, cursor);
+      List<List<?>> columnValues = new ArrayList<>(numColumns);
+      for (Column<?> column : columns) {
+        List<?> values = new VectorCoder<>(column.coder()).decode(data, cursor);
+        if (values.size() != shapes.size()) {
+          throw new IOException("Column '" + column.name() + "' has the wrong number of values.");
+        }
+        columnValues.add(values);
+      }
+      return new EncodedContainer(columns, shapes, columnValues, cellIds, shapeIds, levels);
+    }
+
+    @Override
+    public boolean isLazy() {
+      return true;
+    }
+  }
+}
@@ -173,6 +173,12 @@ public class S2ShapeIndex implements Serializable {
    */
   private volatile boolean isIndexFresh = true;
 
+  /** Statistics from the most recent build of this index, or null if it has not been built. */
+  private transient volatile @Nullable BuildStats buildStats;
+
+  /** If not null, receives the statistics of every index build, after the build completes. */
+  private static volatile @Nullable Consumer<BuildStats> buildStatsListener;
+
   /** Creates an S2ShapeIndex that uses the default options, {@link Options}. */
   @JsIgnore // Only one constructor is allowed for J2CL.
   public S2ShapeIndex() {
@@ -234,6 +240,7 @@ public class S2ShapeIndex implements Serializable {
   /** Clears the contents of the index and resets it to its original state. */
   public void reset() {
     cells = ImmutableList.of();
+    buildStats = null;
     pendingRemovals.clear();
     shapes.clear();
     isIndexFresh = false;
@@ -258,6 +265,120 @@ public class S2ShapeIndex implements Serializable {
     return isIndexFresh;
   }
 
+  /**
+   * Returns the statistics of the most recent build of this index, or null if the index has not
+   * been built. The index is built by {@link #applyUpdates()}, which is called by {@link
+   * #iterator()}.
+   */
+  public @Nullable BuildStats buildStats() {
+    return buildStats;
+  }
+
+  /**
+   * Returns an estimate of the memory used by this index in bytes, including its cells, clipped
+   * shapes and edge arrays, and its shapes. See {@link S2MemoryUsage#addShape} for which shapes
+   * are measured. An index that has not been built yet has no cells, and is not built by this
+   * method.
+   */
+  public long estimateMemoryUsage() {
+    S2MemoryUsage usage = new S2MemoryUsage();
+    addMemoryUsage(usage);
+    return usage.bytes();
+  }
+
+  /**
+   * Adds the memory used by this index and its shapes to 'usage', unless they have already been
+   * counted. See {@link S2MemoryUsage}.
+   */
+  public void addMemoryUsage(S2MemoryUsage usage) {
+    if (!usage.countFirst(this)) {
+      return;
+    }
+    // Five references, an int, and a boolean.
+    usage.add(S2MemoryUsage.objectBytes(5 * S2MemoryUsage.REFERENCE_BYTES + Integer.BYTES + 1));
+    if (usage.countFirst(options)) {
+      usage.add(S2MemoryUsage.objectBytes(Integer.BYTES + 2 * Double.BYTES));
+    }
+    usage.add(S2MemoryUsage.listBytes(shapes.size()));
+    for (S2Shape shape : shapes) {
+      if (shape != null) {
+        usage.addShape(shape);
+      }
+    }
+    // Hold the lock, so that a build in progress on another thread completes first.
+    synchronized (this) {
+      usage.add(cellListBytes(cells));
+      for (int i = 0; i < cells.size(); i++) {
+        usage.add(cellBytes(cells.get(i)));
+      }
+    }
+  }
+
+  /** Returns the memory used by the given list of cells, not including the cells. */
+  private static long cellListBytes(List<Cell> cells) {
+    if (cells instanceof SimpleList) {
+      return S2MemoryUsage.objectBytes(S2MemoryUsage.REFERENCE_BYTES + Integer.BYTES)
+          + S2MemoryUsage.arrayBytes(
+              ((SimpleList<Cell>) cells).elements.length, S2MemoryUsage.REFERENCE_BYTES);
+    }
+    if (cells instanceof ShardedList) {
+      Object[][] shards = ((ShardedList<Cell>) cells).elements;
+      long bytes =
+          S2MemoryUsage.objectBytes(S2MemoryUsage.REFERENCE_BYTES + Integer.BYTES)
+              + S2MemoryUsage.arrayBytes(shards.length, S2MemoryUsage.REFERENCE_BYTES);
+      for (Object[] shard : shards) {
+        if (shard != null) {
+          bytes += S2MemoryUsage.arrayBytes(shard.length, S2MemoryUsage.REFERENCE_BYTES);
+        }
+      }
+      return bytes;
+    }
+    return cells.isEmpty() ? 0 : S2MemoryUsage.listBytes(cells.size());
+  }
+
+  /** Returns the memory used by the given cell and its clipped shapes. */
+  private static long cellBytes(Cell cell) {
+    // The first clipped shape of each cell also stores the cell id.
+    if (cell instanceof S2ClippedShape) {
+      return clippedShapeBytes((S2ClippedShape) cell, Long.BYTES);
+    }
+    int numShapes = cell.numShapes();
+    long bytes =
+        cell instanceof Cell.BinaryCell
+            ? S2MemoryUsage.objectBytes(2 * S2MemoryUsage.REFERENCE_BYTES)
+            : S2MemoryUsage.objectBytes(S2MemoryUsage.REFERENCE_BYTES)
+                + S2MemoryUsage.arrayBytes(numShapes, S2MemoryUsage.REFERENCE_BYTES);
+    for (int s = 0; s < numShapes; s++) {
+      bytes += clippedShapeBytes(cell.clipped(s), s == 0 ? Long.BYTES : 0);
+    }
+    return bytes;
+  }
+
+  /** Returns the memory used by the given clipped shape, with the given size of its cell id. */
+  private static long clippedShapeBytes(S2ClippedShape clipped, int idBytes) {
+    if (clipped instanceof S2ClippedShape.ManyEdges) {
+      return S2MemoryUsage.objectBytes(idBytes + Integer.BYTES + S2MemoryUsage.REFERENCE_BYTES)
+          + S2MemoryUsage.arrayBytes(clipped.numEdges(), Integer.BYTES);
+    }
+    if (clipped instanceof S2ClippedShape.OneEdge) {
+      return S2MemoryUsage.objectBytes(idBytes + 2 * Integer.BYTES);
+    }
+    if (clipped instanceof S2ClippedShape.EdgeRange) {
+      return S2MemoryUsage.objectBytes(idBytes + 3 * Integer.BYTES);
+    }
+    return S2MemoryUsage.objectBytes(idBytes + Integer.BYTES);
+  }
+
+  /**
+   * Sets a listener that receives the statistics of every subsequent index build, from any index,
+   * or null to remove the listener. The listener is called on the building thread after the build
+   * completes, for example to record the statistics as profiling events.
+   */
+  @JsIgnore
+  public static void setBuildStatsListener(@Nullable Consumer<BuildStats> listener) {
+    buildStatsListener = listener;
+  }
+
   /**
    * Ensures pending updates have been applied, returning immediately if the index is fresh as
    * reported by {@link #isFresh()}, and otherwise blocking while the index is built.
@@ -273,11 +394,14 @@ public class S2ShapeIndex implements Serializable {
 
     // Otherwise an update is needed, so lock on 'this'. One of the contending threads will "win"
     // and update the index, and the others will just immediately exit the lock.
+    BuildStats stats = null;
     synchronized (this) {
       if (!isIndexFresh) {
         // This thread won the race and must do the update.
 
         Preconditions.checkState(cells.isEmpty(), "Incremental updates not supported yet");
+        long start = System.nanoTime();
+        stats = new BuildStats();
 
         int numEdges = 0;
         for (int i = pendingInsertionsBegin; i < shapes.size(); i++) {
@@ -304,27 +428,44 @@ public class S2ShapeIndex implements Serializable {
         for (int i = pendingInsertionsBegin; i < shapes.size(); i++) {
           addShapeEdges(i, allEdges, state.tracker);
         }
+        stats.numShapes = shapes.size() - pendingInsertionsBegin;
+        stats.numInputEdges = numEdges;
+        stats.addShapeEdgesNanos = System.nanoTime() - start;
 
         // Set up the state, using the largest face as the initial edge allocator size.
         int maxFaceSize = 0;
         for (int face = 0; face < 6; face++) {
+          stats.faceEdges[face] = allEdges.get(face).size();
           maxFaceSize = max(maxFaceSize, allEdges.get(face).size());
         }
         state.options = options;
         state.shapes = shapes;
         state.cells = cells::add;
         state.alloc = new EdgeAllocator(maxFaceSize);
+        state.stats = stats;
 
         // Build cells for each face.
         for (int face = 0; face < 6; face++) {
+          long faceStart = System.nanoTime();
           updateFaceEdges(face, allEdges.get(face), state);
+          stats.updateFaceEdgesNanos[face] = System.nanoTime() - faceStart;
           // Save memory by clearing each set of face edges after we are done with them.
           allEdges.set(face, null);
         }
+        stats.maxFaceEdges = maxFaceSize;
+        stats.numAllocatorEdges = state.alloc.edges.size();
+        stats.totalNanos = System.nanoTime() - start;
+        buildStats = stats;
         pendingInsertionsBegin = shapes.size();
         isIndexFresh = true;
       }
     }
+
+    // Call the listener outside the lock, so that it may use this index.
+    Consumer<BuildStats> listener = buildStatsListener;
+    if (stats != null && listener != null) {
+      listener.accept(stats);
+    }
   }
 
   /**
@@ -714,6 +855,7 @@ public class S2ShapeIndex implements Serializable {
     // the index we can just append new cells at the end of the list. This is much faster than
     // sorting the cells afterward.
     state.cells.accept(Cell.create(numShapes, state.tempClippedShapes));
+    state.stats.addCell(pcell.level(), numShapes, edges);
 
     // Shift the InteriorTracker focus point to the exit vertex of this cell.
     if (state.tracker.isActive() && !edges.isEmpty()) {
@@ -748,6 +890,8 @@ public class S2ShapeIndex implements Serializable {
     List<S2Shape> shapes;
     /** The receiver of generated cells, provided in unsigned {@link Cell#id} order. */
     Consumer<Cell> cells;
+    /** The statistics of the build. */
+    BuildStats stats;
 
     /** Clears the tracker and ensures this state object can handle the given number of shapes. */
     void ensureSize(int numShapes) {
@@ -758,6 +902,194 @@ public class S2ShapeIndex implements Serializable {
     }
   }
 
+  /**
+   * Statistics of a single build of an S2ShapeIndex, for tuning the index {@link Options} to a
+   * dataset: the time spent in each phase of the build, the distribution of edges over faces and
+   * cells, the temporary memory used while building, and the size of the resulting index.
+   *
+   * <p>The statistics of the most recent build are returned by {@link S2ShapeIndex#buildStats()},
+   * and the statistics of every build may be received with {@link
+   * S2ShapeIndex#setBuildStatsListener}. Collecting them costs a few counter updates per index
+   * cell, which is small compared to building the cell.
+   */
+  public static final class BuildStats {
+    /**
+     * The approximate size of a FaceEdge in bytes, assuming compressed references, including the
+     * reference to it from its face list.
+     */
+    static final int FACE_EDGE_BYTES = 72;
+
+    /**
+     * The approximate size of a ClippedEdge in bytes, assuming compressed references, including its
+     * bound and the reference to it from its list.
+     */
+    static final int CLIPPED_EDGE_BYTES = 120;
+
+    int numShapes;
+    int numInputEdges;
+    long totalNanos;
+    long addShapeEdgesNanos;
+    final long[] updateFaceEdgesNanos = new long[6];
+    final int[] faceEdges = new int[6];
+    int maxFaceEdges;
+    int numAllocatorEdges;
+    int numSubdivisions;
+    int numCells;
+    final int[] cellsByLevel = new int[S2CellId.MAX_LEVEL + 1];
+    long numShapeEntries;
+    long numEdgeEntries;
+    long numLongEdgeEntries;
+    int maxCellEdges;
+
+    BuildStats() {}
+
+    /** Counts a new index cell at the given level, with the given shapes and clipped edges. */
+    void addCell(int level, int numShapes, List<ClippedEdge> edges) {
+      int numEdges = edges.size();
+      numCells++;
+      cellsByLevel[level]++;
+      numShapeEntries += numShapes;
+      numEdgeEntries += numEdges;
+      maxCellEdges = max(maxCellEdges, numEdges);
+      for (int i = 0; i < numEdges; i++) {
+        // Edges that are long at this level do not count towards Options.maxEdgesPerCell.
+        if (level >= edges.get(i).orig.maxLevel) {
+          numLongEdgeEntries++;
+        }
+      }
+    }
+
+    /** Returns the number of shapes added by the build. */
+    public int numShapes() {
+      return numShapes;
+    }
+
+    /** Returns the number of edges of the shapes added by the build. */
+    public int numInputEdges() {
+      return numInputEdges;
+    }
+
+    /** Returns the total time spent building the index, in nanoseconds. */
+    public long totalNanos() {
+      return totalNanos;
+    }
+
+    /** Returns the time spent clipping the shape edges to the cube faces, in nanoseconds. */
+    public long addShapeEdgesNanos() {
+      return addShapeEdgesNanos;
+    }
+
+    /**
+     * Returns the time spent recursively subdividing the given face into index cells, in
+     * nanoseconds.
+     */
+    public long updateFaceEdgesNanos(int face) {
+      return updateFaceEdgesNanos[face];
+    }
+
+    /**
+     * Returns the number of edges clipped to the given face. An edge near a face boundary is
+     * clipped to each face that it intersects, after padding.
+     */
+    public int numFaceEdges(int face) {
+      return faceEdges[face];
+    }
+
+    /** Returns the number of cells that were subdivided because they had too many short edges. */
+    public int numSubdivisions() {
+      return numSubdivisions;
+    }
+
+    /** Returns the number of cells in the index. */
+    public int numCells() {
+      return numCells;
+    }
+
+    /** Returns the number of index cells at the given level. */
+    public int numCellsAtLevel(int level) {
+      return cellsByLevel[level];
+    }
+
+    /** Returns the number of clipped shapes over all index cells. */
+    public long numShapeEntries() {
+      return numShapeEntries;
+    }
+
+    /** Returns the number of clipped edges over all index cells. */
+    public long numEdgeEntries() {
+      return numEdgeEntries;
+    }
+
+    /**
+     * Returns the number of clipped edges over all index cells that are 'long' relative to their
+     * cell, and so do not count towards {@link Options#getMaxEdgesPerCell()}. Many long edges
+     * suggest a smaller {@link Options#getCellSizeToLongEdgeRatio()}.
+     */
+    public long numLongEdgeEntries() {
+      return numLongEdgeEntries;
+    }
+
+    /** Returns the largest number of clipped edges in any index cell. */
+    public int maxCellEdges() {
+      return maxCellEdges;
+    }
+
+    /** Returns the average number of clipped edges per index cell, or 0 if there are no cells. */
+    public double averageCellEdges() {
+      return numCells == 0 ? 0 : (double) numEdgeEntries / numCells;
+    }
+
+    /**
+     * Returns the peak number of temporary clipped edges held by the edge allocator while
+     * subdividing cells.
+     */
+    public int numAllocatorEdges() {
+      return numAllocatorEdges;
+    }
+
+    /**
+     * Returns an estimate of the peak temporary memory used by the build in bytes: the clipped
+     * face edges of all faces, which are held at the start of subdivision, the initial clipped
+     * edges of the largest face, and the edges held by the edge allocator.
+     */
+    public long peakTemporaryBytes() {
+      long totalFaceEdges = 0;
+      for (int count : faceEdges) {
+        totalFaceEdges += count;
+      }
+      return totalFaceEdges * FACE_EDGE_BYTES
+          + (long) (maxFaceEdges + numAllocatorEdges) * CLIPPED_EDGE_BYTES;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("BuildStats{");
+      sb.append("shapes=").append(numShapes);
+      sb.append(", inputEdges=").append(numInputEdges);
+      sb.append(", totalNanos=").append(totalNanos);
+      sb.append(", addShapeEdgesNanos=").append(addShapeEdgesNanos);
+      sb.append(", updateFaceEdgesNanos=").append(Arrays.toString(updateFaceEdgesNanos));
+      sb.append(", faceEdges=").append(Arrays.toString(faceEdges));
+      sb.append(", subdivisions=").append(numSubdivisions);
+      sb.append(", cells=").append(numCells);
+      sb.append(", cellsByLevel={");
+      String separator = "";
+      for (int level = 0; level <= S2CellId.MAX_LEVEL; level++) {
+        if (cellsByLevel[level] > 0) {
+          sb.append(separator).append(level).append('=').append(cellsByLevel[level]);
+          separator = ", ";
+        }
+      }
+      sb.append("}, shapeEntries=").append(numShapeEntries);
+      sb.append(", edgeEntries=").append(numEdgeEntries);
+      sb.append(", longEdgeEntries=").append(numLongEdgeEntries);
+      sb.append(", maxCellEdges=").append(maxCellEdges);
+      sb.append(", allocatorEdges=").append(numAllocatorEdges);
+      sb.append(", peakTemporaryBytes=").append(peakTemporaryBytes());
+      return sb.append('}').toString();
+    }
+  }
+
   /**
    * Given a cell and a set of ClippedEdges whose bounding boxes intersect that cell, add all the
    * edges from the index. Temporary space for edges that need to be subdivided is allocated from
@@ -776,6 +1108,7 @@ public class S2ShapeIndex implements Serializable {
       // Skip splitting if we made a cell for 'edges'.
       return;
     }
+    state.stats.numSubdivisions++;
 
     // Reserve space for the edges that will be passed to each child. We select the kind of list to
     // use based on how large the child edges lists could possibly be.
@@ -1734,6 +2067,7 @@ public class S2ShapeIndex implements Serializable {
    */
   static final class EdgeAllocator {
     private int size;
+    /** The pool of edges, which only grows, so its size is the peak number of edges in use. */
     private final List<ClippedEdge> edges;
 
     public EdgeAllocator(int maxEdges) {
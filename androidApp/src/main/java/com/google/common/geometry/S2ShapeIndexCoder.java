@@ -314,15 +314,38 @@ public class S2ShapeIndexCoder implements S2Coder<S2ShapeIndex> {
 
         @Override
         public Cell get(int i) {
-          return new LazyCell(encodedCellIds.get(i).id(), encodedCells.get(i));
+          return new LazyCell(encodedCellIds.getId(i), encodedCells.get(i));
         }
       };
 
-      // Override the id() method to provide fast access to the ID without decoding the Cell.
+      // Override the id(), seek and compareAt methods to provide fast access to the ID without
+      // decoding the Cell, and to binary search the encoded cell ids directly.
       return new ListIterator<>(cells) {
         @Override
         public S2CellId id() {
-          return encodedCellIds.get(pos);
+          return new S2CellId(encodedCellIds.getId(pos));
+        }
+
+        @Override
+        public int compareTo(S2CellId cellId) {
+          return UnsignedLongs.compare(encodedCellIds.getId(pos), cellId.id());
+        }
+
+        @Override
+        public void seek(S2CellId target) {
+          pos = encodedCellIds.lowerBound(target.id());
+        }
+
+        @Override
+        public void seekForward(S2CellId target) {
+          if (!done() && compareTo(target) < 0) {
+            pos = encodedCellIds.lowerBound(target.id());
+          }
+        }
+
+        @Override
+        protected int compareAt(int i, S2CellId target) {
+          return UnsignedLongs.compare(encodedCellIds.getId(i), target.id());
         }
       };
     }
@@ -23,6 +23,7 @@ import com.google.common.geometry.S2ShapeIndex.S2ClippedShape;
 import com.google.common.geometry.primitives.IntVector;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.util.Collection;
+import org.jspecify.annotations.Nullable;
 
 /**
  * This class wraps an S2ShapeIndex object with the additional methods needed to implement the
@@ -74,6 +75,9 @@ public class S2ShapeIndexRegion implements S2Region {
   /** Temporary shape IDs used in query processing. */
   private final IntVector ids = new IntVector();
 
+  /** The statistics to add to as queries run, or null if statistics are not being collected. */
+  private @Nullable S2QueryStats stats;
+
   /**
    * Creates a new region with the given index, and a {@link S2VertexModel#SEMI_OPEN semi-open}
    * vertex model.
@@ -89,6 +93,30 @@ public class S2ShapeIndexRegion implements S2Region {
     this.containsQuery = new S2ContainsPointQuery(index, new S2ContainsPointQuery.Options(model));
   }
 
+  /**
+   * Sets the statistics that subsequent calls to {@link #contains(S2Point)}, {@link
+   * #contains(S2Cell)}, {@link #mayIntersect} and {@link #visitIntersectingShapes} add to, or null
+   * (the default) to stop collecting statistics.
+   */
+  public void setStats(@Nullable S2QueryStats stats) {
+    this.stats = stats;
+    // The edges tested by the contains query are counted, but the calls are not counted as
+    // queries, since they are made only from within the calls of this region.
+    containsQuery.setStats(stats);
+  }
+
+  /** Returns the statistics that queries add to, or null if statistics are not being collected. */
+  public @Nullable S2QueryStats stats() {
+    return stats;
+  }
+
+  /** Counts a visit to the current index cell, if statistics are being collected. */
+  private void countCellVisit() {
+    if (stats != null) {
+      stats.cellsVisited++;
+    }
+  }
+
   @Override
   public S2Cap getCapBound() {
     getCellUnionBound(union.cellIds());
@@ -187,7 +215,18 @@ public class S2ShapeIndexRegion implements S2Region {
    */
   @Override
   public boolean contains(S2Point p) {
-    if (it.locate(p)) {
+    if (stats == null) {
+      return containsInternal(p);
+    }
+    long start = System.nanoTime();
+    boolean result = containsInternal(p);
+    stats.endQuery(start);
+    return result;
+  }
+
+  private boolean containsInternal(S2Point p) {
+    if (it.locateNear(p)) {
+      countCellVisit();
       S2Point center = it.center();
       S2ShapeIndex.Cell cell = it.entry();
       for (int s = 0; s < cell.numShapes(); ++s) {
@@ -209,7 +248,17 @@ public class S2ShapeIndexRegion implements S2Region {
    */
   @Override
   public boolean contains(S2Cell target) {
-    S2ShapeIndex.CellRelation relation = it.locate(target.id());
+    if (stats == null) {
+      return containsInternal(target);
+    }
+    long start = System.nanoTime();
+    boolean result = containsInternal(target);
+    stats.endQuery(start);
+    return result;
+  }
+
+  private boolean containsInternal(S2Cell target) {
+    S2ShapeIndex.CellRelation relation = it.locateNear(target.id());
 
     // If the relation is DISJOINT, then "target" is not contained. Similarly if the relation is
     // SUBDIVIDED then "target" is not contained, since index cells are subdivided only if they
@@ -221,6 +270,7 @@ public class S2ShapeIndexRegion implements S2Region {
     // Otherwise, the iterator points to an index cell containing "target". If any shape contains
     // the target cell, we return true.
     // assert (it.id().contains(target.id()));
+    countCellVisit();
     S2ShapeIndex.Cell cell = it.entry();
     S2Point center = it.center();
     for (int s = 0; s < cell.numShapes(); ++s) {
@@ -264,7 +314,17 @@ public class S2ShapeIndexRegion implements S2Region {
    */
   @CanIgnoreReturnValue
   public boolean visitIntersectingShapes(S2Cell target, ShapeVisitor visitor) {
-    S2ShapeIndex.CellRelation relation = it.locate(target.id());
+    if (stats == null) {
+      return visitIntersectingShapesInternal(target, visitor);
+    }
+    long start = System.nanoTime();
+    boolean result = visitIntersectingShapesInternal(target, visitor);
+    stats.endQuery(start);
+    return result;
+  }
+
+  private boolean visitIntersectingShapesInternal(S2Cell target, ShapeVisitor visitor) {
+    S2ShapeIndex.CellRelation relation = it.locateNear(target.id());
     switch (relation) {
       case DISJOINT:
         return true;
@@ -280,6 +340,7 @@ public class S2ShapeIndexRegion implements S2Region {
         for (S2CellId max = target.id().rangeMax();
             !it.done() && it.id().lessOrEquals(max);
             it.next()) {
+          countCellVisit();
           S2ShapeIndex.Cell cell = it.entry();
           for (int s = 0; s < cell.numShapes(); ++s) {
             S2ClippedShape clipped = cell.clipped(s);
@@ -302,6 +363,7 @@ public class S2ShapeIndexRegion implements S2Region {
         return true;
 
       case INDEXED:
+        countCellVisit();
         S2ShapeIndex.Cell cell = it.entry();
         for (int s = 0; s < cell.numShapes(); ++s) {
           // The shape contains the target cell iff the shape contains the cell center and none of
@@ -342,7 +404,17 @@ public class S2ShapeIndexRegion implements S2Region {
    */
   @Override
   public boolean mayIntersect(S2Cell target) {
-    S2ShapeIndex.CellRelation relation = it.locate(target.id());
+    if (stats == null) {
+      return mayIntersectInternal(target);
+    }
+    long start = System.nanoTime();
+    boolean result = mayIntersectInternal(target);
+    stats.endQuery(start);
+    return result;
+  }
+
+  private boolean mayIntersectInternal(S2Cell target) {
+    S2ShapeIndex.CellRelation relation = it.locateNear(target.id());
 
     // If "target" does not overlap any index cell, there is no intersection.
     if (relation == S2ShapeIndex.CellRelation.DISJOINT) {
@@ -364,6 +436,7 @@ public class S2ShapeIndexRegion implements S2Region {
     }
 
     // Test whether any shape intersects the target cell or contains its center.
+    countCellVisit();
     S2ShapeIndex.Cell cell = it.entry();
     S2Point center = it.center();
     for (int s = 0; s < cell.numShapes(); ++s) {
@@ -388,6 +461,9 @@ public class S2ShapeIndexRegion implements S2Region {
     S2Shape shape = index.getShapes().get(clipped.shapeId());
     int numEdges = clipped.numEdges();
     for (int i = 0; i < numEdges; ++i) {
+      if (stats != null) {
+        stats.edgesEvaluated++;
+      }
       shape.getEdge(clipped.edge(i), edge);
       if (S2EdgeUtil.clipToPaddedFace(edge.a, edge.b, face, S2EdgeUtil.MAX_CELL_EDGE_ERROR, p0, p1)
           && S2EdgeUtil.intersectsRect(p0, p1, bound)) {
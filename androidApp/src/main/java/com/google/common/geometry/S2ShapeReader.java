@@ -0,0 +1,824 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.geometry.primitives.IntVector;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * S2ShapeReader is a streaming reader of GeoJSON and WKT geometry, which produces an {@link
+ * S2Shape} for each geometry as soon as it has been read. Unlike {@link S2TextFormat}, which is
+ * intended for tests, it reads from a {@link Reader} with a fixed size buffer, and parses
+ * coordinates directly into a reused packed coordinate array, so memory use depends only on the
+ * size of the largest single geometry rather than the size of the input.
+ *
+ * <p>Geometries are converted as follows:
+ *
+ * <ul>
+ *   <li>Point and MultiPoint become an {@link S2Point.Shape}.
+ *   <li>LineString and MultiLineString become a packed {@link S2LaxPolylineShape}.
+ *   <li>Polygon and MultiPolygon become a packed {@link S2LaxPolygonShape}, with the closing vertex
+ *       of each ring removed. Rings are normalized so that shells are counter-clockwise and holes
+ *       are clockwise, so that the interior is on the left, like {@link S2Loop#normalize}. WKT does
+ *       not specify an orientation, and RFC 7946 asks GeoJSON readers to accept rings of either
+ *       orientation; a shell therefore covers at most a hemisphere.
+ * </ul>
+ *
+ * <p>Coordinates are (longitude, latitude) in degrees; any further ordinates, such as altitude,
+ * are ignored. Empty geometries produce no shape. GeoJSON input may be a single object, or a
+ * sequence of objects such as newline-delimited GeoJSON; features, feature collections and
+ * geometry collections are traversed, and all other members such as "properties" are skipped
+ * without being retained. WKT input is a sequence of geometries, optionally separated by
+ * semicolons.
+ *
+ * <p>Shapes are passed to a {@link ShapeSink} as they are read, for example {@code index::add} to
+ * build an {@link S2ShapeIndex}, or a lambda that writes each shape with an {@link S2Coder}.
+ *
+ * <p>This class is not thread-safe; each call to {@link #readGeoJson} or {@link #readWkt} uses a
+ * new reader.
+ */
+public final class S2ShapeReader {
+  /** Receives each shape as it is read. */
+  public interface ShapeSink {
+    void add(S2Shape shape) throws IOException;
+  }
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /** Exactly representable powers of ten, for the fast path of {@link #readNumber}. */
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /** The depth returned for a coordinate list with no coordinates, which matches any type. */
+  private static final int EMPTY_DEPTH = -1;
+
+  /** The geometry types, with the nesting depth of their GeoJSON "coordinates". */
+  private enum Type {
+    POINT("Point", "POINT", 0, 0),
+    MULTI_POINT("MultiPoint", "MULTIPOINT", 0, 1),
+    LINE_STRING("LineString", "LINESTRING", 1, 1),
+    MULTI_LINE_STRING("MultiLineString", "MULTILINESTRING", 1, 2),
+    POLYGON("Polygon", "POLYGON", 2, 2),
+    MULTI_POLYGON("MultiPolygon", "MULTIPOLYGON", 2, 3),
+    GEOMETRY_COLLECTION("GeometryCollection", "GEOMETRYCOLLECTION", -1, -1),
+    FEATURE("Feature", null, -1, -1),
+    FEATURE_COLLECTION("FeatureCollection", null, -1, -1);
+
+    private static final Type[] VALUES = values();
+
+    final String geoJsonName;
+    final @Nullable String wktName;
+    final int dimension;
+    final int depth;
+
+    Type(String geoJsonName, @Nullable String wktName, int dimension, int depth) {
+      this.geoJsonName = geoJsonName;
+      this.wktName = wktName;
+      this.dimension = dimension;
+      this.depth = depth;
+    }
+
+    /** Returns true if this type has coordinates. */
+    boolean hasCoordinates() {
+      return depth >= 0;
+    }
+  }
+
+  private final Reader input;
+  private final ShapeSink sink;
+  private final boolean json;
+
+  /** The buffered input, the position of the next char within it, and its number of chars. */
+  private final char[] buffer = new char[BUFFER_SIZE];
+
+  private int position;
+  private int limit;
+
+  /** The number of chars consumed before the start of 'buffer', for error messages. */
+  private long consumed;
+
+  /** The last string, word or number read. */
+  private final StringBuilder token = new StringBuilder();
+
+  /** The packed coordinates of the current geometry, and the end of each leaf coordinate list. */
+  private double[] coordinates = new double[3 * 64];
+
+  private int numPoints;
+  private final IntVector chainEnds = new IntVector();
+
+  /** The leaf coordinate lists that are the first in their parent list, i.e. the shells. */
+  private final BitSet shells = new BitSet();
+
+  private int numShapes;
+
+  private S2ShapeReader(Reader input, ShapeSink sink, boolean json) {
+    this.input = input;
+    this.sink = sink;
+    this.json = json;
+  }
+
+  /**
+   * Reads GeoJSON from 'input' until the end of the input, passing each geometry to 'sink' as a
+   * shape, and returns the number of shapes produced. The input is not closed.
+   *
+   * @throws IOException if the input cannot be read, is malformed, or 'sink' throws.
+   */
+  @CanIgnoreReturnValue
+  public static int readGeoJson(Reader input, ShapeSink sink) throws IOException {
+    S2ShapeReader reader = new S2ShapeReader(input, sink, true);
+    while (reader.skipWhitespace() >= 0) {
+      reader.readGeoJsonObject();
+    }
+    return reader.numShapes;
+  }
+
+  /** As {@link #readGeoJson(Reader, ShapeSink)}, adding each shape to 'index'. */
+  @CanIgnoreReturnValue
+  public static int readGeoJson(Reader input, S2ShapeIndex index) throws IOException {
+    return readGeoJson(input, index::add);
+  }
+
+  /**
+   * Reads WKT from 'input' until the end of the input, passing each geometry to 'sink' as a shape,
+   * and returns the number of shapes produced. The input is not closed.
+   *
+   * @throws IOException if the input cannot be read, is malformed, or 'sink' throws.
+   */
+  @CanIgnoreReturnValue
+  public static int readWkt(Reader input, ShapeSink sink) throws IOException {
+    S2ShapeReader reader = new S2ShapeReader(input, sink, false);
+    for (int c = reader.skipWhitespace(); c >= 0; c = reader.skipWhitespace()) {
+      if (c == ';') {
+        reader.position++;
+      } else {
+        reader.readWktGeometry();
+      }
+    }
+    return reader.numShapes;
+  }
+
+  /** As {@link #readWkt(Reader, ShapeSink)}, adding each shape to 'index'. */
+  @CanIgnoreReturnValue
+  public static int readWkt(Reader input, S2ShapeIndex index) throws IOException {
+    return readWkt(input, index::add);
+  }
+
+  // GeoJSON.
+
+  /**
+   * Reads a GeoJSON object, emitting a shape if it is a geometry, and recursing into the members
+   * that may contain geometries.
+   */
+  private void readGeoJsonObject() throws IOException {
+    expect('{');
+    Type type = null;
+    boolean typeKnown = false;
+    int depth = Integer.MIN_VALUE;
+    if (!consumeIf('}')) {
+      do {
+        readString();
+        expect(':');
+        if (tokenEquals("type")) {
+          readString();
+          type = geoJsonType();
+          typeKnown = true;
+        } else if (tokenEquals("coordinates")) {
+          clearCoordinates();
+          depth = readJsonCoordinates();
+        } else if (tokenEquals("geometry")
+            || tokenEquals("geometries")
+            || tokenEquals("features")) {
+          readGeoJsonObjects();
+        } else {
+          skipJsonValue();
+        }
+      } while (consumeIf(','));
+      expect('}');
+    }
+    if (!typeKnown) {
+      throw malformed("object without a \"type\"");
+    }
+    if (type != null && type.hasCoordinates()) {
+      if (depth == Integer.MIN_VALUE) {
+        throw malformed(type.geoJsonName + " without \"coordinates\"");
+      }
+      if (depth != EMPTY_DEPTH && depth != type.depth) {
+        throw malformed(type.geoJsonName + " with coordinates nested " + depth + " deep");
+      }
+      if (type.dimension == 2) {
+        normalizeRings();
+      }
+      emit(type);
+    }
+  }
+
+  /** Reads null, a GeoJSON object, or an array of them. */
+  private void readGeoJsonObjects() throws IOException {
+    int c = skipWhitespace();
+    if (c == 'n') {
+      expectWord("null");
+    } else if (c == '[') {
+      position++;
+      if (!consumeIf(']')) {
+        do {
+          readGeoJsonObjects();
+        } while (consumeIf(','));
+        expect(']');
+      }
+    } else {
+      readGeoJsonObject();
+    }
+  }
+
+  /** Returns the type named by 'token', or null if it is not a type this reader understands. */
+  private @Nullable Type geoJsonType() {
+    for (Type type : Type.VALUES) {
+      if (tokenEquals(type.geoJsonName)) {
+        return type;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads a GeoJSON position or nested array of positions into the current geometry, and returns
+   * its nesting depth: 0 for a position, 1 for an array of positions, and so on, or {@link
+   * #EMPTY_DEPTH} if there were no positions.
+   */
+  private int readJsonCoordinates() throws IOException {
+    expect('[');
+    if (consumeIf(']')) {
+      return EMPTY_DEPTH;
+    }
+    if (skipWhitespace() != '[') {
+      double lng = readNumber();
+      expect(',');
+      double lat = readNumber();
+      while (consumeIf(',')) {
+        readNumber();
+      }
+      expect(']');
+      addPoint(lat, lng);
+      return 0;
+    }
+    int depth = EMPTY_DEPTH;
+    do {
+      boolean first = depth == EMPTY_DEPTH;
+      depth = nest(depth, readJsonCoordinates());
+      if (first && depth == 2) {
+        shells.set(chainEnds.size() - 1);
+      }
+    } while (consumeIf(','));
+    expect(']');
+    if (depth == 1) {
+      chainEnds.add(numPoints);
+    }
+    return depth;
+  }
+
+  /** Skips over any JSON value. */
+  private void skipJsonValue() throws IOException {
+    int c = skipWhitespace();
+    switch (c) {
+      case '{':
+        position++;
+        if (!consumeIf('}')) {
+          do {
+            readString();
+            expect(':');
+            skipJsonValue();
+          } while (consumeIf(','));
+          expect('}');
+        }
+        break;
+      case '[':
+        position++;
+        if (!consumeIf(']')) {
+          do {
+            skipJsonValue();
+          } while (consumeIf(','));
+          expect(']');
+        }
+        break;
+      case '"':
+        readString();
+        break;
+      case 't':
+        expectWord("true");
+        break;
+      case 'f':
+        expectWord("false");
+        break;
+      case 'n':
+        expectWord("null");
+        break;
+      default:
+        readNumber();
+    }
+  }
+
+  /** Reads a JSON string into 'token'. */
+  private void readString() throws IOException {
+    expect('"');
+    token.setLength(0);
+    while (true) {
+      int c = read();
+      if (c == '"') {
+        return;
+      } else if (c < 0) {
+        throw malformed("unterminated string");
+      } else if (c == '\\') {
+        c = read();
+        switch (c) {
+          case 'b':
+            token.append('\b');
+            break;
+          case 'f':
+            token.append('\f');
+            break;
+          case 'n':
+            token.append('\n');
+            break;
+          case 'r':
+            token.append('\r');
+            break;
+          case 't':
+            token.append('\t');
+            break;
+          case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+              int digit = Character.digit(read(), 16);
+              if (digit < 0) {
+                throw malformed("invalid unicode escape");
+              }
+              value = 16 * value + digit;
+            }
+            token.append((char) value);
+            break;
+          case '"':
+          case '\\':
+          case '/':
+            token.append((char) c);
+            break;
+          default:
+            throw malformed("invalid escape");
+        }
+      } else {
+        token.append((char) c);
+      }
+    }
+  }
+
+  // WKT.
+
+  /** Reads a WKT geometry, emitting a shape unless it is empty or a collection. */
+  private void readWktGeometry() throws IOException {
+    readWord();
+    Type type = wktType();
+    if (type == null) {
+      throw malformed("unknown geometry type '" + token + "'");
+    }
+    // Skip the optional dimension, and stop if the geometry is empty.
+    if (Character.isLetter(skipWhitespace())) {
+      readWord();
+      if (wordEquals("Z") || wordEquals("M") || wordEquals("ZM")) {
+        if (!Character.isLetter(skipWhitespace())) {
+          readWktBody(type);
+          return;
+        }
+        readWord();
+      }
+      if (!wordEquals("EMPTY")) {
+        throw malformed("expected EMPTY but found '" + token + "'");
+      }
+      return;
+    }
+    readWktBody(type);
+  }
+
+  /** Reads the parenthesized body of a non-empty WKT geometry of the given type. */
+  private void readWktBody(Type type) throws IOException {
+    if (type == Type.GEOMETRY_COLLECTION) {
+      expect('(');
+      do {
+        readWktGeometry();
+      } while (consumeIf(','));
+      expect(')');
+      return;
+    }
+    clearCoordinates();
+    int depth = readWktCoordinates();
+    // Unlike GeoJSON, the single point of a POINT is in a list, and the points of a MULTIPOINT may
+    // or may not be parenthesized individually.
+    if (depth != EMPTY_DEPTH
+        && depth != Math.max(type.depth, 1)
+        && !(type == Type.MULTI_POINT && depth == 2)) {
+      throw malformed(type.wktName + " with coordinates nested " + depth + " deep");
+    }
+    if (type.dimension == 2) {
+      normalizeRings();
+    }
+    emit(type);
+  }
+
+  /** Returns the type named by 'token', or null if it is not a type this reader understands. */
+  private @Nullable Type wktType() {
+    for (Type type : Type.VALUES) {
+      if (type.wktName != null && wordEquals(type.wktName)) {
+        return type;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads a parenthesized WKT list of points or nested lists into the current geometry, and
+   * returns its nesting depth: 1 for a list of points, 2 for a list of lists of points, and so on,
+   * or {@link #EMPTY_DEPTH} if there were no points.
+   */
+  private int readWktCoordinates() throws IOException {
+    expect('(');
+    int c = skipWhitespace();
+    if (c != '(' && !Character.isLetter(c)) {
+      do {
+        double lng = readNumber();
+        double lat = readNumber();
+        while (isNumberStart(skipWhitespace())) {
+          readNumber();
+        }
+        addPoint(lat, lng);
+      } while (consumeIf(','));
+      expect(')');
+      chainEnds.add(numPoints);
+      return 1;
+    }
+    int depth = EMPTY_DEPTH;
+    do {
+      if (Character.isLetter(skipWhitespace())) {
+        expectWord("EMPTY");
+      } else {
+        boolean first = depth == EMPTY_DEPTH;
+        depth = nest(depth, readWktCoordinates());
+        if (first && depth == 2) {
+          shells.set(chainEnds.size() - 1);
+        }
+      }
+    } while (consumeIf(','));
+    expect(')');
+    return depth;
+  }
+
+  /**
+   * Reverses the rings of the current polygon as needed so that shells are counter-clockwise
+   * and holes are clockwise, i.e. so that each shell has a positive turning angle.
+   */
+  private void normalizeRings() {
+    int start = 0;
+    for (int i = 0; i < chainEnds.size(); i++) {
+      int end = chainEnds.get(i);
+      int loopEnd = end - 1 > start && point(end - 1).equalsPoint(point(start)) ? end - 1 : end;
+      if (loopEnd > start) {
+        double angle = S2ShapeMeasures.turningAngle(points(start, loopEnd));
+        if (shells.get(i) ? angle < 0 : angle > 0) {
+          reversePoints(start, end);
+        }
+      }
+      start = end;
+    }
+  }
+
+  /** Reverses the order of the points from 'start' (inclusive) to 'end' (exclusive). */
+  private void reversePoints(int start, int end) {
+    for (int i = 3 * start, j = 3 * (end - 1); i < j; i += 3, j -= 3) {
+      for (int k = 0; k < 3; k++) {
+        double t = coordinates[i + k];
+        coordinates[i + k] = coordinates[j + k];
+        coordinates[j + k] = t;
+      }
+    }
+  }
+
+  /** Reads a run of letters into 'token'. */
+  private void readWord() throws IOException {
+    skipWhitespace();
+    token.setLength(0);
+    for (int c = peek(); Character.isLetter(c); c = peek()) {
+      token.append((char) c);
+      position++;
+    }
+    if (token.length() == 0) {
+      throw malformed("expected a word");
+    }
+  }
+
+  /** Returns true if 'token' equals 'upperCaseWord', ignoring case. */
+  private boolean wordEquals(String upperCaseWord) {
+    if (token.length() != upperCaseWord.length()) {
+      return false;
+    }
+    for (int i = 0; i < token.length(); i++) {
+      if (Character.toUpperCase(token.charAt(i)) != upperCaseWord.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Coordinates and shapes.
+
+  /**
+   * Returns the depth of a list containing children of depth 'depth' and 'childDepth', ignoring
+   * empty children.
+   */
+  private int nest(int depth, int childDepth) throws IOException {
+    if (childDepth == EMPTY_DEPTH) {
+      return depth;
+    }
+    if (depth != EMPTY_DEPTH && depth != childDepth + 1) {
+      throw malformed("inconsistently nested coordinates");
+    }
+    return childDepth + 1;
+  }
+
+  private void clearCoordinates() {
+    numPoints = 0;
+    chainEnds.clear();
+    shells.clear();
+  }
+
+  /** Appends the point at the given latitude and longitude in degrees, as S2LatLng#toPoint does. */
+  private void addPoint(double lat, double lng) throws IOException {
+    if (!Double.isFinite(lat) || !Double.isFinite(lng)) {
+      throw malformed("non-finite coordinate");
+    }
+    int offset = 3 * numPoints;
+    if (offset + 3 > coordinates.length) {
+      coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+    }
+    double phi = lat * (PI / 180);
+    double theta = lng * (PI / 180);
+    double cosphi = cos(phi);
+    coordinates[offset] = cos(theta) * cosphi;
+    coordinates[offset + 1] = sin(theta) * cosphi;
+    coordinates[offset + 2] = sin(phi);
+    numPoints++;
+  }
+
+  private S2Point point(int index) {
+    int offset = 3 * index;
+    return new S2Point(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2]);
+  }
+
+  /** Returns a view of the points from 'start' (inclusive) to 'end' (exclusive). */
+  private List<S2Point> points(int start, int end) {
+    return new AbstractList<S2Point>() {
+      @Override
+      public int size() {
+        return end - start;
+      }
+
+      @Override
+      public S2Point get(int index) {
+        return point(start + index);
+      }
+    };
+  }
+
+  /**
+   * Returns views of the non-empty leaf coordinate lists of the current geometry. If 'closed', the
+   * last point of each list is dropped if it repeats the first.
+   */
+  private List<List<S2Point>> chains(boolean closed) {
+    List<List<S2Point>> chains = new ArrayList<>(chainEnds.size());
+    int start = 0;
+    for (int i = 0; i < chainEnds.size(); i++) {
+      int end = chainEnds.get(i);
+      if (closed && end - start > 1 && point(end - 1).equalsPoint(point(start))) {
+        end--;
+      }
+      if (end > start) {
+        chains.add(points(start, end));
+      }
+      start = chainEnds.get(i);
+    }
+    return chains;
+  }
+
+  /**
+   * Passes the current geometry to the sink as a shape of the given type's dimension, copying the
+   * coordinates, unless the geometry is empty.
+   */
+  private void emit(Type type) throws IOException {
+    S2Shape shape;
+    switch (type.dimension) {
+      case 0:
+        if (numPoints == 0) {
+          return;
+        }
+        shape =
+            numPoints == 1
+                ? S2Point.Shape.singleton(point(0))
+                : S2Point.Shape.fromList(ImmutableList.copyOf(points(0, numPoints)));
+        break;
+      case 1:
+        shape = S2LaxPolylineShape.createMultiPacked(chains(false));
+        if (shape.numEdges() == 0) {
+          return;
+        }
+        break;
+      default:
+        List<List<S2Point>> loops = chains(true);
+        if (loops.isEmpty()) {
+          return;
+        }
+        shape = S2LaxPolygonShape.createPacked(loops);
+        break;
+    }
+    sink.add(shape);
+    numShapes++;
+  }
+
+  // Tokenizing.
+
+  /**
+   * Reads a number into 'token' and returns its value. Numbers with at most 18 significant digits
+   * and a small exponent, which includes virtually all coordinates, are converted without
+   * allocating, using the exactly rounded method of Clinger's fast path.
+   */
+  private double readNumber() throws IOException {
+    skipWhitespace();
+    token.setLength(0);
+    boolean negative = false;
+    long mantissa = 0;
+    int significantDigits = 0;
+    int exponent = 0;
+    int c = peek();
+    if (c == '-' || c == '+') {
+      negative = c == '-';
+      token.append((char) c);
+      position++;
+    }
+    int numDigits = 0;
+    boolean fraction = false;
+    for (c = peek(); isDigit(c) || (c == '.' && !fraction); c = peek()) {
+      token.append((char) c);
+      position++;
+      if (c == '.') {
+        fraction = true;
+        continue;
+      }
+      numDigits++;
+      if ((mantissa != 0 || c != '0') && ++significantDigits <= 18) {
+        mantissa = 10 * mantissa + (c - '0');
+      }
+      if (fraction) {
+        exponent--;
+      }
+    }
+    if (numDigits == 0) {
+      throw malformed("expected a number");
+    }
+    if (c == 'e' || c == 'E') {
+      token.append((char) c);
+      position++;
+      c = peek();
+      boolean negativeExponent = c == '-';
+      if (c == '-' || c == '+') {
+        token.append((char) c);
+        position++;
+      }
+      int value = 0;
+      int exponentDigits = 0;
+      for (c = peek(); isDigit(c); c = peek()) {
+        token.append((char) c);
+        position++;
+        exponentDigits++;
+        value = Math.min(10 * value + (c - '0'), 100000);
+      }
+      if (exponentDigits == 0) {
+        throw malformed("expected an exponent");
+      }
+      exponent += negativeExponent ? -value : value;
+    }
+    double result;
+    if (significantDigits <= 18
+        && mantissa < (1L << 53)
+        && Math.abs(exponent) < POWERS_OF_TEN.length) {
+      result =
+          exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+      return negative ? -result : result;
+    }
+    try {
+      return Double.parseDouble(token.toString());
+    } catch (NumberFormatException e) {
+      throw malformed("invalid number '" + token + "'");
+    }
+  }
+
+  /** Reads the given word, which is ASCII, failing if the input differs. */
+  private void expectWord(String word) throws IOException {
+    skipWhitespace();
+    for (int i = 0; i < word.length(); i++) {
+      int c = read();
+      if (Character.toUpperCase(c) != Character.toUpperCase(word.charAt(i))) {
+        throw malformed("expected '" + word + "'");
+      }
+    }
+  }
+
+  private boolean tokenEquals(String value) {
+    return value.contentEquals(token);
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isNumberStart(int c) {
+    return isDigit(c) || c == '-' || c == '+' || c == '.';
+  }
+
+  /** Skips whitespace and returns the next char without consuming it, or -1 at the end. */
+  private int skipWhitespace() throws IOException {
+    int c = peek();
+    while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+      position++;
+      c = peek();
+    }
+    return c;
+  }
+
+  /** Skips whitespace and consumes 'expected', or throws if the next char differs. */
+  private void expect(char expected) throws IOException {
+    if (skipWhitespace() != expected) {
+      throw malformed("expected '" + expected + "'");
+    }
+    position++;
+  }
+
+  /** Skips whitespace and consumes 'expected' if it is next, returning true if so. */
+  private boolean consumeIf(char expected) throws IOException {
+    if (skipWhitespace() != expected) {
+      return false;
+    }
+    position++;
+    return true;
+  }
+
+  /** Returns the next char without consuming it, or -1 at the end of the input. */
+  private int peek() throws IOException {
+    if (position == limit) {
+      consumed += limit;
+      position = 0;
+      limit = Math.max(0, input.read(buffer));
+      if (limit == 0) {
+        return -1;
+      }
+    }
+    return buffer[position];
+  }
+
+  /** Consumes and returns the next char, or -1 at the end of the input. */
+  private int read() throws IOException {
+    int c = peek();
+    if (c >= 0) {
+      position++;
+    }
+    return c;
+  }
+
+  private IOException malformed(String message) {
+    return new IOException(
+        "Malformed " + (json ? "GeoJSON" : "WKT") + " at char " + (consumed + position) + ": "
+            + message);
+  }
+}
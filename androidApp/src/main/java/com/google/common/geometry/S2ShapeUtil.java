@@ -969,6 +969,43 @@ public class S2ShapeUtil {
     }
   }
 
+  /**
+   * Returns a bounding rectangle for the given shape, in time linear in its number of edges. As
+   * with {@link S2Loop#getRectBound}, the bound includes any pole contained by a shape of dimension
+   * 2, and may be slightly larger than the true bound.
+   */
+  public static S2LatLngRect getRectBound(S2Shape shape) {
+    if (shape.isFull()) {
+      return S2LatLngRect.full();
+    }
+    S2LatLngRect.Builder builder = S2LatLngRect.Builder.empty();
+    MutableEdge edge = new MutableEdge();
+    for (int chainId = 0; chainId < shape.numChains(); chainId++) {
+      // Each chain is bounded separately, since the bounder also bounds the edge between
+      // consecutive points.
+      S2EdgeUtil.RectBounder bounder = new S2EdgeUtil.RectBounder();
+      int length = shape.getChainLength(chainId);
+      for (int offset = 0; offset < length; offset++) {
+        shape.getChainEdge(chainId, offset, edge);
+        if (offset == 0) {
+          bounder.addPoint(edge.getStart());
+        }
+        bounder.addPoint(edge.getEnd());
+      }
+      builder.union(bounder.getBound());
+    }
+    S2LatLngRect b = builder.build();
+    if (shape.dimension() == 2) {
+      if (containsBruteForce(shape, S2Point.Z_POS)) {
+        b = new S2LatLngRect(new R1Interval(b.lat().lo(), PI / 2), S1Interval.full());
+      }
+      if (b.lng().isFull() && containsBruteForce(shape, S2Point.Z_NEG)) {
+        b = new S2LatLngRect(new R1Interval(-PI / 2, b.lat().hi()), b.lng());
+      }
+    }
+    return b;
+  }
+
   /**
    * Returns the total number of vertices in all indexed shapes. This method takes time linear in
    * the number of shapes.
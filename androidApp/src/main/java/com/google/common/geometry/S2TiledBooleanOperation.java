@@ -0,0 +1,640 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static com.google.common.geometry.S2Cell.Boundary.BOTTOM_EDGE;
+import static com.google.common.geometry.S2Cell.Boundary.TOP_EDGE;
+
+import com.google.common.base.Preconditions;
+import com.google.common.geometry.S2BooleanOperation.OpType;
+import com.google.common.geometry.S2Builder.SnapFunction;
+import com.google.common.geometry.S2BuilderSnapFunctions.IdentitySnapFunction;
+import com.google.common.geometry.S2RobustCellClipper.Crossing;
+import com.google.common.geometry.S2RobustCellClipper.CrossingType;
+import com.google.common.geometry.S2RobustCellClipper.RobustClipResult;
+import com.google.common.geometry.S2Shape.MutableEdge;
+import com.google.common.geometry.S2ShapeIndex.CellRelation;
+import com.google.common.geometry.S2ShapeIndex.S2ClippedShape;
+import com.google.common.geometry.primitives.IntVector;
+import com.google.common.geometry.primitives.PooledList;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A tiled, parallel version of {@link S2BooleanOperation} for very large polygonal inputs. The
+ * sphere is partitioned into S2CellId tiles that each hold about the same number of input edges,
+ * and the boolean operation is computed for each tile independently on a {@link ForkJoinPool}.
+ * The results for the tiles are then stitched together into a single output polygon.
+ *
+ * <p>For each tile, both inputs are clipped to the tile and a "halo" of smaller cells around it,
+ * using {@link S2RobustCellClipper} so that boundary crossings are computed consistently in
+ * adjacent cells. The halo is wider than twice the snap radius, so that the snapped output within
+ * the tile sees the same nearby input geometry as the untiled operation. The output of the tile's
+ * operation is then clipped back to the tile itself, and the pieces from all the tiles are passed
+ * to a single S2Builder, where the edges along the shared tile boundaries cancel out.
+ *
+ * <p>The result is the same as that of the untiled operation, except that vertices near tile
+ * boundaries may differ within the snap tolerance: when the snap function chooses sites greedily,
+ * a choice made inside the halo may differ from the untiled choice. The stitching pass snaps the
+ * tiles together with the same snap function, so that such differences are merged. The result
+ * also has an extra vertex wherever one of its edges crosses a tile boundary.
+ *
+ * <p>Only polygons are supported: every shape in both inputs must have dimension 2, and the output
+ * layer receives polygon edges, so it would typically be an {@link S2PolygonLayer}. The clipping
+ * and boolean operations run concurrently, but the final stitching pass is sequential, so the
+ * speedup is limited by the size of the output rather than the size of the inputs.
+ *
+ * <p>Example usage:
+ *
+ * {@snippet :
+ * S2PolygonLayer layer = new S2PolygonLayer();
+ * S2TiledBooleanOperation op =
+ *     new S2TiledBooleanOperation.Builder(snapFunction).build(OpType.INTERSECTION, layer);
+ * S2Error error = new S2Error();
+ * if (op.build(countiesIndex, floodZonesIndex, ForkJoinPool.commonPool(), error)) {
+ *   S2Polygon result = layer.getPolygon();
+ * }
+ * }
+ *
+ * <p>The input indexes must not be modified while the operation is running.
+ */
+public class S2TiledBooleanOperation {
+  /** The default maximum number of input edges in a tile. */
+  public static final int DEFAULT_MAX_EDGES_PER_TILE = 10000;
+
+  /**
+   * The number of levels below a tile of the cells that form its halo. The halo cells are 1/8 the
+   * width of the tile, so the halo adds about half the tile's area to the work done for it.
+   */
+  static final int HALO_LEVELS = 3;
+
+  /** The snap radius used to assemble clipped inputs and to stitch the tiles together. */
+  private static final S1Angle STITCH_RADIUS = S2EdgeUtil.INTERSECTION_MERGE_RADIUS;
+
+  private final OpType opType;
+  private final S2BuilderLayer layer;
+  private final S2BooleanOperation.Options options;
+  private final int maxEdgesPerTile;
+
+  private S2TiledBooleanOperation(
+      OpType opType,
+      S2BuilderLayer layer,
+      S2BooleanOperation.Options options,
+      int maxEdgesPerTile) {
+    this.opType = opType;
+    this.layer = layer;
+    this.options = options;
+    this.maxEdgesPerTile = maxEdgesPerTile;
+  }
+
+  /**
+   * The S2TiledBooleanOperation.Builder provides a mutable interface to the options of the boolean
+   * operation run for each tile and the tiling, and constructs new S2TiledBooleanOperations.
+   */
+  public static class Builder {
+    private final S2BooleanOperation.Builder operationBuilder;
+    private int maxEdgesPerTile = DEFAULT_MAX_EDGES_PER_TILE;
+
+    /** Constructs a Builder with default {@link S2BooleanOperation.Options} values. */
+    public Builder() {
+      operationBuilder = new S2BooleanOperation.Builder();
+    }
+
+    /** Constructs a Builder that uses the given snap function and otherwise default options. */
+    public Builder(SnapFunction snapFunction) {
+      operationBuilder = new S2BooleanOperation.Builder(snapFunction);
+    }
+
+    /** Constructs a Builder that uses a copy of the given boolean operation options. */
+    public Builder(S2BooleanOperation.Options options) {
+      operationBuilder = new S2BooleanOperation.Builder(new S2BooleanOperation.Options(options));
+    }
+
+    /** Returns the builder of the options for the boolean operation run for each tile. */
+    public S2BooleanOperation.Builder operationBuilder() {
+      return operationBuilder;
+    }
+
+    /**
+     * Sets the maximum number of input edges in a tile. Tiles are subdivided until they have at
+     * most this many edges, unless that would make them narrower than the halo. Smaller tiles give
+     * more parallelism, at the cost of more clipping and stitching work. The default is {@link
+     * #DEFAULT_MAX_EDGES_PER_TILE}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxEdgesPerTile(int maxEdgesPerTile) {
+      Preconditions.checkArgument(maxEdgesPerTile > 0, "maxEdgesPerTile must be positive");
+      this.maxEdgesPerTile = maxEdgesPerTile;
+      return this;
+    }
+
+    /**
+     * Using a snapshot of the options currently set, constructs and returns an
+     * S2TiledBooleanOperation that sends the output polygon edges to the given layer.
+     */
+    public S2TiledBooleanOperation build(OpType opType, S2BuilderLayer layer) {
+      return new S2TiledBooleanOperation(
+          opType, layer, operationBuilder.options(), maxEdgesPerTile);
+    }
+  }
+
+  /** Returns the OpType of this S2TiledBooleanOperation. */
+  public OpType opType() {
+    return opType;
+  }
+
+  /** Returns the options of the boolean operation run for each tile. */
+  public S2BooleanOperation.Options options() {
+    return options;
+  }
+
+  /** Returns the maximum number of input edges in a tile. */
+  public int maxEdgesPerTile() {
+    return maxEdgesPerTile;
+  }
+
+  /**
+   * Executes the operation on the given inputs, running the tiles on the given pool. Returns true
+   * on success, and otherwise sets "error" appropriately. If the operation fails for a tile, the
+   * error of the first such tile in S2CellId order is returned, with the tile id added to the text.
+   *
+   * @throws IllegalArgumentException if either index contains a shape that is not a polygon
+   */
+  public boolean build(S2ShapeIndex a, S2ShapeIndex b, ForkJoinPool pool, S2Error error) {
+    checkPolygons(a);
+    checkPolygons(b);
+
+    List<S2CellId> tileIds = chooseTiles(a, b);
+    Tile[] tiles = new Tile[tileIds.size()];
+    for (int i = 0; i < tiles.length; i++) {
+      tiles[i] = new Tile(tileIds.get(i));
+    }
+    pool.invoke(new TileTask(tiles, a, b, 0, tiles.length));
+
+    for (Tile tile : tiles) {
+      if (!tile.error.ok()) {
+        error.init(tile.error.code(), "Tile %s: %s", tile.id, tile.error.text());
+        return false;
+      }
+    }
+
+    // Stitch the tiles together. Edges along the boundaries between tiles appear once in each
+    // direction, and are discarded as sibling pairs by the polygon layer. If no edges remain, the
+    // result is either empty or full, and every tile has the same containment.
+    boolean full = tiles.length > 0 && tiles[0].containsCenter;
+    S2Builder builder = new S2Builder.Builder(stitchSnapFunction()).build();
+    builder.startLayer(layer);
+    builder.addIsFullPolygonPredicate(S2Builder.isFullPolygon(full));
+    for (Tile tile : tiles) {
+      for (int i = 0; i < tile.edges.size(); i += 2) {
+        builder.addEdge(tile.edges.get(i), tile.edges.get(i + 1));
+      }
+    }
+    return builder.build(error);
+  }
+
+  private static void checkPolygons(S2ShapeIndex index) {
+    for (S2Shape shape : index.getShapes()) {
+      Preconditions.checkArgument(
+          shape == null || shape.dimension() == 2,
+          "S2TiledBooleanOperation only supports polygons, but got a shape of dimension %s",
+          shape == null ? 2 : shape.dimension());
+    }
+  }
+
+  /**
+   * Returns the snap function used to stitch the tiles together. The output of each tile is already
+   * snapped, so snapping it again with the same function leaves it unchanged, but where adjacent
+   * tiles made different snapping choices near their shared boundary, the points where the output
+   * crosses the boundary may differ by up to the snap radius, and are snapped together. If the snap
+   * radius is smaller than STITCH_RADIUS, the tiles are stitched with that radius instead.
+   */
+  private SnapFunction stitchSnapFunction() {
+    SnapFunction snapFunction = options.snapFunction();
+    return snapFunction.snapRadius().greaterThan(STITCH_RADIUS)
+        ? snapFunction
+        : new IdentitySnapFunction(STITCH_RADIUS);
+  }
+
+  /** Returns the radius around each tile that its halo must cover. */
+  private double haloRadius() {
+    return 2 * options.snapFunction().snapRadius().radians() + STITCH_RADIUS.radians();
+  }
+
+  /**
+   * Returns the tiles, in increasing S2CellId order. Starting from the face cells, cells are
+   * subdivided while they hold more than maxEdgesPerTile edges of the two inputs, and are not too
+   * small for their halo. Cells that neither input intersects are omitted, since the result of
+   * every operation is empty there.
+   */
+  private List<S2CellId> chooseTiles(S2ShapeIndex a, S2ShapeIndex b) {
+    int maxLevel =
+        Math.min(
+            S2Projections.MIN_WIDTH.getMaxLevel(haloRadius()), S2CellId.MAX_LEVEL - HALO_LEVELS);
+    S2Iterator<S2ShapeIndex.Cell> iterA = a.iterator();
+    S2Iterator<S2ShapeIndex.Cell> iterB = b.iterator();
+    List<S2CellId> tiles = new ArrayList<>();
+    for (int face = 0; face < 6; face++) {
+      addTiles(S2CellId.fromFace(face), iterA, iterB, maxLevel, tiles);
+    }
+    return tiles;
+  }
+
+  private void addTiles(
+      S2CellId id,
+      S2Iterator<S2ShapeIndex.Cell> iterA,
+      S2Iterator<S2ShapeIndex.Cell> iterB,
+      int maxLevel,
+      List<S2CellId> tiles) {
+    CellRelation relationA = iterA.locate(id);
+    long numEdges = countEdges(iterA, relationA, id);
+    CellRelation relationB = iterB.locate(id);
+    numEdges += countEdges(iterB, relationB, id);
+    if (relationA == CellRelation.DISJOINT && relationB == CellRelation.DISJOINT) {
+      return;
+    }
+    // Subdividing does not reduce the number of edges once the tile is within index cells.
+    boolean subdivided =
+        relationA == CellRelation.SUBDIVIDED || relationB == CellRelation.SUBDIVIDED;
+    if (numEdges <= maxEdgesPerTile || id.level() >= maxLevel || !subdivided) {
+      tiles.add(id);
+      return;
+    }
+    for (S2CellId child : id.children()) {
+      addTiles(child, iterA, iterB, maxLevel, tiles);
+    }
+  }
+
+  /**
+   * Returns the number of edges in the index cells that intersect the given cell, which may count
+   * edges more than once. The iterator must have been positioned by locate(id), which returned the
+   * given relation.
+   */
+  private static long countEdges(
+      S2Iterator<S2ShapeIndex.Cell> iter, CellRelation relation, S2CellId id) {
+    switch (relation) {
+      case INDEXED:
+        return iter.entry().numEdges();
+      case SUBDIVIDED:
+        long numEdges = 0;
+        for (S2CellId end = id.rangeMax(); !iter.done() && iter.id().lessOrEquals(end);
+            iter.next()) {
+          numEdges += iter.entry().numEdges();
+        }
+        return numEdges;
+      default:
+        return 0;
+    }
+  }
+
+  /** The state and output of a single tile. */
+  private static final class Tile {
+    final S2CellId id;
+
+    /** The edges of the result within the tile, as pairs of consecutive endpoints. */
+    final List<S2Point> edges = new ArrayList<>();
+
+    /** Whether the result contains the center of the tile. */
+    boolean containsCenter;
+
+    /** The error of the tile's boolean operation, if any. */
+    final S2Error error = new S2Error();
+
+    Tile(S2CellId id) {
+      this.id = id;
+    }
+  }
+
+  /** Builds a range of tiles, splitting the range in half until it is a single tile. */
+  private final class TileTask extends RecursiveAction {
+    private final Tile[] tiles;
+    private final S2ShapeIndex a;
+    private final S2ShapeIndex b;
+    private final int begin;
+    private final int end;
+
+    TileTask(Tile[] tiles, S2ShapeIndex a, S2ShapeIndex b, int begin, int end) {
+      this.tiles = tiles;
+      this.a = a;
+      this.b = b;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin > 1) {
+        int mid = (begin + end) >>> 1;
+        invokeAll(new TileTask(tiles, a, b, begin, mid), new TileTask(tiles, a, b, mid, end));
+        return;
+      }
+      if (begin < end) {
+        buildTile(tiles[begin], a, b);
+      }
+    }
+  }
+
+  /**
+   * Clips both inputs to the tile and its halo, runs the boolean operation on the clipped inputs,
+   * and saves the part of its result that lies within the tile. If the operation fails or throws,
+   * the failure is reported through the tile's error, so that the other tiles still complete.
+   */
+  private void buildTile(Tile tile, S2ShapeIndex a, S2ShapeIndex b) {
+    try {
+      buildTileOrThrow(tile, a, b);
+    } catch (RuntimeException e) {
+      tile.error.init(S2Error.Code.INTERNAL, "Boolean operation failed: %s", e);
+    }
+  }
+
+  private void buildTileOrThrow(Tile tile, S2ShapeIndex a, S2ShapeIndex b) {
+    List<S2Cell> cells = haloCells(tile.id);
+    S2RobustCellClipper clipper = new S2RobustCellClipper();
+    S2ShapeIndex clippedA = clipIndex(a, cells, clipper, tile.error);
+    if (clippedA == null) {
+      return;
+    }
+    S2ShapeIndex clippedB = clipIndex(b, cells, clipper, tile.error);
+    if (clippedB == null) {
+      return;
+    }
+
+    S2PolygonLayer resultLayer = new S2PolygonLayer();
+    S2BooleanOperation op = new S2BooleanOperation.Builder(options).build(opType, resultLayer);
+    if (!op.build(clippedA, clippedB, tile.error)) {
+      return;
+    }
+
+    // Clip the result back to the tile by intersecting it with the tile, rather than with the
+    // clipper: the result has vertices on the tile boundary where the inputs were clipped, and
+    // snapping may leave edges along it, whose crossings with the boundary are not well defined.
+    S2Polygon result = resultLayer.getPolygon();
+    S2Cell cell = cells.get(0);
+    tile.containsCenter = result.contains(cell.getCenter());
+    S2Polygon.Shape shape = intersect(result, cellPolygon(cell)).shape();
+    MutableEdge edge = new MutableEdge();
+    for (int edgeId = 0; edgeId < shape.numEdges(); edgeId++) {
+      shape.getEdge(edgeId, edge);
+      tile.edges.add(edge.a);
+      tile.edges.add(edge.b);
+    }
+  }
+
+  /** Returns a polygon of the boundary of the given cell. */
+  private static S2Polygon cellPolygon(S2Cell cell) {
+    return new S2Polygon(new S2Loop(cell));
+  }
+
+  /** Returns the intersection of the given polygons. */
+  private static S2Polygon intersect(S2Polygon a, S2Polygon b) {
+    S2Polygon result = new S2Polygon();
+    result.initToIntersection(a, b);
+    return result;
+  }
+
+  /**
+   * Returns the cells to clip the inputs of a tile to: the tile itself, followed by the cells
+   * around it that form its halo.
+   */
+  private List<S2Cell> haloCells(S2CellId id) {
+    int haloLevel =
+        Math.min(id.level() + HALO_LEVELS, S2Projections.MIN_WIDTH.getMaxLevel(haloRadius()));
+    List<S2CellId> neighbors = new ArrayList<>();
+    id.getAllNeighbors(Math.max(id.level(), haloLevel), neighbors);
+    // Cells next to a cube vertex may be returned more than once.
+    Collections.sort(neighbors);
+    List<S2Cell> cells = new ArrayList<>(neighbors.size() + 1);
+    cells.add(new S2Cell(id));
+    for (int i = 0; i < neighbors.size(); i++) {
+      if (i == 0 || !neighbors.get(i).equals(neighbors.get(i - 1))) {
+        cells.add(new S2Cell(neighbors.get(i)));
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * Returns a new index with one polygon for each shape of the given index that intersects the
+   * given cells, which is the part of the shape within the union of the cells. Only the edges in
+   * the cells are clipped, so this takes time proportional to their number rather than to the size
+   * of the shapes. Returns null and sets "error" if the clipped edges of a shape do not form loops.
+   */
+  private static @Nullable S2ShapeIndex clipIndex(
+      S2ShapeIndex index, List<S2Cell> cells, S2RobustCellClipper clipper, S2Error error) {
+    S2ContainsPointQuery query = new S2ContainsPointQuery(index);
+    S2Iterator<S2ShapeIndex.Cell> iter = index.iterator();
+    MutableEdge scratch = new MutableEdge();
+    Map<Integer, List<S2Point>> pieces = new TreeMap<>();
+    for (S2Cell cell : cells) {
+      Map<Integer, IntVector> shapeEdges = shapeEdges(iter, cell.id());
+      clipper.startCell(cell);
+      for (Map.Entry<Integer, IntVector> entry : shapeEdges.entrySet()) {
+        int shapeId = entry.getKey();
+        S2Shape shape = index.getShapes().get(shapeId);
+        IntVector edgeIds = entry.getValue();
+        edgeIds.sort();
+        edgeIds.unique();
+        List<MutableEdge> edges = new ArrayList<>(edgeIds.size());
+        for (int i = 0; i < edgeIds.size(); i++) {
+          shape.getEdge(edgeIds.get(i), scratch);
+          edges.add(MutableEdge.of(scratch.a, scratch.b));
+        }
+        clipper.reset();
+        boolean containsCenter = query.shapeContains(shapeId, cell.getCenter());
+        List<S2Point> shapePieces = pieces.computeIfAbsent(shapeId, k -> new ArrayList<>());
+        clipEdges(clipper, edges, containsCenter, shapePieces);
+      }
+    }
+
+    S2ShapeIndex result = new S2ShapeIndex();
+    for (Map.Entry<Integer, List<S2Point>> entry : pieces.entrySet()) {
+      List<S2Point> shapePieces = entry.getValue();
+      if (shapePieces.isEmpty()) {
+        continue;
+      }
+      // The pieces from adjacent cells share their boundary crossings exactly, but a boundary
+      // segment of a larger cell only passes near the corners of the smaller cells next to it, so
+      // the builder must be allowed to snap them together.
+      S2PolygonLayer polygonLayer = new S2PolygonLayer();
+      S2Builder builder = new S2Builder.Builder(new IdentitySnapFunction(STITCH_RADIUS)).build();
+      builder.startLayer(polygonLayer);
+      for (int i = 0; i < shapePieces.size(); i += 2) {
+        builder.addEdge(shapePieces.get(i), shapePieces.get(i + 1));
+      }
+      if (!builder.build(error)) {
+        error.init(
+            error.code(), "Clipping shape %s to the halo failed: %s", entry.getKey(), error.text());
+        return null;
+      }
+      S2Polygon polygon = polygonLayer.getPolygon();
+      if (!polygon.isEmpty()) {
+        result.add(polygon.shape());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the ids of the edges of each shape in the index cells that intersect the given cell,
+   * by shape id. Shapes that intersect the cell without any edges in it are included with no edge
+   * ids, since they may contain the cell.
+   */
+  private static Map<Integer, IntVector> shapeEdges(
+      S2Iterator<S2ShapeIndex.Cell> iter, S2CellId id) {
+    Map<Integer, IntVector> shapeEdges = new TreeMap<>();
+    CellRelation relation = iter.locate(id);
+    if (relation == CellRelation.DISJOINT) {
+      return shapeEdges;
+    }
+    S2CellId end = relation == CellRelation.INDEXED ? iter.id() : id.rangeMax();
+    for (; !iter.done() && iter.id().lessOrEquals(end); iter.next()) {
+      S2ShapeIndex.Cell indexCell = iter.entry();
+      for (int i = 0; i < indexCell.numShapes(); i++) {
+        S2ClippedShape clipped = indexCell.clipped(i);
+        IntVector edgeIds = shapeEdges.computeIfAbsent(clipped.shapeId(), k -> new IntVector());
+        for (int j = 0; j < clipped.numEdges(); j++) {
+          edgeIds.add(clipped.edge(j));
+        }
+      }
+    }
+    return shapeEdges;
+  }
+
+  /**
+   * Clips the edges of a polygon to the clipper's cell, and appends the edges of the part of the
+   * polygon within the cell to 'output', as pairs of consecutive endpoints. These are the parts of
+   * the polygon's edges within the cell, and the parts of the cell boundary within the polygon.
+   * 'containsCenter' is whether the polygon contains the center of the cell.
+   */
+  private static void clipEdges(
+      S2RobustCellClipper clipper,
+      List<MutableEdge> edges,
+      boolean containsCenter,
+      List<S2Point> output) {
+    S2Cell cell = clipper.cell();
+    // The edges that cross the cell boundary, with the result of clipping each one.
+    Map<MutableEdge, RobustClipResult> partial = new IdentityHashMap<>();
+    for (MutableEdge edge : edges) {
+      RobustClipResult result = clipper.clipEdge(edge, false);
+      if (result == RobustClipResult.HIT_BOTH) {
+        addEdge(edge.a, edge.b, output);
+      } else if (result.hit()) {
+        partial.put(edge, result);
+      }
+    }
+
+    PooledList<Crossing> crossings = clipper.getCrossings();
+    if (crossings.isEmpty()) {
+      if (clipper.isBoundaryContained(containsCenter)) {
+        for (int k = 0; k < 4; k++) {
+          addEdge(cell.getVertex(k), cell.getVertex(k + 1), output);
+        }
+      }
+      return;
+    }
+
+    // Each edge that enters the cell starts at its incoming crossing, and each edge that leaves
+    // the cell ends at its outgoing crossing. Between each outgoing crossing and the following
+    // incoming crossing counter-clockwise around the cell, the cell boundary is inside the polygon.
+    Map<MutableEdge, S2Point> entries = new IdentityHashMap<>();
+    Map<MutableEdge, S2Point> exits = new IdentityHashMap<>();
+    int numCrossings = crossings.size();
+    for (int i = 0; i < numCrossings; i++) {
+      Crossing crossing = crossings.get(i);
+      S2Point point = crossingPoint(cell, crossing);
+      MutableEdge edge = clipper.crossingEdge(crossing);
+      if (crossing.crossingType == CrossingType.INCOMING) {
+        entries.put(edge, point);
+        continue;
+      }
+      exits.put(edge, point);
+
+      Crossing next = crossings.get((i + 1) % numCrossings);
+      int numCorners = (next.boundary.value - crossing.boundary.value + 4) % 4;
+      if (numCorners == 0 && i + 1 == numCrossings) {
+        numCorners = 4;
+      }
+      S2Point start = point;
+      for (int k = 1; k <= numCorners; k++) {
+        S2Point corner = cell.getVertex(crossing.boundary.value + k);
+        addEdge(start, corner, output);
+        start = corner;
+      }
+      addEdge(start, crossingPoint(cell, next), output);
+    }
+
+    for (Map.Entry<MutableEdge, RobustClipResult> entry : partial.entrySet()) {
+      MutableEdge edge = entry.getKey();
+      RobustClipResult result = entry.getValue();
+      S2Point start = result.v0Inside() ? edge.a : entries.get(edge);
+      S2Point end = result.v1Inside() ? edge.b : exits.get(edge);
+      if (start == null || end == null) {
+        // A crossing was removed because it coincided with an opposite crossing of another edge,
+        // e.g. a reverse duplicate edge. Fall back to clipping the edge directly.
+        S2Point[] clipped = clipDirectly(cell, edge);
+        if (clipped == null) {
+          continue;
+        }
+        start = start != null ? start : clipped[0];
+        end = end != null ? end : clipped[1];
+      }
+      addEdge(start, end, output);
+    }
+  }
+
+  /** Returns the endpoints of the given edge clipped to the given cell, or null if it misses. */
+  private static S2Point[] clipDirectly(S2Cell cell, MutableEdge edge) {
+    R2Vector aUv = new R2Vector();
+    R2Vector bUv = new R2Vector();
+    if (!S2EdgeUtil.clipToFace(edge.a, edge.b, cell.face(), aUv, bUv)) {
+      return null;
+    }
+    R2Vector aClipped = new R2Vector();
+    R2Vector bClipped = new R2Vector();
+    if (!S2EdgeUtil.clipEdge(aUv, bUv, cell.getBoundUV(), aClipped, bClipped)) {
+      return null;
+    }
+    return new S2Point[] {
+      S2Projections.faceUvToXyz(cell.face(), aClipped).normalize(),
+      S2Projections.faceUvToXyz(cell.face(), bClipped).normalize()
+    };
+  }
+
+  /** Returns the point on the cell boundary where the given crossing occurs. */
+  private static S2Point crossingPoint(S2Cell cell, Crossing crossing) {
+    // The bottom and top boundaries have constant v, and the left and right have constant u.
+    boolean constantV = crossing.boundary == BOTTOM_EDGE || crossing.boundary == TOP_EDGE;
+    double u = constantV ? crossing.intercept : crossing.coord;
+    double v = constantV ? crossing.coord : crossing.intercept;
+    return S2Projections.faceUvToXyz(cell.face(), u, v).normalize();
+  }
+
+  /** Appends the edge from 'a' to 'b' to 'output', unless it is degenerate. */
+  private static void addEdge(S2Point a, S2Point b, List<S2Point> output) {
+    if (!a.equalsPoint(b)) {
+      output.add(a);
+      output.add(b);
+    }
+  }
+}
@@ -39,6 +39,12 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
 
 /**
  * S2ValidationQueries defines the following queries, which each have slightly different correctness
@@ -99,8 +105,16 @@ public final class S2ValidationQueries {
    * <p>A query then has a {@code boolean validate(S2ShapeIndex index, S2Error error)} method which
    * validates the index and returns true if it's valid, otherwise false, with the validation
    * failure details provided through the error parameter.
+   *
+   * <p>Large indexes may instead be validated in parallel with {@link #validate(S2ShapeIndex,
+   * S2Error, ForkJoinPool, Supplier)}. The shapes and ranges of index cells are then divided among
+   * worker queries, which must not share any state through fields, and the incident edges they find
+   * are merged before finish() is called on this query alone.
    */
   public static class S2ValidationQueryBase {
+    /** The number of chunks per thread of the pool used by parallel validation. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
     private final S2IndexCellData cellBuffer = new S2IndexCellData();
     private final S2IncidentEdgeTracker incidentEdgeTracker = new S2IncidentEdgeTracker();
 
@@ -129,6 +143,29 @@ public final class S2ValidationQueries {
       return result;
     }
 
+    /**
+     * Validate the given index in parallel on the given pool. Returns false if any error is found,
+     * and sets the error parameter. Otherwise, returns true.
+     *
+     * <p>start() and finish() are called on this query, but the shapes and cells of the index are
+     * divided into chunks that are checked concurrently, each by a worker query from the given
+     * factory. The workers must be of the same class and have the same options as this query.
+     * Once any worker finds an error, the remaining chunks are cancelled. If the index has more
+     * than one error, the error reported may therefore differ from that of the sequential {@link
+     * #validate(S2ShapeIndex, S2Error)}, but it returns false for exactly the same indexes.
+     */
+    @CanIgnoreReturnValue
+    public boolean validate(
+        S2ShapeIndex index,
+        S2Error error,
+        ForkJoinPool pool,
+        Supplier<? extends S2ValidationQueryBase> workerFactory) {
+      this.index = index;
+      boolean result = validate(error, pool, workerFactory);
+      this.index = null;
+      return result;
+    }
+
     /**
      * Validate the index by calling the hooks in the derived class. Returns false if any error is
      * found, and sets the error parameter. Otherwise, returns true.
@@ -143,7 +180,169 @@ public final class S2ValidationQueries {
 
       // Run basic checks on individual shapes in the index.
       S2Iterator<Cell> iter = index.iterator();
-      for (int shapeId = 0; shapeId < index.getShapes().size(); ++shapeId) {
+      if (!checkShapes(iter, 0, index.getShapes().size(), null, error)) {
+        return false;
+      }
+
+      iter.restart();
+      if (!checkCells(iter, S2CellId.sentinel(), null, error)) {
+        return false;
+      }
+
+      // Run any final checks and finish validation
+      return finish(error);
+    }
+
+    /** As {@link #validate(S2Error)}, but checks shapes and cells with workers on 'pool'. */
+    private boolean validate(
+        S2Error error, ForkJoinPool pool, Supplier<? extends S2ValidationQueryBase> workerFactory) {
+      incidentEdgeTracker.reset();
+      cellBuffer.reset();
+
+      if (!start(error)) {
+        return false;
+      }
+
+      // Choose the first cell of each chunk so that the chunks have about the same number of
+      // edges, counting each cell as at least one edge.
+      int numChunks = CHUNKS_PER_THREAD * pool.getParallelism();
+      long totalWeight = 0;
+      S2Iterator<Cell> iter = index.iterator();
+      for (; !iter.done(); iter.next()) {
+        totalWeight += weight(iter.entry());
+      }
+      List<S2CellId> chunkStarts = new ArrayList<>();
+      long weight = 0;
+      for (iter.restart(); !iter.done(); iter.next()) {
+        if (chunkStarts.isEmpty() || weight * numChunks >= totalWeight * chunkStarts.size()) {
+          chunkStarts.add(iter.id());
+        }
+        weight += weight(iter.entry());
+      }
+
+      ValidationTask task =
+          new ValidationTask(
+              this, index, workerFactory, chunkStarts, index.getShapes().size(), numChunks);
+      pool.invoke(task);
+      S2Error firstError = task.firstError.get();
+      if (firstError != null) {
+        error.init(firstError.code(), "%s", firstError.text());
+        return false;
+      }
+
+      // Run any final checks and finish validation
+      return finish(error);
+    }
+
+    /** Returns the number of edges in the given cell, but at least one. */
+    private static long weight(Cell cell) {
+      return max(1, cell.numEdges());
+    }
+
+    /**
+     * Divides the shapes and index cells of one parallel validation into chunks, and checks them
+     * with worker queries. The first error found is recorded, and cancels the remaining chunks.
+     */
+    private static final class ValidationTask extends RecursiveAction {
+      private final S2ValidationQueryBase query;
+      private final S2ShapeIndex index;
+      private final Supplier<? extends S2ValidationQueryBase> workerFactory;
+      private final List<S2CellId> chunkStarts;
+      private final int numShapes;
+      private final int numShapeChunks;
+      private final AtomicBoolean cancelled;
+      private final AtomicReference<S2Error> firstError;
+      private final int begin;
+      private final int end;
+
+      /** Constructs the root task, which checks every chunk. */
+      ValidationTask(
+          S2ValidationQueryBase query,
+          S2ShapeIndex index,
+          Supplier<? extends S2ValidationQueryBase> workerFactory,
+          List<S2CellId> chunkStarts,
+          int numShapes,
+          int numShapeChunks) {
+        this.query = query;
+        this.index = index;
+        this.workerFactory = workerFactory;
+        this.chunkStarts = chunkStarts;
+        this.numShapes = numShapes;
+        this.numShapeChunks = max(1, Math.min(numShapes, numShapeChunks));
+        this.cancelled = new AtomicBoolean();
+        this.firstError = new AtomicReference<>();
+        this.begin = 0;
+        this.end = this.numShapeChunks + chunkStarts.size();
+      }
+
+      /** Constructs a task that checks chunks [begin, end) of the given parent. */
+      private ValidationTask(ValidationTask parent, int begin, int end) {
+        this.query = parent.query;
+        this.index = parent.index;
+        this.workerFactory = parent.workerFactory;
+        this.chunkStarts = parent.chunkStarts;
+        this.numShapes = parent.numShapes;
+        this.numShapeChunks = parent.numShapeChunks;
+        this.cancelled = parent.cancelled;
+        this.firstError = parent.firstError;
+        this.begin = begin;
+        this.end = end;
+      }
+
+      @Override
+      protected void compute() {
+        if (end - begin > 1) {
+          int mid = (begin + end) >>> 1;
+          invokeAll(new ValidationTask(this, begin, mid), new ValidationTask(this, mid, end));
+          return;
+        }
+        if (cancelled.get()) {
+          return;
+        }
+
+        S2ValidationQueryBase worker = workerFactory.get();
+        worker.index = index;
+        S2Error error = new S2Error();
+        S2Iterator<Cell> iter = index.iterator();
+        boolean ok;
+        if (begin < numShapeChunks) {
+          // Shape chunks come first, and divide the shape ids evenly.
+          long beginShape = (long) numShapes * begin / numShapeChunks;
+          long endShape = (long) numShapes * (begin + 1) / numShapeChunks;
+          ok = worker.checkShapes(iter, (int) beginShape, (int) endShape, cancelled, error);
+        } else {
+          int chunk = begin - numShapeChunks;
+          iter.seek(chunkStarts.get(chunk));
+          S2CellId limit =
+              (chunk + 1 < chunkStarts.size()) ? chunkStarts.get(chunk + 1) : S2CellId.sentinel();
+          ok = worker.checkCells(iter, limit, cancelled, error);
+          if (ok && !cancelled.get()) {
+            synchronized (query) {
+              query.incidentEdgeTracker.addAll(worker.incidentEdges());
+            }
+          }
+        }
+        worker.index = null;
+        if (!ok && firstError.compareAndSet(null, error)) {
+          cancelled.set(true);
+        }
+      }
+    }
+
+    /**
+     * Runs checkShape() on the shapes with ids in [beginShape, endShape), stopping early if
+     * 'cancelled' is non-null and becomes true. Returns false if a validation error is found.
+     */
+    private boolean checkShapes(
+        S2Iterator<Cell> iter,
+        int beginShape,
+        int endShape,
+        @Nullable AtomicBoolean cancelled,
+        S2Error error) {
+      for (int shapeId = beginShape; shapeId < endShape; ++shapeId) {
+        if (cancelled != null && cancelled.get()) {
+          return true;
+        }
         S2Shape shape = index.getShapes().get(shapeId);
         if (shape != null) {
           if (!checkShape(iter, shape, shapeId, error)) {
@@ -151,8 +350,23 @@ public final class S2ValidationQueries {
           }
         }
       }
+      return true;
+    }
 
-      for (iter.restart(); !iter.done(); iter.next()) {
+    /**
+     * Checks the index cells from the current position of 'iter' up to but not including the cell
+     * 'limit', stopping early if 'cancelled' is non-null and becomes true. Returns false if a
+     * validation error is found.
+     */
+    private boolean checkCells(
+        S2Iterator<Cell> iter,
+        S2CellId limit,
+        @Nullable AtomicBoolean cancelled,
+        S2Error error) {
+      for (; !iter.done() && iter.id().lessThan(limit); iter.next()) {
+        if (cancelled != null && cancelled.get()) {
+          return true;
+        }
         setCurrentCell(iter);
 
         // Add two dimensional shape edges to the incident edge tracker to support checks for things
@@ -195,9 +409,7 @@ public final class S2ValidationQueries {
           }
         }
       }
-
-      // Run any final checks and finish validation
-      return finish(error);
+      return true;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
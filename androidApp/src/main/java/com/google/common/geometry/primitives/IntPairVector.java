@@ -224,6 +224,15 @@ public class IntPairVector {
     seconds.ensureCapacity(newCapacity);
   }
 
+  /**
+   * Decrease the size of the underlying arrays to fit the current number of pairs, as {@link
+   * IntVector#shrink()} does. Used with {@link #clear()} to release memory no longer needed.
+   */
+  public void shrink() {
+    firsts.shrink();
+    seconds.shrink();
+  }
+
   /**
    * Replace the current contents of this IntPairVector with a copy of the given IntPairVector
    * 'other'.
@@ -281,8 +281,11 @@ public class IntVector implements MutableIntList {
       return false;
     }
 
-    // Copy the existing data into a new, larger array.
-    data = Arrays.copyOf(data, newDataLength);
+    // Copy the existing elements into a new, larger array. Elements past the end of the vector
+    // are not copied, so that the rest of the new array is zero, as enlarge() expects.
+    int[] newData = new int[newDataLength];
+    System.arraycopy(data, 0, newData, 0, numElements);
+    data = newData;
     return true;
   }
 
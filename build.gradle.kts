@@ -6,4 +6,5 @@ plugins {
     alias(libs.plugins.kotlinMultiplatform).apply(false)
     alias(libs.plugins.compose.compiler).apply(false)
     alias(libs.plugins.googleServices).apply(false)
+    alias(libs.plugins.jmh).apply(false)
 }
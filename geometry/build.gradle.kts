@@ -0,0 +1,80 @@
+// A plain JVM build of the com.google.common.geometry sources, which live in the androidApp module
+// so that the app can use them directly. This module compiles the same sources without the Android
+// toolchain, so that they can be benchmarked on a normal JVM. JVM-only additions that Android
+// cannot compile, such as the JFR events in src/main/java, live in this module, as do the unit
+// tests in src/test/java, which `./gradlew :geometry:test` runs. Running
+//
+//   ./gradlew :geometry:jmh
+//
+// writes the JMH results as JSON to geometry/build/results/jmh/results.json. Pass
+// -PjmhInclude=<regex> to run a subset of the benchmarks, e.g. -PjmhInclude=S2ShapeIndex.
+//
+//   ./gradlew :geometry:allocationCheck
+//
+// measures the bytes allocated per operation by allocation-light hot paths, and fails if any
+// exceeds its budget in src/jmh/resources/com/google/common/geometry/allocation-budgets.properties.
+// The budgets depend on the escape analysis of the JVM that measured them, so the check is opt-in
+// rather than part of `check`; run it on the JDK the budgets were recorded with.
+//
+//   ./gradlew :geometry:calibrateQueries -PcalibrationShapes=<file> -PcalibrationTarget=point
+//
+// measures an S2QueryTuningProfile for the given shapes and target kind, and writes it to
+// geometry/build/calibration/query-tuning.properties.
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            srcDir("../androidApp/src/main/java")
+            include("com/google/common/geometry/**")
+        }
+    }
+}
+
+dependencies {
+    api(libs.guava)
+    implementation(libs.fastutil)
+    implementation(libs.jspecify)
+    implementation(libs.jsinterop.annotations)
+    testImplementation(libs.junit)
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    providers.gradleProperty("jmhInclude").orNull?.let { includes.set(listOf(it)) }
+}
+
+val allocationCheck by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Fails if allocation-light geometry operations exceed their allocation budgets."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.google.common.geometry.AllocationRegressionCheck")
+}
+
+val calibrateQueries by tasks.registering(JavaExec::class) {
+    group = "benchmark"
+    description = "Measures an S2QueryTuningProfile for a sample of shapes and a query workload."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.google.common.geometry.QueryTuningCalibration")
+    val profile = layout.buildDirectory.file("calibration/query-tuning.properties")
+    args("--output", profile.get().asFile.path)
+    providers.gradleProperty("calibrationShapes").orNull?.let { args("--shapes", it) }
+    providers.gradleProperty("calibrationTarget").orNull?.let { args("--target", it) }
+}
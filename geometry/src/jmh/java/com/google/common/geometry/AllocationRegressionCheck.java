@@ -0,0 +1,219 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.geometry.S2ClosestEdgeQuery.PointTarget;
+import com.google.common.geometry.S2EdgeQuery.Edges;
+import com.google.common.geometry.S2Shape.MutableEdge;
+import com.google.common.geometry.primitives.PooledList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Measures the bytes allocated per operation by a curated set of hot calls that promise to reuse
+ * their storage, and fails if any exceeds its budget in {@code allocation-budgets.properties}.
+ *
+ * <p>Each operation is first run {@link #WARMUP_OPS} times, so that the JIT has compiled it and
+ * any allocations that escape analysis can remove are removed, and then {@link #MEASURED_OPS}
+ * times while the calling thread's allocated bytes are read from {@link
+ * com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}. Workloads are generated with
+ * fixed seeds, so the measurements are stable from run to run.
+ *
+ * <p>Run with {@code ./gradlew :geometry:allocationCheck}. It is not part of {@code check},
+ * because the measurements depend on the escape analysis of the JVM, and so differ between JDK
+ * versions and vendors; the budgets should be compared on the JDK that recorded them. Passing
+ * {@code --print-budgets} prints the measured values in the budget file format, for updating the
+ * budgets after an intended change.
+ */
+public final class AllocationRegressionCheck {
+  /** The number of times each operation is run before measuring. */
+  private static final int WARMUP_OPS = 10_000;
+
+  /**
+   * The number of times each operation is run while measuring, a multiple of the number of query
+   * points so that every point is measured equally often.
+   */
+  private static final int MEASURED_OPS = 2_048;
+
+  /** The number of query points, a power of two so that operations can cycle through them. */
+  private static final int NUM_POINTS = 256;
+
+  /** The resource holding the budgets, in bytes per operation, keyed by operation name. */
+  private static final String BUDGETS_RESOURCE = "allocation-budgets.properties";
+
+  /** Consumes results so that the JIT cannot remove the operations. */
+  @SuppressWarnings("unused")
+  private static volatile Object sink;
+
+  private AllocationRegressionCheck() {}
+
+  public static void main(String[] args) throws IOException {
+    boolean printBudgets = args.length > 0 && args[0].equals("--print-budgets");
+    Properties budgets = loadBudgets();
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    List<String> failures = new ArrayList<>();
+    for (Map.Entry<String, Runnable> operation : operations().entrySet()) {
+      String name = operation.getKey();
+      Runnable op = operation.getValue();
+      for (int i = 0; i < WARMUP_OPS; i++) {
+        op.run();
+      }
+      long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < MEASURED_OPS; i++) {
+        op.run();
+      }
+      long after = threads.getThreadAllocatedBytes(threadId);
+      double bytesPerOp = (double) (after - before) / MEASURED_OPS;
+
+      if (printBudgets) {
+        // Round up, with headroom for run to run noise and small differences between JVMs.
+        System.out.printf("%s=%d%n", name, (long) Math.ceil(bytesPerOp * 1.25) + 16);
+        continue;
+      }
+      String budget = budgets.getProperty(name);
+      if (budget == null) {
+        failures.add(name + ": no budget in " + BUDGETS_RESOURCE);
+        continue;
+      }
+      long maxBytesPerOp = Long.parseLong(budget.trim());
+      String status = bytesPerOp <= maxBytesPerOp ? "ok" : "OVER BUDGET";
+      System.out.printf(
+          "%-44s %10.1f B/op  budget %8d  %s%n", name, bytesPerOp, maxBytesPerOp, status);
+      if (bytesPerOp > maxBytesPerOp) {
+        failures.add(
+            String.format("%s: %.1f B/op exceeds budget of %d", name, bytesPerOp, maxBytesPerOp));
+      }
+    }
+    if (!failures.isEmpty()) {
+      System.err.println("Allocation regressions:");
+      for (String failure : failures) {
+        System.err.println("  " + failure);
+      }
+      System.exit(1);
+    }
+  }
+
+  private static Properties loadBudgets() throws IOException {
+    Properties budgets = new Properties();
+    try (InputStream in = AllocationRegressionCheck.class.getResourceAsStream(BUDGETS_RESOURCE)) {
+      if (in != null) {
+        try (Reader reader = new InputStreamReader(in, UTF_8)) {
+          budgets.load(reader);
+        }
+      }
+    }
+    return budgets;
+  }
+
+  /** Returns the next of the NUM_POINTS query point indices in 'next', cyclically. */
+  private static int nextIndex(int[] next) {
+    return next[0]++ & (NUM_POINTS - 1);
+  }
+
+  /** Returns the operations to measure, keyed by the names used in the budget file. */
+  private static Map<String, Runnable> operations() {
+    Map<String, Runnable> operations = new LinkedHashMap<>();
+    S2Polygon polygon = BenchmarkWorkloads.fractalPolygon(1024);
+    S2ShapeIndex index = BenchmarkWorkloads.index(polygon);
+    List<S2Point> points = BenchmarkWorkloads.queryPoints(NUM_POINTS);
+    int[] next = new int[1];
+
+    // Refilling a PooledList reuses its elements.
+    PooledList<MutableEdge> edges = new PooledList<>(MutableEdge::new);
+    operations.put(
+        "PooledList.refill",
+        () -> {
+          edges.clear();
+          for (int i = 0; i + 1 < points.size(); i++) {
+            MutableEdge edge = edges.add();
+            edge.a = points.get(i);
+            edge.b = points.get(i + 1);
+          }
+          sink = edges.back();
+        });
+
+    // The ResultVisitor variant of a closest edge query does not build a result list.
+    S2ClosestEdgeQuery.Query closestEdgeQuery =
+        S2ClosestEdgeQuery.builder()
+            .setMaxResults(10)
+            .setMaxDistance(TestDataGenerator.kmToAngle(1))
+            .build(index);
+    List<PointTarget<S1ChordAngle>> targets = new ArrayList<>();
+    for (S2Point p : points) {
+      targets.add(new PointTarget<>(p));
+    }
+    double[] total = new double[1];
+    S2BestEdgesQueryBase.ResultVisitor<S1ChordAngle> visitor =
+        (distance, shapeId, edgeId) -> {
+          total[0] += distance.getLength2();
+          return true;
+        };
+    operations.put(
+        "S2ClosestEdgeQuery.findClosestEdges.visitor",
+        () -> closestEdgeQuery.findClosestEdges(targets.get(nextIndex(next)), visitor));
+    S1ChordAngle limit = S1ChordAngle.fromS1Angle(TestDataGenerator.kmToAngle(1));
+    operations.put(
+        "S2ClosestEdgeQuery.isDistanceLess",
+        () -> sink = closestEdgeQuery.isDistanceLess(targets.get(nextIndex(next)), limit));
+
+    // A reused S2EdgeQuery keeps its iterator and candidate storage.
+    S2EdgeQuery edgeQuery = new S2EdgeQuery(index);
+    operations.put(
+        "S2EdgeQuery.getCandidates",
+        () -> {
+          int i = nextIndex(next);
+          S2Point a = points.get(i);
+          S2Point b = points.get((i + 1) % NUM_POINTS);
+          Edges candidates = edgeQuery.getCandidates(a, b, 0);
+          int count = 0;
+          while (!candidates.isEmpty()) {
+            candidates.nextEdge();
+            count++;
+          }
+          sink = count;
+        });
+
+    // A reused S2ContainsPointQuery keeps its iterator.
+    S2ContainsPointQuery containsQuery = new S2ContainsPointQuery(index);
+    operations.put(
+        "S2ContainsPointQuery.contains",
+        () -> sink = containsQuery.contains(points.get(nextIndex(next))));
+
+    // Reused density ops pool their tree builders, so they allocate mostly the output tree.
+    S2DensityTree.VertexDensityOp vertexDensity =
+        S2DensityTree.createVertexDensityOp(2_000, 12);
+    operations.put("S2DensityTree.vertexDensityOp", () -> sink = vertexDensity.apply(index));
+    S2DensityTree tree = vertexDensity.apply(index);
+    ImmutableList<S2DensityTree> trees = ImmutableList.of(tree, tree);
+    S2DensityTree.AggregateDensityOp sumDensity = S2DensityTree.createSumDensityOp(2_000, 12);
+    operations.put("S2DensityTree.sumDensityOp", () -> sink = sumDensity.apply(trees));
+    return operations;
+  }
+}
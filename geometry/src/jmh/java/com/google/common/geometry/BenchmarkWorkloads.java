@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic workloads shared by the benchmarks. Every workload is generated from a fixed seed,
+ * so that results are comparable across runs and commits.
+ */
+final class BenchmarkWorkloads {
+  /** The seed of every workload. */
+  static final int SEED = TestDataGenerator.DEFAULT_RANDOM_SEED;
+
+  /** The center of the workloads, which is arbitrary but fixed. */
+  static final S2LatLng CENTER = S2LatLng.fromDegrees(37.42, -122.08);
+
+  /** The radius of the fractal polygons, and of the cap that query points are sampled from. */
+  static final S1Angle RADIUS = TestDataGenerator.kmToAngle(10);
+
+  private BenchmarkWorkloads() {}
+
+  /** Returns a fractal polygon about CENTER with approximately 'numEdges' edges. */
+  static S2Polygon fractalPolygon(int numEdges) {
+    return fractalPolygon(new TestDataGenerator(SEED), CENTER, numEdges);
+  }
+
+  /** Returns a fractal polygon with approximately 'numEdges' edges, using the given generator. */
+  static S2Polygon fractalPolygon(TestDataGenerator data, S2LatLng center, int numEdges) {
+    S2FractalBuilder builder = new S2FractalBuilder(data.rand);
+    builder.setLevelForApproxMaxEdges(numEdges);
+    builder.setFractalDimension(1.5);
+    return new S2Polygon(builder.makeLoop(TestDataGenerator.upFrameAt(center), RADIUS));
+  }
+
+  /** Returns an S2ShapeIndex containing the given polygon, with all updates applied. */
+  static S2ShapeIndex index(S2Polygon polygon) {
+    S2ShapeIndex index = new S2ShapeIndex();
+    index.add(polygon.shape());
+    index.applyUpdates();
+    return index;
+  }
+
+  /**
+   * Returns 'numPoints' points sampled uniformly from the cap of twice RADIUS about CENTER, so that
+   * about a quarter of them fall inside the fractal polygons.
+   */
+  static List<S2Point> queryPoints(int numPoints) {
+    TestDataGenerator data = new TestDataGenerator(SEED + 1);
+    S2Cap cap = S2Cap.fromAxisAngle(CENTER.toPoint(), RADIUS.mul(2));
+    List<S2Point> points = new ArrayList<>(numPoints);
+    for (int i = 0; i < numPoints; i++) {
+      points.add(data.samplePoint(cap));
+    }
+    return points;
+  }
+
+  /** Returns the union of 'numCells' random cells at levels 10 to 20, using the given seed. */
+  static S2CellUnion randomCellUnion(int seed, int numCells) {
+    TestDataGenerator data = new TestDataGenerator(seed);
+    S2CellId parent = S2CellId.fromLatLng(CENTER).parent(6);
+    ArrayList<S2CellId> ids = new ArrayList<>(numCells);
+    for (int i = 0; i < numCells; i++) {
+      ids.add(data.getRandomCellId(parent, data.uniformInt(10, 21)));
+    }
+    return new S2CellUnion().initFromCellIds(ids);
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.geometry.PrimitiveArrays.Bytes;
+import com.google.common.geometry.S2ShapeUtil.S2EdgeVectorShape;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures an {@link S2QueryTuningProfile} for a sample of real shapes and a closest edge query
+ * workload, by sweeping each tuned value over a range of candidates and keeping the fastest.
+ *
+ * <p>The values are tuned one at a time, each with the best values found so far:
+ *
+ * <ol>
+ *   <li>{@code maxEdgesPerCell}, by the cost of building an S2ShapeIndex of the shapes plus the
+ *       cost of the queries made on each index, which is {@code --queries-per-build} queries.
+ *   <li>{@code minEdgesToEnqueue}, by the cost of the queries.
+ *   <li>{@code maxBruteForceIndexSize}, by building small indexes of edges sampled from the shapes,
+ *       and finding the largest size for which brute force queries are cheaper than building the
+ *       index and making optimized queries.
+ * </ol>
+ *
+ * <p>Targets are generated from the shapes with {@link TestDataGenerator#sampleEdge} and {@link
+ * TestDataGenerator#sampleCell}: point and edge targets are sampled near random edges of the
+ * shapes, and cell targets are random cells of their index. Each query finds the closest edge. The
+ * generator has a fixed seed, so runs differ only by timing noise.
+ *
+ * <p>Run with {@code ./gradlew :geometry:calibrateQueries}, which writes the profile to
+ * geometry/build/calibration/query-tuning.properties. The options are:
+ *
+ * <ul>
+ *   <li>{@code --shapes <file>}: shapes encoded with {@link VectorCoder#FAST_SHAPE}. The default is
+ *       a fractal polygon with 16384 edges. Gradle property {@code -PcalibrationShapes}.
+ *   <li>{@code --target point|edge|cell}: the kind of targets, default point. Gradle property
+ *       {@code -PcalibrationTarget}.
+ *   <li>{@code --queries-per-build <n>}: the number of queries made on each index, default 10000.
+ *   <li>{@code --output <file>}: where to write the profile, default standard output.
+ * </ul>
+ */
+public final class QueryTuningCalibration {
+  /** The number of targets in the workload. */
+  private static final int NUM_TARGETS = 256;
+
+  /** The number of passes over the targets before measuring. */
+  private static final int WARMUP_PASSES = 5;
+
+  /** The number of measured passes over the targets, of which the fastest is used. */
+  private static final int MEASURED_PASSES = 5;
+
+  /** The number of times each index is built, of which the fastest is used. */
+  private static final int MEASURED_BUILDS = 5;
+
+  private static final int[] MAX_EDGES_PER_CELL_CANDIDATES = {4, 7, 10, 15, 20, 30, 50};
+  private static final int[] MIN_EDGES_TO_ENQUEUE_CANDIDATES = {1, 2, 5, 10, 15, 20, 30, 50};
+  private static final int[] BRUTE_FORCE_INDEX_SIZES = {4, 8, 16, 32, 64, 128, 256, 512, 1024};
+
+  /** The kinds of query targets. */
+  enum TargetKind {
+    POINT,
+    EDGE,
+    CELL
+  }
+
+  /** Consumes results so that the JIT cannot remove the queries. */
+  @SuppressWarnings("unused")
+  private static volatile Object sink;
+
+  private final List<S2Shape> shapes;
+  private final List<S2BestDistanceTarget<S1ChordAngle>> targets;
+  private final long queriesPerBuild;
+  private final TestDataGenerator data;
+  private final StringBuilder report = new StringBuilder();
+
+  private QueryTuningCalibration(
+      List<S2Shape> shapes, TargetKind kind, long queriesPerBuild, TestDataGenerator data) {
+    this.shapes = shapes;
+    this.queriesPerBuild = queriesPerBuild;
+    this.data = data;
+    this.targets = targets(kind, build(shapes, new S2ShapeIndex.Options()));
+  }
+
+  public static void main(String[] args) throws IOException {
+    List<S2Shape> shapes = null;
+    TargetKind kind = TargetKind.POINT;
+    long queriesPerBuild = 10_000;
+    Path output = null;
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("Missing value for " + arg);
+      }
+      String value = args[++i];
+      switch (arg) {
+        case "--shapes":
+          Bytes encoded = Bytes.fromByteArray(Files.readAllBytes(Paths.get(value)));
+          shapes = ImmutableList.copyOf(VectorCoder.FAST_SHAPE.decode(encoded));
+          break;
+        case "--target":
+          kind = TargetKind.valueOf(value.toUpperCase(Locale.ROOT));
+          break;
+        case "--queries-per-build":
+          queriesPerBuild = Long.parseLong(value);
+          break;
+        case "--output":
+          output = Paths.get(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + arg);
+      }
+    }
+    if (shapes == null) {
+      shapes = ImmutableList.of(BenchmarkWorkloads.fractalPolygon(16384).shape());
+    }
+
+    QueryTuningCalibration calibration =
+        new QueryTuningCalibration(
+            shapes, kind, queriesPerBuild, new TestDataGenerator(BenchmarkWorkloads.SEED));
+    S2QueryTuningProfile profile = calibration.calibrate();
+    String text =
+        "# Calibrated for "
+            + shapes.size()
+            + " shapes with "
+            + kind.name().toLowerCase(Locale.ROOT)
+            + " targets and "
+            + queriesPerBuild
+            + " queries per index build.\n"
+            + calibration.report
+            + profile.encode();
+    if (output == null) {
+      System.out.print(text);
+    } else {
+      if (output.getParent() != null) {
+        Files.createDirectories(output.getParent());
+      }
+      Files.write(output, text.getBytes(UTF_8));
+      System.out.print(text);
+      System.out.println("Wrote " + output);
+    }
+  }
+
+  /** Sweeps each tuned value in turn, and returns the profile of the best values. */
+  private S2QueryTuningProfile calibrate() {
+    // Compile the index construction and query code before measuring the first candidates.
+    S2ShapeIndex.Options defaultOptions = new S2ShapeIndex.Options();
+    buildNanos(shapes, defaultOptions);
+    queryNanos(S2ClosestEdgeQuery.builder(), build(shapes, defaultOptions));
+
+    // The cost of each maxEdgesPerCell is the build time plus the time of the queries per build.
+    int bestMaxEdgesPerCell = S2ShapeIndex.DEFAULT_MAX_EDGES_PER_CELL;
+    double bestCost = Double.POSITIVE_INFINITY;
+    for (int maxEdgesPerCell : MAX_EDGES_PER_CELL_CANDIDATES) {
+      S2ShapeIndex.Options options = new S2ShapeIndex.Options();
+      options.setMaxEdgesPerCell(maxEdgesPerCell);
+      double buildNanos = buildNanos(shapes, options);
+      double queryNanos = queryNanos(S2ClosestEdgeQuery.builder(), build(shapes, options));
+      double cost = buildNanos + queriesPerBuild * queryNanos;
+      report(
+          "maxEdgesPerCell=%d: build %.0f us, query %.0f ns, cost %.0f us",
+          maxEdgesPerCell, buildNanos / 1e3, queryNanos, cost / 1e3);
+      if (cost < bestCost) {
+        bestCost = cost;
+        bestMaxEdgesPerCell = maxEdgesPerCell;
+      }
+    }
+
+    // The cost of each minEdgesToEnqueue is the query time on the best index.
+    S2ShapeIndex.Options options = new S2ShapeIndex.Options();
+    options.setMaxEdgesPerCell(bestMaxEdgesPerCell);
+    S2ShapeIndex index = build(shapes, options);
+    int bestMinEdgesToEnqueue = S2BestEdgesQueryBase.DEFAULT_MIN_EDGES_TO_ENQUEUE;
+    bestCost = Double.POSITIVE_INFINITY;
+    for (int minEdgesToEnqueue : MIN_EDGES_TO_ENQUEUE_CANDIDATES) {
+      double queryNanos =
+          queryNanos(S2ClosestEdgeQuery.builder().setMinEdgesToEnqueue(minEdgesToEnqueue), index);
+      report("minEdgesToEnqueue=%d: query %.0f ns", minEdgesToEnqueue, queryNanos);
+      if (queryNanos < bestCost) {
+        bestCost = queryNanos;
+        bestMinEdgesToEnqueue = minEdgesToEnqueue;
+      }
+    }
+
+    // Brute force is used up to the largest index size for which it is cheaper than building the
+    // index and making optimized queries, at that size and all smaller sizes. If it is not cheaper
+    // at any measured size, the profile leaves each target's default threshold in place, rather
+    // than disabling brute force for every target.
+    int numEdges = S2ShapeUtil.countEdges(index);
+    int maxBruteForceIndexSize = -1;
+    boolean bruteForceCheaper = true;
+    for (int size : BRUTE_FORCE_INDEX_SIZES) {
+      if (size > numEdges) {
+        break;
+      }
+      ImmutableList<S2Shape> sample = ImmutableList.of(sampleEdges(index, numEdges, size));
+      double buildNanos = buildNanos(sample, options);
+      S2ShapeIndex sampleIndex = build(sample, options);
+      double bruteForceNanos =
+          queryNanos(S2ClosestEdgeQuery.builder().setUseBruteForce(true), sampleIndex);
+      double optimizedNanos =
+          queryNanos(
+              S2ClosestEdgeQuery.builder()
+                  .setMinEdgesToEnqueue(bestMinEdgesToEnqueue)
+                  .setMaxBruteForceIndexSize(0),
+              sampleIndex);
+      report(
+          "index size %d: brute force %.0f ns, optimized %.0f ns, build %.0f us",
+          size, bruteForceNanos, optimizedNanos, buildNanos / 1e3);
+      bruteForceCheaper &=
+          queriesPerBuild * bruteForceNanos < buildNanos + queriesPerBuild * optimizedNanos;
+      if (bruteForceCheaper) {
+        maxBruteForceIndexSize = size;
+      }
+    }
+    return new S2QueryTuningProfile(
+        bestMaxEdgesPerCell, bestMinEdgesToEnqueue, maxBruteForceIndexSize);
+  }
+
+  /** Adds a formatted comment line to the report. */
+  private void report(String format, Object... args) {
+    report.append("# ").append(String.format(Locale.ROOT, format, args)).append('\n');
+  }
+
+  /** Returns a new index of the given shapes, with all updates applied. */
+  private static S2ShapeIndex build(List<S2Shape> shapes, S2ShapeIndex.Options options) {
+    S2ShapeIndex index = new S2ShapeIndex(options);
+    for (S2Shape shape : shapes) {
+      index.add(shape);
+    }
+    index.applyUpdates();
+    return index;
+  }
+
+  /** Returns the fastest of several times to build an index of the given shapes. */
+  private static double buildNanos(List<S2Shape> shapes, S2ShapeIndex.Options options) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < WARMUP_PASSES + MEASURED_BUILDS; i++) {
+      long start = System.nanoTime();
+      sink = build(shapes, options);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+
+  /** Returns the fastest time per query of several passes over the targets. */
+  private double queryNanos(S2ClosestEdgeQuery.Builder builder, S2ShapeIndex index) {
+    S2ClosestEdgeQuery.Query query = builder.setMaxResults(1).build(index);
+    long best = Long.MAX_VALUE;
+    for (int pass = 0; pass < WARMUP_PASSES + MEASURED_PASSES; pass++) {
+      long start = System.nanoTime();
+      for (S2BestDistanceTarget<S1ChordAngle> target : targets) {
+        sink = query.findClosestEdge(target);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) best / targets.size();
+  }
+
+  /** Returns the workload of targets of the given kind, sampled from the given index. */
+  private List<S2BestDistanceTarget<S1ChordAngle>> targets(TargetKind kind, S2ShapeIndex index) {
+    int numEdges = S2ShapeUtil.countEdges(index);
+    List<S2BestDistanceTarget<S1ChordAngle>> targets = new ArrayList<>(NUM_TARGETS);
+    for (int i = 0; i < NUM_TARGETS; i++) {
+      switch (kind) {
+        case POINT:
+          targets.add(
+              new S2ClosestEdgeQuery.PointTarget<>(
+                  data.samplePoint(nearby(data.sampleEdge(index, numEdges)))));
+          break;
+        case EDGE:
+          S2Cap cap = nearby(data.sampleEdge(index, numEdges));
+          targets.add(
+              new S2ClosestEdgeQuery.EdgeTarget<>(data.samplePoint(cap), data.samplePoint(cap)));
+          break;
+        case CELL:
+          targets.add(new S2ClosestEdgeQuery.CellTarget<>(new S2Cell(data.sampleCell(index))));
+          break;
+      }
+    }
+    return targets;
+  }
+
+  /** Returns a cap about the first vertex of the given edge, a few times larger than the edge. */
+  private static S2Cap nearby(S2Shape.MutableEdge edge) {
+    return S2Cap.fromAxisAngle(edge.a, S1Angle.radians(Math.max(4 * edge.a.angle(edge.b), 1e-7)));
+  }
+
+  /** Returns a shape of 'size' edges sampled uniformly from the given index. */
+  private S2EdgeVectorShape sampleEdges(S2ShapeIndex index, int numEdges, int size) {
+    S2EdgeVectorShape shape = new S2EdgeVectorShape();
+    for (int i = 0; i < size; i++) {
+      S2Shape.MutableEdge edge = data.sampleEdge(index, numEdges);
+      if (edge.a.equalsPoint(edge.b)) {
+        shape.addDegenerate(edge.a);
+      } else {
+        shape.add(edge.a, edge.b);
+      }
+    }
+    return shape;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.geometry.S2BooleanOperation.OpType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for S2BooleanOperation on two overlapping fractal polygons, both for operations that
+ * build an output polygon and for the predicates that do not.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class S2BooleanOperationBenchmark {
+  @Param({"UNION", "INTERSECTION", "DIFFERENCE", "SYMMETRIC_DIFFERENCE"})
+  public OpType opType;
+
+  @Param({"256", "4096"})
+  public int numEdges;
+
+  private S2ShapeIndex a;
+  private S2ShapeIndex b;
+
+  @Setup
+  public void setUp() {
+    TestDataGenerator data = new TestDataGenerator(BenchmarkWorkloads.SEED);
+    S2LatLng center = BenchmarkWorkloads.CENTER;
+    // Offset the second polygon by half its radius, so that the boundaries cross many times.
+    S2LatLng offset =
+        S2LatLng.fromRadians(
+            center.latRadians(), center.lngRadians() + BenchmarkWorkloads.RADIUS.radians() / 2);
+    a = BenchmarkWorkloads.index(BenchmarkWorkloads.fractalPolygon(data, center, numEdges));
+    b = BenchmarkWorkloads.index(BenchmarkWorkloads.fractalPolygon(data, offset, numEdges));
+  }
+
+  /** Builds the polygon that results from the operation. */
+  @Benchmark
+  public S2Polygon build() {
+    S2PolygonLayer layer = new S2PolygonLayer();
+    S2BooleanOperation op = new S2BooleanOperation.Builder().build(opType, layer);
+    S2Error error = new S2Error();
+    if (!op.build(a, b, error)) {
+      throw new IllegalStateException(error.toString());
+    }
+    return layer.getPolygon();
+  }
+
+  /** Tests whether the result of the operation is empty, without building it. */
+  @Benchmark
+  public boolean isEmpty() {
+    return S2BooleanOperation.isEmpty(opType, a, b);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.geometry.S2BuilderSnapFunctions.IdentitySnapFunction;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for assembling an already valid fractal polygon with S2Builder and the identity snap
+ * function, which is how clean geometry is assembled. No vertex is snapped, so these measure the
+ * cost of deciding that no snapping is needed and then building the output polygon.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class S2BuilderBenchmark {
+  /** The snap radii to compare, in meters on the Earth's surface. */
+  public enum SnapRadius {
+    /** A zero snap radius, which does not request snapping at all. */
+    ZERO(S1Angle.ZERO),
+    /** The smallest snap radius that may be used to merge intersection points. */
+    INTERSECTION_MERGE(S2EdgeUtil.INTERSECTION_MERGE_RADIUS),
+    /** A snap radius of one centimeter, much smaller than the polygon's edges. */
+    CENTIMETER(TestDataGenerator.metersToAngle(0.01));
+
+    final S1Angle radius;
+
+    SnapRadius(S1Angle radius) {
+      this.radius = radius;
+    }
+  }
+
+  @Param({"ZERO", "INTERSECTION_MERGE", "CENTIMETER"})
+  public SnapRadius snapRadius;
+
+  @Param({"1024", "16384"})
+  public int numEdges;
+
+  private S2Polygon polygon;
+  private S2Builder.Builder options;
+
+  @Setup
+  public void setUp() {
+    polygon = BenchmarkWorkloads.fractalPolygon(numEdges);
+    options = new S2Builder.Builder(new IdentitySnapFunction(snapRadius.radius));
+  }
+
+  /** Builds an S2Polygon from the polygon's edges. */
+  @Benchmark
+  public S2Polygon buildPolygon() {
+    S2Builder builder = options.build();
+    S2PolygonLayer layer = new S2PolygonLayer();
+    builder.startLayer(layer);
+    builder.addPolygon(polygon);
+    S2Error error = new S2Error();
+    if (!builder.build(error)) {
+      throw new IllegalStateException(error.toString());
+    }
+    return layer.getPolygon();
+  }
+
+  /** Builds an S2Polygon with splitCrossingEdges, which checks for crossings before snapping. */
+  @Benchmark
+  public S2Polygon buildPolygonSplitCrossingEdges() {
+    S2Builder builder = new S2Builder.Builder(options).setSplitCrossingEdges(true).build();
+    S2PolygonLayer layer = new S2PolygonLayer();
+    builder.startLayer(layer);
+    builder.addPolygon(polygon);
+    S2Error error = new S2Error();
+    if (!builder.build(error)) {
+      throw new IllegalStateException(error.toString());
+    }
+    return layer.getPolygon();
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks for S2CellUnion set operations on two random unions of the same size. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class S2CellUnionBenchmark {
+  @Param({"100", "10000"})
+  public int numCells;
+
+  private S2CellUnion x;
+  private S2CellUnion y;
+
+  @Setup
+  public void setUp() {
+    x = BenchmarkWorkloads.randomCellUnion(BenchmarkWorkloads.SEED, numCells);
+    y = BenchmarkWorkloads.randomCellUnion(BenchmarkWorkloads.SEED + 1, numCells);
+  }
+
+  @Benchmark
+  public S2CellUnion union() {
+    return S2CellUnion.union(x, y);
+  }
+
+  @Benchmark
+  public S2CellUnion intersection() {
+    return S2CellUnion.intersection(x, y);
+  }
+
+  @Benchmark
+  public S2CellUnion difference() {
+    S2CellUnion result = new S2CellUnion();
+    result.getDifference(x, y);
+    return result;
+  }
+
+  @Benchmark
+  public boolean contains() {
+    return x.contains(y);
+  }
+
+  @Benchmark
+  public boolean intersects() {
+    return x.intersects(y);
+  }
+}
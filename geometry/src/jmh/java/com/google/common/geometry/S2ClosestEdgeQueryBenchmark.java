@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.geometry.S2ClosestEdgeQuery.PointTarget;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for S2ClosestEdgeQuery against a fractal polygon. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class S2ClosestEdgeQueryBenchmark {
+  /** The number of query points per benchmark invocation. */
+  private static final int NUM_QUERIES = 100;
+
+  @Param({"64", "1024", "16384"})
+  public int numEdges;
+
+  private S2ClosestEdgeQuery.Query query;
+  private S2ClosestEdgeQuery.Query withinQuery;
+  private List<S2Point> queries;
+
+  @Setup
+  public void setUp() {
+    S2ShapeIndex index = BenchmarkWorkloads.index(BenchmarkWorkloads.fractalPolygon(numEdges));
+    query = S2ClosestEdgeQuery.builder().build(index);
+    withinQuery =
+        S2ClosestEdgeQuery.builder()
+            .setMaxDistance(TestDataGenerator.kmToAngle(1))
+            .setMaxResults(10)
+            .build(index);
+    queries = BenchmarkWorkloads.queryPoints(NUM_QUERIES);
+  }
+
+  /** Finds the single closest edge to each query point. */
+  @Benchmark
+  public void findClosestEdge(Blackhole bh) {
+    for (S2Point p : queries) {
+      bh.consume(query.findClosestEdge(new PointTarget<>(p)));
+    }
+  }
+
+  /** Finds up to 10 edges within 1 km of each query point. */
+  @Benchmark
+  public void findClosestEdgesWithin(Blackhole bh) {
+    for (S2Point p : queries) {
+      bh.consume(withinQuery.findClosestEdges(new PointTarget<>(p)));
+    }
+  }
+
+  /** Computes the distance from each query point to the polygon, including its interior. */
+  @Benchmark
+  public void getDistance(Blackhole bh) {
+    for (S2Point p : queries) {
+      bh.consume(query.getDistance(new PointTarget<>(p)));
+    }
+  }
+}
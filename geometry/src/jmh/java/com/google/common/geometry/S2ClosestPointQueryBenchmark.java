@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.geometry.TestDataGenerator.PointFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for S2ClosestPointQuery over points generated by each TestDataGenerator factory. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class S2ClosestPointQueryBenchmark {
+  /** The number of query points per benchmark invocation. */
+  private static final int NUM_QUERIES = 100;
+
+  @Param({"CIRCLE", "FRACTAL", "GRID"})
+  public PointFactory factory;
+
+  @Param({"1000", "100000"})
+  public int numPoints;
+
+  private S2ClosestPointQuery<Integer> nearestQuery;
+  private S2ClosestPointQuery<Integer> withinQuery;
+  private List<S2Point> queries;
+
+  @Setup
+  public void setUp() {
+    TestDataGenerator data = new TestDataGenerator(BenchmarkWorkloads.SEED);
+    S2Cap cap = S2Cap.fromAxisAngle(BenchmarkWorkloads.CENTER.toPoint(), BenchmarkWorkloads.RADIUS);
+    S2PointIndex<Integer> index = new S2PointIndex<>();
+    TestDataGenerator.addPoints(index, factory.createPoints(data, cap, numPoints));
+    nearestQuery = new S2ClosestPointQuery<>(index);
+    nearestQuery.setMaxPoints(10);
+    withinQuery = new S2ClosestPointQuery<>(index);
+    withinQuery.setMaxDistance(TestDataGenerator.kmToAngle(1));
+    queries = BenchmarkWorkloads.queryPoints(NUM_QUERIES);
+  }
+
+  /** Finds the 10 closest points to each query point. */
+  @Benchmark
+  public void findTenClosest(Blackhole bh) {
+    for (S2Point p : queries) {
+      bh.consume(nearestQuery.findClosestPoints(p));
+    }
+  }
+
+  /** Finds all the points within 1 km of each query point. */
+  @Benchmark
+  public void findWithinDistance(Blackhole bh) {
+    for (S2Point p : queries) {
+      bh.consume(withinQuery.findClosestPoints(p));
+    }
+  }
+}
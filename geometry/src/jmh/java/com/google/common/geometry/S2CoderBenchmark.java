@@ -0,0 +1,123 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.geometry.PrimitiveArrays.Bytes;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for encoding and decoding a fractal polygon, its shape, and its S2ShapeIndex. Encoded
+ * sizes are fixed by the workload, so only throughput is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class S2CoderBenchmark {
+  /** The polygon and tagged shape encodings to compare. */
+  public enum Format {
+    FAST(S2Polygon.FAST_CODER, S2TaggedShapeCoder.FAST),
+    COMPACT(S2Polygon.COMPACT_CODER, S2TaggedShapeCoder.COMPACT);
+
+    final S2Coder<S2Polygon> polygonCoder;
+    final S2Coder<S2Shape> shapeCoder;
+
+    Format(S2Coder<S2Polygon> polygonCoder, S2Coder<S2Shape> shapeCoder) {
+      this.polygonCoder = polygonCoder;
+      this.shapeCoder = shapeCoder;
+    }
+  }
+
+  @Param({"FAST", "COMPACT"})
+  public Format format;
+
+  @Param({"1024", "16384"})
+  public int numEdges;
+
+  private S2Polygon polygon;
+  private S2ShapeIndex index;
+  private byte[] encodedPolygon;
+  private byte[] encodedShape;
+  private byte[] encodedIndex;
+  private S2ShapeIndexCoder indexCoder;
+
+  @Setup
+  public void setUp() throws IOException {
+    polygon = BenchmarkWorkloads.fractalPolygon(numEdges);
+    index = BenchmarkWorkloads.index(polygon);
+    indexCoder = new S2ShapeIndexCoder(ImmutableList.copyOf(index.getShapes()));
+    encodedPolygon = encode(format.polygonCoder, polygon);
+    encodedShape = encode(format.shapeCoder, polygon.shape());
+    encodedIndex = encode(S2ShapeIndexCoder.INSTANCE, index);
+  }
+
+  private static <T> byte[] encode(S2Coder<T> coder, T value) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    coder.encode(value, output);
+    return output.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] encodePolygon() throws IOException {
+    return encode(format.polygonCoder, polygon);
+  }
+
+  @Benchmark
+  public S2Polygon decodePolygon() throws IOException {
+    return format.polygonCoder.decode(Bytes.fromByteArray(encodedPolygon));
+  }
+
+  @Benchmark
+  public byte[] encodeShape() throws IOException {
+    return encode(format.shapeCoder, polygon.shape());
+  }
+
+  /** Decodes the tagged shape, and reads all its edges, since tagged decoding may be lazy. */
+  @Benchmark
+  public void decodeShape(Blackhole bh) throws IOException {
+    S2Shape shape = format.shapeCoder.decode(Bytes.fromByteArray(encodedShape));
+    S2Shape.MutableEdge edge = new S2Shape.MutableEdge();
+    for (int e = 0; e < shape.numEdges(); e++) {
+      shape.getEdge(e, edge);
+      bh.consume(edge.a);
+    }
+  }
+
+  @Benchmark
+  public byte[] encodeIndex() throws IOException {
+    return encode(S2ShapeIndexCoder.INSTANCE, index);
+  }
+
+  /** Decodes the index, and visits all its cells, since index decoding is lazy. */
+  @Benchmark
+  public void decodeIndex(Blackhole bh) throws IOException {
+    S2ShapeIndex decoded = indexCoder.decode(Bytes.fromByteArray(encodedIndex));
+    for (S2Iterator<S2ShapeIndex.Cell> it = decoded.iterator(); !it.done(); it.next()) {
+      bh.consume(it.entry().numShapes());
+    }
+  }
+}
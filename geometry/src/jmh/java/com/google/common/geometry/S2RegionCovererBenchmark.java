@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for S2RegionCoverer on caps and on a fractal polygon. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class S2RegionCovererBenchmark {
+  /** The number of caps to cover per benchmark invocation. */
+  private static final int NUM_CAPS = 100;
+
+  @Param({"8", "64", "512"})
+  public int maxCells;
+
+  private S2RegionCoverer coverer;
+  private List<S2Cap> caps;
+  private S2Polygon polygon;
+
+  @Setup
+  public void setUp() {
+    coverer = S2RegionCoverer.builder().setMaxCells(maxCells).build();
+    TestDataGenerator data = new TestDataGenerator(BenchmarkWorkloads.SEED);
+    caps = new ArrayList<>(NUM_CAPS);
+    for (int i = 0; i < NUM_CAPS; i++) {
+      // Caps with areas from a few square meters to about 1% of the sphere.
+      caps.add(data.getRandomCap(1e-13, 0.1));
+    }
+    polygon = BenchmarkWorkloads.fractalPolygon(4096);
+  }
+
+  /** Covers each of a fixed set of caps of varying sizes. */
+  @Benchmark
+  public void coverCaps(Blackhole bh) {
+    for (S2Cap cap : caps) {
+      bh.consume(coverer.getCovering(cap));
+    }
+  }
+
+  /** Covers a fractal polygon with about 4096 edges. */
+  @Benchmark
+  public S2CellUnion coverPolygon() {
+    return coverer.getCovering(polygon);
+  }
+
+  /** Computes the interior covering of a fractal polygon with about 4096 edges. */
+  @Benchmark
+  public S2CellUnion interiorCoverPolygon() {
+    return coverer.getInteriorCovering(polygon);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for building an S2ShapeIndex, and for point containment queries against it. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class S2ShapeIndexBenchmark {
+  /** The number of query points for the containment benchmarks. */
+  private static final int NUM_QUERIES = 1000;
+
+  @Param({"64", "1024", "16384"})
+  public int numEdges;
+
+  private S2Polygon polygon;
+  private S2ShapeIndex index;
+  private List<S2Point> queries;
+
+  @Setup
+  public void setUp() {
+    polygon = BenchmarkWorkloads.fractalPolygon(numEdges);
+    index = BenchmarkWorkloads.index(polygon);
+    queries = BenchmarkWorkloads.queryPoints(NUM_QUERIES);
+  }
+
+  /** Builds an index of the polygon from scratch. */
+  @Benchmark
+  public S2ShapeIndex build() {
+    return BenchmarkWorkloads.index(polygon);
+  }
+
+  /** Tests each query point for containment with a single S2ContainsPointQuery. */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void containsPoint(Blackhole bh) {
+    S2ContainsPointQuery query = new S2ContainsPointQuery(index);
+    for (S2Point p : queries) {
+      bh.consume(query.contains(p));
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event with the {@link S2ShapeIndex.BuildStats} of an S2ShapeIndex build.
+ * Call {@link #register()} once at startup to record an event for every subsequent build, for
+ * example with {@code java -XX:StartFlightRecording ...}, and then inspect the events with JDK
+ * Mission Control or {@code jfr print --events com.google.common.geometry.S2ShapeIndexBuild}.
+ *
+ * <p>This class is only available on the JVM, since Android and J2CL do not support JFR.
+ */
+@Name("com.google.common.geometry.S2ShapeIndexBuild")
+@Label("S2ShapeIndex Build")
+@Category({"S2 Geometry"})
+@Description("Statistics of an S2ShapeIndex build")
+@StackTrace(false)
+public final class S2ShapeIndexBuildEvent extends Event {
+  @Label("Shapes")
+  int shapes;
+
+  @Label("Input Edges")
+  int inputEdges;
+
+  @Label("Build Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long buildTime;
+
+  @Label("Add Shape Edges Time")
+  @Description("Time spent clipping the edges of all shapes to the cube faces")
+  @Timespan(Timespan.NANOSECONDS)
+  long addShapeEdgesTime;
+
+  @Label("Subdivision Time")
+  @Description("Time spent subdividing all faces into index cells")
+  @Timespan(Timespan.NANOSECONDS)
+  long subdivisionTime;
+
+  @Label("Face Edges")
+  @Description("The number of edges clipped to each face, separated by commas")
+  String faceEdges;
+
+  @Label("Subdivisions")
+  int subdivisions;
+
+  @Label("Cells")
+  int cells;
+
+  @Label("Cells By Level")
+  @Description("The number of index cells at each nonempty level, as level=count pairs")
+  String cellsByLevel;
+
+  @Label("Edge Entries")
+  long edgeEntries;
+
+  @Label("Long Edge Entries")
+  long longEdgeEntries;
+
+  @Label("Max Cell Edges")
+  int maxCellEdges;
+
+  @Label("Average Cell Edges")
+  double averageCellEdges;
+
+  @Label("Allocator Edges")
+  int allocatorEdges;
+
+  @Label("Peak Temporary Memory")
+  @DataAmount
+  long peakTemporaryBytes;
+
+  private S2ShapeIndexBuildEvent() {}
+
+  /** Records an event for every subsequent S2ShapeIndex build, while this event is enabled. */
+  public static void register() {
+    S2ShapeIndex.setBuildStatsListener(S2ShapeIndexBuildEvent::record);
+  }
+
+  /** Stops recording events for S2ShapeIndex builds. */
+  public static void unregister() {
+    S2ShapeIndex.setBuildStatsListener(null);
+  }
+
+  /** Records an event with the given statistics, if this event is enabled. */
+  public static void record(S2ShapeIndex.BuildStats stats) {
+    S2ShapeIndexBuildEvent event = new S2ShapeIndexBuildEvent();
+    if (!event.isEnabled()) {
+      return;
+    }
+    event.shapes = stats.numShapes();
+    event.inputEdges = stats.numInputEdges();
+    event.buildTime = stats.totalNanos();
+    event.addShapeEdgesTime = stats.addShapeEdgesNanos();
+    StringBuilder faceEdges = new StringBuilder();
+    for (int face = 0; face < 6; face++) {
+      event.subdivisionTime += stats.updateFaceEdgesNanos(face);
+      faceEdges.append(face == 0 ? "" : ",").append(stats.numFaceEdges(face));
+    }
+    event.faceEdges = faceEdges.toString();
+    event.subdivisions = stats.numSubdivisions();
+    event.cells = stats.numCells();
+    StringBuilder cellsByLevel = new StringBuilder();
+    for (int level = 0; level <= S2CellId.MAX_LEVEL; level++) {
+      int count = stats.numCellsAtLevel(level);
+      if (count > 0) {
+        cellsByLevel.append(cellsByLevel.length() == 0 ? "" : ",").append(level);
+        cellsByLevel.append('=').append(count);
+      }
+    }
+    event.cellsByLevel = cellsByLevel.toString();
+    event.edgeEntries = stats.numEdgeEntries();
+    event.longEdgeEntries = stats.numLongEdgeEntries();
+    event.maxCellEdges = stats.maxCellEdges();
+    event.averageCellEdges = stats.averageCellEdges();
+    event.allocatorEdges = stats.numAllocatorEdges();
+    event.peakTemporaryBytes = stats.peakTemporaryBytes();
+    event.commit();
+  }
+}
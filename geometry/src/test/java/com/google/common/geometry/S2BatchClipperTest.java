@@ -0,0 +1,227 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.geometry.S2BooleanOperation.OpType;
+import com.google.common.geometry.S2Builder.SnapFunction;
+import com.google.common.geometry.S2BuilderSnapFunctions.IdentitySnapFunction;
+import com.google.common.geometry.S2BuilderSnapFunctions.IntLatLngSnapFunction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link S2BatchClipper}, by comparison with {@link S2BooleanOperation}. */
+@RunWith(JUnit4.class)
+public final class S2BatchClipperTest {
+  private static final S2Point CENTER = S2LatLng.fromDegrees(10, 20).toPoint();
+
+  /** The region, a fractal loop about 2 degrees across. */
+  private static final S2Polygon REGION = fractalRegion(new Random(1));
+
+  @Test
+  public void testClipPolygonsMatchesBooleanOperation() {
+    List<S2Polygon> inputs = randomPolygons(new Random(2), 300);
+    // An empty input is inside every region.
+    inputs.add(new S2Polygon());
+    S2BatchClipper clipper = new S2BatchClipper(REGION);
+    for (ForkJoinPool pool : new ForkJoinPool[] {null, ForkJoinPool.commonPool()}) {
+      List<S2Polygon> output = new ArrayList<>();
+      S2Error error = new S2Error();
+      assertTrue(error.toString(), clipper.clipPolygons(inputs, output, pool, error));
+      checkPolygons(clipper.options(), inputs, output);
+    }
+  }
+
+  @Test
+  public void testClipPolylinesMatchesBooleanOperation() {
+    List<S2Polyline> inputs = randomPolylines(new Random(3), 300);
+    S2BatchClipper clipper = new S2BatchClipper(REGION);
+    for (ForkJoinPool pool : new ForkJoinPool[] {null, ForkJoinPool.commonPool()}) {
+      List<List<S2Polyline>> output = new ArrayList<>();
+      S2Error error = new S2Error();
+      assertTrue(error.toString(), clipper.clipPolylines(inputs, output, pool, error));
+      assertEquals(inputs.size(), output.size());
+      for (int i = 0; i < inputs.size(); i++) {
+        assertEquals("Input " + i, intersection(clipper.options(), inputs.get(i)), output.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testCoveringsResolveInputs() {
+    List<S2Polygon> inputs = randomPolygons(new Random(4), 300);
+    S2BatchClipper.Clipper clipper = new S2BatchClipper(REGION).newClipper();
+    S2Error error = new S2Error();
+    for (S2Polygon input : inputs) {
+      assertTrue(error.toString(), clipper.clipPolygon(input, new S2Polygon(), error));
+    }
+    assertTrue(clipper.numInside() > 0);
+    assertTrue(clipper.numOutside() > 0);
+    assertTrue(clipper.numClipped() > 0);
+    assertEquals(
+        inputs.size(), clipper.numInside() + clipper.numOutside() + clipper.numClipped());
+  }
+
+  @Test
+  public void testSnappingClipsInputsInside() {
+    // Inputs inside the region must still be snapped, so none are returned unchanged.
+    SnapFunction snapFunction = new IntLatLngSnapFunction(5);
+    S2BooleanOperation.Options options = new S2BooleanOperation.Builder(snapFunction).options();
+    S2BatchClipper batchClipper =
+        new S2BatchClipper(REGION, options, S2BatchClipper.DEFAULT_MAX_COVERING_CELLS);
+    List<S2Polygon> inputs = randomPolygons(new Random(5), 300);
+    List<S2Polygon> output = new ArrayList<>();
+    S2Error error = new S2Error();
+    assertTrue(
+        error.toString(),
+        batchClipper.clipPolygons(inputs, output, ForkJoinPool.commonPool(), error));
+    checkPolygons(batchClipper.options(), inputs, output);
+
+    S2BatchClipper.Clipper clipper = batchClipper.newClipper();
+    for (S2Polygon input : inputs) {
+      assertTrue(error.toString(), clipper.clipPolygon(input, new S2Polygon(), error));
+    }
+    assertEquals(0, clipper.numInside());
+    assertTrue(clipper.numClipped() > 0);
+  }
+
+  @Test
+  public void testEmptyBatch() {
+    S2BatchClipper clipper = new S2BatchClipper(REGION);
+    List<S2Polygon> output = new ArrayList<>();
+    S2Error error = new S2Error();
+    assertTrue(clipper.clipPolygons(ImmutableList.of(), output, ForkJoinPool.commonPool(), error));
+    assertTrue(output.isEmpty());
+    List<List<S2Polyline>> polylines = new ArrayList<>();
+    assertTrue(clipper.clipPolylines(ImmutableList.of(), polylines, null, error));
+    assertTrue(polylines.isEmpty());
+  }
+
+  @Test
+  public void testFailedInputLeavesOutputUnchanged() {
+    // A snap function that moves vertices further than its snap radius, so every boolean operation
+    // fails, while inputs resolved by the coverings do not.
+    SnapFunction snapFunction =
+        new IdentitySnapFunction(S1Angle.radians(1e-9)) {
+          @Override
+          public S2Point snapPoint(S2Point point) {
+            return S2LatLng.fromPoint(point).add(S2LatLng.fromRadians(2e-9, 0)).toPoint();
+          }
+        };
+    S2BooleanOperation.Options options = new S2BooleanOperation.Builder(snapFunction).options();
+    S2BatchClipper clipper =
+        new S2BatchClipper(REGION, options, S2BatchClipper.DEFAULT_MAX_COVERING_CELLS);
+    S2Polygon outside = smallPolygon(S2LatLng.fromDegrees(-10, 20).toPoint());
+    S2Polygon crossing = smallPolygon(REGION.loop(0).vertex(0));
+    S2Polygon existing = smallPolygon(CENTER);
+    List<S2Polygon> output = new ArrayList<>();
+    output.add(existing);
+    S2Error error = new S2Error();
+    assertFalse(
+        clipper.clipPolygons(ImmutableList.of(outside, outside, crossing), output, null, error));
+    assertEquals(S2Error.Code.BUILDER_SNAP_RADIUS_TOO_SMALL, error.code());
+    assertTrue(error.text(), error.text().startsWith("Input 2: "));
+    assertEquals(1, output.size());
+    assertSame(existing, output.get(0));
+  }
+
+  /** Checks that each output is the intersection of the region with the corresponding input. */
+  private static void checkPolygons(
+      S2BooleanOperation.Options options, List<S2Polygon> inputs, List<S2Polygon> output) {
+    assertEquals(inputs.size(), output.size());
+    for (int i = 0; i < inputs.size(); i++) {
+      S2Polygon expected = intersection(options, inputs.get(i));
+      assertTrue("Input " + i, expected.boundaryApproxEquals(output.get(i), 0));
+    }
+  }
+
+  private static S2Polygon intersection(S2BooleanOperation.Options options, S2Polygon input) {
+    S2PolygonLayer layer = new S2PolygonLayer();
+    S2BooleanOperation op =
+        new S2BooleanOperation.Builder(options).build(OpType.INTERSECTION, layer);
+    S2Error error = new S2Error();
+    assertTrue(error.toString(), op.build(REGION.index(), input.index(), error));
+    return layer.getPolygon();
+  }
+
+  private static List<S2Polyline> intersection(
+      S2BooleanOperation.Options options, S2Polyline input) {
+    S2PolylineVectorLayer layer = new S2PolylineVectorLayer();
+    S2BooleanOperation op =
+        new S2BooleanOperation.Builder(options).build(OpType.INTERSECTION, layer);
+    S2ShapeIndex index = new S2ShapeIndex();
+    index.add(input);
+    S2Error error = new S2Error();
+    assertTrue(error.toString(), op.build(REGION.index(), index, error));
+    return layer.getPolylines();
+  }
+
+  private static S2Polygon fractalRegion(Random random) {
+    S2FractalBuilder fractal = new S2FractalBuilder(random);
+    fractal.setLevelForApproxMaxEdges(1000);
+    return new S2Polygon(fractal.makeLoop(S2.getFrame(CENTER), S1Angle.degrees(1)));
+  }
+
+  /** Returns a small regular loop around the given point. */
+  private static S2Polygon smallPolygon(S2Point center) {
+    return new S2Polygon(S2Loop.makeRegularLoop(center, S1Angle.degrees(0.05), 8));
+  }
+
+  /**
+   * Returns 'n' small polygons within 1.5 degrees of the region's center, so that some are inside
+   * the region, some outside, and some cross its boundary.
+   */
+  private static List<S2Polygon> randomPolygons(Random random, int n) {
+    List<S2Polygon> polygons = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      polygons.add(smallPolygon(randomPoint(random)));
+    }
+    return polygons;
+  }
+
+  /** Returns 'n' short random polylines within 1.5 degrees of the region's center. */
+  private static List<S2Polyline> randomPolylines(Random random, int n) {
+    List<S2Polyline> polylines = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      S2LatLng start = new S2LatLng(randomPoint(random));
+      List<S2Point> vertices = new ArrayList<>();
+      for (int j = 0; j < 3; j++) {
+        S2LatLng offset = S2LatLng.fromDegrees(0.05 * j, 0.1 * random.nextDouble());
+        vertices.add(start.add(offset).toPoint());
+      }
+      polylines.add(new S2Polyline(vertices));
+    }
+    return polylines;
+  }
+
+  private static S2Point randomPoint(Random random) {
+    Matrix frame = S2.getFrame(CENTER);
+    double r = Math.toRadians(1.5) * Math.sqrt(random.nextDouble());
+    double theta = 2 * Math.PI * random.nextDouble();
+    S2Point p = new S2Point(r * Math.cos(theta), r * Math.sin(theta), 1);
+    return S2.fromFrame(frame, p.normalize());
+  }
+}
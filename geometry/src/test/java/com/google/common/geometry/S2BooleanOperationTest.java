@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.geometry.S2BooleanOperation.OpType;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests {@link S2BooleanOperation} on random overlapping polygons, by comparison with the
+ * S2PolygonBuilder based operations of {@link S2Polygon}.
+ */
+@RunWith(JUnit4.class)
+public final class S2BooleanOperationTest {
+  /** The maximum difference in area, in steradians, between the two implementations. */
+  private static final double MAX_AREA_ERROR = 1e-12;
+
+  @Test
+  public void testPolygonOperationsMatchS2Polygon() {
+    Random random = new Random(1);
+    for (int iter = 0; iter < 50; iter++) {
+      S2Polygon a = randomPolygon(random);
+      S2Polygon b = randomPolygon(random);
+      S2Polygon intersection = new S2Polygon();
+      intersection.initToIntersection(a, b);
+      S2Polygon union = new S2Polygon();
+      union.initToUnion(a, b);
+      S2Polygon difference = new S2Polygon();
+      difference.initToDifference(a, b);
+      double symmetricDifferenceArea = union.getArea() - intersection.getArea();
+
+      assertEquals(intersection.getArea(), area(OpType.INTERSECTION, a, b), MAX_AREA_ERROR);
+      assertEquals(union.getArea(), area(OpType.UNION, a, b), MAX_AREA_ERROR);
+      assertEquals(difference.getArea(), area(OpType.DIFFERENCE, a, b), MAX_AREA_ERROR);
+      assertEquals(
+          symmetricDifferenceArea, area(OpType.SYMMETRIC_DIFFERENCE, a, b), MAX_AREA_ERROR);
+    }
+  }
+
+  /** Returns a polygon of two random regular loops near (10, 20), which may overlap. */
+  private static S2Polygon randomPolygon(Random random) {
+    S2Polygon result = null;
+    for (int i = 0; i < 2; i++) {
+      S2Point center =
+          S2LatLng.fromDegrees(10 + random.nextDouble(), 20 + random.nextDouble()).toPoint();
+      S1Angle radius = S1Angle.degrees(0.2 + 0.5 * random.nextDouble());
+      S2Polygon loop =
+          new S2Polygon(S2Loop.makeRegularLoop(center, radius, 10 + random.nextInt(200)));
+      if (result == null) {
+        result = loop;
+      } else {
+        S2Polygon union = new S2Polygon();
+        union.initToUnion(result, loop);
+        result = union;
+      }
+    }
+    return result;
+  }
+
+  /** Returns the area of the result of the given operation with the default options. */
+  private static double area(OpType opType, S2Polygon a, S2Polygon b) {
+    S2PolygonLayer layer = new S2PolygonLayer();
+    S2BooleanOperation op = new S2BooleanOperation.Builder().build(opType, layer);
+    S2Error error = new S2Error();
+    assertTrue(error.toString(), op.build(a.index(), b.index(), error));
+    return layer.getPolygon().getArea();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.geometry.S2BuilderSnapFunctions.IdentitySnapFunction;
+import com.google.common.geometry.S2BuilderSnapFunctions.IntLatLngSnapFunction;
+import com.google.common.geometry.S2BuilderSnapFunctions.S2CellIdSnapFunction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests of the output guarantees of {@link S2Builder} on random inputs. */
+@RunWith(JUnit4.class)
+public final class S2BuilderTest {
+  /** An allowance for the rounding error of the distances computed by the checks. */
+  private static final double MAX_ERROR_RADIANS = 1e-13;
+
+  /**
+   * Snaps many dense, wandering polylines, so that many snapped edges pass close to sites that are
+   * not their vertices. This exercises the separation sites added by maybeAddExtraSites(), which
+   * change the sites near the edge being checked.
+   */
+  @Test
+  public void testSnappedDensePolylinesKeepSeparation() {
+    Random random = new Random(1);
+    for (int iter = 0; iter < 100; iter++) {
+      S2Builder.SnapFunction snapFunction =
+          iter % 2 == 0 ? new IntLatLngSnapFunction(4) : new S2CellIdSnapFunction(14);
+      checkBuild(randomPolylines(random, 5, 30), snapFunction, iter % 3 == 0);
+    }
+  }
+
+  /** As above, but with the identity snap function, which has fast paths of its own. */
+  @Test
+  public void testIdentitySnappedPolylinesKeepSeparation() {
+    Random random = new Random(2);
+    for (int iter = 0; iter < 50; iter++) {
+      S1Angle snapRadius = S1Angle.degrees(1e-5 * (1 + random.nextInt(20)));
+      IdentitySnapFunction snapFunction = new IdentitySnapFunction(snapRadius);
+      checkBuild(randomPolylines(random, 4, 25), snapFunction, iter % 2 == 0);
+    }
+  }
+
+  /** Returns 'n' random polylines of 'numVertices' vertices wandering near (10, 20). */
+  private static List<S2Polyline> randomPolylines(Random random, int n, int numVertices) {
+    List<S2Polyline> polylines = new ArrayList<>();
+    for (int k = 0; k < n; k++) {
+      List<S2Point> vertices = new ArrayList<>();
+      double lat = 10 + random.nextDouble() * 0.01;
+      double lng = 20 + random.nextDouble() * 0.01;
+      for (int i = 0; i < numVertices; i++) {
+        vertices.add(S2LatLng.fromDegrees(lat, lng).toPoint());
+        lat += (random.nextDouble() - 0.5) * 0.004;
+        lng += (random.nextDouble() - 0.5) * 0.004;
+      }
+      polylines.add(new S2Polyline(vertices));
+    }
+    return polylines;
+  }
+
+  /**
+   * Builds the given polylines, and checks that the output vertices are snapped, and separated
+   * from each other and from the output edges as the snap function requires.
+   */
+  private static void checkBuild(
+      List<S2Polyline> input, S2Builder.SnapFunction snapFunction, boolean splitCrossingEdges) {
+    S2Builder builder =
+        new S2Builder.Builder(snapFunction).setSplitCrossingEdges(splitCrossingEdges).build();
+    S2PolylineVectorLayer layer = new S2PolylineVectorLayer();
+    builder.startLayer(layer);
+    for (S2Polyline polyline : input) {
+      builder.addPolyline(polyline);
+    }
+    S2Error error = new S2Error();
+    assertTrue(error.toString(), builder.build(error));
+
+    List<S2Point> vertices = new ArrayList<>();
+    List<S2Point[]> edges = new ArrayList<>();
+    for (S2Polyline polyline : layer.getPolylines()) {
+      for (int i = 0; i < polyline.numVertices(); i++) {
+        vertices.add(polyline.vertex(i));
+        if (i > 0) {
+          edges.add(new S2Point[] {polyline.vertex(i - 1), polyline.vertex(i)});
+        }
+      }
+    }
+    double minVertexSeparation = snapFunction.minVertexSeparation().radians() - MAX_ERROR_RADIANS;
+    double minEdgeVertexSeparation =
+        snapFunction.minEdgeVertexSeparation().radians() - MAX_ERROR_RADIANS;
+    for (S2Point v : vertices) {
+      if (!(snapFunction instanceof IdentitySnapFunction)) {
+        assertTrue(v + " is not snapped", snapFunction.snapPoint(v).equalsPoint(v));
+      }
+      for (S2Point w : vertices) {
+        if (!v.equalsPoint(w)) {
+          assertFalse(v + " is too close to " + w, v.angle(w) < minVertexSeparation);
+        }
+      }
+      for (S2Point[] edge : edges) {
+        if (!v.equalsPoint(edge[0]) && !v.equalsPoint(edge[1])) {
+          double distance = S2EdgeUtil.getDistance(v, edge[0], edge[1]).radians();
+          assertFalse(v + " is too close to an edge", distance < minEdgeVertexSeparation);
+        }
+      }
+    }
+  }
+}
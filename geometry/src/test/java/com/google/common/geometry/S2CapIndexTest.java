@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link S2CapIndex} by comparison with brute-force cap containment. */
+@RunWith(JUnit4.class)
+public final class S2CapIndexTest {
+  private static final S2Point CENTER = S2LatLng.fromDegrees(-30, 150).toPoint();
+
+  private final S2RegionCoverer coverer =
+      S2RegionCoverer.builder().setMaxCells(S2CapIndex.DEFAULT_MAX_CELLS).build();
+
+  @Test
+  public void testInterleavedAddRemoveMatchesBruteForce() {
+    Random random = new Random(1);
+    S2CapIndex<Integer> index = new S2CapIndex<>(coverer);
+    List<S2Cap> caps = new ArrayList<>();
+    List<Integer> data = new ArrayList<>();
+    for (int step = 0; step < 2000; step++) {
+      int choice = random.nextInt(10);
+      if (choice < 5 || caps.isEmpty()) {
+        // Add a random cap, or sometimes one that is already present.
+        S2Cap cap;
+        int value;
+        if (choice == 0 && !caps.isEmpty()) {
+          int i = random.nextInt(caps.size());
+          cap = caps.get(i);
+          value = data.get(i);
+        } else {
+          cap = randomCap(random);
+          value = random.nextInt(100);
+        }
+        index.add(cap, value);
+        caps.add(cap);
+        data.add(value);
+      } else if (choice < 9) {
+        int i = random.nextInt(caps.size());
+        assertTrue(index.remove(caps.get(i), data.get(i)));
+        caps.remove(i);
+        data.remove(i);
+      } else {
+        // Neither a new cap nor different data matches an entry.
+        assertFalse(index.remove(randomCap(random), 0));
+        int i = random.nextInt(caps.size());
+        assertFalse(index.remove(caps.get(i), data.get(i) + 100));
+      }
+      assertEquals(caps.size(), index.numCaps());
+      if (step % 20 == 0) {
+        checkIndex(random, index, caps, data);
+      }
+    }
+
+    // Remove the rest in random order, so that the levels become unused one by one.
+    while (!caps.isEmpty()) {
+      int i = random.nextInt(caps.size());
+      assertTrue(index.remove(caps.get(i), data.get(i)));
+      caps.remove(i);
+      data.remove(i);
+      checkIndex(random, index, caps, data);
+    }
+    assertTrue(index.isEmpty());
+    assertEquals(0, index.numCells());
+  }
+
+  @Test
+  public void testReset() {
+    Random random = new Random(2);
+    S2CapIndex<Integer> index = new S2CapIndex<>(coverer);
+    for (int i = 0; i < 10; i++) {
+      index.add(randomCap(random), i);
+    }
+    index.reset();
+    assertTrue(index.isEmpty());
+    assertEquals(0, index.numCells());
+    assertTrue(index.getContainingData(CENTER).isEmpty());
+
+    // Empty caps are ignored.
+    index.add(S2Cap.empty(), 0);
+    assertTrue(index.isEmpty());
+    assertFalse(index.remove(S2Cap.empty(), 0));
+
+    S2Cap cap = S2Cap.fromAxisAngle(CENTER, S1Angle.degrees(1));
+    index.add(cap, 1);
+    assertEquals(Collections.singletonList(1), index.getContainingData(CENTER));
+  }
+
+  /**
+   * Checks the number of cells against the coverings of the caps, and queries at random points and
+   * at points just inside and outside the caps against brute force.
+   */
+  private void checkIndex(
+      Random random, S2CapIndex<Integer> index, List<S2Cap> caps, List<Integer> data) {
+    int numCells = 0;
+    for (S2Cap cap : caps) {
+      numCells += coverer.getCovering(cap).size();
+    }
+    assertEquals(numCells, index.numCells());
+
+    List<S2Point> points = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      points.add(randomPoint(random, 20));
+    }
+    for (int i = 0; i < Math.min(caps.size(), 10); i++) {
+      S2Cap cap = caps.get(random.nextInt(caps.size()));
+      S2Point direction = randomPoint(random, 90);
+      for (double scale : new double[] {0.99, 1.01}) {
+        S1Angle radius = S1Angle.radians(scale * cap.angle().radians());
+        points.add(S2EdgeUtil.getPointOnLine(cap.axis(), direction, radius));
+      }
+    }
+    for (S2Point p : points) {
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < caps.size(); i++) {
+        if (caps.get(i).contains(p)) {
+          expected.add(data.get(i));
+        }
+      }
+      List<Integer> actual = index.getContainingData(p);
+      Collections.sort(expected);
+      Collections.sort(actual);
+      assertEquals(expected, actual);
+    }
+  }
+
+  /** Returns a cap within 20 degrees of the center, with a radius from 10 meters to 2000 km. */
+  private static S2Cap randomCap(Random random) {
+    double radiusMeters = 10 * Math.pow(2e5, random.nextDouble());
+    return S2Cap.fromAxisAngle(randomPoint(random, 20), S2Earth.metersToAngle(radiusMeters));
+  }
+
+  /** Returns a random point within the given number of degrees of the center. */
+  private static S2Point randomPoint(Random random, double maxDegrees) {
+    double r = Math.toRadians(maxDegrees) * Math.sqrt(random.nextDouble());
+    double theta = 2 * Math.PI * random.nextDouble();
+    S2Point p = new S2Point(r * Math.cos(theta), r * Math.sin(theta), 1);
+    return S2.fromFrame(S2.getFrame(CENTER), p.normalize());
+  }
+}
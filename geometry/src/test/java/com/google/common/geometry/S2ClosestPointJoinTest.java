@@ -0,0 +1,144 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link S2ClosestPointJoin}, by comparison with {@link S2ClosestPointQuery}. */
+@RunWith(JUnit4.class)
+public final class S2ClosestPointJoinTest {
+  private static final S2Point CENTER = S2LatLng.fromDegrees(37, -122).toPoint();
+
+  @Test
+  public void testJoinMatchesClosestPointQuery() {
+    Random random = new Random(1);
+    S2PointIndex<Integer> queries = randomPoints(random, 500, 0);
+    S2PointIndex<Integer> targets = randomPoints(random, 2000, 500);
+    for (int maxPoints : new int[] {1, 3, 20}) {
+      S2ClosestPointJoin<Integer, Integer> join = new S2ClosestPointJoin<>(queries, targets);
+      join.setMaxPoints(maxPoints);
+      checkJoin(join.join(), queries, targets, maxPoints, S1ChordAngle.INFINITY, false);
+      checkJoin(
+          join.join(ForkJoinPool.commonPool()),
+          queries,
+          targets,
+          maxPoints,
+          S1ChordAngle.INFINITY,
+          false);
+    }
+  }
+
+  @Test
+  public void testSelfJoinExcludesEachPoint() {
+    S2PointIndex<Integer> points = randomPoints(new Random(2), 1000, 0);
+    S2ClosestPointJoin<Integer, Integer> join = new S2ClosestPointJoin<>(points, points);
+    join.setMaxPoints(4);
+    checkJoin(join.join(), points, points, 4, S1ChordAngle.INFINITY, true);
+  }
+
+  @Test
+  public void testUnlimitedMaxPointsWithMaxDistance() {
+    Random random = new Random(3);
+    S2PointIndex<Integer> queries = randomPoints(random, 200, 0);
+    S2PointIndex<Integer> targets = randomPoints(random, 300, 200);
+    S1ChordAngle maxDistance = S1ChordAngle.fromS1Angle(S2Earth.metersToAngle(2000));
+    S2ClosestPointJoin<Integer, Integer> join = new S2ClosestPointJoin<>(queries, targets);
+    join.setMaxPoints(Integer.MAX_VALUE);
+    join.setMaxDistance(maxDistance);
+    checkJoin(
+        join.join(ForkJoinPool.commonPool()),
+        queries,
+        targets,
+        Integer.MAX_VALUE,
+        maxDistance,
+        false);
+  }
+
+  @Test
+  public void testUnlimitedMaxPointsWithFewNeighbors() {
+    // Few of the many targets are within the max distance of each query point. Results with room
+    // for every target of every query point would need billions of entries.
+    Random random = new Random(4);
+    S2PointIndex<Integer> queries = randomPoints(random, 5000, 0);
+    S2PointIndex<Integer> targets = randomPoints(random, 50000, 5000);
+    S1ChordAngle maxDistance = S1ChordAngle.fromS1Angle(S2Earth.metersToAngle(100));
+    S2ClosestPointJoin<Integer, Integer> join = new S2ClosestPointJoin<>(queries, targets);
+    join.setMaxPoints(Integer.MAX_VALUE);
+    join.setMaxDistance(maxDistance);
+    S2ClosestPointJoin.Result<Integer, Integer> result = join.join(ForkJoinPool.commonPool());
+    assertTrue(result.totalNeighbors() < 10 * queries.numPoints());
+    checkJoin(result, queries, targets, Integer.MAX_VALUE, maxDistance, false);
+  }
+
+  /** Returns an index of 'n' random points within 10km of CENTER, with data from 'firstId'. */
+  private static S2PointIndex<Integer> randomPoints(Random random, int n, int firstId) {
+    S2PointIndex<Integer> index = new S2PointIndex<>();
+    S2Cap cap = S2Cap.fromAxisAngle(CENTER, S2Earth.metersToAngle(10000));
+    for (int i = 0; i < n; i++) {
+      index.add(samplePoint(random, cap), firstId + i);
+    }
+    return index;
+  }
+
+  private static S2Point samplePoint(Random random, S2Cap cap) {
+    Matrix frame = S2.getFrame(cap.axis());
+    double h = random.nextDouble() * cap.height();
+    double theta = 2 * Math.PI * random.nextDouble();
+    double r = Math.sqrt(h * (2 - h));
+    S2Point p = new S2Point(Math.cos(theta) * r, Math.sin(theta) * r, 1 - h);
+    return S2.fromFrame(frame, p).normalize();
+  }
+
+  /** Checks that every query point has the neighbors found by an S2ClosestPointQuery. */
+  private static void checkJoin(
+      S2ClosestPointJoin.Result<Integer, Integer> result,
+      S2PointIndex<Integer> queries,
+      S2PointIndex<Integer> targets,
+      int maxPoints,
+      S1ChordAngle maxDistance,
+      boolean selfJoin) {
+    S2ClosestPointQuery<Integer> query = new S2ClosestPointQuery<>(targets);
+    query.setMaxPoints(maxPoints);
+    query.setMaxDistance(maxDistance);
+    assertEquals(queries.numPoints(), result.numQueries());
+    for (int i = 0; i < result.numQueries(); i++) {
+      S2PointIndex.Entry<Integer> queryPoint = result.query(i);
+      if (selfJoin) {
+        query.setFilter(r -> !r.entry().data().equals(queryPoint.data()));
+      }
+      List<S2ClosestPointQuery.Result<Integer>> expected =
+          query.findClosestPoints(queryPoint.point());
+      assertEquals("Query " + queryPoint.data(), expected.size(), result.numNeighbors(i));
+      for (int j = 0; j < expected.size(); j++) {
+        // Equidistant targets may be reported in either order, so only the distances are compared.
+        assertEquals(
+            expected.get(j).distance().getLength2(), result.distance(i, j).getLength2(), 1e-15);
+        assertEquals(
+            result.distance(i, j).getLength2(),
+            new S1ChordAngle(queryPoint.point(), result.neighbor(i, j).point()).getLength2(),
+            1e-15);
+      }
+    }
+  }
+}
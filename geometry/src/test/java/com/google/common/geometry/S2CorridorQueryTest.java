@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.geometry.S2CorridorQuery.CorridorResult;
+import com.google.common.geometry.S2Shape.MutableEdge;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests {@link S2CorridorQuery} by comparison with a brute-force scan of the distance from every
+ * point to every route edge.
+ */
+@RunWith(JUnit4.class)
+public final class S2CorridorQueryTest {
+  private static final S2Point CENTER = S2LatLng.fromDegrees(50, 10).toPoint();
+
+  /** The maximum error in distances from and along the route, in radians. */
+  private static final double MAX_ERROR = 1e-13;
+
+  @Test
+  public void testPolylineMatchesBruteForce() {
+    Random random = new Random(1);
+    S2PointIndex<Integer> index = randomIndex(random, 20000);
+    S2Polyline route = new S2Polyline(randomChain(random, 40));
+    checkQuery(index, route, S2Earth.metersToAngle(20000));
+    checkQuery(index, route, S2Earth.metersToAngle(500));
+  }
+
+  @Test
+  public void testMultipleChainsMatchBruteForce() {
+    Random random = new Random(2);
+    S2PointIndex<Integer> index = randomIndex(random, 20000);
+    S2Shape route =
+        S2LaxPolylineShape.createMulti(
+            ImmutableList.of(
+                randomChain(random, 10), randomChain(random, 20), randomChain(random, 5)));
+    checkQuery(index, route, S2Earth.metersToAngle(30000));
+  }
+
+  /**
+   * Checks that the query finds exactly the points within 'radius' of some route edge, with their
+   * distance from the route and their progress along it, which is the length of the preceding edges
+   * plus the distance along the closest edge, and that results are ordered by progress.
+   */
+  private static void checkQuery(S2PointIndex<Integer> index, S2Shape route, S1Angle radius) {
+    S1ChordAngle limit = S1ChordAngle.fromS1Angle(radius);
+    MutableEdge edge = new MutableEdge();
+    double[] edgeStarts = new double[route.numEdges()];
+    double length = 0;
+    for (int e = 0; e < route.numEdges(); e++) {
+      route.getEdge(e, edge);
+      edgeStarts[e] = length;
+      length += edge.a.angle(edge.b);
+    }
+
+    // Find the closest edge to each point by brute force.
+    Map<Integer, S1ChordAngle> expectedDistances = new HashMap<>();
+    Map<Integer, Double> expectedProgress = new HashMap<>();
+    S2Iterator<S2PointIndex.Entry<Integer>> it = index.iterator();
+    for (; !it.done(); it.next()) {
+      S2Point p = it.entry().point();
+      S1ChordAngle best = S1ChordAngle.INFINITY;
+      double progress = 0;
+      for (int e = 0; e < route.numEdges(); e++) {
+        route.getEdge(e, edge);
+        S1ChordAngle distance =
+            S1ChordAngle.fromS1Angle(S2EdgeUtil.getDistance(p, edge.a, edge.b));
+        if (distance.lessThan(best)) {
+          best = distance;
+          progress = edgeStarts[e] + edge.a.angle(S2EdgeUtil.project(p, edge.a, edge.b));
+        }
+      }
+      if (best.lessOrEquals(limit)) {
+        expectedDistances.put(it.entry().data(), best);
+        expectedProgress.put(it.entry().data(), progress);
+      }
+    }
+
+    List<CorridorResult<Integer>> results = new S2CorridorQuery<>(index).findPoints(route, radius);
+    assertEquals(expectedDistances.size(), results.size());
+    assertTrue(results.size() > 0);
+    double lastProgress = 0;
+    for (CorridorResult<Integer> result : results) {
+      int id = result.entry().data();
+      String label = "Point " + id;
+      assertTrue(label, expectedDistances.containsKey(id));
+      assertEquals(
+          label, expectedDistances.get(id).radians(), result.distance().radians(), MAX_ERROR);
+      assertEquals(label, expectedProgress.get(id), result.progress().radians(), MAX_ERROR);
+      assertTrue(label, result.progress().radians() >= lastProgress);
+      lastProgress = result.progress().radians();
+    }
+  }
+
+  /** Returns an index of 'n' random points within 10 degrees of the center, with their ids. */
+  private static S2PointIndex<Integer> randomIndex(Random random, int n) {
+    S2PointIndex<Integer> index = new S2PointIndex<>();
+    for (int i = 0; i < n; i++) {
+      index.add(randomPoint(random, 10), i);
+    }
+    return index;
+  }
+
+  /** Returns a random walk of 'n' vertices with steps of up to 1 degree, near the center. */
+  private static List<S2Point> randomChain(Random random, int n) {
+    List<S2Point> vertices = new ArrayList<>();
+    S2LatLng vertex = new S2LatLng(randomPoint(random, 5));
+    for (int i = 0; i < n; i++) {
+      vertices.add(vertex.toPoint());
+      double step = Math.toRadians(random.nextDouble());
+      double bearing = 2 * Math.PI * random.nextDouble();
+      vertex = vertex.add(S2LatLng.fromRadians(step * Math.cos(bearing), step * Math.sin(bearing)));
+    }
+    return vertices;
+  }
+
+  /** Returns a random point within the given number of degrees of the center. */
+  private static S2Point randomPoint(Random random, double maxDegrees) {
+    double r = Math.toRadians(maxDegrees) * Math.sqrt(random.nextDouble());
+    double theta = 2 * Math.PI * random.nextDouble();
+    S2Point p = new S2Point(r * Math.cos(theta), r * Math.sin(theta), 1);
+    return S2.fromFrame(S2.getFrame(CENTER), p.normalize());
+  }
+}
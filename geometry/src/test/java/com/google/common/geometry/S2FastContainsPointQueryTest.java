@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.geometry.S2Shape.MutableEdge;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that {@link S2FastContainsPointQuery} always agrees with {@link S2ContainsPointQuery}, and
+ * that its counters account for every query.
+ */
+@RunWith(JUnit4.class)
+public final class S2FastContainsPointQueryTest {
+  private static final S2Point CENTER = S2LatLng.fromDegrees(40, -100).toPoint();
+
+  @Test
+  public void testMatchesExactQuery() {
+    Random random = new Random(1);
+    S2ShapeIndex index = randomIndex(random);
+    List<S2Point> points = queryPoints(random, index);
+    for (S2ContainsPointQuery.Options options :
+        new S2ContainsPointQuery.Options[] {
+          S2ContainsPointQuery.Options.OPEN,
+          S2ContainsPointQuery.Options.SEMI_OPEN,
+          S2ContainsPointQuery.Options.CLOSED
+        }) {
+      S2FastContainsPointQuery query =
+          new S2FastContainsPointQuery(
+              index, options, S2FastContainsPointQuery.DEFAULT_MEMORY_BUDGET_BYTES);
+      checkQuery(index, options, query, points);
+      // Points far from any boundary are answered by the table, both inside and outside.
+      assertTrue(query.insideHits() > 0);
+      assertTrue(query.outsideHits() > 0);
+      assertTrue(query.exactTests() > 0);
+    }
+  }
+
+  @Test
+  public void testSmallBudgetMatchesExactQuery() {
+    Random random = new Random(2);
+    S2ShapeIndex index = randomIndex(random);
+    List<S2Point> points = queryPoints(random, index);
+    S2ContainsPointQuery.Options options = S2ContainsPointQuery.Options.SEMI_OPEN;
+    S2FastContainsPointQuery full = new S2FastContainsPointQuery(index);
+    checkQuery(index, options, full, points);
+
+    // Halving the budget demotes the smallest definite ranges to exact tests.
+    long budget = full.memoryBytes() / 2;
+    S2FastContainsPointQuery demoted = new S2FastContainsPointQuery(index, options, budget);
+    assertTrue(demoted.memoryBytes() <= budget);
+    checkQuery(index, options, demoted, points);
+    assertTrue(demoted.exactTests() > full.exactTests());
+    assertTrue(demoted.hitRate() < full.hitRate());
+    assertTrue(demoted.insideHits() + demoted.outsideHits() > 0);
+
+    // A budget too small for one range answers every query exactly.
+    S2FastContainsPointQuery exact = new S2FastContainsPointQuery(index, options, 11);
+    assertEquals(0, exact.numRanges());
+    checkQuery(index, options, exact, points);
+    assertEquals(0, exact.insideHits());
+    assertEquals(0, exact.outsideHits());
+    assertEquals(0.0, exact.hitRate(), 0);
+
+    exact.resetCounters();
+    assertEquals(0, exact.exactTests());
+  }
+
+  /**
+   * Checks that each method of 'query' agrees with an exact query for every point, and that the
+   * counters increase by one for each query.
+   */
+  private static void checkQuery(
+      S2ShapeIndex index,
+      S2ContainsPointQuery.Options options,
+      S2FastContainsPointQuery query,
+      List<S2Point> points) {
+    S2ContainsPointQuery expected = new S2ContainsPointQuery(index, options);
+    query.resetCounters();
+    long numQueries = 0;
+    for (S2Point p : points) {
+      String label = "Point " + new S2LatLng(p);
+      assertEquals(label, expected.contains(p), query.contains(p));
+      int[] expectedIds = expected.getContainingShapeIds(p).toArray();
+      int[] actualIds = query.getContainingShapeIds(p).toArray();
+      Arrays.sort(expectedIds);
+      Arrays.sort(actualIds);
+      assertArrayEquals(label, expectedIds, actualIds);
+      numQueries += 2;
+      for (int shapeId = 0; shapeId < index.getShapes().size(); shapeId++) {
+        assertEquals(label, expected.shapeContains(shapeId, p), query.shapeContains(shapeId, p));
+        numQueries++;
+      }
+    }
+    assertEquals(numQueries, query.insideHits() + query.outsideHits() + query.exactTests());
+  }
+
+  /**
+   * Returns an index of random polygons of various sizes within 10 degrees of the center, some of
+   * which overlap, and some with holes.
+   */
+  private static S2ShapeIndex randomIndex(Random random) {
+    S2ShapeIndex index = new S2ShapeIndex();
+    for (int i = 0; i < 20; i++) {
+      S2Point center = randomPoint(random, 10);
+      double radius = 0.2 + 2 * random.nextDouble();
+      List<S2Loop> loops = new ArrayList<>();
+      loops.add(S2Loop.makeRegularLoop(center, S1Angle.degrees(radius), 4 + random.nextInt(60)));
+      if (random.nextBoolean()) {
+        loops.add(S2Loop.makeRegularLoop(center, S1Angle.degrees(radius / 3), 8));
+      }
+      index.add(new S2Polygon(loops).shape());
+    }
+    return index;
+  }
+
+  /**
+   * Returns random points within 15 degrees of the center, so that some are far from all shapes,
+   * and the vertices of the shapes, which are only answered by exact tests.
+   */
+  private static List<S2Point> queryPoints(Random random, S2ShapeIndex index) {
+    List<S2Point> points = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      points.add(randomPoint(random, 15));
+    }
+    MutableEdge edge = new MutableEdge();
+    for (S2Shape shape : index.getShapes()) {
+      for (int e = 0; e < shape.numEdges(); e++) {
+        shape.getEdge(e, edge);
+        points.add(edge.getStart());
+      }
+    }
+    return points;
+  }
+
+  /** Returns a random point within the given number of degrees of the center. */
+  private static S2Point randomPoint(Random random, double maxDegrees) {
+    double r = Math.toRadians(maxDegrees) * Math.sqrt(random.nextDouble());
+    double theta = 2 * Math.PI * random.nextDouble();
+    S2Point p = new S2Point(r * Math.cos(theta), r * Math.sin(theta), 1);
+    return S2.fromFrame(S2.getFrame(CENTER), p.normalize());
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.geometry.PrimitiveArrays.Bytes;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests the parallel COMPACT encoding of {@link S2PointVectorCoder}. */
+@RunWith(JUnit4.class)
+public final class S2PointVectorCoderTest {
+  /**
+   * Sizes on either side of the smallest input encoded in parallel, 4096 points, and large enough
+   * to split the work into several tasks, with partial last blocks.
+   */
+  private static final int[] SIZES = {4095, 4096, 4097, 4096 + 15, 40000, 65543};
+
+  @Test
+  public void testParallelEncodingMatchesSequential() throws IOException {
+    Random random = new Random(1);
+    for (int size : SIZES) {
+      // Points snapped to cell centers at one level, without and with exceptions, and arbitrary
+      // points, which the COMPACT format falls back to encoding as FAST.
+      checkEncoding("Snapped " + size, cellCenters(random, size, 20, 0));
+      checkEncoding("Exceptions " + size, cellCenters(random, size, 20, 0.01));
+      checkEncoding("Leaf cells " + size, cellCenters(random, size, 30, 0.2));
+      checkEncoding("Random " + size, cellCenters(random, size, 30, 1));
+    }
+  }
+
+  /** Checks that both encodings of 'points' are identical and decode to the same points. */
+  private static void checkEncoding(String label, List<S2Point> points) throws IOException {
+    ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+    S2PointVectorCoder.COMPACT.encode(points, sequential);
+    ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+    S2PointVectorCoder.COMPACT.encode(points, parallel, ForkJoinPool.commonPool());
+    byte[] bytes = sequential.toByteArray();
+    assertArrayEquals(label, bytes, parallel.toByteArray());
+
+    List<S2Point> decoded = S2PointVectorCoder.COMPACT.decode(Bytes.fromByteArray(bytes));
+    assertEquals(label, points.size(), decoded.size());
+    for (int i = 0; i < points.size(); i++) {
+      assertEquals(label + ", point " + i, points.get(i), decoded.get(i));
+    }
+  }
+
+  /**
+   * Returns 'n' points near a random location, each the center of a random cell at the given
+   * level, except for the given fraction which are arbitrary points.
+   */
+  private static List<S2Point> cellCenters(
+      Random random, int n, int level, double exceptionFraction) {
+    S2LatLng center = S2LatLng.fromDegrees(-80 + 160 * random.nextDouble(), random.nextInt(360));
+    List<S2Point> points = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      S2LatLng offset = S2LatLng.fromDegrees(random.nextDouble(), random.nextDouble());
+      S2Point p = center.add(offset).toPoint();
+      if (random.nextDouble() >= exceptionFraction) {
+        p = S2CellId.fromPoint(p).parent(level).toPoint();
+      }
+      points.add(p);
+    }
+    return points;
+  }
+}
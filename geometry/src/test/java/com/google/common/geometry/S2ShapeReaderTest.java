@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link S2ShapeReader}. */
+@RunWith(JUnit4.class)
+public final class S2ShapeReaderTest {
+  /** A 10 degree square shell around (5, 5), counter-clockwise. */
+  private static final String SHELL = "[0, 0], [10, 0], [10, 10], [0, 10], [0, 0]";
+
+  /** The same shell, clockwise. */
+  private static final String CLOCKWISE_SHELL = "[0, 0], [0, 10], [10, 10], [10, 0], [0, 0]";
+
+  /** A 2 degree square hole around (5, 5), clockwise. */
+  private static final String HOLE = "[4, 4], [4, 6], [6, 6], [6, 4], [4, 4]";
+
+  /** The same hole, counter-clockwise. */
+  private static final String COUNTER_CLOCKWISE_HOLE = "[4, 4], [6, 4], [6, 6], [4, 6], [4, 4]";
+
+  private static final double MAX_ERROR = 1e-15;
+
+  @Test
+  public void testGeoJsonRingsAreNormalized() throws IOException {
+    double shellArea = geoJsonArea(polygon(SHELL));
+    double area = geoJsonArea(polygon(SHELL, HOLE));
+    assertEquals(shellArea, geoJsonArea(polygon(CLOCKWISE_SHELL)), MAX_ERROR);
+    assertEquals(area, geoJsonArea(polygon(CLOCKWISE_SHELL, COUNTER_CLOCKWISE_HOLE)), MAX_ERROR);
+    assertEquals(area, geoJsonArea(polygon(SHELL, COUNTER_CLOCKWISE_HOLE)), MAX_ERROR);
+    // The shell covers 100 square degrees rather than the rest of the sphere, and the hole 4.
+    assertEquals(100 / 41253.0, shellArea / (4 * Math.PI), 1e-4);
+    assertEquals(0.96 * shellArea, area, 0.01 * shellArea);
+
+    String other = "[20, 20], [21, 20], [21, 21], [20, 21], [20, 20]";
+    String clockwiseOther = "[20, 20], [20, 21], [21, 21], [21, 20], [20, 20]";
+    String multiPolygon =
+        "{\"type\": \"MultiPolygon\", \"coordinates\": [[["
+            + CLOCKWISE_SHELL
+            + "], ["
+            + COUNTER_CLOCKWISE_HOLE
+            + "]], [["
+            + clockwiseOther
+            + "]]]}";
+    assertEquals(area + geoJsonArea(polygon(other)), geoJsonArea(multiPolygon), MAX_ERROR);
+  }
+
+  @Test
+  public void testGeoJsonMatchesWkt() throws IOException {
+    String wkt = "POLYGON ((0 0, 0 10, 10 10, 10 0, 0 0), (4 4, 6 4, 6 6, 4 6, 4 4))";
+    List<S2Shape> shapes = new ArrayList<>();
+    S2ShapeReader.readWkt(new StringReader(wkt), shapes::add);
+    assertEquals(1, shapes.size());
+    assertEquals(
+        geoJsonArea(polygon(CLOCKWISE_SHELL, COUNTER_CLOCKWISE_HOLE)),
+        S2ShapeMeasures.area(shapes.get(0)),
+        MAX_ERROR);
+  }
+
+  /** Returns a GeoJSON Polygon with the given rings. */
+  private static String polygon(String... rings) {
+    return "{\"type\": \"Polygon\", \"coordinates\": [[" + String.join("], [", rings) + "]]}";
+  }
+
+  /** Returns the area of the single shape read from the given GeoJSON. */
+  private static double geoJsonArea(String geoJson) throws IOException {
+    List<S2Shape> shapes = new ArrayList<>();
+    S2ShapeReader.readGeoJson(new StringReader(geoJson), shapes::add);
+    assertEquals(1, shapes.size());
+    return S2ShapeMeasures.area(shapes.get(0));
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.geometry.S2BooleanOperation.OpType;
+import com.google.common.geometry.S2Builder.SnapFunction;
+import com.google.common.geometry.S2BuilderSnapFunctions.IdentitySnapFunction;
+import com.google.common.geometry.S2BuilderSnapFunctions.IntLatLngSnapFunction;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests {@link S2TiledBooleanOperation} on random overlapping fractal loops and on cell-aligned
+ * polygons, by comparison with the untiled {@link S2BooleanOperation}.
+ */
+@RunWith(JUnit4.class)
+public final class S2TiledBooleanOperationTest {
+  /**
+   * The maximum relative difference in area between the tiled and untiled results. Near the tile
+   * boundaries, the tiles may make different snapping choices than the untiled operation.
+   */
+  private static final double MAX_RELATIVE_AREA_ERROR = 1e-8;
+
+  @Test
+  public void testTiledMatchesUntiled() {
+    SnapFunction[] snapFunctions = {
+      new IdentitySnapFunction(S1Angle.ZERO), new IntLatLngSnapFunction(7)
+    };
+    for (int seed = 0; seed < 3; seed++) {
+      Random random = new Random(seed);
+      S2LatLng center = S2LatLng.fromDegrees(-60 + 120 * random.nextDouble(), random.nextInt(360));
+      S2ShapeIndex a = fractalIndex(random, center);
+      S2ShapeIndex b = fractalIndex(random, center);
+      for (SnapFunction snapFunction : snapFunctions) {
+        for (OpType opType : OpType.values()) {
+          String label = "Seed " + seed + ", " + snapFunction + ", " + opType;
+          S2Polygon expected = untiled(snapFunction, opType, a, b);
+          S2Polygon actual = tiled(snapFunction, opType, a, b, 500);
+          S2Error error = new S2Error();
+          assertFalse(label + ": " + error, actual.findValidationError(error));
+          assertEquals(
+              label,
+              expected.getArea(),
+              actual.getArea(),
+              MAX_RELATIVE_AREA_ERROR * expected.getArea());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTiledMatchesUntiledCellAligned() {
+    // The border of a union of level 12 cells has its edges along the boundaries of the cells that
+    // the tiles and their halos are made of, and vertices on their corners.
+    S2RegionCoverer coverer =
+        S2RegionCoverer.builder().setMinLevel(12).setMaxLevel(12).setMaxCells(1000).build();
+    S2Point center = S2LatLng.fromDegrees(37, -122).toPoint();
+    S2Cap cap = S2Cap.fromAxisAngle(center, S1Angle.degrees(0.05));
+    S2ShapeIndex a = S2Polygon.fromCellUnionBorder(coverer.getCovering(cap)).index();
+    S2Loop loop =
+        S2Loop.makeRegularLoop(
+            S2LatLng.fromDegrees(37.03, -122.02).toPoint(), S1Angle.degrees(0.04), 500);
+    S2ShapeIndex b = new S2Polygon(loop).index();
+    SnapFunction snapFunction = new IdentitySnapFunction(S1Angle.ZERO);
+    for (OpType opType : OpType.values()) {
+      String label = "Cell aligned, " + opType;
+      S2Polygon expected = untiled(snapFunction, opType, a, b);
+      S2Polygon actual = tiled(snapFunction, opType, a, b, 200);
+      S2Error error = new S2Error();
+      assertFalse(label + ": " + error, actual.findValidationError(error));
+      double area = expected.getArea();
+      assertEquals(label, area, actual.getArea(), MAX_RELATIVE_AREA_ERROR * area);
+    }
+  }
+
+  /** Returns an index of a random fractal loop about 2 degrees across, near the given center. */
+  private static S2ShapeIndex fractalIndex(Random random, S2LatLng center) {
+    S2FractalBuilder fractal = new S2FractalBuilder(random);
+    fractal.setLevelForApproxMaxEdges(2000);
+    double lat = center.latDegrees() + random.nextDouble();
+    double lng = center.lngDegrees() + random.nextDouble();
+    S2Point loopCenter = S2LatLng.fromDegrees(lat, lng).toPoint();
+    S2Loop loop = fractal.makeLoop(S2.getFrame(loopCenter), S1Angle.degrees(1));
+    S2ShapeIndex index = new S2ShapeIndex();
+    index.add(new S2Polygon(loop).shape());
+    return index;
+  }
+
+  private static S2Polygon untiled(
+      SnapFunction snapFunction, OpType opType, S2ShapeIndex a, S2ShapeIndex b) {
+    S2PolygonLayer layer = new S2PolygonLayer();
+    S2BooleanOperation op = new S2BooleanOperation.Builder(snapFunction).build(opType, layer);
+    S2Error error = new S2Error();
+    assertTrue(error.toString(), op.build(a, b, error));
+    return layer.getPolygon();
+  }
+
+  /**
+   * Returns the result of the tiled operation, with tiles of at most the given number of edges,
+   * which is small enough to split the inputs.
+   */
+  private static S2Polygon tiled(
+      SnapFunction snapFunction,
+      OpType opType,
+      S2ShapeIndex a,
+      S2ShapeIndex b,
+      int maxEdgesPerTile) {
+    S2PolygonLayer layer = new S2PolygonLayer();
+    S2TiledBooleanOperation op =
+        new S2TiledBooleanOperation.Builder(snapFunction)
+            .setMaxEdgesPerTile(maxEdgesPerTile)
+            .build(opType, layer);
+    S2Error error = new S2Error();
+    assertTrue(error.toString(), op.build(a, b, ForkJoinPool.commonPool(), error));
+    return layer.getPolygon();
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2024 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.geometry.primitives;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link IntVector}. */
+@RunWith(JUnit4.class)
+public final class IntVectorTest {
+  @Test
+  public void testResizeAfterClearZeroesNewElements() {
+    IntVector vector = new IntVector();
+    for (int i = 0; i < 10; i++) {
+      vector.add(i + 1);
+    }
+    vector.clear();
+    // Growing past the current capacity allocates a new array, which must not contain the cleared
+    // elements.
+    vector.resize(vector.capacity() + 1);
+    for (int i = 0; i < vector.size(); i++) {
+      assertEquals("Element " + i, 0, vector.get(i));
+    }
+  }
+}
@@ -16,4 +16,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "plshelp"
 include(":androidApp")
-include(":shared")
\ No newline at end of file
+include(":shared")
+include(":geometry")
\ No newline at end of file